@@ -0,0 +1,112 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.BitPayload;
+import com.example.demo.Channel;
+import com.example.demo.EmbeddingConfig;
+import com.example.demo.LsbPreview;
+import com.example.demo.Steganography;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Скалярные и векторные ядра битовых плоскостей по типам изображений: встраивание и извлечение сообщения,
+ * занимающего почти всю ёмкость изображения, в одном потоке и построение плоскости младшего бита синего канала
+ * в исходном размере. Векторные ядра выбираются при запуске JVM, поэтому каждый вариант выполняется в отдельной
+ * JVM: методы {@code *Scalar} — без модуля {@code jdk.incubator.vector}, методы {@code *Vector} — с ним.
+ * Ускорение для типа изображения равно отношению времени скалярного варианта к времени векторного.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = BitPlaneKernelBenchmark.LOG_CONFIG)
+@State(Scope.Thread)
+public class BitPlaneKernelBenchmark {
+
+    static final String LOG_CONFIG = "-Dlog4j.configurationFile=classpath:log4j2-benchmarks.xml";
+
+    static final String VECTOR_MODULE = "--add-modules=jdk.incubator.vector";
+
+    @Param({"TYPE_INT_RGB", "TYPE_BYTE_GRAY", "TYPE_3BYTE_BGR", "TYPE_4BYTE_ABGR"})
+    public String imageType;
+
+    @Param({"2048"})
+    public int size;
+
+    private BufferedImage image;
+    private BitPayload payload;
+    private ByteBuffer target;
+    private EmbeddingConfig config;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        image = SyntheticImages.create(imageType, size, size, 42);
+        int length = (size * size - 512) / 8;
+        payload = BitPayload.wrap(SyntheticImages.bytes(length, 43));
+        target = ByteBuffer.allocate(length);
+        config = EmbeddingConfig.defaults().withParallelism(1);
+        Steganography.hideTheMessage(payload, image, config);
+    }
+
+    @Benchmark
+    public BufferedImage embedScalar() throws IOException {
+        return embed();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {LOG_CONFIG, VECTOR_MODULE})
+    public BufferedImage embedVector() throws IOException {
+        return embed();
+    }
+
+    @Benchmark
+    public int extractScalar() throws IOException {
+        return extract();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {LOG_CONFIG, VECTOR_MODULE})
+    public int extractVector() throws IOException {
+        return extract();
+    }
+
+    @Benchmark
+    public LsbPreview renderScalar() throws IOException {
+        return render();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {LOG_CONFIG, VECTOR_MODULE})
+    public LsbPreview renderVector() throws IOException {
+        return render();
+    }
+
+    private BufferedImage embed() throws IOException {
+        Steganography.hideTheMessage(payload, image, config);
+        return image;
+    }
+
+    private int extract() throws IOException {
+        target.clear();
+        return Steganography.extractMessage(image, target, 1);
+    }
+
+    private LsbPreview render() throws IOException {
+        return LsbPreview.render(image, Channel.BLUE, 0, size, size);
+    }
+}
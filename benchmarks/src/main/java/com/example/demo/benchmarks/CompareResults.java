@@ -0,0 +1,140 @@
+package com.example.demo.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Сравнение двух файлов результатов JMH в формате CSV, например замеров двух коммитов.
+ *
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar -rf csv -rff base.csv
+ * java -cp benchmarks/target/benchmarks.jar com.example.demo.benchmarks.CompareResults base.csv new.csv
+ * </pre>
+ *
+ * Для каждого замера с одинаковыми бенчмарком и параметрами выводятся оба результата и изменение в процентах.
+ * Изменение отмечается символом '*', если оно больше суммы погрешностей обоих замеров.
+ */
+public final class CompareResults {
+
+    private CompareResults() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Использование: CompareResults <базовый.csv> <новый.csv>");
+            System.exit(2);
+        }
+        Map<String, Score> base = read(Path.of(args[0]));
+        Map<String, Score> current = read(Path.of(args[1]));
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            Score now = entry.getValue();
+            Score before = base.get(entry.getKey());
+            if (before == null) {
+                System.out.printf(Locale.ROOT, "  %-90s %14s %14.3f %s%n", entry.getKey(), "-", now.value, now.unit);
+                continue;
+            }
+            double change = (now.value - before.value) / before.value * 100;
+            boolean significant = Math.abs(now.value - before.value) > before.error + now.error;
+            System.out.printf(Locale.ROOT, "%s %-90s %14.3f %14.3f %s %+7.1f%%%n", significant ? "*" : " ",
+                    entry.getKey(), before.value, now.value, now.unit, change);
+        }
+        for (String key : base.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.printf(Locale.ROOT, "  %-90s %14.3f %14s%n", key, base.get(key).value, "-");
+            }
+        }
+    }
+
+    /**
+     * Чтение результатов из файла CSV.
+     *
+     * @param file файл результатов.
+     * @return результаты по ключу "бенчмарк [параметр=значение ...]" в порядке ключей.
+     * @throws IOException если файл не удалось прочитать или в нём нет обязательных столбцов.
+     */
+    private static Map<String, Score> read(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (lines.isEmpty()) {
+            throw new IOException("Файл результатов пуст: " + file);
+        }
+        List<String> header = split(lines.get(0));
+        int benchmark = header.indexOf("Benchmark");
+        int score = header.indexOf("Score");
+        int error = header.indexOf("Score Error (99.9%)");
+        int unit = header.indexOf("Unit");
+        if (benchmark < 0 || score < 0 || error < 0 || unit < 0) {
+            throw new IOException("Файл не является результатом JMH в формате CSV: " + file);
+        }
+        Map<String, Score> scores = new TreeMap<>();
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isBlank()) {
+                continue;
+            }
+            List<String> fields = split(line);
+            StringBuilder key = new StringBuilder(fields.get(benchmark));
+            for (int i = 0; i < header.size() && i < fields.size(); i++) {
+                if (header.get(i).startsWith("Param: ") && !fields.get(i).isEmpty()) {
+                    key.append(' ').append(header.get(i).substring("Param: ".length())).append('=')
+                            .append(fields.get(i));
+                }
+            }
+            String errorField = fields.get(error);
+            scores.put(key.toString(), new Score(Double.parseDouble(fields.get(score)),
+                    errorField.isEmpty() || errorField.equals("NaN") ? 0 : Double.parseDouble(errorField),
+                    fields.get(unit)));
+        }
+        return scores;
+    }
+
+    /**
+     * Разбор строки CSV с полями в двойных кавычках.
+     *
+     * @param line строка.
+     * @return поля без кавычек.
+     */
+    private static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Результат замера.
+     */
+    private static final class Score {
+        private final double value;
+        private final double error;
+        private final String unit;
+
+        Score(double value, double error, String unit) {
+            this.value = value;
+            this.error = error;
+            this.unit = unit;
+        }
+    }
+}
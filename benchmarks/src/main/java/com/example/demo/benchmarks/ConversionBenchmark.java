@@ -0,0 +1,58 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.BitConverter;
+import com.example.demo.BitPayload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Преобразование текста сообщения в упакованные биты и в массив битов.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=classpath:log4j2-benchmarks.xml")
+@State(Scope.Thread)
+public class ConversionBenchmark {
+
+    @Param({"64", "4096", "262144"})
+    public int length;
+
+    private String message;
+    private int[] bits;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        message = SyntheticImages.message(length, 44);
+        bits = SyntheticImages.bits(length, 45);
+    }
+
+    @Benchmark
+    public BitPayload toPayload() throws IOException {
+        return BitConverter.convertMessageToPayload(message);
+    }
+
+    @Benchmark
+    public int[] toBits() throws IOException {
+        return BitConverter.convertMessageToBits(message);
+    }
+
+    @Benchmark
+    public BitPayload packBits() {
+        return BitPayload.fromBits(bits);
+    }
+}
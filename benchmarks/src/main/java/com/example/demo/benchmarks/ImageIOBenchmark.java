@@ -0,0 +1,78 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.ImageHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Загрузка и сохранение BMP через {@link ImageHandler} и построение изображения младших битов.
+ * Файлы создаются во временном каталоге и удаляются после замера; время зависит от файлового кэша ОС,
+ * поэтому результаты сравнимы только на одной машине.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=classpath:log4j2-benchmarks.xml")
+@State(Scope.Thread)
+public class ImageIOBenchmark {
+
+    @Param({"TYPE_3BYTE_BGR", "TYPE_INT_RGB"})
+    public String imageType;
+
+    @Param({"512", "1024", "4096"})
+    public int size;
+
+    private BufferedImage image;
+    private Path directory;
+    private String source;
+    private String target;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        image = SyntheticImages.create(imageType, size, size, 42);
+        directory = Files.createTempDirectory("lsb-bench");
+        source = directory.resolve("source.bmp").toString();
+        target = directory.resolve("target.bmp").toString();
+        ImageHandler.saveImage(image, source, "bmp");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(Path.of(source));
+        Files.deleteIfExists(Path.of(target));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public BufferedImage loadBmp() throws IOException {
+        return ImageHandler.loadImage(source);
+    }
+
+    @Benchmark
+    public void saveBmp() throws IOException {
+        ImageHandler.saveImage(image, target, "bmp");
+    }
+
+    @Benchmark
+    public BufferedImage lsbPreview() throws IOException {
+        return ImageHandler.createLSBImage(image);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.BitPayload;
+import com.example.demo.EmbeddingConfig;
+import com.example.demo.Steganography;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Встраивание и извлечение сообщения 32 КБ в изображение 2048x2048 с матричным кодированием и без него
+ * (matrixBits = 0). Каждое встраивание чередует два разных сообщения, чтобы отсчёты действительно
+ * менялись. Матричное кодирование читает в k раз больше отсчётов на бит сообщения, но записывает
+ * только пиксели с изменённым отсчётом.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=classpath:log4j2-benchmarks.xml")
+@State(Scope.Thread)
+public class MatrixEmbeddingBenchmark {
+
+    private static final int MESSAGE_BYTES = 32 * 1024;
+
+    @Param({"TYPE_INT_RGB", "TYPE_3BYTE_BGR"})
+    public String imageType;
+
+    @Param({"0", "2", "4", "6"})
+    public int matrixBits;
+
+    private BufferedImage image;
+    private EmbeddingConfig config;
+    private BitPayload[] payloads;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        image = SyntheticImages.create(imageType, 2048, 2048, 42);
+        config = EmbeddingConfig.defaults().withMatrixEmbedding(matrixBits);
+        payloads = new BitPayload[]{
+                BitPayload.wrap(SyntheticImages.bytes(MESSAGE_BYTES, 1)),
+                BitPayload.wrap(SyntheticImages.bytes(MESSAGE_BYTES, 2))};
+        Steganography.hideTheMessage(payloads[0], image, config);
+    }
+
+    @Benchmark
+    public BufferedImage embed() throws IOException {
+        next ^= 1;
+        Steganography.hideTheMessage(payloads[next], image, config);
+        return image;
+    }
+
+    @Benchmark
+    public byte[] extract() throws IOException {
+        return Steganography.extractMessage(image);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.BitPayload;
+import com.example.demo.EmbeddingConfig;
+import com.example.demo.Steganography;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Масштабирование параллельного встраивания и извлечения по полосам растра в зависимости от количества потоков.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=classpath:log4j2-benchmarks.xml")
+@State(Scope.Thread)
+public class ParallelScalingBenchmark {
+
+    @Param({"TYPE_3BYTE_BGR", "TYPE_INT_RGB"})
+    public String imageType;
+
+    @Param({"4096"})
+    public int size;
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    public int threads;
+
+    private BufferedImage image;
+    private BitPayload payload;
+    private ByteBuffer target;
+    private EmbeddingConfig config;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        image = SyntheticImages.create(imageType, size, size, 42);
+        int length = (size * size - 512) / 8;
+        // Сообщение упаковывается заранее, чтобы в замер попадала только работа с растром
+        payload = BitPayload.fromBits(SyntheticImages.bits(length, 43));
+        target = ByteBuffer.allocate(length);
+        config = EmbeddingConfig.defaults().withParallelism(threads);
+        Steganography.hideTheMessage(payload, image, config);
+    }
+
+    @Benchmark
+    public BufferedImage embed() throws IOException {
+        Steganography.hideTheMessage(payload, image, config);
+        return image;
+    }
+
+    @Benchmark
+    public int extract() throws IOException {
+        target.clear();
+        return Steganography.extractMessage(image, target, threads);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.BitPayload;
+import com.example.demo.EmbeddingConfig;
+import com.example.demo.Steganography;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Встраивание и извлечение сообщений разной длины в изображения разного размера и типа.
+ * В отличие от {@link ExtractionBenchmark}, сообщение занимает лишь часть ёмкости,
+ * поэтому замер показывает постоянные затраты на изображение и затраты на байт сообщения.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=classpath:log4j2-benchmarks.xml")
+@State(Scope.Thread)
+public class PayloadSizeBenchmark {
+
+    @Param({"TYPE_3BYTE_BGR", "TYPE_INT_RGB", "TYPE_INT_ARGB", "TYPE_4BYTE_ABGR"})
+    public String imageType;
+
+    @Param({"1024", "2048", "4096"})
+    public int size;
+
+    @Param({"64", "4096", "65536"})
+    public int length;
+
+    private BufferedImage image;
+    private BitPayload payload;
+    private ByteBuffer target;
+    private EmbeddingConfig config;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        image = SyntheticImages.create(imageType, size, size, 42);
+        payload = BitPayload.wrap(SyntheticImages.bytes(length, 43));
+        target = ByteBuffer.allocate(length);
+        config = EmbeddingConfig.defaults();
+        Steganography.hideTheMessage(payload, image, config);
+    }
+
+    @Benchmark
+    public BufferedImage embed() throws IOException {
+        Steganography.hideTheMessage(payload, image, config);
+        return image;
+    }
+
+    @Benchmark
+    public int extract() throws IOException {
+        target.clear();
+        return Steganography.extractMessage(image, target);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.BitPayload;
+import com.example.demo.EmbeddingConfig;
+import com.example.demo.PixelScatter;
+import com.example.demo.Steganography;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение последовательного обхода по строкам с разбросом пикселей по ключу.
+ * Разброс обращается к пикселям вразнобой и вычисляет перестановку для каждого пикселя,
+ * замер показывает цену этого по сравнению с последовательной записью и чтением.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=classpath:log4j2-benchmarks.xml")
+@State(Scope.Thread)
+public class ScatterBenchmark {
+
+    @Param({"ROW_MAJOR", "SCATTERED"})
+    public String layout;
+
+    @Param({"TYPE_3BYTE_BGR", "TYPE_INT_RGB"})
+    public String imageType;
+
+    @Param({"4096", "262144"})
+    public int length;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private BufferedImage image;
+    private BitPayload payload;
+    private EmbeddingConfig config;
+    private PixelScatter scatter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        image = SyntheticImages.create(imageType, 2048, 2048, 42);
+        payload = BitPayload.wrap(SyntheticImages.bytes(length, 43));
+        config = EmbeddingConfig.defaults().withParallelism(threads);
+        if (layout.equals("SCATTERED")) {
+            scatter = PixelScatter.fromKey(44);
+            config = config.withScatter(scatter);
+        }
+        Steganography.hideTheMessage(payload, image, config);
+    }
+
+    @Benchmark
+    public BufferedImage embed() throws IOException {
+        Steganography.hideTheMessage(payload, image, config);
+        return image;
+    }
+
+    @Benchmark
+    public byte[] extract() throws IOException {
+        return Steganography.extractMessage(image, scatter, threads);
+    }
+}
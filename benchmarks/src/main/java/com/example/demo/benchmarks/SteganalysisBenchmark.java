@@ -0,0 +1,55 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.DetectabilityReport;
+import com.example.demo.Steganalysis;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стегоанализ изображения 2048x2048: хи-квадрат, RS-анализ и анализ пар отсчётов по всем цветовым каналам
+ * за один проход по областям. Параметр threads показывает масштабирование по областям;
+ * время на один поток определяет, во сколько обходится проверка обнаружимости в пакетном конвейере.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=classpath:log4j2-benchmarks.xml")
+@State(Scope.Thread)
+public class SteganalysisBenchmark {
+
+    @Param({"TYPE_INT_RGB", "TYPE_3BYTE_BGR", "TYPE_BYTE_GRAY"})
+    public String imageType;
+
+    @Param({"256"})
+    public int tile;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private BufferedImage image;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        image = SyntheticImages.create(imageType, 2048, 2048, 42);
+    }
+
+    @Benchmark
+    public DetectabilityReport analyze() throws IOException {
+        return Steganalysis.analyze(image, tile, threads);
+    }
+}
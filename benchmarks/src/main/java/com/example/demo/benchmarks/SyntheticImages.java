@@ -0,0 +1,108 @@
+package com.example.demo.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Генерация синтетических изображений и сообщений для бенчмарков.
+ * Данные зависят только от параметров и начального значения генератора, поэтому замеры воспроизводимы.
+ */
+final class SyntheticImages {
+
+    private SyntheticImages() {
+    }
+
+    /**
+     * Создание изображения со случайными пикселями.
+     *
+     * @param typeName имя константы типа изображения из {@link BufferedImage}, например "TYPE_3BYTE_BGR".
+     * @param width    ширина изображения.
+     * @param height   высота изображения.
+     * @param seed     начальное значение генератора.
+     * @return изображение.
+     */
+    static BufferedImage create(String typeName, int width, int height, long seed) {
+        int type;
+        try {
+            type = BufferedImage.class.getField(typeName).getInt(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Неизвестный тип изображения: " + typeName, e);
+        }
+        BufferedImage image = new BufferedImage(width, height, type);
+        Random random = new Random(seed);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                row[x] = random.nextInt();
+            }
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return image;
+    }
+
+    /**
+     * Создание случайного сообщения в виде массива битов.
+     *
+     * @param bytes длина сообщения в байтах.
+     * @param seed  начальное значение генератора.
+     * @return массив битов.
+     */
+    static int[] bits(int bytes, long seed) {
+        Random random = new Random(seed);
+        int[] bits = new int[bytes * 8];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = random.nextInt(2);
+        }
+        return bits;
+    }
+
+    /**
+     * Создание случайного сообщения из символов с кодами от 0 до 255.
+     *
+     * @param length длина сообщения в символах.
+     * @param seed   начальное значение генератора.
+     * @return сообщение.
+     */
+    static String message(int length, long seed) {
+        Random random = new Random(seed);
+        char[] chars = new char[length];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) random.nextInt(256);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Создание текстового сообщения в UTF-8 из случайных слов небольшого словаря.
+     * В отличие от случайных байтов, такое сообщение сжимается, как обычный текст.
+     *
+     * @param length длина сообщения в байтах.
+     * @param seed   начальное значение генератора.
+     * @return байты сообщения.
+     */
+    static byte[] text(int length, long seed) {
+        String[] words = {"изображение ", "пиксель ", "канал ", "сообщение ", "заголовок ", "the ", "of ",
+                "message ", "carrier ", "bit ", "и ", "в ", "не ", "на ", "с ", ".\n", ", ", "12 ", "2048 "};
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            text.append(words[random.nextInt(words.length)]);
+        }
+        return Arrays.copyOf(text.toString().getBytes(StandardCharsets.UTF_8), length);
+    }
+
+    /**
+     * Создание случайного сообщения в виде массива байтов.
+     *
+     * @param length длина сообщения в байтах.
+     * @param seed   начальное значение генератора.
+     * @return байты сообщения.
+     */
+    static byte[] bytes(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
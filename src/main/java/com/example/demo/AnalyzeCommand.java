@@ -0,0 +1,200 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Стегоанализ изображений без графического интерфейса: оценка обнаружимости встраивания по младшим битам.
+ *
+ * <pre>
+ * analyze [параметры] изображение | каталог ...
+ * </pre>
+ *
+ * Для каталога анализируются все файлы BMP и PNG. Несколько изображений анализируются параллельно,
+ * каждое в одном потоке; одно изображение анализируется параллельно по областям. Результаты выводятся
+ * в порядке аргументов: итоговая оценка изображения (см. {@link DetectabilityReport}), оценка всего
+ * изображения и область с наибольшей оценкой, с параметром --regions — оценки всех областей по каналам.
+ */
+public class AnalyzeCommand {
+
+    /**
+     * Порог итоговой оценки по умолчанию.
+     */
+    static final double DEFAULT_THRESHOLD = 0.2;
+
+    /**
+     * Описание параметров командной строки.
+     */
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Использование:",
+            "  analyze [параметры] <изображение | каталог>...",
+            "Параметры:",
+            "  --threads <n>        потоков анализа (по умолчанию число процессоров)",
+            "  --tile <n>           сторона области в пикселях, не меньше " + Steganalysis.MIN_TILE
+                    + " (по умолчанию " + Steganalysis.DEFAULT_TILE + ")",
+            "  --threshold <доля>   порог оценки, выше которого встраивание считается заметным (по умолчанию "
+                    + DEFAULT_THRESHOLD + ")",
+            "  --regions            вывести оценки всех областей");
+
+    /**
+     * Точка входа команды.
+     *
+     * @param args аргументы командной строки без имени команды.
+     */
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Выполнение команды.
+     *
+     * @param args аргументы командной строки без имени команды.
+     * @param out  поток для отчёта.
+     * @param err  поток для сообщений об ошибках.
+     * @return код завершения: 0 если все оценки не выше порога, 1 если оценка хотя бы одного изображения выше
+     * порога или его не удалось проанализировать, 2 при неверных аргументах.
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        System.setProperty("java.awt.headless", "true");
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        int tile = Steganalysis.DEFAULT_TILE;
+        double threshold = DEFAULT_THRESHOLD;
+        boolean regions = false;
+        List<String> inputs = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                switch (option) {
+                    case "--threads" -> threads = BatchCommand.positive(BatchCommand.value(args, ++i, option), option);
+                    case "--tile" -> tile = BatchCommand.positive(BatchCommand.value(args, ++i, option), option);
+                    case "--threshold" -> threshold = BatchCommand.fraction(BatchCommand.value(args, ++i, option),
+                            option);
+                    case "--regions" -> regions = true;
+                    default -> {
+                        if (option.startsWith("--")) {
+                            throw new IllegalArgumentException("Неизвестный параметр: " + option);
+                        }
+                        inputs.add(option);
+                    }
+                }
+            }
+            if (inputs.isEmpty()) {
+                throw new IllegalArgumentException("Укажите изображения или каталоги.");
+            }
+            if (tile < Steganalysis.MIN_TILE) {
+                throw new IllegalArgumentException("Сторона области должна быть не меньше " + Steganalysis.MIN_TILE
+                        + ": " + tile);
+            }
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+
+        List<Path> images = new ArrayList<>();
+        try {
+            for (String input : inputs) {
+                Path path = Paths.get(input);
+                if (Files.isDirectory(path)) {
+                    images.addAll(ShardedArchive.listImages(path));
+                } else {
+                    images.add(path);
+                }
+            }
+        } catch (IOException e) {
+            LogUtil.logError("Не удалось составить список изображений: " + e.getMessage(), e);
+            err.println("Не удалось составить список изображений: " + e.getMessage());
+            return 2;
+        }
+
+        // Одно изображение делится на области между потоками, несколько — распределяются по потокам целиком
+        int parallelism = images.size() == 1 ? threads : 1;
+        int tileSize = tile;
+        long start = System.nanoTime();
+        int detected = 0;
+        int failed = 0;
+        ExecutorService executor = newExecutor(Math.min(threads, Math.max(1, images.size())));
+        try {
+            List<CompletableFuture<DetectabilityReport>> reports = new ArrayList<>();
+            for (Path image : images) {
+                reports.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return Steganalysis.analyze(image.toString(), tileSize, parallelism);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, executor));
+            }
+            for (int i = 0; i < images.size(); i++) {
+                DetectabilityReport report;
+                try {
+                    report = reports.get(i).join();
+                } catch (CompletionException e) {
+                    Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause()
+                            : e.getCause();
+                    LogUtil.logError("Не удалось проанализировать " + images.get(i) + ": " + cause.getMessage(),
+                            cause);
+                    out.printf("%s: ошибка: %s%n", images.get(i), cause.getMessage());
+                    failed++;
+                    continue;
+                }
+                boolean above = report.getScore() > threshold;
+                if (above) {
+                    detected++;
+                }
+                out.printf("%s: %s%s%n", images.get(i), report, above ? " — выше порога" : "");
+                if (regions) {
+                    printRegions(report, out);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        out.printf(Locale.ROOT, "Проанализировано %d изображений за %.2f с, выше порога %.2f: %d, ошибок: %d%n",
+                images.size() - failed, (System.nanoTime() - start) / 1e9, threshold, detected, failed);
+        return detected == 0 && failed == 0 ? 0 : 1;
+    }
+
+    /**
+     * Вывод оценок всех областей: для каждой области — оценки каналов.
+     *
+     * @param report отчёт.
+     * @param out    поток для отчёта.
+     */
+    private static void printRegions(DetectabilityReport report, PrintStream out) {
+        Channel[] channels = report.getChannels();
+        for (int row = 0; row < report.getRows(); row++) {
+            for (int column = 0; column < report.getColumns(); column++) {
+                StringBuilder line = new StringBuilder(String.format("  (%d, %d):", column, row));
+                for (Channel channel : channels) {
+                    line.append(' ').append(channel.name().charAt(0)).append(' ')
+                            .append(report.getRegionScore(column, row, channel));
+                }
+                out.println(line);
+            }
+        }
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "analyze-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
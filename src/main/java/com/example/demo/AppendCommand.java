@@ -0,0 +1,116 @@
+package com.example.demo;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Дозапись данных в конец сообщения, уже скрытого в изображении, без графического интерфейса.
+ *
+ * <pre>
+ * append [--key &lt;фраза&gt;] &lt;изображение&gt; &lt;файл | -&gt;
+ * </pre>
+ *
+ * Дописываемые байты читаются из файла или, если вместо файла указан '-', из стандартного ввода.
+ * Для сообщения, встроенного с разбросом пикселей, указывается тот же ключ, что и при встраивании.
+ * Несжатый BMP изменяется на месте через отображение в память: перезаписываются только пиксели после конца
+ * сообщения и заголовок кадра, поэтому время дозаписи зависит от количества новых байтов, а не от размера
+ * изображения. Изображения других форматов декодируются, дополняются и сохраняются целиком через временный файл.
+ */
+public class AppendCommand {
+
+    /**
+     * Описание параметров командной строки.
+     */
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Использование:",
+            "  append [--key <фраза>] <изображение> <файл>  дописать байты файла к сообщению в изображении",
+            "  append [--key <фраза>] <изображение> -       дописать байты из стандартного ввода");
+
+    /**
+     * Точка входа команды дозаписи.
+     *
+     * @param args аргументы командной строки без имени команды.
+     */
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Выполнение команды дозаписи.
+     *
+     * @param args аргументы командной строки без имени команды.
+     * @param out  поток для отчёта.
+     * @param err  поток для сообщений об ошибках.
+     * @return код завершения: 0 при успехе, 1 при ошибке дозаписи, 2 при неверных аргументах.
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        System.setProperty("java.awt.headless", "true");
+        PixelScatter scatter = null;
+        int first = 0;
+        try {
+            if (args.length > 1 && args[0].equals("--key")) {
+                scatter = PixelScatter.fromPassphrase(args[1]);
+                first = 2;
+            }
+            if (args.length - first != 2) {
+                throw new IllegalArgumentException("Укажите изображение и файл с дописываемыми байтами.");
+            }
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+        String image = args[first];
+        String data = args[first + 1];
+        try {
+            byte[] bytes = data.equals("-") ? System.in.readAllBytes() : Files.readAllBytes(Paths.get(data));
+            FrameHeader header = append(image, bytes, scatter);
+            out.printf("Дописано %d байт, длина сообщения %d байт%n", bytes.length, header.getLength());
+            return 0;
+        } catch (IOException e) {
+            LogUtil.logError("Не удалось дописать сообщение: " + e.getMessage(), e);
+            err.println("Не удалось дописать сообщение: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Дозапись байтов в изображение на диске.
+     *
+     * @param path    путь к изображению со скрытым сообщением.
+     * @param bytes   дописываемые байты.
+     * @param scatter перестановка пикселей, заданная ключом при встраивании, или {@code null}.
+     * @return заголовок кадра после дозаписи.
+     * @throws IOException если изображение не удалось прочитать или сохранить, сообщение записано в исходном
+     *                     формате, не указан ключ разброса или сообщение не помещается в изображение после дозаписи.
+     */
+    static FrameHeader append(String path, byte[] bytes, PixelScatter scatter) throws IOException {
+        if (MappedBmp.isSupported(path)) {
+            try (MappedBmp bmp = MappedBmp.open(path, true)) {
+                return bmp.appendMessage(bytes, scatter);
+            }
+        }
+        BufferedImage image = ImageHandler.loadImage(path);
+        FrameHeader header = Steganography.appendMessage(bytes, image, scatter);
+        // Исходный файл заменяется только после успешной записи, чтобы ошибка не повредила прежнее сообщение
+        Path target = Paths.get(path).toAbsolutePath();
+        Path temp = target.resolveSibling("." + target.getFileName() + ".part");
+        try {
+            ImageHandler.saveImage(image, temp.toString(), BatchPipeline.formatOf(path));
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return header;
+    }
+}
@@ -0,0 +1,331 @@
+package com.example.demo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Stream;
+
+/**
+ * Пакетное встраивание сообщений без графического интерфейса.
+ * Команда не обращается к JavaFX, поэтому запускается на серверах без дисплея и не тратит время на запуск toolkit.
+ *
+ * <pre>
+ * batch --manifest jobs.txt [параметры]
+ * batch --input каталог --message сообщение.txt --output каталог [параметры]
+ * </pre>
+ *
+ * Строка манифеста содержит пути к изображению, сообщению и результату, разделённые символом ';' или табуляцией.
+ * Относительные пути отсчитываются от каталога манифеста, пустые строки и строки с '#' пропускаются.
+ * В режиме каталога обрабатываются все файлы BMP и PNG, результат сохраняется под тем же именем.
+ * После обработки выводится время по заданиям и сводка {@link Metrics} по стадиям; во время обработки
+ * метрики доступны через JMX. С параметрами --compress и --encrypt сообщение сжимается и (или) шифруется
+ * потоком при встраивании; извлечь такое сообщение можно командой {@link ExtractCommand}.
+ * С параметром --max-detectability каждый результат проверяется {@link Steganalysis} перед записью.
+ */
+public class BatchCommand {
+
+    /**
+     * Описание параметров командной строки.
+     */
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Использование:",
+            "  batch --manifest <файл> [параметры]",
+            "  batch --input <каталог> --message <файл> --output <каталог> [параметры]",
+            "Параметры:",
+            "  --threads <n>        потоков чтения и записи (по умолчанию число процессоров)",
+            "  --embed-threads <n>  потоков встраивания (по умолчанию число процессоров)",
+            "  --queue <n>          ёмкость очередей между стадиями (по умолчанию 2 * threads)",
+            "  --bits <n>           младших битов на канал, от 1 до " + EmbeddingConfig.MAX_BITS_PER_CHANNEL,
+            "  --channels <RGBA>    используемые каналы, например B или RGB",
+            "  --key <фраза>        разбросать пиксели сообщения по изображению в порядке, заданном ключом",
+            "  --matrix <k>         матричное кодирование: k битов сообщения на 2^k - 1 отсчётов, k от "
+                    + MatrixCode.MIN_BITS + " до " + MatrixCode.MAX_BITS + ", только с --bits 1",
+            "  --compress           сжимать сообщение перед встраиванием (Deflate)",
+            "  --encrypt <пароль>   шифровать сообщение перед встраиванием",
+            "  --cipher <алгоритм>  алгоритм шифрования: aes-gcm (по умолчанию) или chacha20-poly1305",
+            "  --no-mmap            встраивать в BMP через декодирование изображения, без отображения файла в память",
+            "  --max-detectability <доля> не записывать результаты с оценкой стегоанализа выше доли",
+            "  --cache <МБ>         кэшировать декодированные изображения, если они повторяются в манифесте",
+            "  --metrics-every <s>  выводить метрики стадий в поток ошибок каждые s секунд",
+            "  --metrics-json <файл> сохранить итоговые метрики стадий в формате JSON");
+
+    /**
+     * Точка входа пакетной команды.
+     *
+     * @param args аргументы командной строки без имени команды.
+     */
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Выполнение пакетной команды.
+     *
+     * @param args аргументы командной строки без имени команды.
+     * @param out  поток для отчёта.
+     * @param err  поток для сообщений об ошибках.
+     * @return код завершения: 0 при успехе, 1 если часть заданий завершилась ошибкой, 2 при неверных аргументах.
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        // Пакетная обработка не создаёт окон, AWT используется только для кодеков изображений
+        System.setProperty("java.awt.headless", "true");
+
+        String manifest = null;
+        String input = null;
+        String message = null;
+        String output = null;
+        int processors = Runtime.getRuntime().availableProcessors();
+        int threads = processors;
+        int embedThreads = processors;
+        int queue = -1;
+        boolean mapBmp = true;
+        int cacheMegabytes = 0;
+        int metricsPeriod = 0;
+        String metricsJson = null;
+        EmbeddingConfig config = EmbeddingConfig.defaults();
+        boolean compress = false;
+        String password = null;
+        PayloadCipher cipher = PayloadCipher.AES_GCM;
+        PayloadTransform transform = PayloadTransform.none();
+        double maxDetectability = 1;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                switch (option) {
+                    case "--manifest" -> manifest = value(args, ++i, option);
+                    case "--input" -> input = value(args, ++i, option);
+                    case "--message" -> message = value(args, ++i, option);
+                    case "--output" -> output = value(args, ++i, option);
+                    case "--threads" -> threads = positive(value(args, ++i, option), option);
+                    case "--embed-threads" -> embedThreads = positive(value(args, ++i, option), option);
+                    case "--queue" -> queue = positive(value(args, ++i, option), option);
+                    case "--bits" -> config = config.withBitsPerChannel(positive(value(args, ++i, option), option));
+                    case "--channels" -> config = config.withChannels(channels(value(args, ++i, option)));
+                    case "--key" -> config = config.withScatter(PixelScatter.fromPassphrase(value(args, ++i, option)));
+                    case "--matrix" -> config = config.withMatrixEmbedding(positive(value(args, ++i, option), option));
+                    case "--compress" -> compress = true;
+                    case "--encrypt" -> password = value(args, ++i, option);
+                    case "--cipher" -> cipher = cipher(value(args, ++i, option));
+                    case "--no-mmap" -> mapBmp = false;
+                    case "--max-detectability" -> maxDetectability = fraction(value(args, ++i, option), option);
+                    case "--cache" -> cacheMegabytes = positive(value(args, ++i, option), option);
+                    case "--metrics-every" -> metricsPeriod = positive(value(args, ++i, option), option);
+                    case "--metrics-json" -> metricsJson = value(args, ++i, option);
+                    default -> throw new IllegalArgumentException("Неизвестный параметр: " + option);
+                }
+            }
+            if (manifest == null && (input == null || message == null || output == null)) {
+                throw new IllegalArgumentException("Укажите --manifest или --input, --message и --output.");
+            }
+            transform = transform.withCompression(compress);
+            if (password != null) {
+                transform = transform.withEncryption(cipher, password);
+            }
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+
+        List<BatchJob> jobs;
+        try {
+            jobs = manifest != null ? readManifest(Paths.get(manifest)) : scanDirectory(Paths.get(input), message,
+                    Paths.get(output));
+        } catch (IOException e) {
+            LogUtil.logError("Не удалось составить список заданий: " + e.getMessage(), e);
+            err.println("Не удалось составить список заданий: " + e.getMessage());
+            return 2;
+        }
+
+        CarrierCache carriers = cacheMegabytes > 0 ? new CarrierCache(cacheMegabytes * 1024L * 1024) : null;
+        BatchPipeline pipeline = new BatchPipeline(config, threads, embedThreads, threads,
+                queue > 0 ? queue : 2 * threads, mapBmp, carriers, transform, maxDetectability);
+        LogUtil.logInfo("Пакетная обработка: {} заданий, параметры: {}", jobs.size(), config);
+        LogUtil.logInfo("Преобразование сообщений: {}", transform);
+        Metrics.reset();
+        Metrics.registerMBeans();
+        ScheduledExecutorService dump = metricsPeriod > 0 ? Metrics.startPeriodicDump(err, metricsPeriod, false) : null;
+        long start = System.nanoTime();
+        try {
+            pipeline.run(jobs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            err.println("Пакетная обработка прервана.");
+            return 1;
+        } finally {
+            if (dump != null) {
+                dump.shutdown();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        int status = report(jobs, elapsed, out);
+        if (carriers != null) {
+            out.printf("Кэш изображений: %d попаданий, %d промахов%n", carriers.getHits(), carriers.getMisses());
+        }
+        if (metricsJson != null) {
+            try {
+                Files.writeString(Paths.get(metricsJson), Metrics.toJson(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                LogUtil.logError("Не удалось сохранить метрики: " + e.getMessage(), e);
+                err.println("Не удалось сохранить метрики: " + e.getMessage());
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Вывод времени выполнения заданий и общей пропускной способности.
+     *
+     * @param jobs    выполненные задания.
+     * @param elapsed общее время в наносекундах.
+     * @param out     поток для отчёта.
+     * @return код завершения.
+     */
+    private static int report(List<BatchJob> jobs, long elapsed, PrintStream out) {
+        int failed = 0;
+        long bytes = 0;
+        for (BatchJob job : jobs) {
+            if (job.isSucceeded()) {
+                out.printf(Locale.ROOT, "%s: чтение %.1f мс, встраивание %.1f мс, запись %.1f мс%s%n",
+                        job.getInputPath(), millis(job.getDecodeNanos()), millis(job.getEmbedNanos()),
+                        millis(job.getWriteNanos()), Double.isNaN(job.getDetectability()) ? ""
+                                : String.format(Locale.ROOT, ", обнаружимость %.3f", job.getDetectability()));
+                bytes += new File(job.getInputPath()).length();
+            } else {
+                failed++;
+                out.printf("%s: ошибка: %s%n", job.getInputPath(), job.getError().getMessage());
+            }
+        }
+        double seconds = elapsed / 1e9;
+        int succeeded = jobs.size() - failed;
+        out.printf(Locale.ROOT, "Выполнено %d из %d заданий за %.2f с: %.1f изображений/с, %.1f МБ/с%n",
+                succeeded, jobs.size(), seconds, succeeded / seconds, bytes / seconds / (1024 * 1024));
+        // Время стадий суммируется по всем потокам, поэтому может превышать общее время обработки
+        out.println("Стадии:");
+        out.print(Metrics.toText());
+        return failed == 0 ? 0 : 1;
+    }
+
+    /**
+     * Чтение заданий из манифеста.
+     *
+     * @param manifest путь к манифесту.
+     * @return задания.
+     * @throws IOException если манифест не удалось прочитать или строка манифеста некорректна.
+     */
+    static List<BatchJob> readManifest(Path manifest) throws IOException {
+        Path base = manifest.toAbsolutePath().getParent();
+        List<BatchJob> jobs = new ArrayList<>();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            String[] fields = trimmed.split("[;\t]");
+            if (fields.length != 3) {
+                throw new IOException("Строка " + lineNumber + " манифеста должна содержать три пути: " + line);
+            }
+            jobs.add(new BatchJob(resolve(base, fields[0]), resolve(base, fields[1]), resolve(base, fields[2])));
+        }
+        return jobs;
+    }
+
+    /**
+     * Составление заданий для всех изображений каталога.
+     *
+     * @param input   каталог исходных изображений.
+     * @param message путь к файлу сообщения.
+     * @param output  каталог для результатов, создаётся при необходимости.
+     * @return задания в порядке имён файлов.
+     * @throws IOException если каталог не удалось прочитать или создать.
+     */
+    static List<BatchJob> scanDirectory(Path input, String message, Path output) throws IOException {
+        Files.createDirectories(output);
+        List<BatchJob> jobs = new ArrayList<>();
+        try (Stream<Path> files = Files.list(input)) {
+            files.filter(Files::isRegularFile)
+                    .filter(path -> {
+                        String format = BatchPipeline.formatOf(path.getFileName().toString());
+                        return format.equals("bmp") || format.equals("png");
+                    })
+                    .sorted()
+                    .forEach(path -> jobs.add(new BatchJob(path.toString(), message,
+                            output.resolve(path.getFileName()).toString())));
+        }
+        return jobs;
+    }
+
+    private static String resolve(Path base, String path) {
+        return base.resolve(path.trim()).toString();
+    }
+
+    static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Не указано значение параметра " + option);
+        }
+        return args[index];
+    }
+
+    static int positive(String value, String option) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException ignored) {
+            // Сообщение формируется ниже
+        }
+        throw new IllegalArgumentException("Значение параметра " + option + " должно быть положительным числом: "
+                + value);
+    }
+
+    static double fraction(String value, String option) {
+        try {
+            double number = Double.parseDouble(value);
+            if (number >= 0 && number <= 1) {
+                return number;
+            }
+        } catch (NumberFormatException ignored) {
+            // Сообщение формируется ниже
+        }
+        throw new IllegalArgumentException("Значение параметра " + option + " должно быть числом от 0 до 1: "
+                + value);
+    }
+
+    static Channel[] channels(String letters) {
+        Channel[] channels = new Channel[letters.length()];
+        for (int i = 0; i < letters.length(); i++) {
+            channels[i] = switch (Character.toUpperCase(letters.charAt(i))) {
+                case 'R' -> Channel.RED;
+                case 'G' -> Channel.GREEN;
+                case 'B' -> Channel.BLUE;
+                case 'A' -> Channel.ALPHA;
+                default -> throw new IllegalArgumentException("Неизвестный канал: " + letters.charAt(i));
+            };
+        }
+        return channels;
+    }
+
+    static PayloadCipher cipher(String name) {
+        return switch (name.toLowerCase(Locale.ROOT)) {
+            case "aes-gcm" -> PayloadCipher.AES_GCM;
+            case "chacha20-poly1305" -> PayloadCipher.CHACHA20_POLY1305;
+            default -> throw new IllegalArgumentException("Неизвестный алгоритм шифрования: " + name);
+        };
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.demo;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Задание пакетной обработки: встраивание сообщения из файла в одно изображение.
+ * Помимо путей хранит промежуточные данные между стадиями конвейера и время выполнения каждой стадии.
+ */
+public class BatchJob {
+
+    /**
+     * Путь к исходному изображению.
+     */
+    private final String inputPath;
+
+    /**
+     * Путь к файлу сообщения.
+     */
+    private final String messagePath;
+
+    /**
+     * Путь для сохранения изображения со скрытым сообщением.
+     */
+    private final String outputPath;
+
+    /**
+     * Загруженное изображение, освобождается после записи.
+     */
+    BufferedImage image;
+
+    /**
+     * Копия изображения BMP, отображённая в память, если задание выполняется без декодирования изображения.
+     */
+    MappedBmp bmp;
+
+    /**
+     * Упакованное сообщение, освобождается после встраивания.
+     */
+    BitPayload payload;
+
+    /**
+     * Источник длинного сообщения, которое встраивается потоком без загрузки в память, закрывается после встраивания.
+     */
+    PayloadSource source;
+
+    /**
+     * Время чтения изображения и сообщения в наносекундах.
+     */
+    long decodeNanos;
+
+    /**
+     * Время встраивания в наносекундах.
+     */
+    long embedNanos;
+
+    /**
+     * Время кодирования и записи изображения в наносекундах.
+     */
+    long writeNanos;
+
+    /**
+     * Оценка обнаружимости результата или NaN, если проверка не выполнялась.
+     */
+    double detectability = Double.NaN;
+
+    /**
+     * Ошибка, прервавшая задание, или {@code null}.
+     */
+    Exception error;
+
+    /**
+     * Создание задания.
+     *
+     * @param inputPath   путь к исходному изображению.
+     * @param messagePath путь к файлу сообщения.
+     * @param outputPath  путь для сохранения результата.
+     */
+    public BatchJob(String inputPath, String messagePath, String outputPath) {
+        this.inputPath = inputPath;
+        this.messagePath = messagePath;
+        this.outputPath = outputPath;
+    }
+
+    /**
+     * Получение пути к исходному изображению.
+     *
+     * @return путь к изображению.
+     */
+    public String getInputPath() {
+        return inputPath;
+    }
+
+    /**
+     * Получение пути к файлу сообщения.
+     *
+     * @return путь к файлу сообщения.
+     */
+    public String getMessagePath() {
+        return messagePath;
+    }
+
+    /**
+     * Получение пути для сохранения результата.
+     *
+     * @return путь к результату.
+     */
+    public String getOutputPath() {
+        return outputPath;
+    }
+
+    /**
+     * Получение времени чтения изображения и сообщения.
+     *
+     * @return время в наносекундах.
+     */
+    public long getDecodeNanos() {
+        return decodeNanos;
+    }
+
+    /**
+     * Получение времени встраивания.
+     *
+     * @return время в наносекундах.
+     */
+    public long getEmbedNanos() {
+        return embedNanos;
+    }
+
+    /**
+     * Получение времени кодирования и записи изображения.
+     *
+     * @return время в наносекундах.
+     */
+    public long getWriteNanos() {
+        return writeNanos;
+    }
+
+    /**
+     * Получение оценки обнаружимости результата {@link DetectabilityReport#getScore()}.
+     *
+     * @return оценка от 0 до 1 или NaN, если проверка не выполнялась.
+     */
+    public double getDetectability() {
+        return detectability;
+    }
+
+    /**
+     * Получение ошибки, прервавшей задание.
+     *
+     * @return ошибка или {@code null}, если задание выполнено.
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    /**
+     * Проверка, выполнено ли задание без ошибок.
+     *
+     * @return {@code true}, если задание выполнено.
+     */
+    public boolean isSucceeded() {
+        return error == null;
+    }
+}
@@ -0,0 +1,465 @@
+package com.example.demo;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Конвейер пакетного встраивания из трёх стадий: чтение изображения и сообщения, встраивание, кодирование и запись.
+ * Каждая стадия выполняется своим набором потоков, стадии связаны очередями ограниченной ёмкости.
+ * Если следующая стадия не успевает, предыдущая ожидает освобождения места в очереди,
+ * поэтому в памяти одновременно находится ограниченное количество изображений.
+ * Задания, которые читают и записывают несжатый BMP, выполняются через {@link MappedBmp}:
+ * исходный файл копируется, и сообщение встраивается в копию без декодирования и кодирования изображения.
+ * Задание, результат которого совпадает с исходным изображением, отклоняется до чтения: исходный файл не изменяется.
+ * Файлы сообщений встраиваются как двоичные данные: короткие читаются один раз и используются всеми заданиями,
+ * длинные встраиваются потоком, чтобы расход памяти не зависел от их размера.
+ * Если задано преобразование {@link PayloadTransform}, сообщение сжимается и (или) шифруется потоком
+ * при встраивании в каждое изображение.
+ * Если задан порог обнаружимости, после встраивания стадия встраивания выполняет {@link Steganalysis}
+ * результата, и изображение с оценкой выше порога не записывается, а задание завершается ошибкой.
+ */
+public class BatchPipeline {
+
+    /**
+     * Признак окончания заданий в очереди.
+     */
+    private static final BatchJob END = new BatchJob(null, null, null);
+
+    /**
+     * Наибольший размер файла сообщения, который читается в память и используется повторно.
+     */
+    static final long CACHED_MESSAGE_LIMIT = 8L * 1024 * 1024;
+
+    /**
+     * Параметры встраивания.
+     */
+    private final EmbeddingConfig config;
+
+    /**
+     * Количество потоков чтения.
+     */
+    private final int decodeThreads;
+
+    /**
+     * Количество потоков встраивания.
+     */
+    private final int embedThreads;
+
+    /**
+     * Количество потоков записи.
+     */
+    private final int writeThreads;
+
+    /**
+     * Ёмкость очередей между стадиями.
+     */
+    private final int queueCapacity;
+
+    /**
+     * Встраивать ли сообщение в BMP через отображение файла в память.
+     */
+    private final boolean mapBmp;
+
+    /**
+     * Кэш декодированных изображений или {@code null}, если изображения каждый раз читаются с диска.
+     */
+    private final CarrierCache carriers;
+
+    /**
+     * Преобразование сообщений перед встраиванием.
+     */
+    private final PayloadTransform transform;
+
+    /**
+     * Наибольшая допустимая оценка обнаружимости результата, 1 — без проверки.
+     */
+    private final double maxDetectability;
+
+    /**
+     * Прочитанные сообщения по пути к файлу: одно сообщение обычно встраивается во множество изображений.
+     */
+    private final ConcurrentMap<String, BitPayload> messages = new ConcurrentHashMap<>();
+
+    /**
+     * Создание конвейера.
+     *
+     * @param config        параметры встраивания.
+     * @param decodeThreads количество потоков чтения.
+     * @param embedThreads  количество потоков встраивания.
+     * @param writeThreads  количество потоков записи.
+     * @param queueCapacity ёмкость очередей между стадиями.
+     * @param mapBmp        встраивать ли сообщение в BMP через отображение файла в память.
+     */
+    public BatchPipeline(EmbeddingConfig config, int decodeThreads, int embedThreads, int writeThreads,
+                         int queueCapacity, boolean mapBmp) {
+        this(config, decodeThreads, embedThreads, writeThreads, queueCapacity, mapBmp, null);
+    }
+
+    /**
+     * Создание конвейера с кэшем изображений для манифестов, в которых одно изображение встречается многократно.
+     *
+     * @param config        параметры встраивания.
+     * @param decodeThreads количество потоков чтения.
+     * @param embedThreads  количество потоков встраивания.
+     * @param writeThreads  количество потоков записи.
+     * @param queueCapacity ёмкость очередей между стадиями.
+     * @param mapBmp        встраивать ли сообщение в BMP через отображение файла в память.
+     * @param carriers      кэш декодированных изображений или {@code null}.
+     */
+    public BatchPipeline(EmbeddingConfig config, int decodeThreads, int embedThreads, int writeThreads,
+                         int queueCapacity, boolean mapBmp, CarrierCache carriers) {
+        this(config, decodeThreads, embedThreads, writeThreads, queueCapacity, mapBmp, carriers,
+                PayloadTransform.none());
+    }
+
+    /**
+     * Создание конвейера со сжатием и (или) шифрованием сообщений. Преобразованные сообщения встраиваются потоком
+     * по мере преобразования, поэтому файл сообщения читается заново для каждого задания.
+     *
+     * @param config        параметры встраивания.
+     * @param decodeThreads количество потоков чтения.
+     * @param embedThreads  количество потоков встраивания.
+     * @param writeThreads  количество потоков записи.
+     * @param queueCapacity ёмкость очередей между стадиями.
+     * @param mapBmp        встраивать ли сообщение в BMP через отображение файла в память.
+     * @param carriers      кэш декодированных изображений или {@code null}.
+     * @param transform     преобразование сообщений.
+     */
+    public BatchPipeline(EmbeddingConfig config, int decodeThreads, int embedThreads, int writeThreads,
+                         int queueCapacity, boolean mapBmp, CarrierCache carriers, PayloadTransform transform) {
+        this(config, decodeThreads, embedThreads, writeThreads, queueCapacity, mapBmp, carriers, transform, 1);
+    }
+
+    /**
+     * Создание конвейера с проверкой обнаружимости результатов.
+     *
+     * @param config            параметры встраивания.
+     * @param decodeThreads     количество потоков чтения.
+     * @param embedThreads      количество потоков встраивания.
+     * @param writeThreads      количество потоков записи.
+     * @param queueCapacity     ёмкость очередей между стадиями.
+     * @param mapBmp            встраивать ли сообщение в BMP через отображение файла в память.
+     * @param carriers          кэш декодированных изображений или {@code null}.
+     * @param transform         преобразование сообщений.
+     * @param maxDetectability  наибольшая допустимая оценка {@link DetectabilityReport#getScore()} от 0 до 1;
+     *                          при значении 1 проверка не выполняется.
+     */
+    public BatchPipeline(EmbeddingConfig config, int decodeThreads, int embedThreads, int writeThreads,
+                         int queueCapacity, boolean mapBmp, CarrierCache carriers, PayloadTransform transform,
+                         double maxDetectability) {
+        this.config = config;
+        this.decodeThreads = decodeThreads;
+        this.embedThreads = embedThreads;
+        this.writeThreads = writeThreads;
+        this.queueCapacity = queueCapacity;
+        this.mapBmp = mapBmp;
+        this.carriers = carriers;
+        this.transform = transform;
+        this.maxDetectability = maxDetectability;
+    }
+
+    /**
+     * Выполнение заданий. Ошибка одного задания сохраняется в нём и не прерывает остальные.
+     *
+     * @param jobs задания.
+     * @return те же задания с заполненным временем стадий и ошибками.
+     * @throws InterruptedException если ожидание завершения стадий прервано.
+     */
+    public List<BatchJob> run(List<BatchJob> jobs) throws InterruptedException {
+        BlockingQueue<BatchJob> decoded = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<BatchJob> embedded = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicInteger next = new AtomicInteger();
+        CountDownLatch decodersDone = new CountDownLatch(decodeThreads);
+        CountDownLatch embeddersDone = new CountDownLatch(embedThreads);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < decodeThreads; i++) {
+            threads.add(start("batch-decode-" + i, () -> {
+                try {
+                    int index;
+                    while ((index = next.getAndIncrement()) < jobs.size()) {
+                        BatchJob job = jobs.get(index);
+                        if (decode(job)) {
+                            decoded.put(job);
+                        }
+                    }
+                } finally {
+                    decodersDone.countDown();
+                }
+            }));
+        }
+        for (int i = 0; i < embedThreads; i++) {
+            threads.add(start("batch-embed-" + i, () -> {
+                try {
+                    BatchJob job;
+                    while ((job = decoded.take()) != END) {
+                        if (embed(job)) {
+                            embedded.put(job);
+                        }
+                    }
+                } finally {
+                    embeddersDone.countDown();
+                }
+            }));
+        }
+        for (int i = 0; i < writeThreads; i++) {
+            threads.add(start("batch-write-" + i, () -> {
+                BatchJob job;
+                while ((job = embedded.take()) != END) {
+                    write(job);
+                }
+            }));
+        }
+
+        // Стадия завершается, когда предыдущая стадия закончила работу и очередь исчерпана
+        decodersDone.await();
+        for (int i = 0; i < embedThreads; i++) {
+            decoded.put(END);
+        }
+        embeddersDone.await();
+        for (int i = 0; i < writeThreads; i++) {
+            embedded.put(END);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return jobs;
+    }
+
+    /**
+     * Чтение изображения и сообщения задания. Для BMP вместо чтения изображения создаётся отображённая копия.
+     *
+     * @param job задание.
+     * @return {@code true}, если задание можно передать следующей стадии.
+     */
+    private boolean decode(BatchJob job) {
+        long start = System.nanoTime();
+        try {
+            Path input = Paths.get(job.getInputPath());
+            Path output = Paths.get(job.getOutputPath());
+            if (Files.exists(output) && Files.isSameFile(input, output)) {
+                // Результат заменил бы исходное изображение, а при ошибке задания оно было бы удалено
+                throw new IOException("Результат задания совпадает с исходным изображением: " + job.getOutputPath());
+            }
+            // Преобразованное сообщение читается стадией встраивания по мере преобразования
+            if (transform.isIdentity()) {
+                if (new File(job.getMessagePath()).length() > CACHED_MESSAGE_LIMIT) {
+                    job.source = MessageReader.openMessageFile(job.getMessagePath());
+                } else {
+                    job.payload = message(job.getMessagePath());
+                }
+            }
+            if (mapBmp && formatOf(job.getOutputPath()).equals("bmp") && MappedBmp.isSupported(job.getInputPath())) {
+                job.bmp = MappedBmp.copyOf(job.getInputPath(), job.getOutputPath());
+            } else {
+                job.image = carriers != null ? carriers.load(job.getInputPath())
+                        : ImageHandler.loadImage(job.getInputPath());
+            }
+            return true;
+        } catch (Exception e) {
+            job.error = e;
+            closeSource(job);
+            return false;
+        } finally {
+            job.decodeNanos = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Встраивание сообщения в изображение задания.
+     *
+     * @param job задание.
+     * @return {@code true}, если задание можно передать следующей стадии.
+     */
+    private boolean embed(BatchJob job) {
+        long start = System.nanoTime();
+        try {
+            if (!transform.isIdentity()) {
+                try (InputStream message = MessageReader.openMessageStream(job.getMessagePath())) {
+                    if (job.bmp != null) {
+                        job.bmp.hideTheMessage(message, config, transform);
+                    } else {
+                        Steganography.hideTheMessage(message, job.image, config, transform);
+                    }
+                }
+            } else if (job.source != null && job.bmp != null) {
+                job.bmp.hideTheMessage(job.source, config);
+            } else if (job.source != null) {
+                Steganography.hideTheMessage(job.source, job.image, config);
+            } else if (job.bmp != null) {
+                job.bmp.hideTheMessage(job.payload, config);
+            } else {
+                Steganography.hideTheMessage(job.payload, job.image, config);
+            }
+            if (maxDetectability < 1) {
+                checkDetectability(job);
+            }
+            return true;
+        } catch (Exception e) {
+            job.error = e;
+            job.image = null;
+            discardCopy(job);
+            return false;
+        } finally {
+            job.payload = null;
+            closeSource(job);
+            job.embedNanos = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Стегоанализ изображения задания после встраивания. Анализ выполняется в потоке встраивания:
+     * задания уже распределены между потоками стадии.
+     *
+     * @param job задание.
+     * @throws IOException если оценка обнаружимости выше порога.
+     */
+    private void checkDetectability(BatchJob job) throws IOException {
+        DetectabilityReport report = job.bmp != null ? job.bmp.analyze(Steganalysis.DEFAULT_TILE, 1)
+                : Steganalysis.analyze(job.image, Steganalysis.DEFAULT_TILE, 1);
+        job.detectability = report.getScore();
+        if (job.detectability > maxDetectability) {
+            IOException e = new IOException(String.format(Locale.ROOT,
+                    "Встраивание заметно: оценка %.3f выше порога %.3f (%s)", job.detectability, maxDetectability,
+                    report));
+            LogUtil.logError(job.getInputPath() + ": " + e.getMessage(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * Кодирование и запись изображения задания. Отображённая копия BMP сбрасывается на диск и закрывается.
+     *
+     * @param job задание.
+     */
+    private void write(BatchJob job) {
+        long start = System.nanoTime();
+        try {
+            if (job.bmp != null) {
+                MappedBmp bmp = job.bmp;
+                job.bmp = null;
+                bmp.close();
+            } else {
+                ImageHandler.saveImage(job.image, job.getOutputPath(), formatOf(job.getOutputPath()));
+            }
+            LogUtil.logInfo("Задание выполнено: {} -> {}", job.getInputPath(), job.getOutputPath());
+        } catch (Exception e) {
+            job.error = e;
+        } finally {
+            job.image = null;
+            job.writeNanos = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Закрытие источника сообщения задания.
+     *
+     * @param job задание.
+     */
+    private static void closeSource(BatchJob job) {
+        if (job.source == null) {
+            return;
+        }
+        try {
+            job.source.close();
+        } catch (IOException e) {
+            LogUtil.logWarning("Не удалось закрыть файл сообщения: {}", job.getMessagePath());
+        } finally {
+            job.source = null;
+        }
+    }
+
+    /**
+     * Закрытие и удаление отображённой копии BMP задания, завершившегося ошибкой.
+     * Копия создана стадией чтения и никогда не совпадает с исходным изображением (см. {@link #decode}).
+     *
+     * @param job задание.
+     */
+    private static void discardCopy(BatchJob job) {
+        if (job.bmp == null) {
+            return;
+        }
+        try {
+            job.bmp.close();
+            Files.deleteIfExists(Paths.get(job.getOutputPath()));
+        } catch (IOException e) {
+            LogUtil.logWarning("Не удалось удалить копию изображения: {}", job.getOutputPath());
+        } finally {
+            job.bmp = null;
+        }
+    }
+
+    /**
+     * Получение упакованного сообщения из файла. Каждый файл читается один раз как двоичные данные.
+     *
+     * @param path путь к файлу сообщения.
+     * @return упакованное сообщение.
+     * @throws IOException если файл не удалось прочитать или сообщение недопустимо.
+     */
+    private BitPayload message(String path) throws IOException {
+        BitPayload payload = messages.get(path);
+        if (payload == null) {
+            payload = MessageReader.readPayloadFromFile(path);
+            BitPayload existing = messages.putIfAbsent(path, payload);
+            if (existing != null) {
+                payload = existing;
+            }
+        }
+        return payload;
+    }
+
+    /**
+     * Определение формата изображения по расширению файла.
+     *
+     * @param path путь к файлу.
+     * @return формат изображения, по умолчанию "bmp".
+     */
+    static String formatOf(String path) {
+        int dot = path.lastIndexOf('.');
+        if (dot < 0 || dot < path.lastIndexOf('/') || dot < path.lastIndexOf('\\')) {
+            return "bmp";
+        }
+        return path.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Запуск потока стадии.
+     *
+     * @param name имя потока.
+     * @param body тело потока.
+     * @return запущенный поток.
+     */
+    private static Thread start(String name, Stage body) {
+        Thread thread = new Thread(() -> {
+            try {
+                body.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, name);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Тело потока стадии, ожидающее на очередях.
+     */
+    @FunctionalInterface
+    private interface Stage {
+        void run() throws InterruptedException;
+    }
+}
@@ -3,7 +3,7 @@ package com.example.demo;
 import java.io.IOException;
 
 /**
- * Класс для преобразования текстового сообщения в массив бит.
+ * Класс для преобразования текстового сообщения в массив бит или в упакованные биты.
  */
 public class BitConverter {
 
@@ -16,39 +16,50 @@ public class BitConverter {
      * @throws IOException если сообщение равно null или пустое.
      */
     public static int[] convertMessageToBits(String message) throws IOException {
+        return convertMessageToPayload(message).toBits();
+    }
+
+    /**
+     * Преобразование заданного сообщения в упакованные биты.
+     * Каждый символ сообщения занимает один байт, старший бит символа записывается первым.
+     *
+     * @param message сообщение для преобразования в биты.
+     * @return упакованные биты сообщения.
+     * @throws IOException если сообщение равно null, пустое или содержит символы, требующие более 8 бит.
+     */
+    public static BitPayload convertMessageToPayload(String message) throws IOException {
+        return Metrics.time(Metrics.Stage.BIT_CONVERSION, () -> pack(message), BitPayload::getByteLength);
+    }
+
+    /**
+     * Упаковка символов сообщения по одному байту.
+     *
+     * @param message сообщение для преобразования в биты.
+     * @return упакованные биты сообщения.
+     * @throws IOException если сообщение равно null, пустое или содержит символы, требующие более 8 бит.
+     */
+    private static BitPayload pack(String message) throws IOException {
         LogUtil.logInfo("Преобразование сообщения в биты.");
 
         if (message == null || message.isEmpty()) {
-            LogUtil.logError("Сообщение не должно быть пустым.", new IOException("Сообщение не должно быть пустым."));
-            throw new IOException("Сообщение не должно быть пустым.");
+            IOException e = new IOException("Сообщение не должно быть пустым.");
+            LogUtil.logError("Сообщение не должно быть пустым.", e);
+            throw e;
         }
 
-        // Инициализируем массив для битов
-        int[] messageBits = new int[message.length() * 8];
-        int index = 0;
-
-        for (char character : message.toCharArray()) {
+        byte[] bytes = new byte[message.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            char character = message.charAt(i);
             // Проверяем, что символ укладывается в 8 бит
             if (character > 255) {
-                LogUtil.logError("Сообщение содержит символы, требующие более 8 бит.", new IOException("Символ " + character + " превышает 8 бит."));
-                throw new IOException("Символ " + character + " превышает 8 бит.");
-            }
-            // Преобразуем символ в двоичную строку
-            String binaryString = Integer.toBinaryString(character);
-
-            // Дополняем двоичную строку до 8 бит
-            StringBuilder binaryString8 = new StringBuilder(binaryString);
-            while (binaryString8.length() < 8) {
-                binaryString8.insert(0, '0'); // Добавляем ведущие нули
-            }
-
-            // Преобразуем двоичную строку в массив целых чисел
-            for (char bit : binaryString8.toString().toCharArray()) {
-                messageBits[index++] = Character.getNumericValue(bit);
+                IOException e = new IOException("Символ " + character + " превышает 8 бит.");
+                LogUtil.logError("Сообщение содержит символы, требующие более 8 бит.", e);
+                throw e;
             }
+            bytes[i] = (byte) character;
         }
 
         LogUtil.logInfo("Сообщение успешно преобразовано в биты.");
-        return messageBits;
+        return BitPayload.wrap(bytes);
     }
 }
@@ -0,0 +1,111 @@
+package com.example.demo;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Упакованное представление битов сообщения: восемь битов на байт, начиная со старшего бита.
+ * В отличие от массива {@code int[]}, где каждый бит занимает 4 байта, занимает ровно один бит памяти на бит сообщения.
+ */
+public final class BitPayload {
+
+    /**
+     * Упакованные биты.
+     */
+    private final byte[] bytes;
+
+    /**
+     * Количество значащих битов.
+     */
+    private final long bitLength;
+
+    private BitPayload(byte[] bytes, long bitLength) {
+        this.bytes = bytes;
+        this.bitLength = bitLength;
+    }
+
+    /**
+     * Создание сообщения поверх массива байтов без копирования.
+     *
+     * @param bytes байты сообщения.
+     * @return упакованное сообщение.
+     */
+    public static BitPayload wrap(byte[] bytes) {
+        return new BitPayload(bytes, (long) bytes.length * 8);
+    }
+
+    /**
+     * Упаковка массива битов, где каждый элемент содержит 0 или 1.
+     *
+     * @param bits массив битов.
+     * @return упакованное сообщение.
+     */
+    public static BitPayload fromBits(int[] bits) {
+        byte[] packed = new byte[(bits.length + 7) >>> 3];
+        for (int i = 0; i < bits.length; i++) {
+            packed[i >>> 3] |= (bits[i] & 1) << (7 - (i & 7));
+        }
+        return new BitPayload(packed, bits.length);
+    }
+
+    /**
+     * Получение количества битов сообщения.
+     *
+     * @return количество битов.
+     */
+    public long getBitLength() {
+        return bitLength;
+    }
+
+    /**
+     * Получение количества байтов, занятых сообщением.
+     *
+     * @return количество байтов, включая неполный последний байт.
+     */
+    public int getByteLength() {
+        return bytes.length;
+    }
+
+    /**
+     * Получение бита по номеру.
+     *
+     * @param index номер бита.
+     * @return значение бита, 0 или 1.
+     */
+    public int bitAt(long index) {
+        if (index < 0 || index >= bitLength) {
+            throw new IndexOutOfBoundsException("Номер бита вне диапазона: " + index);
+        }
+        return (bytes[(int) (index >>> 3)] >>> (7 - (int) (index & 7))) & 1;
+    }
+
+    /**
+     * Получение байтов сообщения только для чтения, без копирования.
+     *
+     * @return буфер с байтами сообщения.
+     */
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+
+    /**
+     * Распаковка в массив битов, где каждый элемент содержит 0 или 1.
+     *
+     * @return массив битов.
+     */
+    public int[] toBits() {
+        int[] bits = new int[Math.toIntExact(bitLength)];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = (bytes[i >>> 3] >>> (7 - (i & 7))) & 1;
+        }
+        return bits;
+    }
+
+    /**
+     * Создание читателя битов сообщения.
+     *
+     * @return читатель, начинающий с первого бита.
+     */
+    BitReader reader() {
+        return new BitReader(ByteBuffer.wrap(bytes));
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.demo;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Последовательное чтение битов из буфера байтов, начиная со старшего бита каждого байта.
+ * Биты подгружаются словами по 64 бита, поэтому чтение одного бита не требует обращения к буферу.
+ * Если задан канал, буфер по мере чтения дозаполняется из него, иначе буфер должен содержать все данные.
+ * После окончания данных возвращаются нулевые биты.
+ */
+final class BitReader {
+
+    /**
+     * Буфер с упакованными битами.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Канал с данными или {@code null}, если все данные находятся в буфере.
+     */
+    private final ReadableByteChannel channel;
+
+    /**
+     * Количество байтов, которые ещё нужно прочитать из канала.
+     */
+    private long unread;
+
+    /**
+     * Накопленные биты, выровненные по старшему разряду.
+     */
+    private long word;
+
+    /**
+     * Количество непрочитанных битов в {@link #word}.
+     */
+    private int available;
+
+    /**
+     * Создание читателя поверх буфера. Чтение начинается с текущей позиции буфера.
+     *
+     * @param buffer буфер с упакованными битами.
+     */
+    BitReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.channel = null;
+    }
+
+    /**
+     * Создание читателя, который возвращает заданные биты перед битами буфера.
+     * Используется при дозаписи, когда последний пиксель сообщения уже содержит часть битов.
+     *
+     * @param prefix     биты в младших разрядах.
+     * @param prefixBits количество битов, от 0 до 32.
+     * @param buffer     буфер с упакованными битами.
+     */
+    BitReader(int prefix, int prefixBits, ByteBuffer buffer) {
+        this(buffer);
+        reset(prefix, prefixBits);
+    }
+
+    /**
+     * Замена непрочитанных битов заданными. Позволяет повторно использовать читатель с пустым буфером
+     * для записи битов по одному пикселю без создания нового читателя.
+     *
+     * @param bits  биты в младших разрядах.
+     * @param count количество битов, от 0 до 32.
+     */
+    void reset(int bits, int count) {
+        word = count == 0 ? 0 : (bits & 0xFFFFFFFFL) << (64 - count);
+        available = count;
+    }
+
+    /**
+     * Создание читателя, дозаполняющего буфер из канала.
+     *
+     * @param channel канал с данными.
+     * @param length  количество байтов, которые нужно прочитать из канала.
+     * @param buffer  пустой промежуточный буфер не меньше 8 байтов.
+     */
+    BitReader(ReadableByteChannel channel, long length, ByteBuffer buffer) {
+        this.buffer = buffer.flip();
+        this.channel = channel;
+        this.unread = length;
+    }
+
+    /**
+     * Чтение следующих {@code count} битов.
+     *
+     * @param count количество битов, от 1 до 32.
+     * @return прочитанные биты в младших разрядах результата.
+     */
+    int read(int count) {
+        if (available < count) {
+            refill();
+        }
+        int value = (int) (word >>> (64 - count));
+        word <<= count;
+        available -= count;
+        return value;
+    }
+
+    /**
+     * Дозагрузка битов из буфера. Целое слово читается за одно обращение, если слово полностью израсходовано.
+     */
+    private void refill() {
+        if (unread > 0 && buffer.remaining() < Long.BYTES) {
+            load();
+        }
+        if (available == 0 && buffer.remaining() >= Long.BYTES) {
+            word = buffer.getLong();
+            available = 64;
+            return;
+        }
+        while (available <= 56) {
+            if (!buffer.hasRemaining()) {
+                // Данные закончились: младшие разряды слова уже заполнены нулями
+                available = 64;
+                return;
+            }
+            word |= (buffer.get() & 0xFFL) << (56 - available);
+            available += 8;
+        }
+    }
+
+    /**
+     * Дозаполнение буфера из канала. Непрочитанные байты переносятся в начало буфера.
+     * Ошибка чтения передаётся как {@link UncheckedIOException}.
+     */
+    private void load() {
+        buffer.compact();
+        try {
+            while (buffer.hasRemaining() && unread > 0) {
+                int limit = buffer.limit();
+                if (buffer.remaining() > unread) {
+                    buffer.limit(buffer.position() + (int) unread);
+                }
+                int read = channel.read(buffer);
+                buffer.limit(limit);
+                if (read < 0) {
+                    throw new EOFException("Данные закончились раньше заявленной длины, не прочитано "
+                            + unread + " байт.");
+                }
+                unread -= read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer.flip();
+        }
+    }
+}
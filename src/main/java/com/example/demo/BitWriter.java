@@ -0,0 +1,151 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Последовательная запись битов в буфер байтов, начиная со старшего бита каждого байта.
+ * Биты накапливаются в слове из 64 бит и записываются в буфер целым словом.
+ * Если задан выходной поток, заполненный буфер сбрасывается в него, иначе буфер должен вмещать все данные.
+ */
+final class BitWriter {
+
+    /**
+     * Размер промежуточного буфера при записи в поток.
+     */
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Буфер для записи байтов.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Выходной поток или {@code null}, если данные остаются в буфере.
+     */
+    private final OutputStream out;
+
+    /**
+     * Накопленные биты в младших разрядах.
+     */
+    private long word;
+
+    /**
+     * Количество накопленных битов в {@link #word}.
+     */
+    private int filled;
+
+    /**
+     * Количество битов, которые ещё можно записать. Биты сверх предела отбрасываются.
+     */
+    private long remaining = Long.MAX_VALUE;
+
+    /**
+     * Создание писателя, записывающего байты непосредственно в буфер.
+     *
+     * @param buffer буфер, вмещающий все записываемые данные.
+     */
+    BitWriter(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.out = null;
+    }
+
+    /**
+     * Создание писателя, сбрасывающего байты в выходной поток.
+     *
+     * @param out выходной поток.
+     */
+    BitWriter(OutputStream out) {
+        this.buffer = ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+        this.out = out;
+    }
+
+    /**
+     * Ограничение общего количества записываемых битов.
+     * Используется, когда последний пиксель содержит биты дополнения после конца сообщения.
+     *
+     * @param bits наибольшее количество битов.
+     * @return этот писатель.
+     */
+    BitWriter limit(long bits) {
+        this.remaining = bits;
+        return this;
+    }
+
+    /**
+     * Запись младших {@code count} битов значения.
+     *
+     * @param value значение, старшие разряды которого равны нулю.
+     * @param count количество битов, от 1 до 32.
+     */
+    void write(int value, int count) {
+        if (count > remaining) {
+            if (remaining == 0) {
+                return;
+            }
+            value >>>= count - (int) remaining;
+            count = (int) remaining;
+        }
+        remaining -= count;
+        // При записи 32 битов старший бит значения не должен расширяться в знак
+        long bits = value & 0xFFFFFFFFL;
+        int free = 64 - filled;
+        if (count < free) {
+            word = (word << count) | bits;
+            filled += count;
+            return;
+        }
+        int rest = count - free;
+        word = (word << free) | (bits >>> rest);
+        putWord();
+        word = bits & ((1L << rest) - 1);
+        filled = rest;
+    }
+
+    /**
+     * Запись оставшихся полных байтов и сброс буфера в выходной поток.
+     * Неполный последний байт отбрасывается.
+     *
+     * @throws IOException если запись в поток не удалась.
+     */
+    void finish() throws IOException {
+        while (filled >= 8) {
+            filled -= 8;
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            buffer.put((byte) (word >>> filled));
+        }
+        filled = 0;
+        if (out != null) {
+            drain();
+            out.flush();
+        }
+    }
+
+    /**
+     * Запись полного слова в буфер.
+     */
+    private void putWord() {
+        if (buffer.remaining() < Long.BYTES && out != null) {
+            try {
+                drain();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        buffer.putLong(word);
+    }
+
+    /**
+     * Сброс накопленных байтов буфера в выходной поток.
+     *
+     * @throws IOException если запись в поток не удалась.
+     */
+    private void drain() throws IOException {
+        out.write(buffer.array(), buffer.arrayOffset(), buffer.position());
+        buffer.clear();
+    }
+}
@@ -0,0 +1,320 @@
+package com.example.demo;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Пул массивов байтов и изображений для обработки многих небольших запросов в одной JVM.
+ * Массивы байтов выдаются по классам размеров — степеням двойки от {@link #MIN_ARRAY_BYTES}, поэтому массив
+ * подходит для любого запроса своего класса. Изображения выдаются по типу и размеру и используются как
+ * растр назначения при декодировании (см. {@link ImageHandler#decodeImage}). Возвращённые объекты хранятся,
+ * пока их суммарный размер не превышает заданного объёма; сверх него объекты отдаются сборщику мусора.
+ * Содержимое выданных объектов не очищается: массив перезаписывается при чтении запроса,
+ * изображение — при декодировании всех его пикселей.
+ */
+final class BufferPool {
+
+    /**
+     * Размер наименьшего класса массивов.
+     */
+    static final int MIN_ARRAY_BYTES = 64 * 1024;
+
+    /**
+     * Наибольший суммарный размер хранимых массивов и изображений в байтах.
+     */
+    private final long maxBytes;
+
+    /**
+     * Свободные массивы по классам размеров: индекс класса — показатель степени двойки.
+     */
+    private final ArrayDeque<byte[]>[] arrays;
+
+    /**
+     * Свободные изображения по типу и размеру.
+     */
+    private final Map<ImageKey, ArrayDeque<BufferedImage>> images = new HashMap<>();
+
+    /**
+     * Суммарный размер хранимых объектов.
+     */
+    private long pooledBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Создание пула.
+     *
+     * @param maxBytes наибольший суммарный размер хранимых массивов и изображений в байтах.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    BufferPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.arrays = new ArrayDeque[Integer.SIZE];
+        for (int i = 0; i < arrays.length; i++) {
+            arrays[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Получение массива не меньше заданного размера.
+     *
+     * @param minBytes наименьший размер массива.
+     * @return массив из пула или новый массив размером в степень двойки.
+     */
+    byte[] takeArray(int minBytes) {
+        int sizeClass = sizeClassOf(minBytes);
+        synchronized (this) {
+            byte[] array = arrays[sizeClass].pollFirst();
+            if (array != null) {
+                pooledBytes -= array.length;
+                hits.increment();
+                return array;
+            }
+        }
+        misses.increment();
+        // Класс размера 31 превышает наибольший размер массива, такой массив выделяется точно по запросу
+        return new byte[sizeClass < Integer.SIZE - 1 ? 1 << sizeClass : minBytes];
+    }
+
+    /**
+     * Возврат массива в пул. Массивы, размер которых не равен степени двойки, не хранятся.
+     *
+     * @param array массив, полученный из {@link #takeArray}.
+     */
+    void release(byte[] array) {
+        int length = array.length;
+        if (length < MIN_ARRAY_BYTES || Integer.bitCount(length) != 1) {
+            return;
+        }
+        synchronized (this) {
+            if (pooledBytes + length <= maxBytes) {
+                arrays[Integer.numberOfTrailingZeros(length)].addFirst(array);
+                pooledBytes += length;
+            }
+        }
+    }
+
+    /**
+     * Получение свободного изображения заданного типа и размера.
+     *
+     * @param type   тип изображения {@link BufferedImage}.
+     * @param width  ширина.
+     * @param height высота.
+     * @return изображение из пула или {@code null}, если подходящего нет.
+     */
+    BufferedImage takeImage(int type, int width, int height) {
+        synchronized (this) {
+            ArrayDeque<BufferedImage> free = images.get(new ImageKey(type, width, height));
+            BufferedImage image = free == null ? null : free.pollFirst();
+            if (image != null) {
+                pooledBytes -= bytesOf(image);
+                hits.increment();
+                return image;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Возврат изображения в пул. Хранятся только изображения стандартных типов без палитры,
+     * все пиксели которых перезаписываются при декодировании.
+     *
+     * @param image изображение.
+     */
+    void release(BufferedImage image) {
+        if (!isPoolable(image.getType())) {
+            return;
+        }
+        long bytes = bytesOf(image);
+        synchronized (this) {
+            if (pooledBytes + bytes <= maxBytes) {
+                images.computeIfAbsent(new ImageKey(image.getType(), image.getWidth(), image.getHeight()),
+                        key -> new ArrayDeque<>()).addFirst(image);
+                pooledBytes += bytes;
+            }
+        }
+    }
+
+    /**
+     * Проверка, может ли изображение заданного типа храниться в пуле.
+     *
+     * @param type тип изображения {@link BufferedImage}.
+     * @return {@code true} для типов с фиксированной цветовой моделью.
+     */
+    static boolean isPoolable(int type) {
+        return switch (type) {
+            case BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_BGR,
+                    BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_GRAY -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Получение количества выдач из пула.
+     *
+     * @return количество запросов, для которых нашёлся свободный объект.
+     */
+    long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Получение количества выделений нового объекта.
+     *
+     * @return количество запросов, для которых свободного объекта не нашлось.
+     */
+    long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Получение суммарного размера хранимых объектов.
+     *
+     * @return размер в байтах.
+     */
+    synchronized long getPooledBytes() {
+        return pooledBytes;
+    }
+
+    private static int sizeClassOf(int minBytes) {
+        int bytes = Math.max(minBytes, MIN_ARRAY_BYTES);
+        return Integer.SIZE - Integer.numberOfLeadingZeros(bytes - 1);
+    }
+
+    private static long bytesOf(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight() * image.getColorModel().getPixelSize() / 8;
+    }
+
+    /**
+     * Тип и размер изображения.
+     */
+    private static final class ImageKey {
+        private final int type;
+        private final int width;
+        private final int height;
+
+        ImageKey(int type, int width, int height) {
+            this.type = type;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof ImageKey key && key.type == type && key.width == width && key.height == height;
+        }
+
+        @Override
+        public int hashCode() {
+            return (type * 31 + width) * 31 + height;
+        }
+    }
+
+    /**
+     * Выходной поток в массив из пула. При нехватке места массив заменяется вдвое большим из того же пула.
+     * После использования массив возвращается в пул методом {@link #close()}.
+     */
+    static final class Output extends OutputStream {
+        private final BufferPool pool;
+        private byte[] buffer;
+        private int count;
+
+        /**
+         * Создание потока.
+         *
+         * @param pool         пул массивов.
+         * @param initialBytes начальный размер массива.
+         */
+        Output(BufferPool pool, int initialBytes) {
+            this.pool = pool;
+            this.buffer = pool.takeArray(initialBytes);
+        }
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(count + 1);
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            ensureCapacity(count + length);
+            System.arraycopy(bytes, offset, buffer, count, length);
+            count += length;
+        }
+
+        /**
+         * Чтение входного потока до конца прямо в массив, без промежуточного буфера.
+         * Если массив заполнен точно по ожидаемой длине, он увеличивается только при наличии ещё хотя бы одного байта.
+         *
+         * @param in    входной поток.
+         * @param limit наибольшее количество байтов.
+         * @return {@code true}, если поток прочитан до конца, {@code false}, если он длиннее {@code limit}.
+         * @throws IOException если чтение не удалось.
+         */
+        boolean readFrom(InputStream in, int limit) throws IOException {
+            while (count <= limit) {
+                if (count == buffer.length) {
+                    int next = in.read();
+                    if (next < 0) {
+                        return true;
+                    }
+                    write(next);
+                    continue;
+                }
+                int read = in.read(buffer, count, buffer.length - count);
+                if (read < 0) {
+                    return true;
+                }
+                count += read;
+            }
+            return false;
+        }
+
+        /**
+         * Получение массива с записанными байтами. Массив действителен до закрытия потока.
+         *
+         * @return массив, записанные байты занимают первые {@link #size()} элементов.
+         */
+        byte[] array() {
+            return buffer;
+        }
+
+        /**
+         * Получение количества записанных байтов.
+         *
+         * @return количество байтов.
+         */
+        int size() {
+            return count;
+        }
+
+        private void ensureCapacity(int required) {
+            if (required < 0) {
+                throw new OutOfMemoryError("Размер ответа превышает наибольший размер массива.");
+            }
+            if (required > buffer.length) {
+                byte[] larger = pool.takeArray(Math.max(required, buffer.length << 1));
+                System.arraycopy(buffer, 0, larger, 0, count);
+                pool.release(buffer);
+                buffer = larger;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (buffer != null) {
+                pool.release(buffer);
+                buffer = null;
+            }
+        }
+    }
+}
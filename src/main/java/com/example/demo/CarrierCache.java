@@ -0,0 +1,376 @@
+package com.example.demo;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш декодированных изображений-контейнеров для повторного встраивания в одни и те же изображения.
+ * Запись кэша соответствует пути к файлу и действительна, пока не изменились время изменения и размер файла.
+ * Кэш хранит исходные, не изменённые встраиванием пиксели и выдаёт каждому вызывающему собственную копию,
+ * поэтому встраивание в выданное изображение не затрагивает кэш. Копирование массива пикселей
+ * значительно быстрее повторного чтения и декодирования файла.
+ * Объём кэша ограничен суммарным размером массивов пикселей, при превышении вытесняются давно не использованные
+ * записи. Большие записи с одним массивом байтов или целых чисел хранятся вне кучи в прямых буферах,
+ * остальные большие записи — через {@link SoftReference}, которую сборщик мусора освобождает при нехватке памяти.
+ */
+public final class CarrierCache {
+
+    /**
+     * Общий кэш размером в восьмую часть наибольшего размера кучи.
+     */
+    private static final CarrierCache SHARED = new CarrierCache(Runtime.getRuntime().maxMemory() / 8);
+
+    /**
+     * Наибольший суммарный размер массивов пикселей в байтах.
+     */
+    private final long maxBytes;
+
+    /**
+     * Размер записи, начиная с которого она хранится вне кучи или через мягкую ссылку.
+     */
+    private final long largeEntryBytes;
+
+    /**
+     * Записи в порядке последнего обращения.
+     */
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Суммарный размер записей.
+     */
+    private long totalBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Создание кэша. Записи больше четверти объёма считаются большими.
+     *
+     * @param maxBytes наибольший суммарный размер массивов пикселей в байтах.
+     */
+    public CarrierCache(long maxBytes) {
+        this(maxBytes, maxBytes / 4);
+    }
+
+    /**
+     * Создание кэша.
+     *
+     * @param maxBytes        наибольший суммарный размер массивов пикселей в байтах.
+     * @param largeEntryBytes размер записи, начиная с которого она хранится вне кучи или через мягкую ссылку.
+     */
+    public CarrierCache(long maxBytes, long largeEntryBytes) {
+        if (maxBytes <= 0 || largeEntryBytes <= 0) {
+            throw new IllegalArgumentException("Размер кэша должен быть положительным: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.largeEntryBytes = largeEntryBytes;
+    }
+
+    /**
+     * Получение общего кэша приложения.
+     *
+     * @return общий кэш.
+     */
+    public static CarrierCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Загрузка изображения через кэш. При отсутствии записи или изменении файла изображение загружается
+     * через {@link ImageHandler#loadImage} и помещается в кэш.
+     *
+     * @param path путь к изображению.
+     * @return собственная копия изображения, которую можно изменять.
+     * @throws IOException если файл не существует или не может быть прочитан.
+     */
+    public BufferedImage load(String path) throws IOException {
+        if (path == null) {
+            return ImageHandler.loadImage(null);
+        }
+        Path file = Paths.get(path).toAbsolutePath().normalize();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            // Сообщение об ошибке формирует ImageHandler
+            return ImageHandler.loadImage(path);
+        }
+        long modified = attributes.lastModifiedTime().toMillis();
+        long size = attributes.size();
+
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(file);
+        }
+        if (entry != null && entry.modified == modified && entry.size == size) {
+            BufferedImage copy = entry.copy();
+            if (copy != null) {
+                hits.increment();
+                LogUtil.logInfo("Изображение взято из кэша: {}", path);
+                return copy;
+            }
+        }
+
+        misses.increment();
+        // Декодирование выполняется вне блокировки, чтобы не задерживать обращения к другим файлам
+        BufferedImage image = ImageHandler.loadImage(path);
+        long bytes = Entry.bytesOf(image);
+        if (bytes <= maxBytes) {
+            Entry loaded = Entry.of(image, modified, size, bytes, largeEntryBytes);
+            synchronized (this) {
+                Entry previous = entries.put(file, loaded);
+                if (previous != null) {
+                    totalBytes -= previous.bytes;
+                }
+                totalBytes += loaded.bytes;
+                evict();
+            }
+        }
+        // Запись хранит собственную копию пикселей, поэтому загруженное изображение отдаётся вызывающему
+        return image;
+    }
+
+    /**
+     * Удаление записи файла из кэша.
+     *
+     * @param path путь к изображению.
+     */
+    public synchronized void invalidate(String path) {
+        Entry removed = entries.remove(Paths.get(path).toAbsolutePath().normalize());
+        if (removed != null) {
+            totalBytes -= removed.bytes;
+        }
+    }
+
+    /**
+     * Очистка кэша.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    /**
+     * Получение суммарного размера записей.
+     *
+     * @return размер массивов пикселей в байтах.
+     */
+    public synchronized long getSizeBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Получение количества обращений, обслуженных из кэша.
+     *
+     * @return количество попаданий.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Получение количества обращений, потребовавших загрузки файла.
+     *
+     * @return количество промахов.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Вытеснение давно не использованных записей до соблюдения ограничения размера.
+     * Записи, освобождённые сборщиком мусора, удаляются в первую очередь.
+     */
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.isCleared()) {
+                totalBytes -= entry.bytes;
+                iterator.remove();
+            }
+        }
+        iterator = entries.values().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            totalBytes -= iterator.next().bytes;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Запись кэша: исходные пиксели изображения и признаки версии файла.
+     */
+    private abstract static class Entry {
+        final long modified;
+        final long size;
+        final long bytes;
+        final ColorModel colorModel;
+        final SampleModel sampleModel;
+
+        Entry(BufferedImage image, long modified, long size, long bytes) {
+            this.modified = modified;
+            this.size = size;
+            this.bytes = bytes;
+            this.colorModel = image.getColorModel();
+            this.sampleModel = image.getRaster().getSampleModel();
+        }
+
+        /**
+         * Размер массивов пикселей изображения.
+         */
+        static long bytesOf(BufferedImage image) {
+            DataBuffer buffer = image.getRaster().getDataBuffer();
+            return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+        }
+
+        /**
+         * Выбор способа хранения записи по её размеру и устройству растра.
+         */
+        static Entry of(BufferedImage image, long modified, long size, long bytes, long largeEntryBytes) {
+            DataBuffer buffer = image.getRaster().getDataBuffer();
+            // Прямой буфер ограничен 2 ГБ и хранит только растр из одного массива без смещения
+            boolean whole = image.getRaster().getParent() == null && buffer.getNumBanks() == 1
+                    && buffer.getOffset() == 0 && bytes <= Integer.MAX_VALUE;
+            if (bytes < largeEntryBytes) {
+                return new Heap(image, modified, size, bytes);
+            }
+            if (whole && (buffer instanceof DataBufferByte || buffer instanceof DataBufferInt)) {
+                return new OffHeap(image, modified, size, bytes);
+            }
+            return new Soft(image, modified, size, bytes);
+        }
+
+        /**
+         * Создание копии изображения из записи.
+         *
+         * @return копия или {@code null}, если запись освобождена сборщиком мусора.
+         */
+        abstract BufferedImage copy();
+
+        boolean isCleared() {
+            return false;
+        }
+
+        BufferedImage wrap(DataBuffer buffer) {
+            WritableRaster raster = Raster.createWritableRaster(sampleModel, buffer, null);
+            return new BufferedImage(colorModel, raster, colorModel.isAlphaPremultiplied(), null);
+        }
+
+        /**
+         * Копирование изображения с тем же устройством растра. Массивы пикселей копируются целиком.
+         */
+        static BufferedImage clone(BufferedImage image) {
+            WritableRaster source = image.getRaster();
+            DataBuffer buffer = source.getDataBuffer();
+            ColorModel colorModel = image.getColorModel();
+            if (source.getParent() == null && buffer.getNumBanks() == 1) {
+                DataBuffer copy = null;
+                if (buffer instanceof DataBufferByte) {
+                    copy = new DataBufferByte(((DataBufferByte) buffer).getData().clone(), buffer.getSize(),
+                            buffer.getOffset());
+                } else if (buffer instanceof DataBufferInt) {
+                    copy = new DataBufferInt(((DataBufferInt) buffer).getData().clone(), buffer.getSize(),
+                            buffer.getOffset());
+                }
+                if (copy != null) {
+                    WritableRaster raster = Raster.createWritableRaster(source.getSampleModel(), copy, null);
+                    return new BufferedImage(colorModel, raster, colorModel.isAlphaPremultiplied(), null);
+                }
+            }
+            WritableRaster raster = image.copyData(source.createCompatibleWritableRaster());
+            return new BufferedImage(colorModel, raster, colorModel.isAlphaPremultiplied(), null);
+        }
+    }
+
+    /**
+     * Запись в куче.
+     */
+    private static final class Heap extends Entry {
+        private final BufferedImage image;
+
+        Heap(BufferedImage image, long modified, long size, long bytes) {
+            super(image, modified, size, bytes);
+            this.image = clone(image);
+        }
+
+        @Override
+        BufferedImage copy() {
+            return clone(image);
+        }
+    }
+
+    /**
+     * Запись, которую сборщик мусора может освободить при нехватке памяти.
+     */
+    private static final class Soft extends Entry {
+        private final SoftReference<BufferedImage> image;
+
+        Soft(BufferedImage image, long modified, long size, long bytes) {
+            super(image, modified, size, bytes);
+            this.image = new SoftReference<>(clone(image));
+        }
+
+        @Override
+        BufferedImage copy() {
+            BufferedImage cached = image.get();
+            return cached == null ? null : clone(cached);
+        }
+
+        @Override
+        boolean isCleared() {
+            return image.get() == null;
+        }
+    }
+
+    /**
+     * Запись вне кучи: пиксели хранятся в прямом буфере и копируются в новый массив при каждом обращении.
+     * Прямой буфер освобождается после вытеснения записи, когда сборщик мусора удалит объект буфера.
+     */
+    private static final class OffHeap extends Entry {
+        private final ByteBuffer pixels;
+        private final int elements;
+        private final boolean ints;
+
+        OffHeap(BufferedImage image, long modified, long size, long bytes) {
+            super(image, modified, size, bytes);
+            DataBuffer buffer = image.getRaster().getDataBuffer();
+            this.elements = buffer.getSize();
+            this.ints = buffer instanceof DataBufferInt;
+            this.pixels = ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+            if (ints) {
+                pixels.asIntBuffer().put(((DataBufferInt) buffer).getData(), 0, elements);
+            } else {
+                pixels.put(0, ((DataBufferByte) buffer).getData(), 0, elements);
+            }
+        }
+
+        @Override
+        BufferedImage copy() {
+            if (ints) {
+                int[] data = new int[elements];
+                pixels.asIntBuffer().get(data);
+                return wrap(new DataBufferInt(data, elements));
+            }
+            byte[] data = new byte[elements];
+            pixels.get(0, data);
+            return wrap(new DataBufferByte(data, elements));
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.demo;
+
+/**
+ * Цветовой канал пикселя, в младшие биты которого встраивается сообщение.
+ * Порядок констант определяет порядок записи битов внутри пикселя.
+ */
+public enum Channel {
+
+    /**
+     * Синий канал. Для изображений в оттенках серого соответствует значению яркости.
+     */
+    BLUE,
+
+    /**
+     * Зелёный канал.
+     */
+    GREEN,
+
+    /**
+     * Красный канал.
+     */
+    RED,
+
+    /**
+     * Канал прозрачности.
+     */
+    ALPHA;
+
+    /**
+     * Получение бита канала в маске каналов заголовка.
+     *
+     * @return маска канала.
+     */
+    public int getMask() {
+        return 1 << ordinal();
+    }
+}
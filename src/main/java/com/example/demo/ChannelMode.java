@@ -0,0 +1,76 @@
+package com.example.demo;
+
+/**
+ * Режим встраивания внутри пикселя: используемые каналы и количество младших битов в каждом из них.
+ * Биты пикселя записываются в каналы в порядке {@link Channel}, старшие биты — в первый канал.
+ */
+final class ChannelMode {
+
+    /**
+     * Режим заголовка и исходного формата: один младший бит синего канала.
+     */
+    static final ChannelMode BLUE_LSB = new ChannelMode(1, Channel.BLUE.getMask());
+
+    /**
+     * Количество младших битов в каждом канале.
+     */
+    final int bitsPerChannel;
+
+    /**
+     * Маска используемых каналов.
+     */
+    final int channelMask;
+
+    /**
+     * Номера используемых каналов в порядке записи.
+     */
+    final int[] channels;
+
+    /**
+     * Количество битов сообщения в одном пикселе.
+     */
+    final int bitsPerPixel;
+
+    /**
+     * Маска младших битов канала.
+     */
+    final int lowMask;
+
+    private ChannelMode(int bitsPerChannel, int channelMask) {
+        this.bitsPerChannel = bitsPerChannel;
+        this.channelMask = channelMask;
+        this.channels = new int[Integer.bitCount(channelMask)];
+        int next = 0;
+        for (Channel channel : Channel.values()) {
+            if ((channelMask & channel.getMask()) != 0) {
+                channels[next++] = channel.ordinal();
+            }
+        }
+        this.bitsPerPixel = bitsPerChannel * channels.length;
+        this.lowMask = (1 << bitsPerChannel) - 1;
+    }
+
+    /**
+     * Получение режима встраивания. Для одного бита синего канала возвращается {@link #BLUE_LSB}.
+     *
+     * @param bitsPerChannel количество младших битов в каждом канале.
+     * @param channelMask    маска используемых каналов.
+     * @return режим встраивания.
+     */
+    static ChannelMode of(int bitsPerChannel, int channelMask) {
+        if (bitsPerChannel == BLUE_LSB.bitsPerChannel && channelMask == BLUE_LSB.channelMask) {
+            return BLUE_LSB;
+        }
+        return new ChannelMode(bitsPerChannel, channelMask);
+    }
+
+    /**
+     * Количество пикселей, необходимое для записи заданного количества битов.
+     *
+     * @param bits количество битов.
+     * @return количество пикселей.
+     */
+    long pixelsFor(long bits) {
+        return (bits + bitsPerPixel - 1) / bitsPerPixel;
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.demo;
+
+import java.util.Locale;
+
+/**
+ * Результат стегоанализа изображения: оценки младших битов каждого канала для всего изображения
+ * и для каждой области (плитки) заданного размера.
+ * Встраивание в начало изображения заметно в первых областях сильнее, чем в изображении в целом,
+ * поэтому итоговая оценка {@link #getScore()} равна наибольшей из оценок изображения и областей.
+ * Отчёт неизменяем.
+ */
+public final class DetectabilityReport {
+
+    /**
+     * Оценки младших битов одного канала в области или во всём изображении.
+     */
+    public static final class Score {
+        private final double chiSquare;
+        private final double rs;
+        private final double spa;
+
+        Score(double chiSquare, double rs, double spa) {
+            this.chiSquare = chiSquare;
+            this.rs = rs;
+            this.spa = spa;
+        }
+
+        /**
+         * Получение вероятности встраивания по критерию хи-квадрат.
+         *
+         * @return вероятность от 0 до 1.
+         */
+        public double getChiSquare() {
+            return chiSquare;
+        }
+
+        /**
+         * Получение доли отсчётов, занятых сообщением, по RS-анализу.
+         *
+         * @return доля от 0 до 1.
+         */
+        public double getRs() {
+            return rs;
+        }
+
+        /**
+         * Получение доли отсчётов, занятых сообщением, по анализу пар отсчётов.
+         *
+         * @return доля от 0 до 1.
+         */
+        public double getSpa() {
+            return spa;
+        }
+
+        /**
+         * Получение оценки доли отсчётов, занятых сообщением: наибольшей из оценок RS-анализа и анализа пар.
+         * Вероятность хи-квадрат в оценку не входит: она выражена в другой шкале и близка к 1 уже при
+         * небольшой, но сплошной области встраивания.
+         *
+         * @return доля от 0 до 1.
+         */
+        public double getRate() {
+            return Math.max(rs, spa);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%.3f (хи-квадрат %.3f, RS %.3f, SPA %.3f)", getRate(), chiSquare,
+                    rs, spa);
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final int tileSize;
+    private final int columns;
+    private final int rows;
+    private final Channel[] channels;
+
+    /**
+     * Оценки всего изображения по каналам.
+     */
+    private final Score[] image;
+
+    /**
+     * Оценки областей: для каждой области построчно — оценки каналов в порядке {@link #channels}.
+     */
+    private final Score[] regions;
+
+    DetectabilityReport(int width, int height, int tileSize, int columns, int rows, Channel[] channels,
+                        Score[] image, Score[] regions) {
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        this.columns = columns;
+        this.rows = rows;
+        this.channels = channels;
+        this.image = image;
+        this.regions = regions;
+    }
+
+    /**
+     * Получение ширины проанализированного изображения.
+     *
+     * @return ширина изображения.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Получение высоты проанализированного изображения.
+     *
+     * @return высота изображения.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Получение размера области анализа.
+     *
+     * @return размер стороны области в пикселях.
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Получение количества столбцов областей.
+     *
+     * @return количество областей по горизонтали.
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Получение количества строк областей.
+     *
+     * @return количество областей по вертикали.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Получение проанализированных каналов.
+     *
+     * @return каналы изображения без альфа-канала.
+     */
+    public Channel[] getChannels() {
+        return channels.clone();
+    }
+
+    /**
+     * Получение оценок канала для всего изображения.
+     *
+     * @param channel канал.
+     * @return оценки или {@code null}, если канал не анализировался.
+     */
+    public Score getImageScore(Channel channel) {
+        int index = indexOf(channel);
+        return index < 0 ? null : image[index];
+    }
+
+    /**
+     * Получение оценок канала в области.
+     *
+     * @param column номер области по горизонтали.
+     * @param row    номер области по вертикали.
+     * @param channel канал.
+     * @return оценки или {@code null}, если канал не анализировался.
+     */
+    public Score getRegionScore(int column, int row, Channel channel) {
+        int index = indexOf(channel);
+        return index < 0 ? null : regions[(row * columns + column) * channels.length + index];
+    }
+
+    /**
+     * Получение наибольшей по каналам оценки всего изображения.
+     *
+     * @return доля от 0 до 1.
+     */
+    public double getImageRate() {
+        double rate = 0;
+        for (Score score : image) {
+            rate = Math.max(rate, score.getRate());
+        }
+        return rate;
+    }
+
+    /**
+     * Получение номера области с наибольшей оценкой.
+     *
+     * @return номер области в порядке строк: {@code row * columns + column}.
+     */
+    public int getMaxRegion() {
+        int best = 0;
+        double rate = -1;
+        for (int i = 0; i < regions.length; i++) {
+            if (regions[i].getRate() > rate) {
+                rate = regions[i].getRate();
+                best = i / channels.length;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Получение наибольшей оценки области по всем каналам.
+     *
+     * @return доля от 0 до 1.
+     */
+    public double getMaxRegionRate() {
+        double rate = 0;
+        for (Score score : regions) {
+            rate = Math.max(rate, score.getRate());
+        }
+        return rate;
+    }
+
+    /**
+     * Получение итоговой оценки обнаружимости: наибольшей из оценок изображения и областей.
+     *
+     * @return доля от 0 до 1.
+     */
+    public double getScore() {
+        return Math.max(getImageRate(), getMaxRegionRate());
+    }
+
+    private int indexOf(Channel channel) {
+        for (int i = 0; i < channels.length; i++) {
+            if (channels[i] == channel) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        int region = getMaxRegion();
+        return String.format(Locale.ROOT, "оценка %.3f, изображение %.3f, область (%d, %d) %.3f", getScore(),
+                getImageRate(), region % columns, region / columns, getMaxRegionRate());
+    }
+}
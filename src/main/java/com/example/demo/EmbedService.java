@@ -0,0 +1,545 @@
+package com.example.demo;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Локальная HTTP-служба встраивания и извлечения сообщений в постоянно работающей JVM: запуск JVM,
+ * поиск кодеков ImageIO и компиляция горячих методов происходят один раз, а не для каждого изображения.
+ * <ul>
+ *     <li>{@code POST /embed?imageLength=n[&format=png|bmp][&bits=..][&channels=..][&matrix=..][&key=..]
+ *     [&compress=true][&password=..][&cipher=..]} — тело запроса состоит из файла изображения длиной n байтов
+ *     и следующего за ним сообщения; ответ — изображение со встроенным сообщением в заданном формате
+ *     (по умолчанию PNG).</li>
+ *     <li>{@code POST /extract[?key=..][&password=..]} — тело запроса — файл изображения, ответ — сообщение.</li>
+ *     <li>{@code GET /metrics[?format=json]} — метрики стадий {@link Metrics}, в том числе процентили
+ *     длительности запросов (стадия {@link Metrics.Stage#REQUEST}), и состояние пула буферов.</li>
+ * </ul>
+ * Запросы обрабатываются пулом потоков фиксированного размера; одновременно встраивается или извлекается
+ * не больше заданного количества сообщений, запрос, не получивший разрешения за время ожидания, отклоняется
+ * с кодом 503. Размер тела запроса и количество пикселей изображения ограничены (коды 413 и 400).
+ * Тела запросов и ответов читаются и кодируются в массивы из {@link BufferPool}, изображения декодируются
+ * в растры из того же пула, поэтому при повторяющихся размерах запросов память почти не выделяется.
+ */
+public final class EmbedService implements AutoCloseable {
+
+    /**
+     * Порт по умолчанию.
+     */
+    public static final int DEFAULT_PORT = 8765;
+
+    /**
+     * Наибольший размер тела запроса по умолчанию.
+     */
+    static final int DEFAULT_MAX_REQUEST_BYTES = 64 * 1024 * 1024;
+
+    /**
+     * Наибольшее количество пикселей изображения по умолчанию.
+     */
+    static final long DEFAULT_MAX_PIXELS = 64L * 1024 * 1024;
+
+    /**
+     * Форматы ответа: только форматы без потерь сохраняют младшие биты.
+     */
+    private static final String[] FORMATS = {"png", "bmp"};
+
+    /**
+     * Номер следующей службы для имён потоков.
+     */
+    private static final AtomicInteger SERVICE_NUMBER = new AtomicInteger();
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final long queueTimeoutMillis;
+    private final int maxRequestBytes;
+    private final long maxPixels;
+    private final BufferPool pool;
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Обработчик запроса, получивший разрешение на обработку.
+     */
+    @FunctionalInterface
+    private interface Handler {
+        /**
+         * Обработка тела запроса.
+         *
+         * @param query    параметры запроса.
+         * @param body     тело запроса.
+         * @param response поток ответа.
+         * @return тип содержимого ответа.
+         * @throws IOException если обработка не удалась.
+         */
+        String handle(Map<String, String> query, BufferPool.Output body, BufferPool.Output response)
+                throws IOException;
+    }
+
+    /**
+     * Ошибка запроса с кодом ответа HTTP.
+     */
+    private static final class RequestException extends IOException {
+        private final int status;
+
+        RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private EmbedService(HttpServer server, ExecutorService executor, int maxConcurrent, long queueTimeoutMillis,
+                         int maxRequestBytes, long maxPixels, long poolBytes) {
+        this.server = server;
+        this.executor = executor;
+        this.permits = new Semaphore(maxConcurrent);
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.maxRequestBytes = maxRequestBytes;
+        this.maxPixels = maxPixels;
+        this.pool = new BufferPool(poolBytes);
+    }
+
+    /**
+     * Запуск службы.
+     *
+     * @param address            адрес и порт; для локальной службы — петлевой адрес.
+     * @param threads            количество потоков обработки соединений.
+     * @param maxConcurrent      наибольшее количество одновременно обрабатываемых запросов.
+     * @param queueTimeoutMillis наибольшее время ожидания разрешения на обработку в миллисекундах.
+     * @param maxRequestBytes    наибольший размер тела запроса в байтах.
+     * @param maxPixels          наибольшее количество пикселей изображения.
+     * @param poolBytes          наибольший объём буферов и растров, хранимых в пуле, в байтах.
+     * @param warmUpIterations   количество прогревочных встраиваний и извлечений перед открытием порта.
+     * @return запущенная служба.
+     * @throws IOException если порт не удалось открыть.
+     */
+    public static EmbedService start(InetSocketAddress address, int threads, int maxConcurrent,
+                                     long queueTimeoutMillis, int maxRequestBytes, long maxPixels, long poolBytes,
+                                     int warmUpIterations) throws IOException {
+        if (threads < 1 || maxConcurrent < 1 || queueTimeoutMillis < 0 || maxRequestBytes < 1 || maxPixels < 1
+                || poolBytes < 0 || warmUpIterations < 0) {
+            IOException e = new IOException("Некорректные параметры службы встраивания.");
+            LogUtil.logError(e.getMessage(), e);
+            throw e;
+        }
+        String prefix = "embed-service-" + SERVICE_NUMBER.incrementAndGet() + "-";
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, prefix + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        HttpServer server;
+        try {
+            server = HttpServer.create(address, 0);
+        } catch (IOException e) {
+            executor.shutdown();
+            LogUtil.logError("Не удалось открыть порт службы встраивания " + address + ": " + e.getMessage(), e);
+            throw e;
+        }
+        EmbedService service = new EmbedService(server, executor, maxConcurrent, queueTimeoutMillis,
+                maxRequestBytes, maxPixels, poolBytes);
+        try {
+            service.warmUp(warmUpIterations);
+        } catch (IOException | RuntimeException e) {
+            server.stop(0);
+            executor.shutdown();
+            LogUtil.logError("Не удалось прогреть службу встраивания: " + e.getMessage(), e);
+            throw e;
+        }
+        server.setExecutor(executor);
+        server.createContext("/embed", exchange -> service.handle(exchange, service::embed));
+        server.createContext("/extract", exchange -> service.handle(exchange, service::extract));
+        server.createContext("/metrics", service::metrics);
+        server.start();
+        LogUtil.logInfo("Служба встраивания запущена: {}, потоков: {}", service.getAddress(), threads);
+        return service;
+    }
+
+    /**
+     * Получение адреса, на котором служба принимает запросы.
+     *
+     * @return адрес и порт.
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Получение количества запросов, отклонённых из-за ограничения параллельности.
+     *
+     * @return количество запросов.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Прогрев: встраивание и извлечение в небольшие изображения PNG и BMP тем же кодом, что и для запросов,
+     * чтобы кодеки ImageIO были найдены, а горячие методы скомпилированы до первого запроса.
+     * Метрики прогрева сбрасываются.
+     *
+     * @param iterations количество пар встраивание — извлечение для каждого формата.
+     * @throws IOException если прогрев не удался.
+     */
+    private void warmUp(int iterations) throws IOException {
+        if (iterations == 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        Random random = new Random(0);
+        BufferedImage image = new BufferedImage(256, 256, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        byte[] message = new byte[1024];
+        random.nextBytes(message);
+        for (String format : FORMATS) {
+            byte[] carrier;
+            try (BufferPool.Output out = new BufferPool.Output(pool, BufferPool.MIN_ARRAY_BYTES)) {
+                ImageHandler.encodeImage(image, format, out);
+                out.write(message);
+                carrier = Arrays.copyOf(out.array(), out.size());
+            }
+            Map<String, String> query = new HashMap<>();
+            query.put("imageLength", String.valueOf(carrier.length - message.length));
+            query.put("format", format);
+            for (int i = 0; i < iterations; i++) {
+                try (BufferPool.Output body = new BufferPool.Output(pool, carrier.length);
+                     BufferPool.Output embedded = new BufferPool.Output(pool, carrier.length);
+                     BufferPool.Output extracted = new BufferPool.Output(pool, message.length)) {
+                    body.write(carrier);
+                    embed(query, body, embedded);
+                    extract(Map.of(), embedded, extracted);
+                }
+            }
+        }
+        Metrics.reset();
+        LogUtil.logInfo("Прогрев службы встраивания завершён за {} мс", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Обработка запроса встраивания или извлечения: проверка метода, ожидание разрешения, чтение тела
+     * в буфер из пула, обработка и отправка ответа. Длительность учитывается в стадии {@link Metrics.Stage#REQUEST}.
+     *
+     * @param exchange обмен HTTP.
+     * @param handler  обработчик тела запроса.
+     */
+    private void handle(HttpExchange exchange, Handler handler) {
+        long start = System.nanoTime();
+        try {
+            if (!exchange.getHttpContext().getPath().equals(exchange.getRequestURI().getPath())) {
+                throw new RequestException(404, "Неизвестный путь: " + exchange.getRequestURI().getPath());
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                throw new RequestException(405, "Метод не поддерживается: " + exchange.getRequestMethod());
+            }
+            if (!permits.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                throw new RequestException(503, "Служба занята, повторите запрос позже.");
+            }
+            try {
+                long bytes = process(exchange, handler);
+                Metrics.record(Metrics.Stage.REQUEST, start, bytes);
+            } finally {
+                permits.release();
+            }
+        } catch (RequestException e) {
+            Metrics.recordError(Metrics.Stage.REQUEST);
+            LogUtil.logWarning("Запрос отклонён: {}", e.getMessage());
+            reject(exchange, e.status, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Metrics.recordError(Metrics.Stage.REQUEST);
+            reject(exchange, 503, "Служба останавливается.");
+        } catch (IOException | IllegalArgumentException e) {
+            // Ошибки встраивания и извлечения вызваны содержимым запроса: изображением, сообщением или параметрами
+            Metrics.recordError(Metrics.Stage.REQUEST);
+            reject(exchange, 400, e.getMessage());
+        } catch (RuntimeException e) {
+            Metrics.recordError(Metrics.Stage.REQUEST);
+            LogUtil.logError("Ошибка обработки запроса.", e);
+            reject(exchange, 500, "Внутренняя ошибка службы.");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Чтение тела запроса, обработка и отправка ответа.
+     *
+     * @param exchange обмен HTTP.
+     * @param handler  обработчик тела запроса.
+     * @return суммарный размер тела запроса и ответа.
+     * @throws IOException если тело запроса слишком велико, обработка не удалась или ответ не отправлен.
+     */
+    private long process(HttpExchange exchange, Handler handler) throws IOException {
+        String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        long declared = contentLength == null ? -1 : parseLength(contentLength);
+        if (declared > maxRequestBytes) {
+            throw new RequestException(413, "Размер запроса " + declared + " байт превышает допустимый: "
+                    + maxRequestBytes);
+        }
+        try (BufferPool.Output body = new BufferPool.Output(pool, (int) Math.max(declared, 0))) {
+            if (!body.readFrom(exchange.getRequestBody(), maxRequestBytes)) {
+                throw new RequestException(413, "Размер запроса превышает допустимый: " + maxRequestBytes);
+            }
+            if (body.size() == 0) {
+                throw new RequestException(400, "Тело запроса пусто.");
+            }
+            Map<String, String> query = query(exchange.getRequestURI());
+            try (BufferPool.Output response = new BufferPool.Output(pool, body.size())) {
+                String contentType = handler.handle(query, body, response);
+                exchange.getResponseHeaders().set("Content-Type", contentType);
+                exchange.sendResponseHeaders(200, response.size());
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response.array(), 0, response.size());
+                }
+                return (long) body.size() + response.size();
+            }
+        }
+    }
+
+    /**
+     * Встраивание сообщения из тела запроса в изображение из того же тела.
+     *
+     * @param query    параметры запроса.
+     * @param body     файл изображения и сообщение.
+     * @param response поток для изображения со встроенным сообщением.
+     * @return тип содержимого ответа.
+     * @throws IOException если параметры некорректны, изображение повреждено или сообщение не помещается.
+     */
+    private String embed(Map<String, String> query, BufferPool.Output body, BufferPool.Output response)
+            throws IOException {
+        String imageLength = query.get("imageLength");
+        if (imageLength == null) {
+            throw new RequestException(400, "Не указан параметр imageLength.");
+        }
+        long length = parseLength(imageLength);
+        if (length < 1 || length >= body.size()) {
+            throw new RequestException(400, "Длина изображения должна быть меньше размера запроса: " + length);
+        }
+        String format = query.getOrDefault("format", FORMATS[0]).toLowerCase(Locale.ROOT);
+        if (!format.equals(FORMATS[0]) && !format.equals(FORMATS[1])) {
+            throw new RequestException(400, "Формат ответа должен быть png или bmp: " + format);
+        }
+        EmbeddingConfig config = config(query);
+        PayloadTransform transform = PayloadTransform.none()
+                .withCompression(Boolean.parseBoolean(query.get("compress")));
+        if (query.containsKey("password")) {
+            transform = transform.withEncryption(BatchCommand.cipher(query.getOrDefault("cipher", "aes-gcm")),
+                    query.get("password"));
+        }
+
+        BufferedImage image = ImageHandler.decodeImage(body.array(), 0, (int) length, maxPixels, pool);
+        try {
+            Steganography.hideTheMessage(new ByteArrayInputStream(body.array(), (int) length,
+                    body.size() - (int) length), image, config, transform);
+            ImageHandler.encodeImage(image, format, response);
+        } finally {
+            pool.release(image);
+        }
+        return "image/" + format;
+    }
+
+    /**
+     * Извлечение сообщения из изображения в теле запроса.
+     *
+     * @param query    параметры запроса.
+     * @param body     файл изображения.
+     * @param response поток для сообщения.
+     * @return тип содержимого ответа.
+     * @throws IOException если изображение повреждено, не содержит сообщения или ключ и пароль неверны.
+     */
+    private String extract(Map<String, String> query, BufferPool.Output body, BufferPool.Output response)
+            throws IOException {
+        String key = query.get("key");
+        PixelScatter scatter = key == null ? null : PixelScatter.fromPassphrase(key);
+        String password = query.get("password");
+        PayloadTransform transform = password == null ? PayloadTransform.none()
+                : PayloadTransform.forExtraction(password);
+
+        BufferedImage image = ImageHandler.decodeImage(body.array(), 0, body.size(), maxPixels, pool);
+        try {
+            Steganography.extractMessage(image, response, scatter, transform);
+        } finally {
+            pool.release(image);
+        }
+        return "application/octet-stream";
+    }
+
+    /**
+     * Отправка метрик стадий и состояния пула.
+     *
+     * @param exchange обмен HTTP.
+     * @throws IOException если ответ не удалось отправить.
+     */
+    private void metrics(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendText(exchange, 405, "Метод не поддерживается: " + exchange.getRequestMethod());
+                return;
+            }
+            if ("json".equals(query(exchange.getRequestURI()).get("format"))) {
+                send(exchange, 200, "application/json", Metrics.toJson());
+                return;
+            }
+            sendText(exchange, 200, Metrics.toText() + String.format(Locale.ROOT,
+                    "отклонено запросов: %d, пул: выдано %d, выделено %d, хранится %.1f МБ%n",
+                    getRejected(), pool.getHits(), pool.getMisses(), pool.getPooledBytes() / 1048576.0));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Параметры встраивания из параметров запроса. Встраивание выполняется в одном потоке:
+     * параллельность обеспечивают одновременные запросы.
+     *
+     * @param query параметры запроса.
+     * @return параметры встраивания.
+     * @throws IllegalArgumentException если параметр некорректен.
+     */
+    private static EmbeddingConfig config(Map<String, String> query) {
+        EmbeddingConfig config = EmbeddingConfig.defaults();
+        if (query.containsKey("bits")) {
+            config = config.withBitsPerChannel(BatchCommand.positive(query.get("bits"), "bits"));
+        }
+        if (query.containsKey("channels")) {
+            config = config.withChannels(BatchCommand.channels(query.get("channels")));
+        }
+        if (query.containsKey("matrix")) {
+            config = config.withMatrixEmbedding(BatchCommand.positive(query.get("matrix"), "matrix"));
+        }
+        if (query.containsKey("key")) {
+            config = config.withScatter(PixelScatter.fromPassphrase(query.get("key")));
+        }
+        return config;
+    }
+
+    /**
+     * Разбор строки запроса URI.
+     *
+     * @param uri URI запроса.
+     * @return параметры; при повторе имени берётся последнее значение.
+     */
+    static Map<String, String> query(URI uri) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = uri.getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            String name = separator < 0 ? pair : pair.substring(0, separator);
+            String value = separator < 0 ? "" : pair.substring(separator + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static long parseLength(String value) throws RequestException {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new RequestException(400, "Некорректная длина: " + value);
+        }
+    }
+
+    /**
+     * Отклонение запроса: непрочитанная часть тела, не больше наибольшего размера запроса, пропускается,
+     * затем отправляется ответ с ошибкой. Если сервер закроет соединение с непрочитанными данными,
+     * сброс соединения может уничтожить ответ до того, как клиент его прочитает.
+     *
+     * @param exchange обмен HTTP.
+     * @param status   код ответа.
+     * @param message  текст ошибки.
+     */
+    private void reject(HttpExchange exchange, int status, String message) {
+        try {
+            // Поток тела наследует skip от FilterInputStream, который не учитывает длину тела, поэтому только read
+            InputStream body = exchange.getRequestBody();
+            byte[] scratch = new byte[8192];
+            long left = maxRequestBytes;
+            int read;
+            while (left > 0 && (read = body.read(scratch, 0, (int) Math.min(scratch.length, left))) >= 0) {
+                left -= read;
+            }
+        } catch (IOException e) {
+            LogUtil.logWarning("Не удалось дочитать тело отклонённого запроса: {}", e.getMessage());
+        }
+        sendError(exchange, status, message);
+    }
+
+    /**
+     * Отправка ответа с ошибкой, если ответ ещё не начат, с закрытием соединения. Если клиент уже отключился,
+     * ошибка только записывается в журнал.
+     *
+     * @param exchange обмен HTTP.
+     * @param status   код ответа.
+     * @param message  текст ошибки.
+     */
+    private static void sendError(HttpExchange exchange, int status, String message) {
+        if (exchange.getResponseCode() >= 0) {
+            LogUtil.logWarning("Ответ уже отправлен, ошибка не передана клиенту: {}", message);
+            return;
+        }
+        try {
+            // Тело отклонённого запроса может быть не прочитано, поэтому соединение не используется повторно
+            exchange.getResponseHeaders().set("Connection", "close");
+            sendText(exchange, status, message);
+        } catch (IOException e) {
+            LogUtil.logWarning("Не удалось отправить ответ с ошибкой: {}", e.getMessage());
+        }
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        send(exchange, status, "text/plain; charset=utf-8", text);
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String text) throws IOException {
+        byte[] bytes = (text == null ? "" : text).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        if (status == 503) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+        }
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Остановка службы: новые соединения не принимаются, обрабатываемые запросы завершаются
+     * в течение секунды.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        LogUtil.logInfo("Служба встраивания остановлена.");
+    }
+}
@@ -0,0 +1,286 @@
+package com.example.demo;
+
+import javafx.concurrent.Task;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Фоновая задача графического интерфейса: загрузка изображения, чтение и встраивание сообщения,
+ * построение битовой плоскости и сохранение результата.
+ * Задача выполняется пулом рабочих потоков и сообщает о ходе работы через {@link #progressProperty()}
+ * и {@link #messageProperty()}. Отмена прерывает поток задачи: встраивание останавливается на ближайшей
+ * строке или столбце изображения, остальные стадии — по завершении текущей.
+ * Результаты записываются во временные файлы в каталоге назначения и переименовываются только после
+ * успешного завершения всех стадий, поэтому при отмене или ошибке частично записанных файлов не остаётся.
+ * Битовая плоскость строится отдельным потоком одновременно с кодированием и записью файлов.
+ */
+public class EmbedTask extends Task<EmbedTask.Result> {
+
+    private final File imageFile;
+    private final File messageFile;
+    private final File outputDirectory;
+    private final boolean exportLsb;
+    private final EmbeddingConfig config;
+    private final Channel previewChannel;
+    private final int previewBit;
+    private final int previewWidth;
+    private final Executor previewExecutor;
+
+    /**
+     * Создание задачи.
+     *
+     * @param imageFile       исходное изображение.
+     * @param messageFile     текстовый файл сообщения.
+     * @param outputDirectory каталог для output.bmp и output_lsb.bmp.
+     * @param exportLsb       сохранять ли изображение младших битов в полном размере.
+     * @param config          параметры встраивания.
+     * @param previewChannel  канал битовой плоскости для отображения.
+     * @param previewBit      номер бита плоскости.
+     * @param previewWidth    наибольшая ширина плоскости в пикселях.
+     * @param previewExecutor пул, в котором строится плоскость.
+     */
+    public EmbedTask(File imageFile, File messageFile, File outputDirectory, boolean exportLsb, EmbeddingConfig config,
+                     Channel previewChannel, int previewBit, int previewWidth, Executor previewExecutor) {
+        this.imageFile = imageFile;
+        this.messageFile = messageFile;
+        this.outputDirectory = outputDirectory;
+        this.exportLsb = exportLsb;
+        this.config = config;
+        this.previewChannel = previewChannel;
+        this.previewBit = previewBit;
+        this.previewWidth = previewWidth;
+        this.previewExecutor = previewExecutor;
+    }
+
+    @Override
+    protected Result call() throws IOException {
+        Path outputTemp = null;
+        Path lsbTemp = null;
+        try {
+            updateProgress(0, 100);
+            updateMessage("Загрузка изображения...");
+            // Изображение уже декодировано при выборе файла, кэш выдаёт его копию без чтения с диска
+            BufferedImage image = CarrierCache.shared().load(imageFile.getAbsolutePath());
+            checkCancelled();
+
+            updateProgress(30, 100);
+            updateMessage("Чтение сообщения...");
+            String message = MessageReader.readMessageFromFile(messageFile.getAbsolutePath());
+            BitPayload payload = BitConverter.convertMessageToPayload(message);
+            checkCancelled();
+
+            updateProgress(40, 100);
+            updateMessage("Встраивание сообщения...");
+            Steganography.hideTheMessage(payload, image, config);
+            checkCancelled();
+
+            updateProgress(55, 100);
+            updateMessage("Сохранение результата...");
+            // Плоскость только читает изображение, поэтому строится параллельно с его кодированием
+            CompletableFuture<LsbPreview> preview = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return LsbPreview.render(image, previewChannel, previewBit, previewWidth, Integer.MAX_VALUE);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, previewExecutor);
+
+            if (exportLsb) {
+                lsbTemp = saveTemporary(ImageHandler.createLSBImage(image), "output_lsb.bmp");
+                checkCancelled();
+                updateProgress(75, 100);
+            }
+            outputTemp = saveTemporary(image, "output.bmp");
+            checkCancelled();
+
+            LsbPreview rendered = awaitPreview(preview);
+            // Последняя проверка отмены: после неё оба файла переименовываются без прерывания
+            checkCancelled();
+
+            // Файлы появляются под окончательными именами только после успешного завершения всех стадий
+            File outputFile = new File(outputDirectory, "output.bmp");
+            publish(outputTemp, lsbTemp, outputFile.toPath());
+            outputTemp = null;
+            lsbTemp = null;
+
+            updateProgress(100, 100);
+            updateMessage("Сообщение успешно встроено. Файл сохранен в: " + outputFile.getAbsolutePath());
+            return new Result(image, outputFile, rendered);
+        } finally {
+            deleteTemporary(lsbTemp);
+            deleteTemporary(outputTemp);
+        }
+    }
+
+    /**
+     * Проверка отмены задачи между стадиями.
+     *
+     * @throws InterruptedIOException если задача отменена.
+     */
+    private void checkCancelled() throws InterruptedIOException {
+        if (isCancelled() || Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Встраивание отменено.");
+        }
+    }
+
+    /**
+     * Сохранение изображения BMP во временный файл каталога назначения.
+     * Файл создаётся обычным образом, а не через {@link Files#createTempFile}, чтобы после переименования
+     * у результата были права доступа по умолчанию.
+     *
+     * @param image изображение.
+     * @param name  окончательное имя файла.
+     * @return путь к временному файлу.
+     * @throws IOException если файл не удалось записать.
+     */
+    private Path saveTemporary(BufferedImage image, String name) throws IOException {
+        Path temp = outputDirectory.toPath().resolve("." + name + ".part");
+        try {
+            ImageHandler.saveImage(image, temp.toString(), "bmp");
+        } catch (IOException | RuntimeException e) {
+            deleteTemporary(temp);
+            throw e;
+        }
+        return temp;
+    }
+
+    /**
+     * Ожидание построения битовой плоскости.
+     *
+     * @param preview построение плоскости.
+     * @return плоскость.
+     * @throws IOException если построение завершилось ошибкой.
+     */
+    private static LsbPreview awaitPreview(CompletableFuture<LsbPreview> preview) throws IOException {
+        try {
+            return preview.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Переименование временных файлов в окончательные: сначала output.bmp, затем output_lsb.bmp.
+     * Если второе переименование не удалось, output.bmp удаляется, а заменённый им прежний файл восстанавливается,
+     * поэтому новый output_lsb.bmp никогда не оказывается рядом с устаревшим output.bmp.
+     *
+     * @param outputTemp временный файл изображения.
+     * @param lsbTemp    временный файл изображения младших битов или {@code null}.
+     * @param outputPath окончательный путь изображения.
+     * @throws IOException если файлы не удалось переименовать.
+     */
+    private void publish(Path outputTemp, Path lsbTemp, Path outputPath) throws IOException {
+        if (lsbTemp == null) {
+            moveIntoPlace(outputTemp, outputPath);
+            return;
+        }
+        Path backup = null;
+        if (Files.exists(outputPath)) {
+            backup = outputDirectory.toPath().resolve(".output.bmp.old");
+            moveIntoPlace(outputPath, backup);
+        }
+        boolean replaced = false;
+        try {
+            moveIntoPlace(outputTemp, outputPath);
+            replaced = true;
+            moveIntoPlace(lsbTemp, outputDirectory.toPath().resolve("output_lsb.bmp"));
+        } catch (IOException | RuntimeException e) {
+            try {
+                if (replaced) {
+                    Files.deleteIfExists(outputPath);
+                }
+                if (backup != null) {
+                    moveIntoPlace(backup, outputPath);
+                }
+            } catch (IOException restoreError) {
+                // Копия прежнего файла не удаляется, чтобы его можно было восстановить вручную
+                e.addSuppressed(restoreError);
+                LogUtil.logWarning("Не удалось восстановить прежний файл, его копия: {}", backup);
+            }
+            throw e;
+        }
+        deleteTemporary(backup);
+    }
+
+    /**
+     * Переименование временного файла в окончательный с заменой существующего файла.
+     *
+     * @param temp   временный файл.
+     * @param target окончательный путь.
+     * @throws IOException если файл не удалось переименовать.
+     */
+    private static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void deleteTemporary(Path temp) {
+        if (temp == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException e) {
+            LogUtil.logWarning("Не удалось удалить временный файл: {}", temp);
+        }
+    }
+
+    /**
+     * Результат встраивания.
+     */
+    public static final class Result {
+        private final BufferedImage image;
+        private final File outputFile;
+        private final LsbPreview preview;
+
+        Result(BufferedImage image, File outputFile, LsbPreview preview) {
+            this.image = image;
+            this.outputFile = outputFile;
+            this.preview = preview;
+        }
+
+        /**
+         * Получение изображения, в которое встроено сообщение.
+         *
+         * @return изображение с встроенным сообщением.
+         */
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        /**
+         * Получение файла, в который сохранено изображение с сообщением.
+         *
+         * @return сохранённый файл с сообщением.
+         */
+        public File getOutputFile() {
+            return outputFile;
+        }
+
+        /**
+         * Получение битовой плоскости младших битов результата для предпросмотра.
+         *
+         * @return битовая плоскость для отображения.
+         */
+        public LsbPreview getPreview() {
+            return preview;
+        }
+    }
+}
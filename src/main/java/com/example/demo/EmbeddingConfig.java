@@ -0,0 +1,285 @@
+package com.example.demo;
+
+/**
+ * Параметры встраивания сообщения: формат кадра, порядок обхода пикселей,
+ * используемые каналы, количество младших битов в каждом канале, матричное кодирование, ключ разброса пикселей
+ * и количество потоков записи.
+ * Объект неизменяем, методы {@code with...} возвращают новый объект с изменённым параметром.
+ */
+public final class EmbeddingConfig {
+
+    /**
+     * Наибольшее количество младших битов, используемых в одном канале.
+     */
+    public static final int MAX_BITS_PER_CHANNEL = 4;
+
+    /**
+     * Параметры по умолчанию: заголовок кадра, обход по строкам и младший бит синего канала.
+     */
+    private static final EmbeddingConfig DEFAULTS = new EmbeddingConfig(EmbeddingLayout.ROW_MAJOR,
+            ChannelMode.BLUE_LSB, 0, 1, null);
+
+    /**
+     * Порядок обхода пикселей.
+     */
+    private final EmbeddingLayout layout;
+
+    /**
+     * Используемые каналы и количество битов в каждом из них.
+     */
+    private final ChannelMode mode;
+
+    /**
+     * Количество битов сообщения в группе матричного кода или 0 для обычной замены младших битов.
+     */
+    private final int matrixBits;
+
+    /**
+     * Количество потоков записи. В заголовок не записывается и не влияет на результат.
+     */
+    private final int parallelism;
+
+    /**
+     * Перестановка пикселей для порядка {@link EmbeddingLayout#SCATTERED} или {@code null}.
+     */
+    private final PixelScatter scatter;
+
+    private EmbeddingConfig(EmbeddingLayout layout, ChannelMode mode, int matrixBits, int parallelism,
+                            PixelScatter scatter) {
+        this.layout = layout;
+        this.mode = mode;
+        this.matrixBits = matrixBits;
+        this.parallelism = parallelism;
+        this.scatter = scatter;
+    }
+
+    /**
+     * Получение параметров по умолчанию: заголовок кадра, обход по строкам и младший бит синего канала.
+     *
+     * @return параметры по умолчанию.
+     */
+    public static EmbeddingConfig defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Получение параметров исходного формата: длина в первых 8 пикселях и обход по столбцам.
+     *
+     * @return параметры исходного формата.
+     */
+    public static EmbeddingConfig legacy() {
+        return DEFAULTS.withLayout(EmbeddingLayout.COLUMN_MAJOR);
+    }
+
+    /**
+     * Получение порядка обхода пикселей.
+     *
+     * @return порядок обхода.
+     */
+    public EmbeddingLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Проверка, используется ли исходный формат без заголовка кадра.
+     *
+     * @return {@code true} для исходного формата.
+     */
+    public boolean isLegacy() {
+        return layout == EmbeddingLayout.COLUMN_MAJOR;
+    }
+
+    /**
+     * Получение количества младших битов, используемых в каждом канале.
+     *
+     * @return количество битов на канал.
+     */
+    public int getBitsPerChannel() {
+        return mode.bitsPerChannel;
+    }
+
+    /**
+     * Получение маски используемых каналов, составленной из {@link Channel#getMask()}.
+     *
+     * @return маска каналов.
+     */
+    public int getChannelMask() {
+        return mode.channelMask;
+    }
+
+    /**
+     * Получение количества битов сообщения, записываемых в один пиксель.
+     *
+     * @return количество битов на пиксель.
+     */
+    public int getBitsPerPixel() {
+        return mode.bitsPerPixel;
+    }
+
+    /**
+     * Получение количества потоков записи.
+     *
+     * @return количество потоков.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Получение перестановки пикселей разбросанного порядка.
+     *
+     * @return перестановка или {@code null}, если пиксели обходятся последовательно.
+     */
+    public PixelScatter getScatter() {
+        return scatter;
+    }
+
+    /**
+     * Получение режима встраивания внутри пикселя.
+     *
+     * @return режим встраивания.
+     */
+    ChannelMode channelMode() {
+        return mode;
+    }
+
+    /**
+     * Создание параметров с другим порядком обхода пикселей.
+     *
+     * @param layout порядок обхода.
+     * @return новые параметры.
+     * @throws IllegalArgumentException если выбран разбросанный порядок: он задаётся через {@link #withScatter}.
+     */
+    public EmbeddingConfig withLayout(EmbeddingLayout layout) {
+        if (layout == EmbeddingLayout.SCATTERED) {
+            throw new IllegalArgumentException("Разбросанный порядок задаётся ключом через withScatter.");
+        }
+        return new EmbeddingConfig(layout, mode, matrixBits, parallelism, null);
+    }
+
+    /**
+     * Создание параметров с разбросом пикселей сообщения по ключу: порядок обхода {@link EmbeddingLayout#SCATTERED}.
+     *
+     * @param scatter перестановка пикселей.
+     * @return новые параметры.
+     */
+    public EmbeddingConfig withScatter(PixelScatter scatter) {
+        if (scatter == null) {
+            throw new IllegalArgumentException("Не указан ключ разброса пикселей.");
+        }
+        return new EmbeddingConfig(EmbeddingLayout.SCATTERED, mode, matrixBits, parallelism, scatter);
+    }
+
+    /**
+     * Создание параметров с другим количеством младших битов в каждом канале.
+     * Исходный формат поддерживает только один бит синего канала, матричное кодирование — один бит каждого канала.
+     *
+     * @param bitsPerChannel количество битов, от 1 до {@link #MAX_BITS_PER_CHANNEL}.
+     * @return новые параметры.
+     * @throws IllegalArgumentException если количество битов вне допустимого диапазона
+     *                                  или больше 1 при матричном кодировании.
+     */
+    public EmbeddingConfig withBitsPerChannel(int bitsPerChannel) {
+        if (bitsPerChannel < 1 || bitsPerChannel > MAX_BITS_PER_CHANNEL) {
+            throw new IllegalArgumentException("Количество битов на канал должно быть от 1 до "
+                    + MAX_BITS_PER_CHANNEL + ": " + bitsPerChannel);
+        }
+        if (matrixBits != 0 && bitsPerChannel != 1) {
+            throw new IllegalArgumentException("Матричное кодирование использует один младший бит канала.");
+        }
+        return new EmbeddingConfig(layout, ChannelMode.of(bitsPerChannel, mode.channelMask), matrixBits, parallelism,
+                scatter);
+    }
+
+    /**
+     * Создание параметров с другим набором каналов.
+     * Порядок аргументов не важен: биты пикселя всегда распределяются по каналам в порядке {@link Channel}.
+     *
+     * @param channels используемые каналы.
+     * @return новые параметры.
+     * @throws IllegalArgumentException если не указан ни один канал.
+     */
+    public EmbeddingConfig withChannels(Channel... channels) {
+        int channelMask = 0;
+        for (Channel channel : channels) {
+            channelMask |= channel.getMask();
+        }
+        if (channelMask == 0) {
+            throw new IllegalArgumentException("Не указан ни один канал для встраивания.");
+        }
+        return new EmbeddingConfig(layout, ChannelMode.of(mode.bitsPerChannel, channelMask), matrixBits, parallelism,
+                scatter);
+    }
+
+    /**
+     * Создание параметров с другим количеством потоков записи.
+     * Растр делится на полосы, которые записываются параллельно; результат совпадает с записью в одном потоке.
+     * Растры, в которых несколько пикселей упакованы в один байт, всегда записываются в одном потоке.
+     *
+     * @param parallelism количество потоков, не меньше 1.
+     * @return новые параметры.
+     * @throws IllegalArgumentException если количество потоков меньше 1.
+     */
+    public EmbeddingConfig withParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Количество потоков должно быть не меньше 1: " + parallelism);
+        }
+        return new EmbeddingConfig(layout, mode, matrixBits, parallelism, scatter);
+    }
+
+    /**
+     * Создание параметров с матричным кодированием (код Хэмминга): {@code bits} битов сообщения записываются
+     * в группу из 2^bits - 1 младших битов отсчётов с изменением не более одного отсчёта.
+     * Ёмкость уменьшается в (2^bits - 1) / bits раз, зато изменяется и записывается в растр намного меньше
+     * отсчётов (см. {@link #expectedChanges}). Встраивание и извлечение выполняются в одном потоке.
+     *
+     * @param bits количество битов сообщения в группе, от 2 до 6, или 0 для обычной замены младших битов.
+     * @return новые параметры.
+     * @throws IllegalArgumentException если количество битов вне допустимого диапазона
+     *                                  или используется больше одного младшего бита канала.
+     */
+    public EmbeddingConfig withMatrixEmbedding(int bits) {
+        if (bits != 0 && (bits < MatrixCode.MIN_BITS || bits > MatrixCode.MAX_BITS)) {
+            throw new IllegalArgumentException("Количество битов в группе матричного кода должно быть от "
+                    + MatrixCode.MIN_BITS + " до " + MatrixCode.MAX_BITS + ": " + bits);
+        }
+        if (bits != 0 && mode.bitsPerChannel != 1) {
+            throw new IllegalArgumentException("Матричное кодирование использует один младший бит канала.");
+        }
+        return new EmbeddingConfig(layout, mode, bits, parallelism, scatter);
+    }
+
+    /**
+     * Получение количества битов сообщения в группе матричного кода.
+     *
+     * @return количество битов или 0, если младшие биты заменяются битами сообщения напрямую.
+     */
+    public int getMatrixBits() {
+        return matrixBits;
+    }
+
+    /**
+     * Оценка количества отсчётов, которые изменятся при встраивании сообщения заданной длины,
+     * если младшие биты контейнера случайны. При обычной замене отсчёт с b битами сообщения изменяется
+     * с вероятностью 1 - 2^-b, при матричном кодировании группа изменяется с вероятностью 1 - 2^-k.
+     * Заголовок кадра не учитывается.
+     *
+     * @param messageLength длина сообщения в байтах.
+     * @return ожидаемое количество изменённых отсчётов.
+     */
+    public double expectedChanges(long messageLength) {
+        long bits = messageLength * 8;
+        if (matrixBits != 0) {
+            return MatrixCode.of(matrixBits).groupsFor(bits) * (1 - 1.0 / (1 << matrixBits));
+        }
+        long samples = (bits + mode.bitsPerChannel - 1) / mode.bitsPerChannel;
+        return samples * (1 - 1.0 / (1 << mode.bitsPerChannel));
+    }
+
+    @Override
+    public String toString() {
+        return "EmbeddingConfig{layout=" + layout + ", bitsPerChannel=" + mode.bitsPerChannel
+                + ", channelMask=" + mode.channelMask + ", matrixBits=" + matrixBits + ", parallelism=" + parallelism
+                + '}';
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.demo;
+
+/**
+ * Порядок обхода пикселей при встраивании битов сообщения.
+ * Номер порядка записывается в заголовок, чтобы при извлечении использовался тот же обход.
+ */
+public enum EmbeddingLayout {
+
+    /**
+     * Исходный обход по столбцам: внешний цикл по X, внутренний по Y.
+     * Используется изображениями без заголовка кадра, где длина хранится в первых 8 пикселях.
+     */
+    COLUMN_MAJOR(1),
+
+    /**
+     * Обход по строкам, совпадающий с расположением пикселей в памяти.
+     */
+    ROW_MAJOR(2),
+
+    /**
+     * Разброс пикселей сообщения по изображению перестановкой {@link PixelScatter}, заданной секретным ключом.
+     * Ключ в заголовок не записывается и должен быть известен при извлечении.
+     */
+    SCATTERED(3);
+
+    /**
+     * Номер порядка обхода в заголовке.
+     */
+    private final int id;
+
+    EmbeddingLayout(int id) {
+        this.id = id;
+    }
+
+    /**
+     * Получение номера порядка обхода.
+     *
+     * @return номер, записываемый в заголовок.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Получение порядка обхода по номеру из заголовка.
+     *
+     * @param id номер порядка обхода.
+     * @return порядок обхода или {@code null}, если номер неизвестен.
+     */
+    public static EmbeddingLayout fromId(int id) {
+        for (EmbeddingLayout layout : values()) {
+            if (layout.id == id) {
+                return layout;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Разбиение диапазона порядковых номеров пикселей на непрерывные отрезки обхода последовательного порядка.
+     *
+     * @param width  ширина изображения.
+     * @param height высота изображения.
+     * @param first  порядковый номер первого пикселя диапазона.
+     * @param count  количество пикселей в диапазоне.
+     * @param runs   получатель отрезков.
+     */
+    void forEachRun(int width, int height, long first, long count, RunConsumer runs) {
+        forEachRun(width, height, first, count, null, runs);
+    }
+
+    /**
+     * Разбиение диапазона порядковых номеров пикселей на непрерывные отрезки обхода.
+     * Для разбросанного порядка каждый отрезок состоит из одного пикселя.
+     *
+     * @param width   ширина изображения.
+     * @param height  высота изображения.
+     * @param first   порядковый номер первого пикселя диапазона.
+     * @param count   количество пикселей в диапазоне.
+     * @param scatter перестановка для {@link #SCATTERED}, для остальных порядков не используется.
+     * @param runs    получатель отрезков.
+     */
+    void forEachRun(int width, int height, long first, long count, PixelScatter scatter, RunConsumer runs) {
+        if (this == SCATTERED) {
+            scatter.forEachRun(width, height, first, count, runs);
+            return;
+        }
+        int major = this == ROW_MAJOR ? width : height;
+        long ordinal = first;
+        long end = first + count;
+        while (ordinal < end) {
+            int line = (int) (ordinal / major);
+            int offset = (int) (ordinal % major);
+            int length = (int) Math.min(major - offset, end - ordinal);
+            if (this == ROW_MAJOR) {
+                runs.accept(offset, line, 1, 0, length);
+            } else {
+                runs.accept(line, offset, 0, 1, length);
+            }
+            ordinal += length;
+        }
+    }
+
+    /**
+     * Получатель непрерывного отрезка пикселей: начальный пиксель, шаг и длина.
+     */
+    @FunctionalInterface
+    interface RunConsumer {
+        void accept(int x, int y, int dx, int dy, int count);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.demo;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Извлечение сообщения из изображения в файл без графического интерфейса.
+ *
+ * <pre>
+ * extract [--key &lt;фраза&gt;] [--password &lt;пароль&gt;] &lt;изображение&gt; &lt;файл | -&gt;
+ * </pre>
+ *
+ * Сжатое или зашифрованное сообщение восстанавливается по флагам заголовка кадра; для зашифрованного сообщения
+ * указывается пароль, заданный при встраивании. Сообщение извлекается, расшифровывается и распаковывается
+ * потоком, поэтому расход памяти не зависит от его длины. Если вместо файла указан '-', сообщение выводится
+ * в стандартный вывод, иначе записывается во временный файл и переносится на место результата после проверки.
+ */
+public class ExtractCommand {
+
+    /**
+     * Описание параметров командной строки.
+     */
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Использование:",
+            "  extract [--key <фраза>] [--password <пароль>] <изображение> <файл>  извлечь сообщение в файл",
+            "  extract [--key <фраза>] [--password <пароль>] <изображение> -       вывести сообщение в стандартный вывод");
+
+    /**
+     * Точка входа команды извлечения.
+     *
+     * @param args аргументы командной строки без имени команды.
+     */
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Выполнение команды извлечения.
+     *
+     * @param args аргументы командной строки без имени команды.
+     * @param out  поток для сообщения, если вместо файла указан '-', и для отчёта.
+     * @param err  поток для сообщений об ошибках.
+     * @return код завершения: 0 при успехе, 1 при ошибке извлечения, 2 при неверных аргументах.
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        System.setProperty("java.awt.headless", "true");
+        PixelScatter scatter = null;
+        String password = null;
+        int first = 0;
+        try {
+            while (args.length - first > 2) {
+                switch (args[first]) {
+                    case "--key" -> scatter = PixelScatter.fromPassphrase(args[first + 1]);
+                    case "--password" -> password = args[first + 1];
+                    default -> throw new IllegalArgumentException("Неизвестный параметр: " + args[first]);
+                }
+                first += 2;
+            }
+            if (args.length - first != 2) {
+                throw new IllegalArgumentException("Укажите изображение и файл для сообщения.");
+            }
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+        String image = args[first];
+        String target = args[first + 1];
+        try {
+            PayloadTransform transform = password != null ? PayloadTransform.forExtraction(password)
+                    : PayloadTransform.none();
+            if (target.equals("-")) {
+                extract(image, out, scatter, transform);
+                out.flush();
+                return 0;
+            }
+            Path path = Paths.get(target).toAbsolutePath();
+            Path temp = path.resolveSibling("." + path.getFileName() + ".part");
+            try {
+                long stored;
+                try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                    stored = extract(image, stream, scatter, transform);
+                }
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+                out.printf("Извлечено %d байт (в изображении %d байт)%n", Files.size(path), stored);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            return 0;
+        } catch (IOException e) {
+            LogUtil.logError("Не удалось извлечь сообщение: " + e.getMessage(), e);
+            err.println("Не удалось извлечь сообщение: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Извлечение сообщения из изображения на диске в поток.
+     *
+     * @param path      путь к изображению.
+     * @param out       выходной поток.
+     * @param scatter   перестановка пикселей, заданная ключом при встраивании, или {@code null}.
+     * @param transform преобразование с паролем для зашифрованных сообщений.
+     * @return количество байтов сообщения в изображении.
+     * @throws IOException если изображение не удалось прочитать, пароль не указан или неверен
+     *                     или сообщение повреждено.
+     */
+    static long extract(String path, OutputStream out, PixelScatter scatter, PayloadTransform transform)
+            throws IOException {
+        if (MappedBmp.isSupported(path)) {
+            try (MappedBmp bmp = MappedBmp.open(path, false)) {
+                return bmp.extractMessage(out, scatter, transform);
+            }
+        }
+        return Steganography.extractMessage(ImageHandler.loadImage(path), out, scatter, transform);
+    }
+}
@@ -0,0 +1,289 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Заголовок кадра, записываемый перед сообщением.
+ * Заголовок занимает младший бит синего канала первых {@link #HEADER_PIXELS} пикселей в порядке строк
+ * и содержит сигнатуру, версию формата, порядок обхода, режим встраивания, флаги преобразований сообщения,
+ * длину сообщения в байтах и контрольную сумму CRC-32 сообщения. Режим встраивания включает
+ * количество битов в группе матричного кода {@link MatrixCode}. Длина и контрольная сумма относятся
+ * к байтам, записанным в изображение, то есть к сообщению после сжатия и шифрования.
+ * Изображения без сигнатуры считаются записанными в исходном формате по столбцам.
+ */
+public class FrameHeader {
+
+    /**
+     * Сигнатура заголовка ("LSBF").
+     */
+    public static final int MAGIC = 0x4C534246;
+
+    /**
+     * Текущая версия формата заголовка.
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * Размер заголовка в байтах.
+     */
+    static final int HEADER_BYTES = 22;
+
+    /**
+     * Количество пикселей, занятых заголовком.
+     */
+    public static final int HEADER_PIXELS = HEADER_BYTES * 8;
+
+    /**
+     * Наибольшая длина сообщения в исходном формате, где длина хранится в 8 битах.
+     */
+    static final int LEGACY_MAX_LENGTH = 255;
+
+    /**
+     * Таблица CRC-32 для продолжения контрольной суммы при дозаписи.
+     */
+    private static final int[] CRC_TABLE = new int[256];
+
+    static {
+        for (int n = 0; n < CRC_TABLE.length; n++) {
+            int c = n;
+            for (int k = 0; k < 8; k++) {
+                c = (c & 1) != 0 ? 0xEDB88320 ^ (c >>> 1) : c >>> 1;
+            }
+            CRC_TABLE[n] = c;
+        }
+    }
+
+    /**
+     * Порядок обхода пикселей сообщения.
+     */
+    private final EmbeddingLayout layout;
+
+    /**
+     * Количество младших битов, используемых в каждом канале.
+     */
+    private final int bitsPerChannel;
+
+    /**
+     * Маска используемых каналов.
+     */
+    private final int channelMask;
+
+    /**
+     * Количество битов сообщения в группе матричного кода или 0 без матричного кодирования.
+     * Хранится в старших четырёх битах байта с количеством битов на канал, поэтому заголовки
+     * без матричного кодирования не изменились, а прежние версии отвергают заголовок с ним как неподдерживаемый.
+     */
+    private final int matrixBits;
+
+    /**
+     * Флаги преобразований сообщения {@link PayloadTransform}: сжатие и алгоритм шифрования.
+     */
+    private final int flags;
+
+    /**
+     * Длина сообщения в байтах.
+     */
+    private final long length;
+
+    /**
+     * Контрольная сумма CRC-32 байтов сообщения.
+     */
+    private final int checksum;
+
+    /**
+     * Создание заголовка.
+     *
+     * @param layout         порядок обхода пикселей сообщения.
+     * @param bitsPerChannel количество младших битов в каждом канале.
+     * @param channelMask    маска используемых каналов.
+     * @param flags          флаги преобразований сообщения.
+     * @param length         длина сообщения в байтах.
+     * @param checksum       контрольная сумма CRC-32 сообщения.
+     */
+    public FrameHeader(EmbeddingLayout layout, int bitsPerChannel, int channelMask, int flags, long length, int checksum) {
+        this(layout, bitsPerChannel, channelMask, 0, flags, length, checksum);
+    }
+
+    /**
+     * Создание заголовка сообщения, встроенного матричным кодом.
+     *
+     * @param layout         порядок обхода пикселей сообщения.
+     * @param bitsPerChannel количество младших битов в каждом канале.
+     * @param channelMask    маска используемых каналов.
+     * @param matrixBits     количество битов сообщения в группе матричного кода или 0.
+     * @param flags          флаги преобразований сообщения.
+     * @param length         длина сообщения в байтах.
+     * @param checksum       контрольная сумма CRC-32 сообщения.
+     */
+    public FrameHeader(EmbeddingLayout layout, int bitsPerChannel, int channelMask, int matrixBits, int flags,
+                       long length, int checksum) {
+        this.layout = layout;
+        this.bitsPerChannel = bitsPerChannel;
+        this.channelMask = channelMask;
+        this.matrixBits = matrixBits;
+        this.flags = flags;
+        this.length = length;
+        this.checksum = checksum;
+    }
+
+    /**
+     * Создание заголовка исходного формата, где хранится только длина сообщения.
+     *
+     * @param length длина сообщения в байтах.
+     * @return заголовок с порядком обхода {@link EmbeddingLayout#COLUMN_MAJOR}.
+     */
+    static FrameHeader legacy(long length) {
+        return new FrameHeader(EmbeddingLayout.COLUMN_MAJOR, 1, 1, 0, length, 0);
+    }
+
+    /**
+     * Получение порядка обхода пикселей сообщения.
+     *
+     * @return порядок обхода.
+     */
+    public EmbeddingLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Получение количества младших битов, используемых в каждом канале.
+     *
+     * @return количество битов на канал.
+     */
+    public int getBitsPerChannel() {
+        return bitsPerChannel;
+    }
+
+    /**
+     * Получение маски используемых каналов.
+     *
+     * @return маска каналов.
+     */
+    public int getChannelMask() {
+        return channelMask;
+    }
+
+    /**
+     * Получение количества битов сообщения в группе матричного кода.
+     *
+     * @return количество битов или 0 без матричного кодирования.
+     */
+    public int getMatrixBits() {
+        return matrixBits;
+    }
+
+    /**
+     * Получение флагов преобразований сообщения.
+     *
+     * @return флаги {@link PayloadTransform}, 0 для сообщения без преобразований.
+     */
+    public int getFlags() {
+        return flags;
+    }
+
+    /**
+     * Получение длины сообщения.
+     *
+     * @return длина сообщения в байтах.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Получение контрольной суммы сообщения.
+     *
+     * @return контрольная сумма CRC-32.
+     */
+    public int getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Проверка, записано ли сообщение в исходном формате без заголовка кадра.
+     *
+     * @return {@code true} для исходного формата.
+     */
+    public boolean isLegacy() {
+        return layout == EmbeddingLayout.COLUMN_MAJOR;
+    }
+
+    /**
+     * Продолжение контрольной суммы CRC-32 байтами, дописанными в конец сообщения.
+     * Результат совпадает с {@link java.util.zip.CRC32} всего сообщения, но требует чтения только новых байтов.
+     *
+     * @param checksum контрольная сумма сообщения до дозаписи.
+     * @param bytes    дописанные байты, позиция буфера смещается до его предела.
+     * @return контрольная сумма сообщения после дозаписи.
+     */
+    static int updateChecksum(int checksum, ByteBuffer bytes) {
+        int crc = ~checksum;
+        while (bytes.hasRemaining()) {
+            crc = CRC_TABLE[(crc ^ bytes.get()) & 0xFF] ^ (crc >>> 8);
+        }
+        return ~crc;
+    }
+
+    /**
+     * Сериализация заголовка.
+     *
+     * @return буфер с байтами заголовка, готовый к чтению.
+     */
+    ByteBuffer toBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES);
+        buffer.putInt(MAGIC);
+        buffer.put((byte) VERSION);
+        buffer.put((byte) layout.getId());
+        buffer.put((byte) (matrixBits << 4 | bitsPerChannel));
+        buffer.put((byte) channelMask);
+        buffer.putShort((short) flags);
+        buffer.putLong(length);
+        buffer.putInt(checksum);
+        return buffer.flip();
+    }
+
+    /**
+     * Разбор заголовка кадра.
+     *
+     * @param buffer буфер с байтами заголовка.
+     * @return заголовок или {@code null}, если сигнатура не найдена.
+     * @throws IOException если версия формата, порядок обхода или режим встраивания не поддерживаются.
+     */
+    static FrameHeader parse(ByteBuffer buffer) throws IOException {
+        if (buffer.getInt() != MAGIC) {
+            return null;
+        }
+        int version = buffer.get() & 0xFF;
+        if (version != VERSION) {
+            throw new IOException("Неподдерживаемая версия заголовка: " + version);
+        }
+        int layoutId = buffer.get() & 0xFF;
+        EmbeddingLayout layout = EmbeddingLayout.fromId(layoutId);
+        if (layout == null || layout == EmbeddingLayout.COLUMN_MAJOR) {
+            throw new IOException("Неподдерживаемый порядок обхода: " + layoutId);
+        }
+        int bits = buffer.get() & 0xFF;
+        int bitsPerChannel = bits & 0xF;
+        int matrixBits = bits >>> 4;
+        int channelMask = buffer.get() & 0xFF;
+        int flags = buffer.getShort() & 0xFFFF;
+        if (matrixBits != 0 && (matrixBits < MatrixCode.MIN_BITS || matrixBits > MatrixCode.MAX_BITS
+                || bitsPerChannel != 1)) {
+            throw new IOException("Неподдерживаемый матричный код: " + matrixBits + " бит в группе, "
+                    + bitsPerChannel + " бит на канал");
+        }
+        if (bitsPerChannel < 1 || bitsPerChannel > EmbeddingConfig.MAX_BITS_PER_CHANNEL
+                || channelMask == 0 || channelMask > 0xF || (flags & ~PayloadTransform.KNOWN_FLAGS) != 0
+                || Integer.bitCount(flags & ~PayloadTransform.FLAG_DEFLATE) > 1) {
+            throw new IOException("Неподдерживаемый режим встраивания: " + bitsPerChannel + " бит, каналы "
+                    + channelMask + ", флаги " + flags);
+        }
+        long length = buffer.getLong();
+        if (length < 0) {
+            throw new IOException("Некорректная длина сообщения: " + length);
+        }
+        int checksum = buffer.getInt();
+        return new FrameHeader(layout, bitsPerChannel, channelMask, matrixBits, flags, length, checksum);
+    }
+}
@@ -1,13 +1,24 @@
 package com.example.demo;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.Iterator;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 
 /**
  * Класс ImageHandler предоставляет методы для загрузки изображения из указанного пути
  * и сохранения модифицированного изображения в указанный путь.
+ * Длительность загрузки, сохранения и построения изображения младших битов учитывается в {@link Metrics}.
  */
 public class ImageHandler {
 
@@ -19,31 +30,133 @@ public class ImageHandler {
      * @throws IOException если файл не существует, не является файлом или не может быть прочитан.
      */
     public static BufferedImage loadImage(String originalImagePath) throws IOException {
-        LogUtil.logInfo("Загрузка изображения: " + originalImagePath);
+        return Metrics.time(Metrics.Stage.LOAD, () -> readImage(originalImagePath),
+                image -> new File(originalImagePath).length());
+    }
+
+    /**
+     * Чтение и декодирование изображения.
+     *
+     * @param originalImagePath путь к исходному изображению.
+     * @return загруженное изображение.
+     * @throws IOException если файл не существует, не является файлом или не может быть прочитан.
+     */
+    private static BufferedImage readImage(String originalImagePath) throws IOException {
+        LogUtil.logInfo("Загрузка изображения: {}", originalImagePath);
 
         if (originalImagePath == null) {
-            LogUtil.logError("Путь к изображению введен неправильно.", new IOException("Путь к изображению введен неправильно."));
-            throw new IOException("Путь к изображению введен неправильно.");
+            IOException e = new IOException("Путь к изображению введен неправильно.");
+            LogUtil.logError("Путь к изображению введен неправильно.", e);
+            throw e;
         }
 
         // Проверка существования файла
         File inputFile = new File(originalImagePath);
         if (!inputFile.exists() || !inputFile.isFile()) {
-            LogUtil.logError("Файл не существует или не является файлом: " + originalImagePath, new IOException("Файл не существует или не является файлом: " + originalImagePath));
-            throw new IOException("Файл не существует или не является файлом: " + originalImagePath);
+            IOException e = new IOException("Файл не существует или не является файлом: " + originalImagePath);
+            LogUtil.logError("Файл не существует или не является файлом: " + originalImagePath, e);
+            throw e;
         }
 
         // Загрузка изображения
         BufferedImage image = ImageIO.read(inputFile);
         if (image == null) {
-            LogUtil.logError("Не удалось загрузить изображение: " + originalImagePath, new IOException("Не удалось загрузить изображение: " + originalImagePath));
-            throw new IOException("Не удалось загрузить изображение: " + originalImagePath);
+            IOException e = new IOException("Не удалось загрузить изображение: " + originalImagePath);
+            LogUtil.logError("Не удалось загрузить изображение: " + originalImagePath, e);
+            throw e;
         }
 
-        LogUtil.logInfo("Изображение успешно загружено: " + originalImagePath);
+        LogUtil.logInfo("Изображение успешно загружено: {}", originalImagePath);
         return image;
     }
 
+    /**
+     * Декодирование изображения из массива байтов, например из тела запроса {@link EmbedService}.
+     * Размер изображения проверяется по заголовку файла до декодирования пикселей. Если в пуле есть свободное
+     * изображение того же типа и размера, пиксели декодируются в него без выделения нового растра.
+     *
+     * @param data      массив с файлом изображения.
+     * @param offset    начало файла в массиве.
+     * @param length    длина файла.
+     * @param maxPixels наибольшее количество пикселей изображения.
+     * @param pool      пул изображений или {@code null}.
+     * @return декодированное изображение.
+     * @throws IOException если формат не распознан, изображение слишком велико или повреждено.
+     */
+    static BufferedImage decodeImage(byte[] data, int offset, int length, long maxPixels, BufferPool pool)
+            throws IOException {
+        return Metrics.time(Metrics.Stage.LOAD, () -> readImage(data, offset, length, maxPixels, pool),
+                image -> length);
+    }
+
+    /**
+     * Чтение изображения из массива байтов через поток в памяти, без временных файлов кэша ImageIO.
+     *
+     * @param data      массив с файлом изображения.
+     * @param offset    начало файла в массиве.
+     * @param length    длина файла.
+     * @param maxPixels наибольшее количество пикселей изображения.
+     * @param pool      пул изображений или {@code null}.
+     * @return декодированное изображение.
+     * @throws IOException если формат не распознан, изображение слишком велико или повреждено.
+     */
+    private static BufferedImage readImage(byte[] data, int offset, int length, long maxPixels, BufferPool pool)
+            throws IOException {
+        try (ImageInputStream input = new MemoryCacheImageInputStream(
+                new ByteArrayInputStream(data, offset, length))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                IOException e = new IOException("Формат изображения не распознан.");
+                LogUtil.logError("Формат изображения не распознан.", e);
+                throw e;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    IOException e = new IOException("Изображение " + width + "x" + height
+                            + " превышает допустимое количество пикселей: " + maxPixels);
+                    LogUtil.logError(e.getMessage(), e);
+                    throw e;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                ImageTypeSpecifier type = reader.getImageTypes(0).next();
+                BufferedImage pooled = pool == null || !BufferPool.isPoolable(type.getBufferedImageType()) ? null
+                        : pool.takeImage(type.getBufferedImageType(), width, height);
+                if (pooled != null) {
+                    param.setDestination(pooled);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Кодирование изображения в поток в памяти, без временных файлов кэша ImageIO.
+     *
+     * @param image  изображение.
+     * @param format формат изображения (например, "bmp", "png").
+     * @param out    поток для файла изображения.
+     * @throws IOException если для формата нет кодека или кодирование не удалось.
+     */
+    static void encodeImage(BufferedImage image, String format, BufferPool.Output out) throws IOException {
+        int start = out.size();
+        Metrics.time(Metrics.Stage.SAVE, () -> {
+            try (ImageOutputStream output = new MemoryCacheImageOutputStream(out)) {
+                if (!ImageIO.write(image, format, output)) {
+                    IOException e = new IOException("Нет кодека для формата изображения: " + format);
+                    LogUtil.logError(e.getMessage(), e);
+                    throw e;
+                }
+            }
+            return out;
+        }, result -> result.size() - start);
+    }
+
     /**
      * Сохранение изображения в указанный путь.
      *
@@ -53,53 +166,77 @@ public class ImageHandler {
      * @throws IOException если файл не может быть сохранен.
      */
     public static void saveImage(BufferedImage image, String outputPath, String format) throws IOException {
-        LogUtil.logInfo("Сохранение изображения в путь: " + outputPath + ", формат: " + format);
+        Metrics.time(Metrics.Stage.SAVE, () -> writeImage(image, outputPath, format), File::length);
+    }
+
+    /**
+     * Кодирование и запись изображения.
+     *
+     * @param image      изображение для сохранения.
+     * @param outputPath путь, куда будет сохранено изображение.
+     * @param format     формат изображения.
+     * @return записанный файл.
+     * @throws IOException если файл не может быть сохранен.
+     */
+    private static File writeImage(BufferedImage image, String outputPath, String format) throws IOException {
+        LogUtil.logInfo("Сохранение изображения в путь: {}, формат: {}", outputPath, format);
 
         if (image == null) {
-            LogUtil.logError("Изображение не может быть пустым.", new IOException("Изображение не может быть пустым."));
-            throw new IOException("Изображение не может быть пустым.");
+            IOException e = new IOException("Изображение не может быть пустым.");
+            LogUtil.logError("Изображение не может быть пустым.", e);
+            throw e;
         }
 
         if (outputPath == null) {
-            LogUtil.logError("Путь для сохранения изображения введен неправильно.", new IOException("Путь для сохранения изображения введен неправильно."));
-            throw new IOException("Путь для сохранения изображения введен неправильно.");
+            IOException e = new IOException("Путь для сохранения изображения введен неправильно.");
+            LogUtil.logError("Путь для сохранения изображения введен неправильно.", e);
+            throw e;
         }
 
         // Сохранение изображения
         File outputFile = new File(outputPath);
         ImageIO.write(image, format, outputFile);
 
-        LogUtil.logInfo("Изображение сохранено успешно: " + outputPath);
+        LogUtil.logInfo("Изображение сохранено успешно: {}", outputPath);
+        return outputFile;
     }
 
     /**
-     * Создание изображения, отображающее младшие биты синего канала каждого пикселя.
+     * Создание изображения, отображающее младшие биты синего канала каждого пикселя, в полном размере.
+     * Для отображения в окне используется {@link LsbPreview}, который строит плоскость сразу в размере окна.
      *
      * @param image исходное изображение, из которого извлекаются младшие биты.
      * @return новое изображение, где каждый пиксель белый (1) или черный (0) в зависимости от младшего бита.
      * @throws IOException если входное изображение равно null.
      */
     public static BufferedImage createLSBImage(BufferedImage image) throws IOException {
+        // Объём данных — прочитанные пиксели исходного изображения по 4 байта
+        return Metrics.time(Metrics.Stage.LSB_PREVIEW, () -> renderLSBImage(image),
+                lsbImage -> (long) lsbImage.getWidth() * lsbImage.getHeight() * Integer.BYTES);
+    }
+
+    /**
+     * Построение изображения младших битов синего канала.
+     *
+     * @param image исходное изображение.
+     * @return изображение младших битов.
+     * @throws IOException если входное изображение равно null.
+     */
+    private static BufferedImage renderLSBImage(BufferedImage image) throws IOException {
         LogUtil.logInfo("Создание изображения младших битов.");
 
         if (image == null) {
-            LogUtil.logError("Входное изображение не может быть пустым.", new IOException("Входное изображение не может быть пустым."));
-            throw new IOException("Входное изображение не может быть пустым.");
+            IOException e = new IOException("Входное изображение не может быть пустым.");
+            LogUtil.logError("Входное изображение не может быть пустым.", e);
+            throw e;
         }
 
         int width = image.getWidth();
         int height = image.getHeight();
         BufferedImage lsbImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int rgb = image.getRGB(x, y);
-                int blue = rgb & 0xFF; // Извлекаем синий канал
-                int lsb = blue & 0x1; // Извлекаем младший бит
-                int newColor = (lsb == 1) ? 0xFFFFFF : 0x000000; // Белый для 1, черный для 0
-                lsbImage.setRGB(x, y, newColor);
-            }
-        }
+        // Белый для 1, черный для 0; пиксели записываются прямо в массив растра
+        int[] pixels = ((DataBufferInt) lsbImage.getRaster().getDataBuffer()).getData();
+        LsbPreview.renderInto(image, Channel.BLUE, 0, width, height, pixels, 0xFFFFFF, 0x000000);
 
         LogUtil.logInfo("Изображение младших битов успешно создано.");
         return lsbImage;
@@ -0,0 +1,311 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Нагрузочный клиент для службы встраивания {@link EmbedService}.
+ *
+ * <pre>
+ * loadtest --image изображение [параметры]
+ * </pre>
+ *
+ * Заданное количество потоков отправляет запросы одновременно, каждый поток — следующий запрос сразу после
+ * ответа на предыдущий. Режим embed встраивает сообщение в изображение, extract извлекает сообщение
+ * из изображения, в которое оно встроено перед началом теста, roundtrip выполняет встраивание и извлечение
+ * подряд. В режимах extract и roundtrip извлечённое сообщение сравнивается с исходным.
+ * Первые запросы прогревают службу и клиент и не учитываются. В конце выводятся пропускная способность,
+ * процентили задержки и количество ответов по кодам.
+ */
+public class LoadTestCommand {
+
+    /**
+     * Описание параметров командной строки.
+     */
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Использование:",
+            "  loadtest --image <файл> [параметры]",
+            "Параметры:",
+            "  --url <адрес>          адрес службы (по умолчанию http://127.0.0.1:" + EmbedService.DEFAULT_PORT + ")",
+            "  --mode <режим>         embed, extract или roundtrip (по умолчанию embed)",
+            "  --message <файл>       сообщение (по умолчанию случайные байты)",
+            "  --message-bytes <n>    длина случайного сообщения (по умолчанию 1024)",
+            "  --format <формат>      формат изображения в ответе: png или bmp (по умолчанию png)",
+            "  --query <параметры>    дополнительные параметры запросов, например matrix=3&key=фраза",
+            "  --requests <n>         учитываемых запросов (по умолчанию 1000)",
+            "  --concurrency <n>      одновременных запросов (по умолчанию 8)",
+            "  --warmup <n>           неучитываемых запросов в начале (по умолчанию 50)");
+
+    /**
+     * Точка входа команды.
+     *
+     * @param args аргументы командной строки без имени команды.
+     */
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Выполнение команды.
+     *
+     * @param args аргументы командной строки без имени команды.
+     * @param out  поток для отчёта.
+     * @param err  поток для сообщений об ошибках.
+     * @return код завершения: 0 если все ответы успешны и сообщения совпали, 1 при ошибках,
+     * 2 при неверных аргументах.
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        String url = "http://127.0.0.1:" + EmbedService.DEFAULT_PORT;
+        String image = null;
+        String mode = "embed";
+        String messageFile = null;
+        int messageBytes = 1024;
+        String format = "png";
+        String extraQuery = "";
+        int requests = 1000;
+        int concurrency = 8;
+        int warmUp = 50;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                switch (option) {
+                    case "--url" -> url = BatchCommand.value(args, ++i, option);
+                    case "--image" -> image = BatchCommand.value(args, ++i, option);
+                    case "--mode" -> mode = BatchCommand.value(args, ++i, option);
+                    case "--message" -> messageFile = BatchCommand.value(args, ++i, option);
+                    case "--message-bytes" -> messageBytes = BatchCommand.positive(
+                            BatchCommand.value(args, ++i, option), option);
+                    case "--format" -> format = BatchCommand.value(args, ++i, option);
+                    case "--query" -> extraQuery = BatchCommand.value(args, ++i, option);
+                    case "--requests" -> requests = BatchCommand.positive(BatchCommand.value(args, ++i, option), option);
+                    case "--concurrency" -> concurrency = BatchCommand.positive(
+                            BatchCommand.value(args, ++i, option), option);
+                    case "--warmup" -> warmUp = BatchCommand.value(args, ++i, option).equals("0") ? 0
+                            : BatchCommand.positive(args[i], option);
+                    default -> throw new IllegalArgumentException("Неизвестный параметр: " + option);
+                }
+            }
+            if (image == null) {
+                throw new IllegalArgumentException("Укажите --image.");
+            }
+            if (!mode.equals("embed") && !mode.equals("extract") && !mode.equals("roundtrip")) {
+                throw new IllegalArgumentException("Неизвестный режим: " + mode);
+            }
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+
+        byte[] carrier;
+        byte[] message;
+        try {
+            carrier = Files.readAllBytes(Paths.get(image));
+            if (messageFile != null) {
+                message = Files.readAllBytes(Paths.get(messageFile));
+            } else {
+                message = new byte[messageBytes];
+                new Random(1).nextBytes(message);
+            }
+        } catch (IOException e) {
+            err.println("Не удалось прочитать файл: " + e.getMessage());
+            return 1;
+        }
+
+        String base = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        String suffix = extraQuery.isEmpty() ? "" : "&" + extraQuery;
+        Client client = new Client(base, "?format=" + format + suffix, extraQuery.isEmpty() ? "" : "?" + extraQuery,
+                carrier, message);
+        if (mode.equals("extract")) {
+            try {
+                client.prepareExtraction();
+            } catch (IOException e) {
+                err.println("Не удалось встроить сообщение перед тестом: " + e.getMessage());
+                return 1;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return 1;
+            }
+        }
+
+        long[] latencies = new long[requests];
+        Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        LongAdder mismatches = new LongAdder();
+        AtomicInteger next = new AtomicInteger();
+        int skipped = warmUp;
+        int total = warmUp + requests;
+        String testMode = mode;
+        AtomicLong start = new AtomicLong(System.nanoTime());
+
+        ExecutorService workers = newExecutor(concurrency);
+        try {
+            for (int t = 0; t < concurrency; t++) {
+                workers.execute(() -> {
+                    int index;
+                    while ((index = next.getAndIncrement()) < total) {
+                        if (index == skipped) {
+                            // Первый учитываемый запрос отмечает начало измерения
+                            start.set(System.nanoTime());
+                        }
+                        long begin = System.nanoTime();
+                        int status = client.call(testMode, mismatches);
+                        if (index >= skipped) {
+                            latencies[index - skipped] = System.nanoTime() - begin;
+                            statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+                        }
+                    }
+                });
+            }
+            workers.shutdown();
+            if (!workers.awaitTermination(1, TimeUnit.DAYS)) {
+                err.println("Нагрузочный тест не завершился.");
+                return 1;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.shutdownNow();
+            return 1;
+        }
+        long elapsed = System.nanoTime() - start.get();
+
+        long failed = 0;
+        Map<Integer, Long> byStatus = new TreeMap<>();
+        for (Map.Entry<Integer, LongAdder> entry : statuses.entrySet()) {
+            byStatus.put(entry.getKey(), entry.getValue().sum());
+            if (entry.getKey() != 200) {
+                failed += entry.getValue().sum();
+            }
+        }
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        out.printf(Locale.ROOT, "Режим %s: %d запросов за %.2f с (%.1f в секунду), одновременно: %d, ошибок: %d,"
+                        + " несовпадений: %d%n", mode, requests, elapsed / 1e9, requests / (elapsed / 1e9),
+                concurrency, failed, mismatches.sum());
+        out.printf(Locale.ROOT, "Задержка, мс: p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, макс. %.2f%n",
+                percentile(sorted, 0.5), percentile(sorted, 0.9), percentile(sorted, 0.99),
+                percentile(sorted, 0.999), sorted[sorted.length - 1] / 1e6);
+        StringBuilder codes = new StringBuilder("Ответы:");
+        byStatus.forEach((status, count) -> codes.append(' ')
+                .append(status < 0 ? "нет ответа" : String.valueOf(status)).append(" — ").append(count));
+        out.println(codes);
+        return failed == 0 && mismatches.sum() == 0 ? 0 : 1;
+    }
+
+    /**
+     * Процентиль задержки.
+     *
+     * @param sorted задержки в наносекундах по возрастанию.
+     * @param p      доля от 0 до 1.
+     * @return задержка в миллисекундах.
+     */
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "loadtest-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Запросы к службе с заранее подготовленными телами.
+     */
+    private static final class Client {
+        private final HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        private final URI embedUri;
+        private final URI extractUri;
+        private final byte[] embedBody;
+        private final byte[] message;
+        private byte[] embedded;
+
+        Client(String base, String embedQuery, String extractQuery, byte[] carrier, byte[] message) {
+            this.embedUri = URI.create(base + "/embed" + embedQuery + "&imageLength=" + carrier.length);
+            this.extractUri = URI.create(base + "/extract" + extractQuery);
+            this.embedBody = Arrays.copyOf(carrier, carrier.length + message.length);
+            System.arraycopy(message, 0, embedBody, carrier.length, message.length);
+            this.message = message;
+        }
+
+        /**
+         * Встраивание сообщения в изображение для режима извлечения.
+         *
+         * @throws IOException          если служба не ответила или вернула ошибку.
+         * @throws InterruptedException если поток был прерван.
+         */
+        void prepareExtraction() throws IOException, InterruptedException {
+            HttpResponse<byte[]> response = post(embedUri, embedBody);
+            if (response.statusCode() != 200) {
+                throw new IOException("код ответа " + response.statusCode() + ": "
+                        + new String(response.body(), StandardCharsets.UTF_8));
+            }
+            embedded = response.body();
+        }
+
+        /**
+         * Выполнение одного запроса теста.
+         *
+         * @param mode       режим.
+         * @param mismatches счётчик несовпадений извлечённого сообщения с исходным.
+         * @return код последнего ответа или -1, если служба не ответила.
+         */
+        int call(String mode, LongAdder mismatches) {
+            try {
+                byte[] image = embedded;
+                if (!mode.equals("extract")) {
+                    HttpResponse<byte[]> response = post(embedUri, embedBody);
+                    if (response.statusCode() != 200 || mode.equals("embed")) {
+                        return response.statusCode();
+                    }
+                    image = response.body();
+                }
+                HttpResponse<byte[]> response = post(extractUri, image);
+                if (response.statusCode() == 200 && !Arrays.equals(response.body(), message)) {
+                    mismatches.increment();
+                }
+                return response.statusCode();
+            } catch (IOException e) {
+                LogUtil.logWarning("Запрос не выполнен: {}", e.getMessage());
+                return -1;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+
+        private HttpResponse<byte[]> post(URI uri, byte[] body) throws IOException, InterruptedException {
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                    .build();
+            return http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        }
+    }
+}
@@ -1,17 +1,30 @@
 package com.example.demo;
 
+import java.util.function.Supplier;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 /**
  * Класс для логирования сообщений с использованием библиотеки Log4j.
  * Предоставляет методы для логирования информационных сообщений, предупреждений и ошибок.
+ * Методы с шаблоном "{}" и с {@link Supplier} формируют строку только при включённом уровне,
+ * поэтому при отключённом уровне вызов не выделяет память, кроме упаковки примитивных аргументов.
+ * Код, обрабатывающий отдельные пиксели или биты, не логирует ничего.
  */
 public class LogUtil {
 
     // Инициализация логгера
     private static final Logger logger = LogManager.getLogger(LogUtil.class);
 
+    /**
+     * Проверка, включён ли уровень INFO. Используется, когда подготовка аргументов сама по себе затратна.
+     *
+     * @return {@code true}, если информационные сообщения записываются.
+     */
+    public static boolean isInfoEnabled() {
+        return logger.isInfoEnabled();
+    }
+
     /**
      * Логирование информационного сообщения.
      *
@@ -22,6 +35,38 @@ public class LogUtil {
         logger.info(message);
     }
 
+    /**
+     * Логирование информационного сообщения с одним параметром.
+     *
+     * @param pattern шаблон сообщения, "{}" заменяется значением параметра.
+     * @param arg     параметр.
+     */
+    public static void logInfo(String pattern, Object arg) {
+        logger.info(pattern, arg);
+    }
+
+    /**
+     * Логирование информационного сообщения с двумя параметрами.
+     *
+     * @param pattern шаблон сообщения, каждое "{}" заменяется значением очередного параметра.
+     * @param arg1    первый параметр.
+     * @param arg2    второй параметр.
+     */
+    public static void logInfo(String pattern, Object arg1, Object arg2) {
+        logger.info(pattern, arg1, arg2);
+    }
+
+    /**
+     * Логирование информационного сообщения, которое формируется только при включённом уровне INFO.
+     *
+     * @param message поставщик сообщения.
+     */
+    public static void logInfo(Supplier<String> message) {
+        if (logger.isInfoEnabled()) {
+            logger.info(message.get());
+        }
+    }
+
     /**
      * Логирование предупреждения.
      *
@@ -32,6 +77,16 @@ public class LogUtil {
         logger.warn(message);
     }
 
+    /**
+     * Логирование предупреждения с одним параметром.
+     *
+     * @param pattern шаблон сообщения, "{}" заменяется значением параметра.
+     * @param arg     параметр.
+     */
+    public static void logWarning(String pattern, Object arg) {
+        logger.warn(pattern, arg);
+    }
+
     /**
      * Логирование ошибки с указанием исключения.
      *
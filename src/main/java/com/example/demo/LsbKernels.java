@@ -0,0 +1,151 @@
+package com.example.demo;
+
+/**
+ * Ядра записи, чтения и отображения младшего бита над массивами отсчётов.
+ * Ядра обрабатывают самый частый случай — один бит на отсчёт в подряд идущих пикселях —
+ * и вызываются из {@link SampleRaster} и {@link LsbPreview} вместо попиксельного цикла.
+ * Этот класс содержит скалярную реализацию. При запуске, если в загрузочном слое есть модуль
+ * {@code jdk.incubator.vector} (JVM запущена с {@code --add-modules jdk.incubator.vector}),
+ * выбирается векторная реализация {@code VectorLsbKernels}; иначе используется скалярная.
+ * Результат обеих реализаций совпадает бит в бит.
+ */
+class LsbKernels {
+
+    /**
+     * Имя модуля Vector API.
+     */
+    static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    /**
+     * Ядра, выбранные при запуске.
+     */
+    private static final LsbKernels SELECTED = select();
+
+    LsbKernels() {
+    }
+
+    /**
+     * Получение ядер, выбранных при запуске.
+     *
+     * @return векторные ядра, если модуль Vector API доступен, иначе скалярные.
+     */
+    static LsbKernels get() {
+        return SELECTED;
+    }
+
+    /**
+     * Выбор реализации. Векторный класс загружается по имени, чтобы без модуля Vector API
+     * не возникало ошибки связывания при загрузке этого класса.
+     *
+     * @return выбранные ядра.
+     */
+    private static LsbKernels select() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            LogUtil.logInfo("Модуль {} недоступен, используются скалярные ядра битовых плоскостей.", VECTOR_MODULE);
+            return new LsbKernels();
+        }
+        try {
+            LsbKernels kernels = (LsbKernels) Class.forName(LsbKernels.class.getPackageName() + ".VectorLsbKernels")
+                    .getDeclaredConstructor().newInstance();
+            LogUtil.logInfo("Ядра битовых плоскостей: {}", kernels.describe());
+            return kernels;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            LogUtil.logWarning("Векторные ядра недоступны, используются скалярные: {}", String.valueOf(e));
+            return new LsbKernels();
+        }
+    }
+
+    /**
+     * Описание реализации для журнала.
+     *
+     * @return описание.
+     */
+    String describe() {
+        return "скалярные";
+    }
+
+    /**
+     * Запись битов в младший бит байтов, расположенных с заданным шагом: по одному биту на байт,
+     * первый бит — в первый байт.
+     *
+     * @param data   массив отсчётов.
+     * @param index  индекс первого байта.
+     * @param count  количество байтов.
+     * @param stride шаг между байтами, 1 для подряд идущих байтов.
+     * @param bits   источник битов.
+     */
+    void writeBytes(byte[] data, int index, int count, int stride, BitReader bits) {
+        for (int i = 0; i < count; i++, index += stride) {
+            data[index] = (byte) ((data[index] & ~1) | bits.read(1));
+        }
+    }
+
+    /**
+     * Чтение младших битов байтов, расположенных с заданным шагом.
+     *
+     * @param data   массив отсчётов.
+     * @param index  индекс первого байта.
+     * @param count  количество байтов.
+     * @param stride шаг между байтами, 1 для подряд идущих байтов.
+     * @param bits   приёмник битов.
+     */
+    void readBytes(byte[] data, int index, int count, int stride, BitWriter bits) {
+        for (int i = 0; i < count; i++, index += stride) {
+            bits.write(data[index] & 1, 1);
+        }
+    }
+
+    /**
+     * Запись битов в один разряд подряд идущих упакованных пикселей: по одному биту на пиксель.
+     *
+     * @param data     массив пикселей.
+     * @param index    индекс первого пикселя.
+     * @param count    количество пикселей.
+     * @param shift    номер разряда.
+     * @param keepMask маска сохраняемых разрядов пикселя, без разряда {@code shift}.
+     * @param bits     источник битов.
+     */
+    void writeInts(int[] data, int index, int count, int shift, int keepMask, BitReader bits) {
+        for (int end = index + count; index < end; index++) {
+            data[index] = (data[index] & keepMask) | (bits.read(1) << shift);
+        }
+    }
+
+    /**
+     * Чтение одного разряда подряд идущих упакованных пикселей.
+     *
+     * @param data  массив пикселей.
+     * @param index индекс первого пикселя.
+     * @param count количество пикселей.
+     * @param shift номер разряда.
+     * @param bits  приёмник битов.
+     */
+    void readInts(int[] data, int index, int count, int shift, BitWriter bits) {
+        for (int end = index + count; index < end; index++) {
+            bits.write((data[index] >>> shift) & 1, 1);
+        }
+    }
+
+    /**
+     * Построение строки битовой плоскости из упакованных пикселей.
+     *
+     * @param data    массив пикселей.
+     * @param row     индекс первого пикселя строки.
+     * @param columns смещения выбираемых пикселей от начала строки или {@code null}, если выбираются все пиксели
+     *                строки подряд.
+     * @param width   количество пикселей результата.
+     * @param opaque  разряды, добавляемые к пикселю перед проверкой (непрозрачный альфа-канал TYPE_INT_RGB).
+     * @param shift   номер проверяемого разряда.
+     * @param target  массив результата.
+     * @param out     индекс первого пикселя результата.
+     * @param one     значение пикселя с единичным битом.
+     * @param zero    значение пикселя с нулевым битом.
+     */
+    void renderInts(int[] data, int row, int[] columns, int width, int opaque, int shift, int[] target, int out,
+                    int one, int zero) {
+        for (int x = 0; x < width; x++) {
+            int pixel = data[row + (columns != null ? columns[x] : x)];
+            target[out + x] = (((pixel | opaque) >>> shift) & 1) != 0 ? one : zero;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.demo;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Изображение битовой плоскости: выбранный бит выбранного канала каждого пикселя, 1 — белый, 0 — чёрный.
+ * Плоскость строится сразу в размере отображения: из исходного изображения читаются только строки и столбцы,
+ * попадающие в уменьшенное изображение (выборка ближайшего пикселя), поэтому время построения зависит
+ * от размера окна, а не от размера изображения.
+ * Для изображений TYPE_INT_RGB, TYPE_INT_ARGB, TYPE_3BYTE_BGR и TYPE_4BYTE_ABGR отсчёты читаются прямо
+ * из массива растра, для остальных типов — построчно через {@code getRGB}. Результат в обоих случаях
+ * совпадает с чтением канала из значения {@code getRGB}. Строки упакованных пикселей строятся ядром
+ * {@link LsbKernels}, векторным при наличии модуля Vector API.
+ * Пиксели хранятся в формате ARGB, который принимают {@code PixelWriter} JavaFX и {@link BufferedImage}.
+ */
+public final class LsbPreview {
+
+    /**
+     * Цвет пикселя с единичным битом.
+     */
+    static final int ONE = 0xFFFFFFFF;
+
+    /**
+     * Цвет пикселя с нулевым битом.
+     */
+    static final int ZERO = 0xFF000000;
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+
+    private LsbPreview(int width, int height, int[] pixels) {
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    /**
+     * Построение битовой плоскости, вписанной в заданный размер с сохранением пропорций.
+     * Изображение не увеличивается: если оно меньше заданного размера, плоскость строится в исходном размере.
+     *
+     * @param image     исходное изображение.
+     * @param channel   канал.
+     * @param bit       номер бита канала, 0 — младший.
+     * @param maxWidth  наибольшая ширина результата.
+     * @param maxHeight наибольшая высота результата.
+     * @return битовая плоскость.
+     * @throws IOException если изображение равно null, номер бита вне диапазона 0..7 или размер не положителен.
+     */
+    public static LsbPreview render(BufferedImage image, Channel channel, int bit, int maxWidth, int maxHeight)
+            throws IOException {
+        if (image == null) {
+            IOException e = new IOException("Входное изображение не может быть пустым.");
+            LogUtil.logError("Входное изображение не может быть пустым.", e);
+            throw e;
+        }
+        if (bit < 0 || bit > 7 || maxWidth <= 0 || maxHeight <= 0) {
+            IOException e = new IOException("Некорректные параметры плоскости: бит " + bit + ", размер "
+                    + maxWidth + "x" + maxHeight);
+            LogUtil.logError(e.getMessage(), e);
+            throw e;
+        }
+        double scale = Math.min(1.0, Math.min((double) maxWidth / image.getWidth(),
+                (double) maxHeight / image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        int[] pixels = new int[width * height];
+        long start = System.nanoTime();
+        renderInto(image, channel, bit, width, height, pixels, ONE, ZERO);
+        Metrics.record(Metrics.Stage.LSB_PREVIEW, start, (long) width * height * Integer.BYTES);
+        return new LsbPreview(width, height, pixels);
+    }
+
+    /**
+     * Построение битовой плоскости заданного размера в массив.
+     *
+     * @param image   исходное изображение.
+     * @param channel канал.
+     * @param bit     номер бита канала.
+     * @param width   ширина результата, не больше ширины изображения.
+     * @param height  высота результата, не больше высоты изображения.
+     * @param target  массив результата размером не меньше {@code width * height}, строки идут подряд.
+     * @param one     значение пикселя с единичным битом.
+     * @param zero    значение пикселя с нулевым битом.
+     */
+    static void renderInto(BufferedImage image, Channel channel, int bit, int width, int height, int[] target,
+                           int one, int zero) {
+        int sourceWidth = image.getWidth();
+        int sourceHeight = image.getHeight();
+        int[] columns = new int[width];
+        for (int x = 0; x < width; x++) {
+            columns[x] = (int) ((long) x * sourceWidth / width);
+        }
+        WritableRaster raster = image.getRaster();
+        int type = image.getType();
+
+        if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+                && raster.getDataBuffer() instanceof DataBufferInt
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+            int scanline = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+            int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+            int origin = raster.getDataBuffer().getOffset() - raster.getSampleModelTranslateY() * scanline
+                    - raster.getSampleModelTranslateX();
+            // В TYPE_INT_RGB старший байт не используется, а getRGB возвращает для него непрозрачный альфа-канал
+            int opaque = type == BufferedImage.TYPE_INT_RGB ? 0xFF000000 : 0;
+            int shift = channel.ordinal() * 8 + bit;
+            LsbKernels kernels = LsbKernels.get();
+            // Без уменьшения пиксели строки выбираются подряд, и ядро читает их без таблицы столбцов
+            int[] selected = width == sourceWidth ? null : columns;
+            for (int y = 0; y < height; y++) {
+                int row = origin + (int) ((long) y * sourceHeight / height) * scanline;
+                kernels.renderInts(data, row, selected, width, opaque, shift, target, y * width, one, zero);
+            }
+            return;
+        }
+
+        if ((type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_4BYTE_ABGR)
+                && raster.getDataBuffer() instanceof DataBufferByte
+                && raster.getSampleModel() instanceof ComponentSampleModel) {
+            ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+            // Полосы растра идут в порядке R, G, B, A, а константы Channel — в порядке B, G, R, A
+            int band = channel == Channel.ALPHA ? 3 : 2 - channel.ordinal();
+            if (band >= sampleModel.getNumBands()) {
+                // Канала нет в изображении: getRGB возвращает для альфа-канала 255, все биты равны 1
+                Arrays.fill(target, 0, width * height, one);
+                return;
+            }
+            int scanline = sampleModel.getScanlineStride();
+            int pixelStride = sampleModel.getPixelStride();
+            byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+            int origin = raster.getDataBuffer().getOffset() - raster.getSampleModelTranslateY() * scanline
+                    - raster.getSampleModelTranslateX() * pixelStride + sampleModel.getBandOffsets()[band];
+            for (int x = 0; x < width; x++) {
+                columns[x] *= pixelStride;
+            }
+            for (int y = 0; y < height; y++) {
+                int row = origin + (int) ((long) y * sourceHeight / height) * scanline;
+                int out = y * width;
+                for (int x = 0; x < width; x++) {
+                    target[out + x] = ((data[row + columns[x]] >>> bit) & 1) != 0 ? one : zero;
+                }
+            }
+            return;
+        }
+
+        int shift = channel.ordinal() * 8 + bit;
+        int[] row = new int[sourceWidth];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, (int) ((long) y * sourceHeight / height), sourceWidth, 1, row, 0, sourceWidth);
+            int out = y * width;
+            for (int x = 0; x < width; x++) {
+                target[out + x] = ((row[columns[x]] >>> shift) & 1) != 0 ? one : zero;
+            }
+        }
+    }
+
+    /**
+     * Получение ширины плоскости.
+     *
+     * @return ширина в пикселях.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Получение высоты плоскости.
+     *
+     * @return высота в пикселях.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Получение пикселей плоскости. Массив не копируется.
+     *
+     * @return пиксели в формате ARGB, строки идут подряд.
+     */
+    public int[] getPixels() {
+        return pixels;
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.demo;
+
+/**
+ * Накопленные статистики младших битов одного канала в области изображения для трёх методов стегоанализа:
+ * <ul>
+ *     <li>хи-квадрат (Westfeld, Pfitzmann): встраивание выравнивает частоты значений 2k и 2k + 1;</li>
+ *     <li>RS-анализ (Fridrich, Goljan, Du): доли регулярных и сингулярных групп из четырёх соседних пикселей
+ *     при инверсии младшего бита и сдвинутой инверсии по-разному меняются с ростом доли сообщения;</li>
+ *     <li>анализ пар отсчётов, SPA (Dumitrescu, Wu, Wang): соотношение соседних пар отсчётов,
+ *     различающихся в младшем бите.</li>
+ * </ul>
+ * Все статистики собираются за один проход по строкам области и складываются, поэтому области обрабатываются
+ * независимо, а оценка для всего изображения получается объединением оценок областей.
+ * RS-анализ и SPA оценивают долю отсчётов канала, занятых сообщением (примерно половина из них изменена),
+ * хи-квадрат — вероятность того, что частоты пар значений выровнены встраиванием.
+ */
+final class LsbStatistics {
+
+    /**
+     * Количество пикселей в группе RS-анализа.
+     */
+    static final int GROUP = 4;
+
+    /**
+     * Наименьшее ожидаемое количество значений в паре 2k, 2k + 1, при котором пара учитывается в хи-квадрат.
+     */
+    private static final double MIN_EXPECTED = 5;
+
+    /**
+     * Гистограмма младших восьми битов значений.
+     */
+    private final long[] histogram = new long[256];
+
+    /**
+     * Количество групп RS-анализа: регулярные и сингулярные при инверсии (R_M, S_M) и при сдвинутой инверсии
+     * (R_-M, S_-M), затем те же количества для значений с инвертированным младшим битом.
+     */
+    private final long[] groups = new long[8];
+
+    /**
+     * Количество соседних пар отсчётов.
+     */
+    private long pairs;
+
+    /**
+     * Пары (u, v), где v чётно и u &lt; v или v нечётно и u &gt; v.
+     */
+    private long pairsX;
+
+    /**
+     * Пары (u, v), где v чётно и u &gt; v или v нечётно и u &lt; v.
+     */
+    private long pairsY;
+
+    /**
+     * Пары, значения которых различаются не более чем младшим битом.
+     */
+    private long pairsK;
+
+    /**
+     * Учёт значений одной строки области. Сравнения соседних значений вычисляются без ветвлений:
+     * в шумных изображениях их исход непредсказуем, и ошибки предсказания переходов занимали бы
+     * большую часть времени прохода.
+     *
+     * @param samples значения канала от 0 до 255.
+     * @param count   количество значений.
+     */
+    void addRow(int[] samples, int count) {
+        for (int i = 0; i < count; i++) {
+            histogram[samples[i]]++;
+        }
+        long x = 0;
+        long y = 0;
+        long k = 0;
+        for (int i = 1; i < count; i++) {
+            int u = samples[i - 1];
+            int v = samples[i];
+            int less = (u - v) >>> 31;
+            int greater = (v - u) >>> 31;
+            int odd = v & 1;
+            x += (less & (odd ^ 1)) | (greater & odd);
+            y += (less & odd) | (greater & (odd ^ 1));
+            // Значения различаются не более чем младшим битом, если (u ^ v) >> 1 равно нулю
+            k += (((u ^ v) >> 1) - 1) >>> 31;
+        }
+        pairsX += x;
+        pairsY += y;
+        pairsK += k;
+        pairs += Math.max(0, count - 1);
+        for (int i = 0; i + GROUP <= count; i += GROUP) {
+            int a = samples[i];
+            int b = samples[i + 1];
+            int c = samples[i + 2];
+            int d = samples[i + 3];
+            addGroup(a, b, c, d, 0);
+            addGroup(a ^ 1, b ^ 1, c ^ 1, d ^ 1, 4);
+        }
+    }
+
+    /**
+     * Классификация группы с маской (0, 1, 1, 0): инверсия F1 (2k ↔ 2k + 1) и сдвинутая инверсия
+     * F-1 (2k - 1 ↔ 2k) применяются ко второму и третьему пикселю, мерой гладкости служит
+     * сумма модулей разностей соседних значений. Группа регулярна, если преобразование увеличивает сумму,
+     * и сингулярна, если уменьшает.
+     *
+     * @param a     первое значение.
+     * @param b     второе значение.
+     * @param c     третье значение.
+     * @param d     четвёртое значение.
+     * @param first индекс первого счётчика в {@link #groups}.
+     */
+    private void addGroup(int a, int b, int c, int d, int first) {
+        int smoothness = Math.abs(b - a) + Math.abs(c - b) + Math.abs(d - c);
+        int fb = b ^ 1;
+        int fc = c ^ 1;
+        int flipped = Math.abs(fb - a) + Math.abs(fc - fb) + Math.abs(d - fc);
+        // F-1 отображает чётное значение в меньшее на единицу, нечётное — в большее
+        int sb = b - 1 + ((b & 1) << 1);
+        int sc = c - 1 + ((c & 1) << 1);
+        int shifted = Math.abs(sb - a) + Math.abs(sc - sb) + Math.abs(d - sc);
+        groups[first] += (smoothness - flipped) >>> 31;
+        groups[first + 1] += (flipped - smoothness) >>> 31;
+        groups[first + 2] += (smoothness - shifted) >>> 31;
+        groups[first + 3] += (shifted - smoothness) >>> 31;
+    }
+
+    /**
+     * Добавление статистик другой области.
+     *
+     * @param other статистики области.
+     */
+    void merge(LsbStatistics other) {
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] += other.histogram[i];
+        }
+        for (int i = 0; i < groups.length; i++) {
+            groups[i] += other.groups[i];
+        }
+        pairs += other.pairs;
+        pairsX += other.pairsX;
+        pairsY += other.pairsY;
+        pairsK += other.pairsK;
+    }
+
+    /**
+     * Вероятность встраивания по критерию хи-квадрат: вероятность получить наблюдаемое или большее отклонение
+     * частот значений 2k от средних частот пар 2k, 2k + 1, если частоты в парах выровнены.
+     *
+     * @return вероятность от 0 до 1, 0 если для оценки недостаточно данных.
+     */
+    double chiSquareProbability() {
+        double chiSquare = 0;
+        int categories = 0;
+        for (int k = 0; k < histogram.length; k += 2) {
+            double expected = (histogram[k] + histogram[k + 1]) / 2.0;
+            if (expected < MIN_EXPECTED) {
+                continue;
+            }
+            double difference = histogram[k] - expected;
+            chiSquare += difference * difference / expected;
+            categories++;
+        }
+        if (categories < 2) {
+            return 0;
+        }
+        return upperGamma((categories - 1) / 2.0, chiSquare / 2);
+    }
+
+    /**
+     * Оценка доли отсчётов, занятых сообщением, по RS-анализу.
+     *
+     * @return доля от 0 до 1, 0 если для оценки недостаточно данных.
+     */
+    double rsRate() {
+        double d0 = groups[0] - groups[1];
+        double dn0 = groups[2] - groups[3];
+        double d1 = groups[4] - groups[5];
+        double dn1 = groups[6] - groups[7];
+        double a = 2 * (d1 + d0);
+        double b = dn0 - dn1 - d1 - 3 * d0;
+        double c = d0 - dn0;
+        double x;
+        if (a == 0) {
+            if (b == 0) {
+                return 0;
+            }
+            x = -c / b;
+        } else {
+            double discriminant = Math.max(0, b * b - 4 * a * c);
+            double root = Math.sqrt(discriminant);
+            double first = (-b + root) / (2 * a);
+            double second = (-b - root) / (2 * a);
+            x = Math.abs(first) < Math.abs(second) ? first : second;
+        }
+        return clamp(x / (x - 0.5));
+    }
+
+    /**
+     * Оценка доли отсчётов, занятых сообщением, по анализу пар отсчётов.
+     * Решение уравнения SPA равно доле изменённых отсчётов, то есть половине доли сообщения.
+     *
+     * @return доля от 0 до 1, 0 если для оценки недостаточно данных.
+     */
+    double spaRate() {
+        if (pairsK == 0) {
+            return 0;
+        }
+        double a = 2.0 * pairsK;
+        double b = 2.0 * (2 * pairsX - pairs);
+        double c = pairsY - pairsX;
+        // Отрицательный дискриминант получается при полном заполнении, тогда берётся вершина параболы
+        double root = Math.sqrt(Math.max(0, b * b - 4 * a * c));
+        double changed = Math.min((-b + root) / (2 * a), (-b - root) / (2 * a));
+        return clamp(2 * changed);
+    }
+
+    /**
+     * Ограничение оценки диапазоном от 0 до 1.
+     *
+     * @param rate оценка.
+     * @return оценка в диапазоне [0, 1], 0 вместо NaN.
+     */
+    private static double clamp(double rate) {
+        if (Double.isNaN(rate)) {
+            return 0;
+        }
+        return Math.max(0, Math.min(1, rate));
+    }
+
+    /**
+     * Регуляризованная верхняя неполная гамма-функция Q(a, x): ряд при x &lt; a + 1, иначе цепная дробь.
+     *
+     * @param a параметр.
+     * @param x аргумент.
+     * @return значение Q(a, x).
+     */
+    static double upperGamma(double a, double x) {
+        if (x <= 0) {
+            return 1;
+        }
+        double logPrefix = a * Math.log(x) - x - logGamma(a);
+        if (x < a + 1) {
+            double term = 1 / a;
+            double sum = term;
+            for (int n = 1; n < 1000 && Math.abs(term) > Math.abs(sum) * 1e-15; n++) {
+                term *= x / (a + n);
+                sum += term;
+            }
+            return Math.max(0, 1 - sum * Math.exp(logPrefix));
+        }
+        // Цепная дробь по модифицированному методу Ленца
+        double tiny = 1e-300;
+        double b = x + 1 - a;
+        double c = 1 / tiny;
+        double d = 1 / b;
+        double h = d;
+        for (int n = 1; n < 1000; n++) {
+            double an = -n * (n - a);
+            b += 2;
+            d = an * d + b;
+            d = Math.abs(d) < tiny ? tiny : d;
+            c = b + an / c;
+            c = Math.abs(c) < tiny ? tiny : c;
+            d = 1 / d;
+            double delta = d * c;
+            h *= delta;
+            if (Math.abs(delta - 1) < 1e-15) {
+                break;
+            }
+        }
+        return Math.min(1, Math.exp(logPrefix) * h);
+    }
+
+    /**
+     * Натуральный логарифм гамма-функции (приближение Ланцоша).
+     *
+     * @param x положительный аргумент.
+     * @return ln Γ(x).
+     */
+    private static double logGamma(double x) {
+        double[] coefficients = {76.18009172947146, -86.50532032941677, 24.01409824083091,
+                -1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5};
+        double y = x;
+        double tmp = x + 5.5;
+        tmp -= (x + 0.5) * Math.log(tmp);
+        double series = 1.000000000190015;
+        for (double coefficient : coefficients) {
+            series += coefficient / ++y;
+        }
+        return -tmp + Math.log(2.5066282746310005 * series / x);
+    }
+}
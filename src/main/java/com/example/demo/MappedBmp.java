@@ -0,0 +1,475 @@
+package com.example.demo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Несжатый файл BMP, массив пикселей которого отображён в память.
+ * Сообщение встраивается и извлекается непосредственно в отображённом файле без создания {@code BufferedImage}
+ * и без кодирования через {@code ImageIO}: операционная система подгружает только затронутые страницы файла,
+ * поэтому время встраивания зависит от длины сообщения, а не от размера изображения,
+ * и изображение может превышать размер кучи.
+ * Поддерживаются 24- и 32-битные изображения без сжатия (BI_RGB) с массивом пикселей до 2 ГБ.
+ * Для 24-битных изображений результат побайтово совпадает с встраиванием в изображение, прочитанное
+ * через {@link ImageHandler} и сохранённое в BMP. 32-битное изображение {@code ImageIO} декодирует в другую
+ * раскладку и сохраняет 24-битным, поэтому для него файлы двух способов различаются.
+ */
+public final class MappedBmp implements Closeable {
+
+    /**
+     * Размер заголовка файла BITMAPFILEHEADER.
+     */
+    private static final int FILE_HEADER_BYTES = 14;
+
+    /**
+     * Наименьший поддерживаемый размер заголовка изображения (BITMAPINFOHEADER).
+     */
+    private static final int INFO_HEADER_BYTES = 40;
+
+    /**
+     * Тип сжатия BI_RGB: пиксели хранятся без сжатия.
+     */
+    private static final int BI_RGB = 0;
+
+    /**
+     * Смещения каналов в пикселе BMP в порядке {@link Channel}: байты идут в порядке B, G, R,
+     * четвёртый байт 32-битного пикселя не используется.
+     */
+    private static final int[] CHANNEL_OFFSETS = {0, 1, 2, -1};
+
+    /**
+     * Канал открытого файла.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Отображённый массив пикселей.
+     */
+    private final MappedByteBuffer pixels;
+
+    /**
+     * Доступ к отсчётам отображённого массива пикселей.
+     */
+    private final SampleRaster raster;
+
+    /**
+     * Открыт ли файл для записи.
+     */
+    private final boolean writable;
+
+    private MappedBmp(FileChannel channel, MappedByteBuffer pixels, SampleRaster raster, boolean writable) {
+        this.channel = channel;
+        this.pixels = pixels;
+        this.raster = raster;
+        this.writable = writable;
+    }
+
+    /**
+     * Проверка, можно ли обработать файл через отображение в память. Читается только заголовок файла.
+     *
+     * @param path путь к файлу.
+     * @return {@code true}, если файл является поддерживаемым несжатым BMP.
+     */
+    public static boolean isSupported(String path) {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            parse(channel, path);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Открытие файла BMP с отображением массива пикселей в память.
+     *
+     * @param path     путь к файлу.
+     * @param writable открыть файл для встраивания.
+     * @return открытый файл.
+     * @throws IOException если файл не удалось открыть или формат BMP не поддерживается.
+     */
+    public static MappedBmp open(String path, boolean writable) throws IOException {
+        LogUtil.logInfo("Отображение BMP в память: {}", path);
+        if (path == null) {
+            IOException e = new IOException("Путь к изображению введен неправильно.");
+            LogUtil.logError("Путь к изображению введен неправильно.", e);
+            throw e;
+        }
+        FileChannel channel = writable
+                ? FileChannel.open(Paths.get(path), StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        try {
+            Layout layout;
+            try {
+                layout = parse(channel, path);
+            } catch (IOException e) {
+                LogUtil.logError(e.getMessage(), e);
+                throw e;
+            }
+            MappedByteBuffer pixels = channel.map(writable ? FileChannel.MapMode.READ_WRITE
+                    : FileChannel.MapMode.READ_ONLY, layout.pixelOffset, layout.pixelBytes);
+            // Строки BMP по умолчанию хранятся снизу вверх: строка 0 изображения находится в конце массива
+            int origin = layout.topDown ? 0 : (layout.height - 1) * layout.stride;
+            int scanline = layout.topDown ? layout.stride : -layout.stride;
+            SampleRaster raster = SampleRaster.wrap(pixels, layout.width, layout.height, origin, scanline,
+                    layout.bytesPerPixel, CHANNEL_OFFSETS);
+            return new MappedBmp(channel, pixels, raster, writable);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Копирование файла BMP и открытие копии для встраивания.
+     * Копирование выполняется средствами файловой системы, содержимое файла не загружается в кучу.
+     *
+     * @param source путь к исходному изображению.
+     * @param target путь к копии, существующий файл заменяется.
+     * @return копия, открытая для записи.
+     * @throws IOException если файл не удалось скопировать, путь к копии указывает на исходный файл
+     *                     или формат BMP не поддерживается.
+     */
+    public static MappedBmp copyOf(String source, String target) throws IOException {
+        if (source == null || target == null) {
+            IOException e = new IOException("Путь к изображению введен неправильно.");
+            LogUtil.logError("Путь к изображению введен неправильно.", e);
+            throw e;
+        }
+        Path from = Paths.get(source);
+        Path to = Paths.get(target);
+        // Копирование и отображение заменяют загрузку изображения и учитываются как стадия загрузки
+        return Metrics.time(Metrics.Stage.LOAD, () -> {
+            // Встраивание без копии изменило бы исходный файл, а при ошибке вызывающий код удалил бы его
+            if (Files.exists(to) && Files.isSameFile(from, to)) {
+                IOException e = new IOException("Копия совпадает с исходным файлом: " + target);
+                LogUtil.logError(e.getMessage(), e);
+                throw e;
+            }
+            Files.copy(from, to, StandardCopyOption.REPLACE_EXISTING);
+            return open(target, true);
+        }, bmp -> bmp.pixels.capacity());
+    }
+
+    /**
+     * Получение ширины изображения.
+     *
+     * @return ширина в пикселях.
+     */
+    public int getWidth() {
+        return raster.width;
+    }
+
+    /**
+     * Получение высоты изображения.
+     *
+     * @return высота в пикселях.
+     */
+    public int getHeight() {
+        return raster.height;
+    }
+
+    /**
+     * Вычисление ёмкости изображения для заданных параметров встраивания.
+     *
+     * @param config параметры встраивания.
+     * @return наибольшая длина сообщения в байтах.
+     */
+    public long capacity(EmbeddingConfig config) {
+        if (!config.isLegacy() && !raster.supports(config.channelMode())) {
+            return 0;
+        }
+        return RasterEmbedder.capacity((long) raster.width * raster.height, raster.height, config);
+    }
+
+    /**
+     * Скрытие сообщения непосредственно в отображённом файле.
+     * Изменения попадают в файл не позднее вызова {@link #close()}.
+     *
+     * @param payload упакованные биты сообщения.
+     * @param config  параметры встраивания.
+     * @throws IOException если файл открыт только для чтения, сообщение пусто или не помещается в изображение.
+     */
+    public void hideTheMessage(BitPayload payload, EmbeddingConfig config) throws IOException {
+        LogUtil.logInfo("Скрытие сообщения в отображённом BMP.");
+        if (!writable) {
+            IOException e = new IOException("Файл открыт только для чтения.");
+            LogUtil.logError(e.getMessage(), e);
+            throw e;
+        }
+        if (payload == null || payload.getBitLength() == 0) {
+            IOException e = new IOException("Биты сообщения не могут быть нулем или пустыми.");
+            LogUtil.logError("Биты сообщения нул или пустые.", e);
+            throw e;
+        }
+        Metrics.time(Metrics.Stage.EMBED, payload.getByteLength(), () -> RasterEmbedder.embed(payload, raster, config));
+        LogUtil.logInfo("Сообщение успешно скрыто.");
+    }
+
+    /**
+     * Потоковое скрытие сообщения из источника непосредственно в отображённом файле.
+     * Ни изображение, ни сообщение не загружаются в память целиком.
+     *
+     * @param source источник сообщения.
+     * @param config параметры встраивания.
+     * @throws IOException если файл открыт только для чтения, сообщение не помещается в изображение
+     *                     или чтение источника не удалось.
+     */
+    public void hideTheMessage(PayloadSource source, EmbeddingConfig config) throws IOException {
+        LogUtil.logInfo("Скрытие сообщения в отображённом BMP.");
+        if (!writable) {
+            IOException e = new IOException("Файл открыт только для чтения.");
+            LogUtil.logError(e.getMessage(), e);
+            throw e;
+        }
+        Metrics.time(Metrics.Stage.EMBED, source.getLength(), () -> RasterEmbedder.embed(source, raster, config));
+        LogUtil.logInfo("Сообщение успешно скрыто.");
+    }
+
+    /**
+     * Потоковое скрытие сообщения с преобразованием (сжатием, шифрованием) непосредственно в отображённом файле.
+     * Длина преобразованного сообщения заранее неизвестна, преобразования записываются во флаги заголовка кадра.
+     *
+     * @param message   поток байтов сообщения, не закрывается.
+     * @param config    параметры встраивания.
+     * @param transform преобразование сообщения.
+     * @return записанный заголовок кадра.
+     * @throws IOException если файл открыт только для чтения, преобразованное сообщение не помещается
+     *                     в изображение или чтение сообщения не удалось.
+     */
+    public FrameHeader hideTheMessage(InputStream message, EmbeddingConfig config, PayloadTransform transform)
+            throws IOException {
+        LogUtil.logInfo("Скрытие сообщения в отображённом BMP, преобразование: {}", transform);
+        if (!writable) {
+            IOException e = new IOException("Файл открыт только для чтения.");
+            LogUtil.logError(e.getMessage(), e);
+            throw e;
+        }
+        FrameHeader header = Metrics.time(Metrics.Stage.EMBED,
+                () -> RasterEmbedder.embed(transform.encode(message), transform.flags(), raster, config),
+                FrameHeader::getLength);
+        LogUtil.logInfo("Сообщение успешно скрыто.");
+        return header;
+    }
+
+    /**
+     * Дозапись байтов в конец сообщения, скрытого в файле в формате с заголовком кадра.
+     * Изменяются только пиксели после конца сообщения и первые строки с заголовком кадра, поэтому при закрытии
+     * на диск записываются лишь содержащие их страницы файла, а не всё изображение.
+     *
+     * @param bytes дописываемые байты.
+     * @return заголовок кадра после дозаписи.
+     * @throws IOException если файл открыт только для чтения, сообщение записано в исходном формате
+     *                     или не помещается в изображение после дозаписи.
+     */
+    public FrameHeader appendMessage(byte[] bytes) throws IOException {
+        return appendMessage(bytes, null);
+    }
+
+    /**
+     * Дозапись байтов в конец сообщения, в том числе встроенного в разбросанном порядке.
+     *
+     * @param bytes   дописываемые байты.
+     * @param scatter перестановка пикселей, заданная ключом при встраивании, или {@code null}.
+     * @return заголовок кадра после дозаписи.
+     * @throws IOException если файл открыт только для чтения, сообщение записано в исходном формате,
+     *                     не указан ключ разброса или сообщение не помещается в изображение после дозаписи.
+     */
+    public FrameHeader appendMessage(byte[] bytes, PixelScatter scatter) throws IOException {
+        LogUtil.logInfo("Дозапись сообщения в отображённом BMP.");
+        if (!writable) {
+            IOException e = new IOException("Файл открыт только для чтения.");
+            LogUtil.logError(e.getMessage(), e);
+            throw e;
+        }
+        if (bytes == null) {
+            IOException e = new IOException("Дописываемые байты не могут быть нулем.");
+            LogUtil.logError("Дописываемые байты не могут быть нулем.", e);
+            throw e;
+        }
+        FrameHeader header = Metrics.time(Metrics.Stage.EMBED,
+                () -> RasterEmbedder.append(ByteBuffer.wrap(bytes), raster, () -> raster, scatter),
+                updated -> bytes.length);
+        LogUtil.logInfo("Сообщение успешно дописано.");
+        return header;
+    }
+
+    /**
+     * Извлечение сообщения из отображённого файла.
+     *
+     * @param parallelism количество потоков, не меньше 1.
+     * @return байты сообщения.
+     * @throws IOException если заголовок повреждён или контрольная сумма не совпадает.
+     */
+    public byte[] extractMessage(int parallelism) throws IOException {
+        return extractMessage(null, parallelism);
+    }
+
+    /**
+     * Извлечение сообщения, встроенного с разбросом пикселей по ключу, из отображённого файла.
+     *
+     * @param scatter     перестановка пикселей, заданная ключом при встраивании, или {@code null}.
+     * @param parallelism количество потоков, не меньше 1.
+     * @return байты сообщения.
+     * @throws IOException если заголовок повреждён, не указан ключ разброса или контрольная сумма не совпадает.
+     */
+    public byte[] extractMessage(PixelScatter scatter, int parallelism) throws IOException {
+        return Metrics.time(Metrics.Stage.EXTRACT,
+                () -> RasterExtractor.extract(raster, () -> raster, scatter, parallelism), bytes -> bytes.length);
+    }
+
+    /**
+     * Чтение начала сообщения из отображённого файла без извлечения остальных байтов.
+     *
+     * @param scatter перестановка пикселей, заданная ключом при встраивании, или {@code null}.
+     * @param length  наибольшее количество байтов.
+     * @return первые байты сообщения или пустой массив для исходного формата.
+     * @throws IOException если заголовок повреждён или не указан ключ разброса.
+     */
+    byte[] readPrefix(PixelScatter scatter, int length) throws IOException {
+        return RasterExtractor.readPrefix(raster, () -> raster, scatter, length);
+    }
+
+    /**
+     * Извлечение сообщения из отображённого файла в выходной поток.
+     *
+     * @param out выходной поток.
+     * @return количество записанных байтов.
+     * @throws IOException если заголовок повреждён, запись в поток не удалась или контрольная сумма не совпадает.
+     */
+    public long extractMessage(OutputStream out) throws IOException {
+        return extractMessage(out, null, null);
+    }
+
+    /**
+     * Извлечение сообщения из отображённого файла в выходной поток с восстановлением сжатого
+     * или зашифрованного сообщения.
+     *
+     * @param out       выходной поток для восстановленного сообщения.
+     * @param scatter   перестановка пикселей, заданная ключом при встраивании, или {@code null}.
+     * @param transform преобразование с паролем, если сообщение зашифровано, или {@code null}.
+     * @return количество байтов сообщения в изображении до восстановления.
+     * @throws IOException если заголовок повреждён, не указан ключ разброса или пароль, пароль неверен,
+     *                     запись в поток не удалась или контрольная сумма не совпадает.
+     */
+    public long extractMessage(OutputStream out, PixelScatter scatter, PayloadTransform transform)
+            throws IOException {
+        return Metrics.time(Metrics.Stage.EXTRACT,
+                () -> RasterExtractor.extract(raster, () -> raster, scatter, transform, out), count -> count);
+    }
+
+    /**
+     * Стегоанализ младших битов отображённого файла без декодирования изображения.
+     *
+     * @param tileSize    размер стороны области в пикселях.
+     * @param parallelism количество потоков, не меньше 1.
+     * @return отчёт.
+     * @throws IOException если параметры некорректны.
+     */
+    public DetectabilityReport analyze(int tileSize, int parallelism) throws IOException {
+        return Steganalysis.analyze(raster, tileSize, parallelism);
+    }
+
+    /**
+     * Сброс изменений на диск и закрытие файла.
+     * Отображение освобождается сборщиком мусора после того, как объект станет недостижим.
+     *
+     * @throws IOException если файл не удалось закрыть.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (writable) {
+                // Сброс изменённых страниц на диск заменяет сохранение изображения
+                Metrics.time(Metrics.Stage.SAVE, pixels.capacity(), pixels::force);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Разбор заголовков файла BMP.
+     *
+     * @param channel канал файла.
+     * @param path    путь к файлу для сообщений об ошибках.
+     * @return расположение массива пикселей.
+     * @throws IOException если файл не является поддерживаемым несжатым BMP.
+     */
+    private static Layout parse(FileChannel channel, String path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES + INFO_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                break;
+            }
+        }
+        if (header.hasRemaining() || header.get(0) != 'B' || header.get(1) != 'M') {
+            throw unsupported(path, "файл не является изображением BMP");
+        }
+        long pixelOffset = header.getInt(10) & 0xFFFFFFFFL;
+        int infoSize = header.getInt(14);
+        int width = header.getInt(18);
+        int height = header.getInt(22);
+        int bitCount = header.getShort(28) & 0xFFFF;
+        int compression = header.getInt(30);
+        if (infoSize < INFO_HEADER_BYTES) {
+            throw unsupported(path, "устаревший заголовок изображения размером " + infoSize + " байт");
+        }
+        if (compression != BI_RGB || (bitCount != 24 && bitCount != 32)) {
+            throw unsupported(path, bitCount + " бит на пиксель, сжатие " + compression);
+        }
+        if (width <= 0 || height == 0 || height == Integer.MIN_VALUE) {
+            throw unsupported(path, "некорректный размер " + width + "x" + height);
+        }
+        int bytesPerPixel = bitCount / 8;
+        // Строки выравниваются по границе 4 байтов
+        long stride = ((long) width * bitCount + 31) / 32 * 4;
+        long pixelBytes = stride * Math.abs(height);
+        if (pixelBytes > Integer.MAX_VALUE) {
+            throw unsupported(path, "массив пикселей больше 2 ГБ");
+        }
+        if (pixelOffset + pixelBytes > channel.size()) {
+            throw unsupported(path, "массив пикселей выходит за пределы файла");
+        }
+        return new Layout(width, Math.abs(height), height < 0, bytesPerPixel, (int) stride, pixelOffset,
+                (int) pixelBytes);
+    }
+
+    private static IOException unsupported(String path, String reason) {
+        return new IOException("Неподдерживаемый формат BMP (" + reason + "): " + path);
+    }
+
+    /**
+     * Расположение массива пикселей в файле.
+     */
+    private static final class Layout {
+        private final int width;
+        private final int height;
+        private final boolean topDown;
+        private final int bytesPerPixel;
+        private final int stride;
+        private final long pixelOffset;
+        private final int pixelBytes;
+
+        Layout(int width, int height, boolean topDown, int bytesPerPixel, int stride, long pixelOffset,
+               int pixelBytes) {
+            this.width = width;
+            this.height = height;
+            this.topDown = topDown;
+            this.bytesPerPixel = bytesPerPixel;
+            this.stride = stride;
+            this.pixelOffset = pixelOffset;
+            this.pixelBytes = pixelBytes;
+        }
+    }
+}
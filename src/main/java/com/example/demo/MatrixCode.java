@@ -0,0 +1,310 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Матричное встраивание кодом Хэмминга (2^k - 1, k): k битов сообщения записываются в группу из n = 2^k - 1
+ * младших битов подряд идущих отсчётов так, чтобы синдром группы — XOR номеров (от 1 до n) отсчётов
+ * с единичным младшим битом — был равен битам сообщения. Если синдром не совпадает, инвертируется младший бит
+ * одного отсчёта с номером «синдром XOR биты сообщения», поэтому в группе меняется не больше одного отсчёта,
+ * а в среднем 1 - 2^-k отсчёта на k битов вместо k / 2 при обычной замене младших битов.
+ * Цена — ёмкость: один отсчёт несёт k / n бита.
+ * <p>
+ * Отсчёты группы идут в порядке обхода пикселей и каналов {@link ChannelMode}, один младший бит в каждом канале.
+ * Группы читаются блоками, целое число групп которых занимает целое число пикселей; при встраивании
+ * в растр записываются только пиксели, в которых изменился отсчёт. Синдром группы вычисляется по таблице
+ * для каждого байта группы, без выделения памяти на группу.
+ */
+final class MatrixCode {
+
+    /**
+     * Наименьшее количество битов сообщения в группе.
+     */
+    static final int MIN_BITS = 2;
+
+    /**
+     * Наибольшее количество битов сообщения в группе: группа из 63 отсчётов помещается в одно слово.
+     */
+    static final int MAX_BITS = 6;
+
+    /**
+     * Количество групп в блоке на один канал пикселя.
+     */
+    private static final int BLOCK_GROUPS_PER_CHANNEL = 1024;
+
+    /**
+     * Чтение восьми байтов массива одним словом в порядке от старшего байта.
+     */
+    private static final VarHandle WORDS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    /**
+     * Коды по количеству битов сообщения в группе.
+     */
+    private static final MatrixCode[] CODES = new MatrixCode[MAX_BITS + 1];
+
+    static {
+        for (int k = MIN_BITS; k <= MAX_BITS; k++) {
+            CODES[k] = new MatrixCode(k);
+        }
+    }
+
+    /**
+     * Количество битов сообщения в группе.
+     */
+    final int bits;
+
+    /**
+     * Количество отсчётов в группе.
+     */
+    final int groupSamples;
+
+    /**
+     * Вклад байта группы в синдром: элемент {@code (i << 8) | b} равен XOR номеров отсчётов,
+     * младшие биты которых заданы единичными битами значения {@code b} в i-м младшем байте группы.
+     */
+    private final int[] syndromes;
+
+    private MatrixCode(int bits) {
+        this.bits = bits;
+        this.groupSamples = (1 << bits) - 1;
+        int bytes = (groupSamples + 7) / 8;
+        this.syndromes = new int[bytes << 8];
+        for (int i = 0; i < bytes; i++) {
+            for (int b = 0; b < 256; b++) {
+                int syndrome = 0;
+                for (int j = 0; j < 8; j++) {
+                    int q = i * 8 + j;
+                    if ((b & (1 << j)) != 0 && q < groupSamples) {
+                        // Разряд q слова группы соответствует отсчёту с номером n - q
+                        syndrome ^= groupSamples - q;
+                    }
+                }
+                syndromes[(i << 8) | b] = syndrome;
+            }
+        }
+    }
+
+    /**
+     * Получение кода с заданным количеством битов сообщения в группе.
+     *
+     * @param bits количество битов, от {@link #MIN_BITS} до {@link #MAX_BITS}.
+     * @return код.
+     */
+    static MatrixCode of(int bits) {
+        return CODES[bits];
+    }
+
+    /**
+     * Количество групп для записи заданного количества битов.
+     *
+     * @param messageBits количество битов сообщения.
+     * @return количество групп, последняя дополняется нулевыми битами.
+     */
+    long groupsFor(long messageBits) {
+        return (messageBits + bits - 1) / bits;
+    }
+
+    /**
+     * Количество пикселей, занятых группами для заданного количества битов.
+     *
+     * @param messageBits количество битов сообщения.
+     * @param channels    количество каналов в пикселе.
+     * @return количество пикселей.
+     */
+    long pixelsFor(long messageBits, int channels) {
+        return (groupsFor(messageBits) * groupSamples + channels - 1) / channels;
+    }
+
+    /**
+     * Ёмкость заданного количества пикселей.
+     *
+     * @param pixels   количество пикселей.
+     * @param channels количество каналов в пикселе.
+     * @return количество битов сообщения в целых группах.
+     */
+    long capacityBits(long pixels, int channels) {
+        return pixels * channels / groupSamples * bits;
+    }
+
+    /**
+     * Вычисление синдрома группы.
+     *
+     * @param group младшие биты отсчётов группы: первый отсчёт — в старшем из n младших разрядов слова.
+     * @return синдром от 0 до n.
+     */
+    int syndrome(long group) {
+        int syndrome = 0;
+        for (int shift = 0, i = 0; shift < groupSamples; shift += 8, i += 256) {
+            syndrome ^= syndromes[i | (int) ((group >>> shift) & 0xFF)];
+        }
+        return syndrome;
+    }
+
+    /**
+     * Матричное встраивание битов сообщения, начиная с заданного пикселя.
+     *
+     * @param raster      растр.
+     * @param layout      порядок обхода пикселей.
+     * @param scatter     перестановка для разбросанного порядка или {@code null}.
+     * @param first       порядковый номер первого пикселя.
+     * @param messageBits количество битов сообщения.
+     * @param mode        каналы, по одному младшему биту в каждом.
+     * @param message     источник битов сообщения.
+     * @return количество изменённых отсчётов.
+     * @throws InterruptedIOException если поток был прерван; растр остаётся частично изменённым.
+     * @throws IOException            если чтение источника битов не удалось.
+     */
+    long embed(SampleRaster raster, EmbeddingLayout layout, PixelScatter scatter, long first, long messageBits,
+               ChannelMode mode, BitReader message) throws IOException {
+        int channels = mode.channels.length;
+        int blockGroups = BLOCK_GROUPS_PER_CHANNEL * channels;
+        // Запас в конце массива позволяет читать группу словом, не проверяя границу
+        byte[] samples = new byte[blockGroups * groupSamples / 8 + 2 * Long.BYTES];
+        int[] changed = new int[blockGroups];
+        // Биты изменённого пикселя передаются растру через один читатель на всё встраивание
+        BitReader pixelBits = new BitReader(0, 0, ByteBuffer.allocate(0));
+        EmbeddingLayout.RunConsumer writeRun = (x, y, dx, dy, n) -> raster.writeBits(x, y, dx, dy, n, mode,
+                pixelBits);
+        long groups = groupsFor(messageBits);
+        long changes = 0;
+        try {
+            for (long done = 0; done < groups; done += blockGroups) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Встраивание прервано.");
+                }
+                int count = (int) Math.min(blockGroups, groups - done);
+                long blockFirst = first + done * groupSamples / channels;
+                long pixels = ((long) count * groupSamples + channels - 1) / channels;
+                readSamples(raster, layout, scatter, blockFirst, pixels, mode, samples);
+
+                int pixelChanges = 0;
+                int lastPixel = -1;
+                for (int g = 0, offset = 0; g < count; g++, offset += groupSamples) {
+                    int difference = syndrome(group(samples, offset)) ^ message.read(bits);
+                    if (difference == 0) {
+                        continue;
+                    }
+                    // Синдром меняется на номер инвертированного отсчёта
+                    int sample = offset + difference - 1;
+                    samples[sample >>> 3] ^= (byte) (0x80 >>> (sample & 7));
+                    int pixel = sample / channels;
+                    if (pixel != lastPixel) {
+                        changed[pixelChanges++] = pixel;
+                        lastPixel = pixel;
+                    }
+                    changes++;
+                }
+                for (int i = 0; i < pixelChanges; i++) {
+                    pixelBits.reset(bitsAt(samples, changed[i] * channels, channels), mode.bitsPerPixel);
+                    writePixel(raster, layout, scatter, blockFirst + changed[i], mode, pixelBits, writeRun);
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return changes;
+    }
+
+    /**
+     * Извлечение битов сообщения, встроенного матричным кодом, начиная с заданного пикселя.
+     *
+     * @param raster      растр.
+     * @param layout      порядок обхода пикселей.
+     * @param scatter     перестановка для разбросанного порядка или {@code null}.
+     * @param first       порядковый номер первого пикселя.
+     * @param messageBits количество битов сообщения.
+     * @param mode        каналы, по одному младшему биту в каждом.
+     * @param writer      приёмник битов, ограниченный длиной сообщения.
+     */
+    void extract(SampleRaster raster, EmbeddingLayout layout, PixelScatter scatter, long first, long messageBits,
+                 ChannelMode mode, BitWriter writer) {
+        int channels = mode.channels.length;
+        int blockGroups = BLOCK_GROUPS_PER_CHANNEL * channels;
+        // Запас в конце массива позволяет читать группу словом, не проверяя границу
+        byte[] samples = new byte[blockGroups * groupSamples / 8 + 2 * Long.BYTES];
+        long groups = groupsFor(messageBits);
+        for (long done = 0; done < groups; done += blockGroups) {
+            int count = (int) Math.min(blockGroups, groups - done);
+            long pixels = ((long) count * groupSamples + channels - 1) / channels;
+            readSamples(raster, layout, scatter, first + done * groupSamples / channels, pixels, mode, samples);
+            for (int g = 0, offset = 0; g < count; g++, offset += groupSamples) {
+                writer.write(syndrome(group(samples, offset)), bits);
+            }
+        }
+    }
+
+    /**
+     * Чтение младших битов отсчётов блока пикселей в массив: первый отсчёт — в старшем бите первого байта.
+     */
+    private static void readSamples(SampleRaster raster, EmbeddingLayout layout, PixelScatter scatter, long first,
+                                    long pixels, ChannelMode mode, byte[] samples) {
+        BitWriter writer = new BitWriter(ByteBuffer.wrap(samples));
+        layout.forEachRun(raster.width, raster.height, first, pixels, scatter,
+                (x, y, dx, dy, n) -> raster.readBits(x, y, dx, dy, n, mode, writer));
+        // Неполный последний байт дополняется нулями, чтобы не быть отброшенным
+        writer.write(0, 7);
+        try {
+            writer.finish();
+        } catch (IOException e) {
+            // Писатель без выходного потока не выполняет ввод-вывод
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Чтение группы из массива младших битов.
+     *
+     * @param samples младшие биты отсчётов.
+     * @param offset  номер первого отсчёта группы.
+     * @return биты группы в n младших разрядах слова, первый отсчёт — в старшем из них.
+     */
+    private long group(byte[] samples, int offset) {
+        int index = offset >>> 3;
+        // Восемь байтов от байта первого отсчёта покрывают группу из не более чем 63 отсчётов со сдвигом до 7
+        long word = (long) WORDS.get(samples, index);
+        int skip = offset & 7;
+        if (skip + groupSamples <= Long.SIZE) {
+            return (word >>> (Long.SIZE - skip - groupSamples)) & ((1L << groupSamples) - 1);
+        }
+        int extra = skip + groupSamples - Long.SIZE;
+        long tail = (samples[index + Long.BYTES] & 0xFF) >>> (8 - extra);
+        return ((word << extra) | tail) & ((1L << groupSamples) - 1);
+    }
+
+    /**
+     * Чтение битов подряд идущих отсчётов.
+     *
+     * @param samples младшие биты отсчётов.
+     * @param offset  номер первого отсчёта.
+     * @param count   количество отсчётов, не больше 4.
+     * @return биты в младших разрядах, первый отсчёт — в старшем из них.
+     */
+    private static int bitsAt(byte[] samples, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            value = (value << 1) | ((samples[i >>> 3] >>> (7 - (i & 7))) & 1);
+        }
+        return value;
+    }
+
+    /**
+     * Запись младших битов всех каналов одного пикселя.
+     *
+     * @param bits     читатель, содержащий биты пикселя.
+     * @param writeRun запись отрезка из {@code bits} для обхода в порядке, отличном от построчного.
+     */
+    private static void writePixel(SampleRaster raster, EmbeddingLayout layout, PixelScatter scatter, long ordinal,
+                                   ChannelMode mode, BitReader bits, EmbeddingLayout.RunConsumer writeRun) {
+        if (layout == EmbeddingLayout.ROW_MAJOR) {
+            raster.writeBits((int) (ordinal % raster.width), (int) (ordinal / raster.width), 1, 0, 1, mode, bits);
+            return;
+        }
+        layout.forEachRun(raster.width, raster.height, ordinal, 1, scatter, writeRun);
+    }
+}
@@ -1,13 +1,20 @@
 package com.example.demo;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.Scanner;
 
 /**
  * Класс для чтения сообщений из текстового файла.
  * Предназначен для извлечения текста из указанного файла и обработки ошибок, связанных с отсутствием файла, пустым содержимым и прочими ситуациями.
+ * Помимо текста, файл можно прочитать как произвольные двоичные данные целиком или потоком.
+ * Длительность чтения файла целиком учитывается в {@link Metrics}; потоковое чтение входит в стадию встраивания.
  */
 public class MessageReader {
 
@@ -19,12 +26,24 @@ public class MessageReader {
      * @throws IOException если файл не существует, не является файлом, пуст или возникает ошибка при чтении.
      */
     public static String readMessageFromFile(String messageFile) throws IOException {
-        LogUtil.logInfo("Чтение сообщения из файла: " + messageFile);
+        return Metrics.time(Metrics.Stage.PAYLOAD_READ, () -> readText(messageFile), String::length);
+    }
+
+    /**
+     * Чтение текста сообщения построчно.
+     *
+     * @param messageFile путь к файлу сообщения.
+     * @return содержимое файла.
+     * @throws IOException если файл не существует, не является файлом, пуст или возникает ошибка при чтении.
+     */
+    private static String readText(String messageFile) throws IOException {
+        LogUtil.logInfo("Чтение сообщения из файла: {}", messageFile);
 
         // Проверка на пустой путь к файлу
         if (messageFile == null) {
-            LogUtil.logError("Путь к файлу сообщения не может быть пустым.", new IOException("Путь к файлу сообщения не может быть пустым."));
-            throw new IOException("Путь к файлу сообщения не может быть пустым.");
+            IOException e = new IOException("Путь к файлу сообщения не может быть пустым.");
+            LogUtil.logError("Путь к файлу сообщения не может быть пустым.", e);
+            throw e;
         }
 
         StringBuilder message = new StringBuilder();
@@ -33,8 +52,9 @@ public class MessageReader {
 
         // Проверка существования файла и его корректности
         if (!file.exists() || !file.isFile()) {
-            LogUtil.logError("Файл не найден или не является файлом: " + messageFile, new IOException("Файл не найден или не является файлом: " + messageFile));
-            throw new IOException("Файл не найден или не является файлом: " + messageFile);
+            IOException e = new IOException("Файл не найден или не является файлом: " + messageFile);
+            LogUtil.logError("Файл не найден или не является файлом: " + messageFile, e);
+            throw e;
         }
 
         // Чтение содержимого файла
@@ -52,11 +72,97 @@ public class MessageReader {
 
         // Проверка на пустое содержимое файла
         if (message.isEmpty()) {
-            LogUtil.logError("Файл сообщения пуст.", new IOException("Файл сообщения пуст."));
-            throw new IOException("Файл сообщения пуст.");
+            IOException e = new IOException("Файл сообщения пуст.");
+            LogUtil.logError("Файл сообщения пуст.", e);
+            throw e;
         }
 
         LogUtil.logInfo("Сообщение успешно прочитано.");
         return message.toString();
     }
+
+    /**
+     * Чтение файла сообщения как двоичных данных без преобразования строк и кодировки.
+     *
+     * @param messageFile путь к файлу сообщения.
+     * @return упакованные байты файла.
+     * @throws IOException если файл не существует, не является файлом, пуст или возникает ошибка при чтении.
+     */
+    public static BitPayload readPayloadFromFile(String messageFile) throws IOException {
+        return Metrics.time(Metrics.Stage.PAYLOAD_READ, () -> readBytes(messageFile), BitPayload::getByteLength);
+    }
+
+    /**
+     * Чтение файла сообщения целиком.
+     *
+     * @param messageFile путь к файлу сообщения.
+     * @return упакованные байты файла.
+     * @throws IOException если файл не существует, не является файлом, пуст или возникает ошибка при чтении.
+     */
+    private static BitPayload readBytes(String messageFile) throws IOException {
+        File file = requireMessageFile(messageFile);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        if (bytes.length == 0) {
+            IOException e = new IOException("Файл сообщения пуст.");
+            LogUtil.logError("Файл сообщения пуст.", e);
+            throw e;
+        }
+        LogUtil.logInfo("Сообщение успешно прочитано.");
+        return BitPayload.wrap(bytes);
+    }
+
+    /**
+     * Открытие файла сообщения для потокового встраивания.
+     * Файл читается блоками фиксированного размера по мере встраивания и не загружается в память целиком.
+     *
+     * @param messageFile путь к файлу сообщения.
+     * @return источник сообщения, который нужно закрыть после встраивания.
+     * @throws IOException если файл не существует, не является файлом, пуст или не может быть открыт.
+     */
+    public static PayloadSource openMessageFile(String messageFile) throws IOException {
+        File file = requireMessageFile(messageFile);
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return PayloadSource.of(channel, channel.size());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Открытие файла сообщения как потока байтов для встраивания с преобразованием {@link PayloadTransform},
+     * когда длина встраиваемых данных заранее неизвестна.
+     *
+     * @param messageFile путь к файлу сообщения.
+     * @return буферизованный поток байтов файла.
+     * @throws IOException если файл не существует, не является файлом или не открывается.
+     */
+    public static InputStream openMessageStream(String messageFile) throws IOException {
+        File file = requireMessageFile(messageFile);
+        return new BufferedInputStream(Files.newInputStream(file.toPath()), PayloadSource.BUFFER_SIZE);
+    }
+
+    /**
+     * Проверка пути к файлу сообщения.
+     *
+     * @param messageFile путь к файлу сообщения.
+     * @return файл сообщения.
+     * @throws IOException если путь пуст, файл не существует или не является файлом.
+     */
+    private static File requireMessageFile(String messageFile) throws IOException {
+        LogUtil.logInfo("Чтение сообщения из файла: {}", messageFile);
+        if (messageFile == null) {
+            IOException e = new IOException("Путь к файлу сообщения не может быть пустым.");
+            LogUtil.logError("Путь к файлу сообщения не может быть пустым.", e);
+            throw e;
+        }
+        File file = new File(messageFile);
+        if (!file.exists() || !file.isFile()) {
+            IOException e = new IOException("Файл не найден или не является файлом: " + messageFile);
+            LogUtil.logError("Файл не найден или не является файлом: " + messageFile, e);
+            throw e;
+        }
+        return file;
+    }
 }
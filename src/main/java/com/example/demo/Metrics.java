@@ -0,0 +1,510 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Метрики стадий обработки: количество операций и ошибок, гистограмма длительности и объём обработанных данных.
+ * Каждая стадия учитывается один раз за вызов метода {@link ImageHandler}, {@link MessageReader},
+ * {@link BitConverter} или {@link Steganography}; код, обрабатывающий отдельные пиксели, метрики не обновляет.
+ * Счётчики основаны на {@link LongAdder} и атомарных массивах, поэтому запись из многих потоков не блокируется.
+ * Метрики доступны через JMX в домене {@code com.example.demo} и в виде текстового или JSON-отчёта.
+ */
+public final class Metrics {
+
+    /**
+     * Стадия обработки.
+     */
+    public enum Stage {
+        /**
+         * Загрузка и декодирование изображения.
+         */
+        LOAD,
+        /**
+         * Чтение файла сообщения.
+         */
+        PAYLOAD_READ,
+        /**
+         * Преобразование текста сообщения в биты.
+         */
+        BIT_CONVERSION,
+        /**
+         * Встраивание сообщения в изображение.
+         */
+        EMBED,
+        /**
+         * Извлечение сообщения из изображения.
+         */
+        EXTRACT,
+        /**
+         * Построение изображения младших битов для предварительного просмотра.
+         */
+        LSB_PREVIEW,
+        /**
+         * Стегоанализ младших битов изображения.
+         */
+        STEGANALYSIS,
+        /**
+         * Кодирование и сохранение изображения.
+         */
+        SAVE,
+        /**
+         * Запрос к службе встраивания {@link EmbedService} целиком, от ожидания разрешения до отправки ответа.
+         */
+        REQUEST
+    }
+
+    /**
+     * Метрики стадии, доступные через JMX.
+     */
+    public interface StageMXBean {
+
+        /**
+         * Получение количества успешно завершённых операций стадии.
+         *
+         * @return количество успешных операций.
+         */
+        long getCount();
+
+        /**
+         * Получение количества операций стадии, завершившихся ошибкой.
+         *
+         * @return количество операций, завершившихся ошибкой.
+         */
+        long getErrors();
+
+        /**
+         * Получение суммарного времени успешных операций стадии.
+         *
+         * @return суммарное время успешных операций в миллисекундах.
+         */
+        double getTotalMillis();
+
+        /**
+         * Получение среднего времени операции стадии.
+         *
+         * @return среднее время операции в миллисекундах.
+         */
+        double getMeanMillis();
+
+        /**
+         * Получение медианы времени операции стадии.
+         *
+         * @return медиана времени операции в миллисекундах.
+         */
+        double getP50Millis();
+
+        /**
+         * Получение 95-го процентиля времени операции стадии.
+         *
+         * @return 95-й процентиль времени операции в миллисекундах.
+         */
+        double getP95Millis();
+
+        /**
+         * Получение 99-го процентиля времени операции стадии.
+         *
+         * @return 99-й процентиль времени операции в миллисекундах.
+         */
+        double getP99Millis();
+
+        /**
+         * Получение наибольшего времени операции стадии.
+         *
+         * @return наибольшее время операции в миллисекундах.
+         */
+        double getMaxMillis();
+
+        /**
+         * Получение объёма данных, обработанных стадией.
+         *
+         * @return объём обработанных данных в байтах.
+         */
+        long getBytes();
+
+        /**
+         * Получение пропускной способности стадии.
+         *
+         * @return пропускная способность в мегабайтах за секунду суммарного времени операций.
+         */
+        double getThroughputMBps();
+
+        /**
+         * Сброс метрик стадии.
+         */
+        void reset();
+    }
+
+    /**
+     * Операция стадии, возвращающая результат.
+     *
+     * @param <T> тип результата.
+     */
+    @FunctionalInterface
+    interface Operation<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * Операция стадии без результата.
+     */
+    @FunctionalInterface
+    interface Action {
+        void run() throws IOException;
+    }
+
+    /**
+     * Домен и тип объектов JMX.
+     */
+    private static final String OBJECT_NAME = "com.example.demo:type=Metrics,stage=";
+
+    /**
+     * Метрики по стадиям.
+     */
+    private static final Map<Stage, StageMetrics> STAGES = new EnumMap<>(Stage.class);
+
+    static {
+        for (Stage stage : Stage.values()) {
+            STAGES.put(stage, new StageMetrics());
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Учёт успешной операции.
+     *
+     * @param stage      стадия.
+     * @param startNanos время начала операции по {@link System#nanoTime()}.
+     * @param bytes      объём обработанных данных в байтах.
+     */
+    public static void record(Stage stage, long startNanos, long bytes) {
+        STAGES.get(stage).record(System.nanoTime() - startNanos, bytes);
+    }
+
+    /**
+     * Учёт операции, завершившейся ошибкой. Длительность таких операций в гистограмму не попадает.
+     *
+     * @param stage стадия.
+     */
+    public static void recordError(Stage stage) {
+        STAGES.get(stage).errors.increment();
+    }
+
+    /**
+     * Выполнение операции с учётом её длительности. Исключение операции учитывается как ошибка и пробрасывается.
+     *
+     * @param stage     стадия.
+     * @param operation операция.
+     * @param bytes     объём обработанных данных по результату операции.
+     * @param <T>       тип результата.
+     * @return результат операции.
+     * @throws IOException если операция завершилась ошибкой.
+     */
+    static <T> T time(Stage stage, Operation<T> operation, ToLongFunction<? super T> bytes) throws IOException {
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = operation.run();
+        } catch (IOException | RuntimeException e) {
+            recordError(stage);
+            throw e;
+        }
+        record(stage, start, bytes.applyAsLong(result));
+        return result;
+    }
+
+    /**
+     * Выполнение операции без результата с учётом её длительности.
+     *
+     * @param stage  стадия.
+     * @param bytes  объём обрабатываемых данных в байтах.
+     * @param action операция.
+     * @throws IOException если операция завершилась ошибкой.
+     */
+    static void time(Stage stage, long bytes, Action action) throws IOException {
+        time(stage, () -> {
+            action.run();
+            return null;
+        }, result -> bytes);
+    }
+
+    /**
+     * Получение метрик стадии.
+     *
+     * @param stage стадия.
+     * @return метрики стадии.
+     */
+    public static StageMXBean get(Stage stage) {
+        return STAGES.get(stage);
+    }
+
+    /**
+     * Сброс метрик всех стадий.
+     */
+    public static void reset() {
+        for (StageMetrics metrics : STAGES.values()) {
+            metrics.reset();
+        }
+    }
+
+    /**
+     * Регистрация метрик стадий в платформенном сервере MBean. Повторная регистрация пропускается.
+     */
+    public static synchronized void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (Map.Entry<Stage, StageMetrics> entry : STAGES.entrySet()) {
+                ObjectName name = new ObjectName(OBJECT_NAME + entry.getKey());
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(new StandardMBean(entry.getValue(), StageMXBean.class, true), name);
+                }
+            }
+        } catch (JMException e) {
+            LogUtil.logError("Не удалось зарегистрировать метрики в JMX: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Периодический вывод отчёта о метриках.
+     * Отчёт выводится потоком-демоном, который останавливается вызовом {@link ScheduledExecutorService#shutdown()}.
+     *
+     * @param out           поток для отчёта.
+     * @param periodSeconds период вывода в секундах.
+     * @param json          выводить отчёт в формате JSON.
+     * @return планировщик вывода.
+     */
+    public static ScheduledExecutorService startPeriodicDump(PrintStream out, long periodSeconds, boolean json) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> out.print(json ? toJson() : toText()), periodSeconds, periodSeconds,
+                TimeUnit.SECONDS);
+        return scheduler;
+    }
+
+    /**
+     * Текстовый отчёт: по строке на каждую стадию, в которой была хотя бы одна операция.
+     *
+     * @return отчёт.
+     */
+    public static String toText() {
+        StringBuilder text = new StringBuilder(String.format(Locale.ROOT,
+                "%-15s %8s %7s %10s %9s %9s %9s %9s %10s%n",
+                "стадия", "операций", "ошибок", "всего, мс", "сред., мс", "p50, мс", "p99, мс", "макс., мс", "МБ/с"));
+        for (Map.Entry<Stage, StageMetrics> entry : STAGES.entrySet()) {
+            StageMetrics metrics = entry.getValue();
+            if (metrics.getCount() == 0 && metrics.getErrors() == 0) {
+                continue;
+            }
+            text.append(String.format(Locale.ROOT, "%-15s %8d %7d %10.1f %9.2f %9.2f %9.2f %9.2f %10.1f%n",
+                    entry.getKey(), metrics.getCount(), metrics.getErrors(), metrics.getTotalMillis(),
+                    metrics.getMeanMillis(), metrics.getP50Millis(), metrics.getP99Millis(),
+                    metrics.getMaxMillis(), metrics.getThroughputMBps()));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Отчёт в формате JSON: объект, ключами которого являются названия стадий.
+     *
+     * @return отчёт.
+     */
+    public static String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        for (Map.Entry<Stage, StageMetrics> entry : STAGES.entrySet()) {
+            StageMetrics metrics = entry.getValue();
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append(String.format(Locale.ROOT, "\"%s\":{\"count\":%d,\"errors\":%d,\"totalMillis\":%.3f,"
+                            + "\"meanMillis\":%.3f,\"p50Millis\":%.3f,\"p95Millis\":%.3f,\"p99Millis\":%.3f,"
+                            + "\"maxMillis\":%.3f,\"bytes\":%d,\"throughputMBps\":%.3f}",
+                    entry.getKey(), metrics.getCount(), metrics.getErrors(), metrics.getTotalMillis(),
+                    metrics.getMeanMillis(), metrics.getP50Millis(), metrics.getP95Millis(), metrics.getP99Millis(),
+                    metrics.getMaxMillis(), metrics.getBytes(), metrics.getThroughputMBps()));
+        }
+        return json.append('}').append(System.lineSeparator()).toString();
+    }
+
+    /**
+     * Метрики одной стадии.
+     * Гистограмма длительности логарифмически-линейная: каждая степень двойки делится на {@link #SUB_BUCKETS}
+     * равных интервалов, поэтому погрешность процентилей не превышает 12,5%.
+     */
+    private static final class StageMetrics implements StageMXBean {
+
+        /**
+         * Количество интервалов внутри степени двойки.
+         */
+        private static final int SUB_BUCKETS = 8;
+
+        /**
+         * Количество битов номера интервала.
+         */
+        private static final int SUB_BITS = 3;
+
+        /**
+         * Количество корзин гистограммы, достаточное для любого неотрицательного {@code long}.
+         */
+        private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        void record(long nanos, long processed) {
+            count.increment();
+            totalNanos.add(nanos);
+            bytes.add(processed);
+            histogram.incrementAndGet(bucketOf(nanos));
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        /**
+         * Номер корзины для длительности.
+         *
+         * @param nanos длительность в наносекундах.
+         * @return номер корзины.
+         */
+        private static int bucketOf(long nanos) {
+            if (nanos < SUB_BUCKETS) {
+                return (int) Math.max(0, nanos);
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        /**
+         * Верхняя граница корзины.
+         *
+         * @param bucket номер корзины.
+         * @return наибольшая длительность в корзине в наносекундах.
+         */
+        private static long upperBoundOf(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+            long width = 1L << (exponent - SUB_BITS);
+            long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BITS);
+            return lower + width - 1;
+        }
+
+        /**
+         * Оценка процентиля длительности по гистограмме.
+         *
+         * @param percentile процентиль от 0 до 100.
+         * @return длительность в миллисекундах.
+         */
+        private double percentileMillis(double percentile) {
+            long total = 0;
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = histogram.get(i);
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i), maxNanos.get()) / 1e6;
+                }
+            }
+            return maxNanos.get() / 1e6;
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+
+        @Override
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        @Override
+        public double getTotalMillis() {
+            return totalNanos.sum() / 1e6;
+        }
+
+        @Override
+        public double getMeanMillis() {
+            long operations = count.sum();
+            return operations == 0 ? 0 : totalNanos.sum() / 1e6 / operations;
+        }
+
+        @Override
+        public double getP50Millis() {
+            return percentileMillis(50);
+        }
+
+        @Override
+        public double getP95Millis() {
+            return percentileMillis(95);
+        }
+
+        @Override
+        public double getP99Millis() {
+            return percentileMillis(99);
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return maxNanos.get() / 1e6;
+        }
+
+        @Override
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        @Override
+        public double getThroughputMBps() {
+            long nanos = totalNanos.sum();
+            return nanos == 0 ? 0 : bytes.sum() / (nanos / 1e9) / (1024 * 1024);
+        }
+
+        @Override
+        public void reset() {
+            count.reset();
+            errors.reset();
+            totalNanos.reset();
+            bytes.reset();
+            maxNanos.set(0);
+            for (int i = 0; i < BUCKETS; i++) {
+                histogram.set(i, 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Параллельная запись и чтение битов сообщения по полосам растра.
+ * Диапазон порядковых номеров пикселей делится на полосы, длина которых кратна {@link #ALIGNMENT} пикселям,
+ * поэтому смещение каждой полосы в сообщении известно заранее и выровнено по 64-битному слову.
+ * Полосы не пересекаются ни по пикселям, ни по байтам сообщения, поэтому результат совпадает
+ * с последовательной обработкой независимо от количества потоков. Растры, в которых пиксели делят байты
+ * данных, на полосы не делятся (см. {@link SampleRaster#isPixelIndependent()}).
+ */
+final class ParallelStripes {
+
+    /**
+     * Кратность длины полосы в пикселях: при любом количестве битов на пиксель
+     * граница полосы приходится на границу 64-битного слова сообщения.
+     */
+    static final int ALIGNMENT = 64;
+
+    /**
+     * Наименьшая длина полосы в пикселях, при которой её обработка окупает передачу задачи другому потоку.
+     */
+    static final long MIN_STRIPE_PIXELS = 1 << 16;
+
+    /**
+     * Пулы потоков по уровню параллелизма. Потоки пула являются демонами и не мешают завершению приложения.
+     */
+    private static final ConcurrentMap<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+
+    private ParallelStripes() {
+    }
+
+    /**
+     * Проверка, имеет ли смысл и допустима ли параллельная обработка. Растры, в которых соседние пиксели
+     * делят байт, обрабатываются последовательно: полосы одновременно перезаписывали бы общие байты.
+     *
+     * @param raster      растр изображения.
+     * @param pixels      количество пикселей сообщения.
+     * @param parallelism уровень параллелизма.
+     * @return {@code true}, если диапазон стоит делить на полосы.
+     */
+    static boolean worthSplitting(SampleRaster raster, long pixels, int parallelism) {
+        return parallelism > 1 && pixels >= 2 * MIN_STRIPE_PIXELS && raster.isPixelIndependent();
+    }
+
+    /**
+     * Параллельная запись битов сообщения.
+     *
+     * @param raster      растр изображения.
+     * @param layout      порядок обхода пикселей.
+     * @param scatter     перестановка для разбросанного порядка или {@code null}.
+     * @param first       порядковый номер первого пикселя сообщения.
+     * @param pixels      количество пикселей сообщения.
+     * @param mode        режим встраивания.
+     * @param payload     байты сообщения, начиная с текущей позиции.
+     * @param parallelism уровень параллелизма.
+     * @throws IOException если вызывающий поток прерван; растр при этом остаётся частично изменённым.
+     */
+    static void write(SampleRaster raster, EmbeddingLayout layout, PixelScatter scatter, long first, long pixels,
+                      ChannelMode mode, ByteBuffer payload, int parallelism) throws IOException {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        invoke(new Stripe(raster, layout, scatter, first, 0, pixels, mode, payload, -1,
+                splitThreshold(pixels, parallelism), cancelled), cancelled, parallelism, "Встраивание прервано.");
+    }
+
+    /**
+     * Параллельное чтение битов сообщения.
+     *
+     * @param raster      растр изображения.
+     * @param layout      порядок обхода пикселей.
+     * @param scatter     перестановка для разбросанного порядка или {@code null}.
+     * @param first       порядковый номер первого пикселя сообщения.
+     * @param pixels      количество пикселей сообщения.
+     * @param mode        режим встраивания.
+     * @param target      буфер для байтов сообщения, начиная с текущей позиции.
+     * @param bits        количество битов сообщения.
+     * @param parallelism уровень параллелизма.
+     * @throws IOException если вызывающий поток прерван или запись в буфер не удалась.
+     */
+    static void read(SampleRaster raster, EmbeddingLayout layout, PixelScatter scatter, long first, long pixels,
+                     ChannelMode mode, ByteBuffer target, long bits, int parallelism) throws IOException {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        invoke(new Stripe(raster, layout, scatter, first, 0, pixels, mode, target, bits,
+                splitThreshold(pixels, parallelism), cancelled), cancelled, parallelism, "Извлечение прервано.");
+    }
+
+    /**
+     * Выполнение полос в пуле. Прерывание вызывающего потока отменяет ещё не начатые полосы;
+     * управление возвращается только после завершения уже начатых, чтобы они не меняли растр позже.
+     *
+     * @param stripes     полоса со всем диапазоном пикселей.
+     * @param cancelled   признак отмены, проверяемый перед каждой полосой.
+     * @param parallelism уровень параллелизма.
+     * @param interrupted сообщение о прерывании.
+     * @throws IOException если вызывающий поток прерван или полоса завершилась ошибкой.
+     */
+    private static void invoke(Stripe stripes, AtomicBoolean cancelled, int parallelism, String interrupted)
+            throws IOException {
+        ForkJoinTask<Void> task = pool(parallelism).submit(stripes);
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            cancelled.set(true);
+            task.quietlyJoin();
+            Thread.currentThread().interrupt();
+            LogUtil.logWarning(interrupted);
+            throw new InterruptedIOException(interrupted);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Длина полосы, после которой она больше не делится: около четырёх полос на поток для выравнивания нагрузки.
+     *
+     * @param pixels      количество пикселей сообщения.
+     * @param parallelism уровень параллелизма.
+     * @return наибольшая длина неделимой полосы.
+     */
+    private static long splitThreshold(long pixels, int parallelism) {
+        return Math.max(MIN_STRIPE_PIXELS, pixels / (4L * parallelism));
+    }
+
+    /**
+     * Получение пула потоков с заданным уровнем параллелизма.
+     *
+     * @param parallelism уровень параллелизма.
+     * @return пул потоков.
+     */
+    static ForkJoinPool pool(int parallelism) {
+        if (parallelism == ForkJoinPool.getCommonPoolParallelism()) {
+            return ForkJoinPool.commonPool();
+        }
+        return POOLS.computeIfAbsent(parallelism, ForkJoinPool::new);
+    }
+
+    /**
+     * Полоса пикселей [from, to) относительно первого пикселя сообщения.
+     * Длинная полоса делится пополам по границе {@link #ALIGNMENT}, короткая обрабатывается в текущем потоке.
+     */
+    private static final class Stripe extends RecursiveAction {
+        private final SampleRaster raster;
+        private final EmbeddingLayout layout;
+        private final PixelScatter scatter;
+        private final long first;
+        private final long from;
+        private final long to;
+        private final ChannelMode mode;
+        private final ByteBuffer buffer;
+        private final long bits;
+        private final long threshold;
+        private final AtomicBoolean cancelled;
+
+        /**
+         * @param bits      количество битов сообщения при чтении или -1 при записи.
+         * @param cancelled признак отмены: установленный признак пропускает оставшиеся полосы.
+         */
+        Stripe(SampleRaster raster, EmbeddingLayout layout, PixelScatter scatter, long first, long from, long to,
+               ChannelMode mode, ByteBuffer buffer, long bits, long threshold, AtomicBoolean cancelled) {
+            this.raster = raster;
+            this.layout = layout;
+            this.scatter = scatter;
+            this.first = first;
+            this.from = from;
+            this.to = to;
+            this.mode = mode;
+            this.buffer = buffer;
+            this.bits = bits;
+            this.threshold = threshold;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > threshold) {
+                long middle = (from + (to - from) / 2) / ALIGNMENT * ALIGNMENT;
+                invokeAll(new Stripe(raster, layout, scatter, first, from, middle, mode, buffer, bits, threshold,
+                                cancelled),
+                        new Stripe(raster, layout, scatter, first, middle, to, mode, buffer, bits, threshold,
+                                cancelled));
+                return;
+            }
+            if (cancelled.get()) {
+                return;
+            }
+            long bitOffset = from * mode.bitsPerPixel;
+            ByteBuffer slice = buffer.duplicate();
+            slice.position(buffer.position() + (int) (bitOffset / 8));
+            int width = raster.width;
+            int height = raster.height;
+            if (bits < 0) {
+                BitReader reader = new BitReader(slice);
+                layout.forEachRun(width, height, first + from, to - from, scatter,
+                        (x, y, dx, dy, n) -> raster.writeBits(x, y, dx, dy, n, mode, reader));
+            } else {
+                long limit = Math.min(bits - bitOffset, (to - from) * mode.bitsPerPixel);
+                BitWriter writer = new BitWriter(slice).limit(limit);
+                layout.forEachRun(width, height, first + from, to - from, scatter,
+                        (x, y, dx, dy, n) -> raster.readBits(x, y, dx, dy, n, mode, writer));
+                try {
+                    writer.finish();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.demo;
+
+import java.security.spec.AlgorithmParameterSpec;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+
+/**
+ * Алгоритм аутентифицированного шифрования сообщения в {@link PayloadTransform}.
+ * Оба алгоритма используют 256-битный ключ, 12-байтовый nonce и 16-байтовый код аутентификации.
+ * Выбранный алгоритм записывается во флаги заголовка кадра.
+ */
+public enum PayloadCipher {
+
+    /**
+     * AES в режиме GCM. Быстрее на процессорах с аппаратной поддержкой AES.
+     */
+    AES_GCM(PayloadTransform.FLAG_AES_GCM, "AES/GCM/NoPadding", "AES"),
+
+    /**
+     * ChaCha20-Poly1305. Быстрее на процессорах без аппаратной поддержки AES.
+     */
+    CHACHA20_POLY1305(PayloadTransform.FLAG_CHACHA20_POLY1305, "ChaCha20-Poly1305", "ChaCha20");
+
+    /**
+     * Флаг алгоритма в заголовке кадра.
+     */
+    private final int flag;
+
+    /**
+     * Имя преобразования для {@link javax.crypto.Cipher#getInstance(String)}.
+     */
+    final String transformation;
+
+    /**
+     * Имя алгоритма ключа.
+     */
+    final String keyAlgorithm;
+
+    PayloadCipher(int flag, String transformation, String keyAlgorithm) {
+        this.flag = flag;
+        this.transformation = transformation;
+        this.keyAlgorithm = keyAlgorithm;
+    }
+
+    /**
+     * Получение флага алгоритма.
+     *
+     * @return флаг, записываемый в заголовок кадра.
+     */
+    public int getFlag() {
+        return flag;
+    }
+
+    /**
+     * Параметры шифра для заданного nonce.
+     *
+     * @param nonce nonce сегмента.
+     * @return параметры инициализации шифра.
+     */
+    AlgorithmParameterSpec parameters(byte[] nonce) {
+        return this == AES_GCM ? new GCMParameterSpec(PayloadTransform.TAG_BYTES * 8, nonce)
+                : new IvParameterSpec(nonce);
+    }
+
+    /**
+     * Получение алгоритма по флагам заголовка кадра.
+     *
+     * @param flags флаги заголовка.
+     * @return алгоритм или {@code null}, если сообщение не зашифровано.
+     */
+    static PayloadCipher fromFlags(int flags) {
+        for (PayloadCipher cipher : values()) {
+            if ((flags & cipher.flag) != 0) {
+                return cipher;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.demo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Потоковый источник байтов сообщения известной длины.
+ * Байты читаются из канала в прямой буфер фиксированного размера и сразу встраиваются в изображение,
+ * поэтому расход памяти не зависит от длины сообщения. Содержимое не интерпретируется как текст,
+ * источник подходит для произвольных двоичных файлов.
+ * Источник читается один раз: контрольная сумма CRC-32 вычисляется по мере чтения.
+ */
+public final class PayloadSource implements Closeable {
+
+    /**
+     * Размер буфера чтения.
+     */
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Канал с байтами сообщения.
+     */
+    private final ReadableByteChannel channel;
+
+    /**
+     * Длина сообщения в байтах.
+     */
+    private final long length;
+
+    /**
+     * Контрольная сумма прочитанных байтов.
+     */
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Был ли уже создан читатель битов.
+     */
+    private boolean consumed;
+
+    private PayloadSource(ReadableByteChannel channel, long length) {
+        this.channel = channel;
+        this.length = length;
+    }
+
+    /**
+     * Создание источника поверх канала.
+     *
+     * @param channel канал с байтами сообщения, закрывается вместе с источником.
+     * @param length  длина сообщения в байтах.
+     * @return источник сообщения.
+     * @throws IOException если длина сообщения не положительна.
+     */
+    public static PayloadSource of(ReadableByteChannel channel, long length) throws IOException {
+        if (channel == null || length <= 0) {
+            IOException e = new IOException("Сообщение не должно быть пустым.");
+            LogUtil.logError("Сообщение не должно быть пустым.", e);
+            throw e;
+        }
+        return new PayloadSource(channel, length);
+    }
+
+    /**
+     * Создание источника поверх входного потока.
+     *
+     * @param in     входной поток с байтами сообщения, закрывается вместе с источником.
+     * @param length длина сообщения в байтах.
+     * @return источник сообщения.
+     * @throws IOException если длина сообщения не положительна.
+     */
+    public static PayloadSource of(InputStream in, long length) throws IOException {
+        if (in == null) {
+            return of((ReadableByteChannel) null, length);
+        }
+        return of(Channels.newChannel(in), length);
+    }
+
+    /**
+     * Получение длины сообщения.
+     *
+     * @return длина сообщения в байтах.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Получение контрольной суммы прочитанных байтов. После чтения всего сообщения равна сумме сообщения.
+     *
+     * @return контрольная сумма CRC-32.
+     */
+    int checksum() {
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Создание читателя битов сообщения. Источник можно прочитать только один раз.
+     *
+     * @return читатель, возвращающий ровно {@link #getLength()} байтов сообщения.
+     * @throws IOException если источник уже прочитан.
+     */
+    BitReader reader() throws IOException {
+        if (consumed) {
+            throw new IOException("Источник сообщения уже прочитан.");
+        }
+        consumed = true;
+        return new BitReader(new ChecksumChannel(), length, ByteBuffer.allocateDirect(BUFFER_SIZE));
+    }
+
+    /**
+     * Чтение всего сообщения в память. Используется только для коротких сообщений исходного формата.
+     *
+     * @param maxLength наибольшая допустимая длина.
+     * @return упакованное сообщение.
+     * @throws IOException если сообщение длиннее {@code maxLength}, источник уже прочитан или чтение не удалось.
+     */
+    BitPayload readFully(int maxLength) throws IOException {
+        if (length > maxLength) {
+            IOException e = new IOException("Длина сообщения превышает допустимый размер: " + length
+                    + " байт при ёмкости " + maxLength + " байт.");
+            LogUtil.logError(e.getMessage(), e);
+            throw e;
+        }
+        if (consumed) {
+            throw new IOException("Источник сообщения уже прочитан.");
+        }
+        consumed = true;
+        ByteBuffer bytes = ByteBuffer.allocate((int) length);
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes) < 0) {
+                throw new IOException("Данные закончились раньше заявленной длины, не прочитано "
+                        + bytes.remaining() + " байт.");
+            }
+        }
+        crc.update(bytes.array());
+        return BitPayload.wrap(bytes.array());
+    }
+
+    /**
+     * Закрытие канала сообщения.
+     *
+     * @throws IOException если канал не удалось закрыть.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Канал, обновляющий контрольную сумму прочитанными байтами.
+     */
+    private final class ChecksumChannel implements ReadableByteChannel {
+
+        @Override
+        public int read(ByteBuffer target) throws IOException {
+            int start = target.position();
+            int read = channel.read(target);
+            if (read > 0) {
+                ByteBuffer chunk = target.duplicate();
+                chunk.position(start).limit(start + read);
+                crc.update(chunk);
+            }
+            return read;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
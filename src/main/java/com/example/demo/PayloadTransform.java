@@ -0,0 +1,584 @@
+package com.example.demo;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.DeflaterInputStream;
+import java.util.zip.InflaterOutputStream;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Преобразование байтов сообщения перед встраиванием: сжатие Deflate, затем аутентифицированное шифрование.
+ * Сжатие выполняется до шифрования, так как зашифрованные данные не сжимаются. Применённые преобразования
+ * записываются во флаги заголовка кадра, поэтому при извлечении известно, как восстановить сообщение;
+ * пароль в изображении не хранится.
+ *
+ * <p>Оба преобразования потоковые: сообщение читается и преобразуется порциями, длина результата становится
+ * известна только после чтения всего сообщения. Шифрование выполняется сегментами по {@link #SEGMENT_BYTES}
+ * байтов открытого текста, каждый со своим кодом аутентификации, поэтому и при извлечении сообщение
+ * расшифровывается по мере чтения, без буферизации целиком. Зашифрованные данные начинаются с соли пароля
+ * и случайной соли сообщения. Из пароля функцией PBKDF2-HMAC-SHA256 один раз при создании преобразования
+ * выводится главный ключ, а из главного ключа и соли сообщения функцией HKDF-SHA256 — ключ сообщения,
+ * поэтому каждое сообщение шифруется своим ключом. Nonce сегмента состоит из номера сегмента и признака
+ * последнего сегмента, так что перестановка, удаление или отсечение сегментов обнаруживаются.</p>
+ *
+ * <p>Параметры объекта неизменяемы, объект потокобезопасен, методы {@code with...} возвращают новый объект.</p>
+ */
+public final class PayloadTransform {
+
+    /**
+     * Флаг заголовка кадра: сообщение сжато Deflate.
+     */
+    public static final int FLAG_DEFLATE = 1;
+
+    /**
+     * Флаг заголовка кадра: сообщение зашифровано AES-GCM.
+     */
+    public static final int FLAG_AES_GCM = 2;
+
+    /**
+     * Флаг заголовка кадра: сообщение зашифровано ChaCha20-Poly1305.
+     */
+    public static final int FLAG_CHACHA20_POLY1305 = 4;
+
+    /**
+     * Все известные флаги преобразований.
+     */
+    static final int KNOWN_FLAGS = FLAG_DEFLATE | FLAG_AES_GCM | FLAG_CHACHA20_POLY1305;
+
+    /**
+     * Размер сегмента открытого текста при шифровании.
+     */
+    static final int SEGMENT_BYTES = 64 * 1024;
+
+    /**
+     * Размер кода аутентификации сегмента.
+     */
+    static final int TAG_BYTES = 16;
+
+    /**
+     * Размер соли для вывода главного ключа из пароля.
+     */
+    static final int SALT_BYTES = 16;
+
+    /**
+     * Размер случайной соли для вывода ключа сообщения из главного ключа.
+     */
+    static final int MESSAGE_SALT_BYTES = 16;
+
+    /**
+     * Размер nonce сегмента.
+     */
+    private static final int NONCE_BYTES = 12;
+
+    /**
+     * Количество итераций PBKDF2.
+     */
+    static final int ITERATIONS = 210_000;
+
+    /**
+     * Преобразование, не изменяющее сообщение.
+     */
+    private static final PayloadTransform NONE = new PayloadTransform(false, null, null, null, null);
+
+    /**
+     * Генератор солей.
+     */
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * Сжимать ли сообщение.
+     */
+    private final boolean compress;
+
+    /**
+     * Алгоритм шифрования или {@code null}, если сообщение не шифруется.
+     */
+    private final PayloadCipher cipher;
+
+    /**
+     * Пароль для вывода ключа при расшифровании или {@code null}.
+     */
+    private final char[] password;
+
+    /**
+     * Соль главного ключа.
+     */
+    private final byte[] salt;
+
+    /**
+     * Главный ключ, выведенный из пароля и соли.
+     */
+    private final SecretKey key;
+
+    /**
+     * Последний главный ключ, выведенный при расшифровании. Сообщения, встроенные одним преобразованием,
+     * имеют общую соль пароля, поэтому при извлечении набора таких сообщений PBKDF2 выполняется один раз.
+     */
+    private final AtomicReference<DerivedKey> lastKey = new AtomicReference<>();
+
+    private PayloadTransform(boolean compress, PayloadCipher cipher, char[] password, byte[] salt, SecretKey key) {
+        this.compress = compress;
+        this.cipher = cipher;
+        this.password = password;
+        this.salt = salt;
+        this.key = key;
+    }
+
+    /**
+     * Преобразование, не изменяющее сообщение.
+     *
+     * @return преобразование без сжатия и шифрования.
+     */
+    public static PayloadTransform none() {
+        return NONE;
+    }
+
+    /**
+     * Преобразование для извлечения зашифрованных сообщений. Алгоритм и соль берутся из флагов заголовка
+     * и из самого сообщения, ключ выводится из пароля при извлечении.
+     *
+     * @param password пароль, заданный при встраивании.
+     * @return преобразование, восстанавливающее сообщение.
+     * @throws IllegalArgumentException если пароль пуст.
+     */
+    public static PayloadTransform forExtraction(String password) {
+        if (password == null || password.isEmpty()) {
+            throw new IllegalArgumentException("Пароль шифрования не может быть пустым.");
+        }
+        return new PayloadTransform(false, null, password.toCharArray(), null, null);
+    }
+
+    /**
+     * Проверка, изменяет ли преобразование сообщение.
+     *
+     * @return {@code true}, если сообщение не сжимается и не шифруется.
+     */
+    public boolean isIdentity() {
+        return !compress && cipher == null;
+    }
+
+    /**
+     * Получение флагов заголовка кадра для сообщений, преобразованных этим объектом.
+     *
+     * @return флаги преобразований.
+     */
+    public int flags() {
+        return (compress ? FLAG_DEFLATE : 0) | (cipher != null ? cipher.getFlag() : 0);
+    }
+
+    /**
+     * Включение или отключение сжатия.
+     *
+     * @param compress сжимать ли сообщение.
+     * @return новое преобразование.
+     */
+    public PayloadTransform withCompression(boolean compress) {
+        return new PayloadTransform(compress, cipher, password, salt, key);
+    }
+
+    /**
+     * Включение шифрования с ключом, выведенным из пароля.
+     * Вывод ключа намеренно медленный, поэтому объект следует создавать один раз для многих сообщений.
+     *
+     * @param cipher   алгоритм шифрования.
+     * @param password пароль.
+     * @return новое преобразование.
+     * @throws IllegalArgumentException если пароль пуст.
+     */
+    public PayloadTransform withEncryption(PayloadCipher cipher, String password) {
+        if (password == null || password.isEmpty()) {
+            throw new IllegalArgumentException("Пароль шифрования не может быть пустым.");
+        }
+        char[] chars = password.toCharArray();
+        byte[] newSalt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(newSalt);
+        return new PayloadTransform(compress, cipher, chars, newSalt, deriveKey(cipher, chars, newSalt));
+    }
+
+    /**
+     * Применение преобразования к потоку байтов сообщения.
+     *
+     * @param message поток байтов сообщения, закрывается вместе с результатом.
+     * @return поток преобразованных байтов.
+     */
+    public InputStream encode(InputStream message) {
+        InputStream stream = compress ? new DeflaterInputStream(message) : message;
+        if (cipher == null) {
+            return stream;
+        }
+        byte[] messageSalt = new byte[MESSAGE_SALT_BYTES];
+        RANDOM.nextBytes(messageSalt);
+        return new SealingInputStream(stream, cipher, messageKey(cipher, key, messageSalt), salt, messageSalt);
+    }
+
+    /**
+     * Создание потока, восстанавливающего сообщение из преобразованных байтов.
+     * Закрытие результата завершает восстановление и проверку последнего сегмента, но не закрывает
+     * выходной поток.
+     *
+     * @param flags флаги преобразований из заголовка кадра.
+     * @param out   поток для восстановленного сообщения.
+     * @return поток, в который записываются преобразованные байты.
+     * @throws IOException если сообщение зашифровано, а пароль не указан.
+     */
+    public OutputStream decode(int flags, OutputStream out) throws IOException {
+        OutputStream stream = new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                out.write(bytes, offset, length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                // Выходной поток принадлежит вызывающей стороне
+                out.flush();
+            }
+        };
+        if ((flags & FLAG_DEFLATE) != 0) {
+            stream = new InflaterOutputStream(stream);
+        }
+        PayloadCipher used = PayloadCipher.fromFlags(flags);
+        if (used != null) {
+            if (password == null) {
+                IOException e = new IOException("Сообщение зашифровано " + used + ", укажите пароль.");
+                LogUtil.logError(e.getMessage(), e);
+                throw e;
+            }
+            stream = new OpeningOutputStream(stream, used, this);
+        }
+        return stream;
+    }
+
+    @Override
+    public String toString() {
+        return "сжатие " + (compress ? "Deflate" : "нет") + ", шифрование " + (cipher != null ? cipher : "нет");
+    }
+
+    /**
+     * Вывод ключа шифрования из пароля.
+     *
+     * @param cipher   алгоритм шифрования.
+     * @param password пароль.
+     * @param salt     соль.
+     * @return ключ.
+     */
+    private static SecretKey deriveKey(PayloadCipher cipher, char[] password, byte[] salt) {
+        PBEKeySpec spec = new PBEKeySpec(password, salt, ITERATIONS, 256);
+        try {
+            byte[] bytes = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+            return new SecretKeySpec(bytes, cipher.keyAlgorithm);
+        } catch (GeneralSecurityException e) {
+            // PBKDF2WithHmacSHA256 входит в число алгоритмов, обязательных для любой реализации Java
+            throw new IllegalStateException(e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    /**
+     * Вывод ключа сообщения из главного ключа функцией HKDF-SHA256 (RFC 5869). Алгоритм шифрования входит
+     * в контекст вывода, поэтому один главный ключ не даёт одинаковых ключей для разных алгоритмов.
+     *
+     * @param cipher      алгоритм шифрования.
+     * @param master      главный ключ.
+     * @param messageSalt соль сообщения.
+     * @return ключ сообщения.
+     */
+    private static SecretKey messageKey(PayloadCipher cipher, SecretKey master, byte[] messageSalt) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(messageSalt, "HmacSHA256"));
+            byte[] pseudoRandomKey = mac.doFinal(master.getEncoded());
+            // Один блок HMAC-SHA256 даёт ровно 256 битов ключа
+            mac.init(new SecretKeySpec(pseudoRandomKey, "HmacSHA256"));
+            mac.update(cipher.name().getBytes(StandardCharsets.US_ASCII));
+            mac.update((byte) 1);
+            return new SecretKeySpec(mac.doFinal(), cipher.keyAlgorithm);
+        } catch (GeneralSecurityException e) {
+            // HmacSHA256 входит в число алгоритмов, обязательных для любой реализации Java
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Получение главного ключа для соли пароля из сообщения. Ключ выводится заново, только если соль
+     * или алгоритм отличаются от последних использованных.
+     *
+     * @param algorithm алгоритм шифрования сообщения.
+     * @param salt      соль пароля из сообщения.
+     * @return главный ключ.
+     */
+    private SecretKey keyFor(PayloadCipher algorithm, byte[] salt) {
+        DerivedKey last = lastKey.get();
+        if (last != null && last.algorithm == algorithm && Arrays.equals(last.salt, salt)) {
+            return last.key;
+        }
+        SecretKey derived = deriveKey(algorithm, password, salt);
+        lastKey.set(new DerivedKey(algorithm, salt, derived));
+        return derived;
+    }
+
+    /**
+     * Формирование nonce сегмента: нулевые байты, номер сегмента и признак последнего сегмента.
+     * Ключ сообщения не повторяется, поэтому nonce достаточно быть уникальным в пределах сообщения.
+     *
+     * @param segment номер сегмента.
+     * @param last    является ли сегмент последним.
+     * @return nonce длиной 12 байтов.
+     */
+    private static byte[] nonce(int segment, boolean last) {
+        return ByteBuffer.allocate(NONCE_BYTES)
+                .position(NONCE_BYTES - Integer.BYTES - 1)
+                .putInt(segment)
+                .put((byte) (last ? 1 : 0))
+                .array();
+    }
+
+    /**
+     * Ключ, выведенный из пароля для заданных алгоритма и соли.
+     */
+    private static final class DerivedKey {
+
+        private final PayloadCipher algorithm;
+
+        private final byte[] salt;
+
+        private final SecretKey key;
+
+        DerivedKey(PayloadCipher algorithm, byte[] salt, SecretKey key) {
+            this.algorithm = algorithm;
+            this.salt = salt;
+            this.key = key;
+        }
+    }
+
+    /**
+     * Поток, шифрующий байты источника по сегментам.
+     * Для определения последнего сегмента из источника читается на один байт больше сегмента.
+     */
+    private static final class SealingInputStream extends InputStream {
+
+        private final InputStream source;
+
+        private final Cipher cipher;
+
+        private final PayloadCipher algorithm;
+
+        private final SecretKey key;
+
+        /**
+         * Открытый текст текущего сегмента и, возможно, первый байт следующего.
+         */
+        private final byte[] plain = new byte[SEGMENT_BYTES + 1];
+
+        /**
+         * Количество байтов в {@link #plain}.
+         */
+        private int buffered;
+
+        /**
+         * Зашифрованные байты, ещё не переданные читателю.
+         */
+        private final ByteBuffer sealed = ByteBuffer.allocate(SEGMENT_BYTES + TAG_BYTES);
+
+        private int segment;
+
+        private boolean finished;
+
+        /**
+         * @param key         ключ сообщения.
+         * @param salt        соль главного ключа.
+         * @param messageSalt соль ключа сообщения.
+         */
+        SealingInputStream(InputStream source, PayloadCipher algorithm, SecretKey key, byte[] salt,
+                           byte[] messageSalt) {
+            this.source = source;
+            this.algorithm = algorithm;
+            this.key = key;
+            try {
+                this.cipher = Cipher.getInstance(algorithm.transformation);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+            sealed.put(salt).put(messageSalt).flip();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (!sealed.hasRemaining()) {
+                if (finished) {
+                    return -1;
+                }
+                sealNext();
+            }
+            int count = Math.min(length, sealed.remaining());
+            sealed.get(target, offset, count);
+            return count;
+        }
+
+        /**
+         * Шифрование следующего сегмента.
+         *
+         * @throws IOException если чтение источника или шифрование не удалось.
+         */
+        private void sealNext() throws IOException {
+            buffered += source.readNBytes(plain, buffered, plain.length - buffered);
+            boolean last = buffered <= SEGMENT_BYTES;
+            int length = last ? buffered : SEGMENT_BYTES;
+            sealed.clear();
+            try {
+                cipher.init(Cipher.ENCRYPT_MODE, key, algorithm.parameters(nonce(segment++, last)));
+                cipher.doFinal(plain, 0, length, sealed.array(), 0);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Не удалось зашифровать сообщение: " + e.getMessage(), e);
+            }
+            sealed.limit(length + TAG_BYTES);
+            if (last) {
+                finished = true;
+                buffered = 0;
+            } else {
+                plain[0] = plain[SEGMENT_BYTES];
+                buffered = 1;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+    }
+
+    /**
+     * Поток, расшифровывающий сегменты по мере записи и передающий открытый текст дальше.
+     * Сегмент расшифровывается, когда после него записан хотя бы один байт; последний сегмент
+     * расшифровывается при закрытии.
+     */
+    private static final class OpeningOutputStream extends OutputStream {
+
+        private final OutputStream out;
+
+        private final PayloadCipher algorithm;
+
+        private final PayloadTransform transform;
+
+        private Cipher cipher;
+
+        private SecretKey key;
+
+        /**
+         * Зашифрованные байты текущего сегмента и, возможно, первый байт следующего.
+         */
+        private final byte[] sealed = new byte[SEGMENT_BYTES + TAG_BYTES + 1];
+
+        private int buffered;
+
+        private final byte[] plain = new byte[SEGMENT_BYTES];
+
+        private int segment;
+
+        OpeningOutputStream(OutputStream out, PayloadCipher algorithm, PayloadTransform transform) {
+            this.out = out;
+            this.algorithm = algorithm;
+            this.transform = transform;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                int count = Math.min(length, sealed.length - buffered);
+                System.arraycopy(bytes, offset, sealed, buffered, count);
+                buffered += count;
+                offset += count;
+                length -= count;
+                if (key == null && buffered >= SALT_BYTES + MESSAGE_SALT_BYTES) {
+                    start();
+                }
+                if (buffered == sealed.length) {
+                    open(SEGMENT_BYTES + TAG_BYTES, false);
+                    sealed[0] = sealed[SEGMENT_BYTES + TAG_BYTES];
+                    buffered = 1;
+                }
+            }
+        }
+
+        /**
+         * Чтение солей, вывод ключа сообщения.
+         *
+         * @throws IOException если шифр недоступен.
+         */
+        private void start() throws IOException {
+            byte[] salt = Arrays.copyOfRange(sealed, 0, SALT_BYTES);
+            byte[] messageSalt = Arrays.copyOfRange(sealed, SALT_BYTES, SALT_BYTES + MESSAGE_SALT_BYTES);
+            buffered -= SALT_BYTES + MESSAGE_SALT_BYTES;
+            System.arraycopy(sealed, SALT_BYTES + MESSAGE_SALT_BYTES, sealed, 0, buffered);
+            key = messageKey(algorithm, transform.keyFor(algorithm, salt), messageSalt);
+            try {
+                cipher = Cipher.getInstance(algorithm.transformation);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Шифр " + algorithm + " недоступен: " + e.getMessage(), e);
+            }
+        }
+
+        /**
+         * Расшифрование сегмента из начала буфера.
+         *
+         * @param length длина сегмента вместе с кодом аутентификации.
+         * @param last   является ли сегмент последним.
+         * @throws IOException если пароль неверен, данные повреждены или запись не удалась.
+         */
+        private void open(int length, boolean last) throws IOException {
+            int count;
+            try {
+                cipher.init(Cipher.DECRYPT_MODE, key, algorithm.parameters(nonce(segment++, last)));
+                count = cipher.doFinal(sealed, 0, length, plain, 0);
+            } catch (AEADBadTagException e) {
+                IOException error = new IOException("Неверный пароль или сообщение повреждено.", e);
+                LogUtil.logError(error.getMessage(), error);
+                throw error;
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Не удалось расшифровать сообщение: " + e.getMessage(), e);
+            }
+            out.write(plain, 0, count);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (key == null || buffered < TAG_BYTES) {
+                IOException e = new IOException("Зашифрованное сообщение обрезано.");
+                LogUtil.logError(e.getMessage(), e);
+                throw e;
+            }
+            open(buffered, true);
+            buffered = 0;
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.demo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Перестановка пикселей сообщения по секретному ключу для порядка обхода {@link EmbeddingLayout#SCATTERED}.
+ * Порядковый номер пикселя сообщения переводится в номер пикселя изображения сетью Фейстеля из четырёх раундов
+ * над наименьшим диапазоном из 2<sup>2k</sup> номеров, вмещающим все пиксели; номера за пределами изображения
+ * повторно шифруются, пока не попадут в изображение (cycle walking). Такая перестановка взаимно однозначна
+ * на номерах пикселей изображения, вычисляется за O(1) для каждого пикселя независимо от остальных и не требует
+ * ни памяти под перемешанный список номеров, ни выделения объектов на пиксель. Поэтому разбросанное сообщение,
+ * как и последовательное, можно встраивать и извлекать параллельно по полосам и с любого места. Исключение —
+ * растры, в которых несколько пикселей упакованы в один байт (TYPE_BYTE_BINARY и другие модели
+ * {@link java.awt.image.MultiPixelPackedSampleModel}): разбросанные пиксели разных полос попадают в общие байты,
+ * поэтому такие растры всегда обрабатываются в одном потоке (см. {@link EmbeddingConfig#withParallelism(int)}).
+ * Пиксели заголовка кадра в перестановке не участвуют и остаются на своих местах.
+ * Функция раунда — быстрое перемешивание битов, а не криптографическая функция: разброс скрывает расположение
+ * сообщения от статистического анализа, но для защиты содержимого сообщение следует шифровать.
+ */
+public final class PixelScatter {
+
+    /**
+     * Количество раундов сети Фейстеля.
+     */
+    private static final int ROUNDS = 4;
+
+    /**
+     * Ключи раундов.
+     */
+    private final long[] roundKeys;
+
+    private PixelScatter(long[] roundKeys) {
+        this.roundKeys = roundKeys;
+    }
+
+    /**
+     * Создание перестановки по числовому ключу.
+     *
+     * @param key ключ.
+     * @return перестановка.
+     */
+    public static PixelScatter fromKey(long key) {
+        long[] roundKeys = new long[ROUNDS];
+        long state = key;
+        for (int i = 0; i < ROUNDS; i++) {
+            // Ключи раундов получаются генератором SplitMix64, чтобы близкие ключи давали несвязанные перестановки
+            state += 0x9E3779B97F4A7C15L;
+            roundKeys[i] = mix(state);
+        }
+        return new PixelScatter(roundKeys);
+    }
+
+    /**
+     * Создание перестановки по парольной фразе. Ключи раундов берутся из хэша SHA-256 фразы в кодировке UTF-8.
+     *
+     * @param passphrase парольная фраза.
+     * @return перестановка.
+     * @throws IllegalArgumentException если фраза пуста.
+     */
+    public static PixelScatter fromPassphrase(String passphrase) {
+        if (passphrase == null || passphrase.isEmpty()) {
+            throw new IllegalArgumentException("Ключ разброса не может быть пустым.");
+        }
+        try {
+            ByteBuffer digest = ByteBuffer.wrap(MessageDigest.getInstance("SHA-256")
+                    .digest(passphrase.getBytes(StandardCharsets.UTF_8)));
+            long[] roundKeys = new long[ROUNDS];
+            for (int i = 0; i < ROUNDS; i++) {
+                roundKeys[i] = digest.getLong();
+            }
+            return new PixelScatter(roundKeys);
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 входит в число алгоритмов, обязательных для любой реализации Java
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Перестановка номера в диапазоне [0, domain).
+     *
+     * @param index  номер, от 0 до {@code domain - 1}.
+     * @param domain размер диапазона.
+     * @return переставленный номер в том же диапазоне.
+     */
+    long permute(long index, long domain) {
+        return permute(index, domain, halfBits(domain));
+    }
+
+    /**
+     * Разбиение диапазона порядковых номеров пикселей сообщения на отрезки из одного пикселя.
+     * Номера отсчитываются от начала изображения, как в последовательных порядках обхода.
+     *
+     * @param width  ширина изображения.
+     * @param height высота изображения.
+     * @param first  порядковый номер первого пикселя диапазона, не меньше {@link FrameHeader#HEADER_PIXELS}.
+     * @param count  количество пикселей в диапазоне.
+     * @param runs   получатель отрезков.
+     */
+    void forEachRun(int width, int height, long first, long count, EmbeddingLayout.RunConsumer runs) {
+        long offset = FrameHeader.HEADER_PIXELS;
+        long domain = (long) width * height - offset;
+        int half = halfBits(domain);
+        long end = first + count;
+        for (long ordinal = first; ordinal < end; ordinal++) {
+            long pixel = offset + permute(ordinal - offset, domain, half);
+            runs.accept((int) (pixel % width), (int) (pixel / width), 1, 0, 1);
+        }
+    }
+
+    /**
+     * Перестановка номера сетью Фейстеля с повторным шифрованием номеров за пределами диапазона.
+     * Диапазон сети не больше учетверённого размера диапазона, поэтому в среднем требуется не более четырёх
+     * шифрований.
+     *
+     * @param index  номер.
+     * @param domain размер диапазона.
+     * @param half   количество битов половины номера.
+     * @return переставленный номер.
+     */
+    private long permute(long index, long domain, int half) {
+        if (domain <= 1) {
+            return index;
+        }
+        long mask = (1L << half) - 1;
+        long value = index;
+        do {
+            long left = value >>> half;
+            long right = value & mask;
+            for (long roundKey : roundKeys) {
+                long next = left ^ (mix(right ^ roundKey) & mask);
+                left = right;
+                right = next;
+            }
+            value = (left << half) | right;
+        } while (value >= domain);
+        return value;
+    }
+
+    /**
+     * Количество битов половины номера для сети Фейстеля над диапазоном заданного размера.
+     *
+     * @param domain размер диапазона.
+     * @return количество битов, не меньше 1.
+     */
+    private static int halfBits(long domain) {
+        int bits = Long.SIZE - Long.numberOfLeadingZeros(Math.max(1, domain - 1));
+        return Math.max(1, (bits + 1) / 2);
+    }
+
+    /**
+     * Перемешивание битов числа (финальная функция SplitMix64).
+     *
+     * @param value число.
+     * @return перемешанное число.
+     */
+    private static long mix(long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
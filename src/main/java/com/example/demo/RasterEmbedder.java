@@ -0,0 +1,532 @@
+package com.example.demo;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Класс RasterEmbedder выполняет встраивание битов сообщения непосредственно в отсчёты растра изображения.
+ * В исходном формате результат побайтово совпадает с прежней попиксельной записью через {@code getRGB}/{@code setRGB}.
+ */
+public class RasterEmbedder {
+
+    /**
+     * Количество пикселей, занятых длиной сообщения в исходном формате.
+     */
+    static final int LEGACY_HEADER_PIXELS = 8;
+
+    /**
+     * Вычисление ёмкости изображения: наибольшей длины сообщения, которое можно встроить с заданными параметрами.
+     * Если изображение не содержит выбранных каналов, ёмкость равна нулю.
+     *
+     * @param image  изображение-контейнер.
+     * @param config параметры встраивания.
+     * @return ёмкость в байтах.
+     */
+    public static long capacity(BufferedImage image, EmbeddingConfig config) {
+        if (!config.isLegacy() && !SampleRaster.wrap(image).supports(config.channelMode())) {
+            return 0;
+        }
+        return capacity((long) image.getWidth() * image.getHeight(), image.getHeight(), config);
+    }
+
+    /**
+     * Вычисление ёмкости растра заданного размера.
+     *
+     * @param pixels количество пикселей.
+     * @param height высота растра.
+     * @param config параметры встраивания.
+     * @return ёмкость в байтах.
+     */
+    static long capacity(long pixels, int height, EmbeddingConfig config) {
+        if (config.isLegacy()) {
+            if (height < LEGACY_HEADER_PIXELS) {
+                return 0;
+            }
+            return Math.min(FrameHeader.LEGACY_MAX_LENGTH, (pixels - LEGACY_HEADER_PIXELS) / 8);
+        }
+        if (config.getMatrixBits() != 0) {
+            return MatrixCode.of(config.getMatrixBits()).capacityBits(Math.max(0, pixels - FrameHeader.HEADER_PIXELS),
+                    Integer.bitCount(config.getChannelMask())) / 8;
+        }
+        return Math.max(0, (pixels - FrameHeader.HEADER_PIXELS) * config.getBitsPerPixel() / 8);
+    }
+
+    /**
+     * Встраивание сообщения в исходном формате: длина сообщения в первых 8 пикселях столбца 0,
+     * биты сообщения — в младшем бите синего канала по столбцам, начиная с пикселя (0, 8).
+     *
+     * @param payload упакованные биты сообщения.
+     * @param image   изображение для встраивания.
+     * @throws IOException если сообщение не помещается в изображение или длиннее 255 байт.
+     */
+    public static void embedLegacy(BitPayload payload, BufferedImage image) throws IOException {
+        embedLegacy(payload, SampleRaster.wrapLegacy(image));
+    }
+
+    /**
+     * Встраивание сообщения в исходном формате в растр. Ёмкость растра проверяется до записи.
+     *
+     * @param payload упакованные биты сообщения.
+     * @param raster  растр для встраивания.
+     * @throws IOException если сообщение не помещается в растр или длиннее 255 байт.
+     */
+    static void embedLegacy(BitPayload payload, SampleRaster raster) throws IOException {
+        int width = raster.width;
+        int height = raster.height;
+        long messageLength = payload.getBitLength() / 8;
+
+        LogUtil.logInfo("Длина кодирования сообщения: {}", messageLength);
+        requireCapacity(payload, capacity((long) width * height, height, EmbeddingConfig.legacy()));
+
+        ChannelMode mode = ChannelMode.BLUE_LSB;
+
+        ByteBuffer lengthByte = ByteBuffer.wrap(new byte[]{(byte) messageLength});
+        raster.writeBits(0, 0, 0, 1, LEGACY_HEADER_PIXELS, mode, new BitReader(lengthByte));
+
+        // Столбец 0 без пикселей длины, затем остальные столбцы целиком
+        writeRuns(EmbeddingLayout.COLUMN_MAJOR, null, raster, LEGACY_HEADER_PIXELS, payload.getBitLength(), mode,
+                payload.reader());
+        LogUtil.logInfo("Биты сообщения успешно закодированы.");
+    }
+
+    /**
+     * Встраивание сообщения с заданными параметрами.
+     * Для исходного формата используется {@link #embedLegacy}, иначе перед сообщением записывается заголовок кадра.
+     * Заголовок всегда занимает младший бит синего канала, сообщение — выбранные каналы и количество битов.
+     *
+     * @param payload упакованные биты сообщения.
+     * @param image   изображение для встраивания.
+     * @param config  параметры встраивания.
+     * @throws IOException если сообщение вместе с заголовком не помещается в изображение
+     *                     или изображение не содержит выбранных каналов.
+     */
+    public static void embed(BitPayload payload, BufferedImage image, EmbeddingConfig config) throws IOException {
+        if (config.isLegacy()) {
+            requireLegacyMode(config);
+            embedLegacy(payload, image);
+            return;
+        }
+        embedFrame(payload, SampleRaster.wrap(image), config);
+    }
+
+    /**
+     * Встраивание сообщения с заданными параметрами в растр, пригодный как для исходного формата,
+     * так и для формата с заголовком кадра.
+     *
+     * @param payload упакованные биты сообщения.
+     * @param raster  растр для встраивания.
+     * @param config  параметры встраивания.
+     * @throws IOException если сообщение вместе с заголовком не помещается в растр
+     *                     или растр не содержит выбранных каналов.
+     */
+    static void embed(BitPayload payload, SampleRaster raster, EmbeddingConfig config) throws IOException {
+        if (config.isLegacy()) {
+            requireLegacyMode(config);
+            embedLegacy(payload, raster);
+            return;
+        }
+        embedFrame(payload, raster, config);
+    }
+
+    /**
+     * Встраивание заголовка кадра и сообщения в растр.
+     *
+     * @param payload упакованные биты сообщения.
+     * @param raster  растр для встраивания.
+     * @param config  параметры встраивания.
+     * @throws IOException если сообщение вместе с заголовком не помещается в растр
+     *                     или растр не содержит выбранных каналов.
+     */
+    private static void embedFrame(BitPayload payload, SampleRaster raster, EmbeddingConfig config)
+            throws IOException {
+        ChannelMode mode = config.channelMode();
+        long messageLength = payload.getByteLength();
+
+        LogUtil.logInfo("Длина кодирования сообщения: {}, параметры: {}", messageLength, config);
+        // Проверки выполняются до записи первого бита, чтобы изображение не осталось частично изменённым
+        requireFrame(raster, config, messageLength);
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.asByteBuffer());
+        writeHeader(raster, header(config, 0, messageLength, (int) crc.getValue()));
+
+        // Неполные последний байт и последний пиксель дополняются нулевыми битами
+        long pixels = mode.pixelsFor(messageLength * 8);
+        if (config.getMatrixBits() == 0 && ParallelStripes.worthSplitting(raster, pixels, config.getParallelism())) {
+            ParallelStripes.write(raster, config.getLayout(), config.getScatter(), FrameHeader.HEADER_PIXELS, pixels,
+                    mode, payload.asByteBuffer(), config.getParallelism());
+        } else {
+            logChanges(writeMessage(config, raster, FrameHeader.HEADER_PIXELS, messageLength * 8, payload.reader()),
+                    config, messageLength);
+        }
+        LogUtil.logInfo("Биты сообщения успешно закодированы.");
+    }
+
+    /**
+     * Потоковое встраивание сообщения из источника в растр.
+     * Байты сообщения встраиваются по мере чтения из источника, а заголовок кадра с длиной и контрольной суммой
+     * записывается последним, поэтому расход памяти не зависит от длины сообщения.
+     * Сообщение исходного формата не длиннее 255 байт и читается в память целиком.
+     * Если чтение источника прервётся, растр останется частично изменённым без корректного заголовка.
+     *
+     * @param source источник сообщения.
+     * @param raster растр для встраивания.
+     * @param config параметры встраивания, параллелизм не используется.
+     * @throws IOException если сообщение не помещается в растр, растр не содержит выбранных каналов
+     *                     или чтение источника не удалось.
+     */
+    static void embed(PayloadSource source, SampleRaster raster, EmbeddingConfig config) throws IOException {
+        if (config.isLegacy()) {
+            requireLegacyMode(config);
+            embedLegacy(source.readFully(FrameHeader.LEGACY_MAX_LENGTH), raster);
+            return;
+        }
+        long messageLength = source.getLength();
+
+        LogUtil.logInfo("Потоковое кодирование сообщения длиной {}, параметры: {}", messageLength, config);
+        requireFrame(raster, config, messageLength);
+
+        logChanges(writeMessage(config, raster, FrameHeader.HEADER_PIXELS, messageLength * 8, source.reader()),
+                config, messageLength);
+        writeHeader(raster, header(config, 0, messageLength, source.checksum()));
+        LogUtil.logInfo("Биты сообщения успешно закодированы.");
+    }
+
+    /**
+     * Потоковое встраивание сообщения, длина которого заранее неизвестна, например сжатого или зашифрованного
+     * по мере чтения. Поток читается порциями, размер которых кратен количеству битов пикселя, поэтому каждая
+     * полная порция занимает целое число пикселей и записывается сразу после предыдущей. Заголовок кадра с длиной,
+     * контрольной суммой и флагами записывается после окончания потока.
+     * Если сообщение окажется длиннее ёмкости, растр останется частично изменённым без корректного заголовка.
+     *
+     * @param message поток байтов сообщения.
+     * @param flags   флаги преобразований сообщения для заголовка кадра.
+     * @param raster  растр для встраивания.
+     * @param config  параметры встраивания, параллелизм не используется.
+     * @return записанный заголовок кадра.
+     * @throws IOException если выбран исходный формат, сообщение пусто или не помещается в растр,
+     *                     растр не содержит выбранных каналов или чтение потока не удалось.
+     */
+    static FrameHeader embed(InputStream message, int flags, SampleRaster raster, EmbeddingConfig config)
+            throws IOException {
+        if (config.isLegacy()) {
+            IOException e = new IOException("Исходный формат не поддерживает преобразование сообщения.");
+            LogUtil.logError(e.getMessage(), e);
+            throw e;
+        }
+        ChannelMode mode = config.channelMode();
+        requireFrame(raster, config, 0);
+        long capacity = capacity((long) raster.width * raster.height, raster.height, config);
+        LogUtil.logInfo("Потоковое кодирование сообщения неизвестной длины, параметры: {}", config);
+
+        CRC32 crc = new CRC32();
+        // При матричном кодировании полная порция должна занимать целое число групп и пикселей
+        int unit = config.getMatrixBits() != 0 ? config.getMatrixBits() * mode.channels.length : mode.bitsPerPixel;
+        byte[] chunk = new byte[unit * 8 * 1024];
+        long length = 0;
+        long changes = config.getMatrixBits() != 0 ? 0 : -1;
+        long ordinal = FrameHeader.HEADER_PIXELS;
+        int read;
+        while ((read = message.readNBytes(chunk, 0, chunk.length)) > 0) {
+            if (length + read > capacity) {
+                IOException e = new IOException("Длина сообщения превышает допустимый размер: более "
+                        + (length + read) + " байт при ёмкости " + capacity + " байт.");
+                LogUtil.logError(e.getMessage(), e);
+                throw e;
+            }
+            crc.update(chunk, 0, read);
+            // Неполная порция бывает только последней, её последний пиксель дополняется нулевыми битами
+            long written = writeMessage(config, raster, ordinal, read * 8L,
+                    new BitReader(ByteBuffer.wrap(chunk, 0, read)));
+            changes += Math.max(0, written);
+            ordinal += messagePixels(config, read * 8L);
+            length += read;
+        }
+        if (length == 0) {
+            IOException e = new IOException("Сообщение не должно быть пустым.");
+            LogUtil.logError("Сообщение не должно быть пустым.", e);
+            throw e;
+        }
+        logChanges(changes, config, length);
+        FrameHeader header = header(config, flags, length, (int) crc.getValue());
+        writeHeader(raster, header);
+        LogUtil.logInfo("Биты сообщения успешно закодированы, длина {} байт.", length);
+        return header;
+    }
+
+    /**
+     * Дозапись байтов в конец сообщения, уже встроенного в растр с заголовком кадра.
+     * Перезаписываются только пиксели после конца сообщения, начиная с последнего частично занятого пикселя,
+     * и заголовок кадра с новой длиной и контрольной суммой. Прежние пиксели сообщения не читаются,
+     * контрольная сумма продолжается по новым байтам, поэтому время дозаписи зависит только от их количества.
+     * Заголовок записывается последним: при прерывании дозаписи растр по-прежнему содержит прежнее сообщение.
+     *
+     * @param bytes   дописываемые байты, буфер читается от позиции до предела.
+     * @param raster  растр со встроенным сообщением.
+     * @param legacy  растр для исходного формата, используется только для чтения заголовка.
+     * @param scatter перестановка пикселей, если сообщение встроено в разбросанном порядке, иначе {@code null}.
+     * @return заголовок кадра после дозаписи.
+     * @throws IOException если сообщение записано в исходном формате, заголовок повреждён, не указан ключ
+     *                     разброса или сообщение вместе с новыми байтами не помещается в растр.
+     */
+    static FrameHeader append(ByteBuffer bytes, SampleRaster raster, Supplier<SampleRaster> legacy,
+                              PixelScatter scatter) throws IOException {
+        FrameHeader header = RasterExtractor.readHeader(raster, legacy);
+        if (header.isLegacy()) {
+            IOException e = new IOException("Дозапись поддерживается только для сообщений с заголовком кадра.");
+            LogUtil.logError(e.getMessage(), e);
+            throw e;
+        }
+        if (header.getMatrixBits() != 0) {
+            // Последняя группа матричного кода дополнена нулями, продолжить её без перезаписи группы нельзя
+            IOException e = new IOException("Дозапись не поддерживается для сообщений с матричным кодированием.");
+            LogUtil.logError(e.getMessage(), e);
+            throw e;
+        }
+        if (header.getFlags() != 0) {
+            // Сжатый или зашифрованный поток нельзя продолжить дописанными байтами
+            IOException e = new IOException("Дозапись не поддерживается для сжатых и зашифрованных сообщений.");
+            LogUtil.logError(e.getMessage(), e);
+            throw e;
+        }
+        RasterExtractor.requireScatter(header, scatter);
+        ChannelMode mode = ChannelMode.of(header.getBitsPerChannel(), header.getChannelMask());
+        long length = header.getLength() + bytes.remaining();
+        long capacity = ((long) raster.width * raster.height - FrameHeader.HEADER_PIXELS) * mode.bitsPerPixel / 8;
+        if (length > capacity) {
+            IOException e = new IOException("Длина сообщения превышает допустимый размер: "
+                    + length + " байт при ёмкости " + capacity + " байт.");
+            LogUtil.logError(e.getMessage(), e);
+            throw e;
+        }
+        LogUtil.logInfo("Дозапись {} байт к сообщению длиной {} байт", bytes.remaining(), header.getLength());
+
+        // Последний пиксель сообщения может содержать его последние биты и биты дополнения:
+        // пиксель перезаписывается, начиная с сохранённых битов сообщения
+        long usedBits = header.getLength() * 8;
+        long first = usedBits / mode.bitsPerPixel;
+        int kept = (int) (usedBits % mode.bitsPerPixel);
+        int prefix = kept == 0 ? 0 : readPixel(raster, header.getLayout(), scatter, FrameHeader.HEADER_PIXELS + first,
+                mode) >>> (mode.bitsPerPixel - kept);
+        int checksum = FrameHeader.updateChecksum(header.getChecksum(), bytes.duplicate());
+
+        writeRuns(header.getLayout(), scatter, raster, FrameHeader.HEADER_PIXELS + first,
+                mode.pixelsFor(length * 8) - first, mode, new BitReader(prefix, kept, bytes));
+        FrameHeader updated = new FrameHeader(header.getLayout(), mode.bitsPerChannel, mode.channelMask,
+                header.getFlags(), length, checksum);
+        writeHeader(raster, updated);
+        LogUtil.logInfo("Биты сообщения успешно дописаны.");
+        return updated;
+    }
+
+    /**
+     * Чтение всех битов сообщения одного пикселя.
+     *
+     * @param raster  растр.
+     * @param layout  порядок обхода.
+     * @param scatter перестановка для разбросанного порядка.
+     * @param ordinal порядковый номер пикселя.
+     * @param mode    каналы и количество битов на канал.
+     * @return биты пикселя в младших разрядах.
+     */
+    private static int readPixel(SampleRaster raster, EmbeddingLayout layout, PixelScatter scatter, long ordinal,
+                                 ChannelMode mode) {
+        ByteBuffer bits = ByteBuffer.allocate(Integer.BYTES);
+        BitWriter writer = new BitWriter(bits);
+        layout.forEachRun(raster.width, raster.height, ordinal, 1, scatter,
+                (x, y, dx, dy, n) -> raster.readBits(x, y, dx, dy, n, mode, writer));
+        // Дополнение до целого слова, чтобы биты пикселя не были отброшены как неполный байт
+        writer.write(0, Integer.SIZE - mode.bitsPerPixel);
+        try {
+            writer.finish();
+        } catch (IOException e) {
+            // Писатель без выходного потока не выполняет ввод-вывод
+            throw new UncheckedIOException(e);
+        }
+        return bits.getInt(0) >>> (Integer.SIZE - mode.bitsPerPixel);
+    }
+
+    /**
+     * Запись битов сообщения в одном потоке: замена младших битов или матричное кодирование.
+     *
+     * @param config параметры встраивания.
+     * @param raster растр для встраивания.
+     * @param first  порядковый номер первого пикселя.
+     * @param bits   количество битов сообщения.
+     * @param reader источник битов.
+     * @return количество изменённых отсчётов при матричном кодировании, иначе -1.
+     * @throws java.io.InterruptedIOException если поток был прерван; растр остаётся частично изменённым.
+     * @throws IOException                    если чтение источника битов не удалось.
+     */
+    private static long writeMessage(EmbeddingConfig config, SampleRaster raster, long first, long bits,
+                                     BitReader reader) throws IOException {
+        ChannelMode mode = config.channelMode();
+        if (config.getMatrixBits() == 0) {
+            writeRuns(config.getLayout(), config.getScatter(), raster, first, mode.pixelsFor(bits), mode, reader);
+            return -1;
+        }
+        try {
+            return MatrixCode.of(config.getMatrixBits()).embed(raster, config.getLayout(), config.getScatter(),
+                    first, bits, mode, reader);
+        } catch (InterruptedIOException e) {
+            LogUtil.logWarning(e.getMessage());
+            throw e;
+        } catch (IOException e) {
+            LogUtil.logError("Не удалось прочитать сообщение: " + e.getMessage(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * Количество пикселей, занятых битами сообщения.
+     *
+     * @param config параметры встраивания.
+     * @param bits   количество битов сообщения.
+     * @return количество пикселей.
+     */
+    private static long messagePixels(EmbeddingConfig config, long bits) {
+        if (config.getMatrixBits() != 0) {
+            return MatrixCode.of(config.getMatrixBits()).pixelsFor(bits, Integer.bitCount(config.getChannelMask()));
+        }
+        return config.channelMode().pixelsFor(bits);
+    }
+
+    /**
+     * Запись в журнал количества отсчётов, изменённых матричным кодированием, и ожидаемого количества
+     * изменений при обычной замене младших битов.
+     *
+     * @param changes       количество изменённых отсчётов или -1 без матричного кодирования.
+     * @param config        параметры встраивания.
+     * @param messageLength длина сообщения в байтах.
+     */
+    private static void logChanges(long changes, EmbeddingConfig config, long messageLength) {
+        if (changes >= 0) {
+            LogUtil.logInfo("Матричное кодирование изменило {} отсчётов, замена младших битов изменила бы около {}",
+                    changes, Math.round(config.withMatrixEmbedding(0).expectedChanges(messageLength)));
+        }
+    }
+
+    /**
+     * Создание заголовка кадра по параметрам встраивания.
+     *
+     * @param config        параметры встраивания.
+     * @param flags         флаги преобразований сообщения.
+     * @param messageLength длина сообщения в байтах.
+     * @param checksum      контрольная сумма CRC-32 сообщения.
+     * @return заголовок кадра.
+     */
+    private static FrameHeader header(EmbeddingConfig config, int flags, long messageLength, int checksum) {
+        ChannelMode mode = config.channelMode();
+        return new FrameHeader(config.getLayout(), mode.bitsPerChannel, mode.channelMask, config.getMatrixBits(),
+                flags, messageLength, checksum);
+    }
+
+    /**
+     * Запись битов сообщения по отрезкам раскладки в одном потоке.
+     * Перед каждым отрезком (столбцом или строкой) проверяется флаг прерывания потока, поэтому встраивание
+     * в большое изображение можно отменить, не дожидаясь его окончания. Флаг прерывания не сбрасывается.
+     *
+     * @param layout  раскладка пикселей.
+     * @param scatter перестановка для разбросанного порядка.
+     * @param raster  растр для встраивания.
+     * @param first   порядковый номер первого пикселя.
+     * @param pixels  количество пикселей.
+     * @param mode    каналы и количество битов на канал.
+     * @param reader  источник битов.
+     * @throws java.io.InterruptedIOException если поток был прерван; растр остаётся частично изменённым.
+     * @throws IOException                    если чтение источника битов не удалось.
+     */
+    private static void writeRuns(EmbeddingLayout layout, PixelScatter scatter, SampleRaster raster, long first,
+                                  long pixels, ChannelMode mode, BitReader reader) throws IOException {
+        try {
+            layout.forEachRun(raster.width, raster.height, first, pixels, scatter, (x, y, dx, dy, n) -> {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new UncheckedIOException(new InterruptedIOException("Встраивание прервано."));
+                }
+                raster.writeBits(x, y, dx, dy, n, mode, reader);
+            });
+        } catch (UncheckedIOException e) {
+            IOException cause = e.getCause();
+            if (cause instanceof InterruptedIOException) {
+                LogUtil.logWarning(cause.getMessage());
+            } else {
+                LogUtil.logError("Не удалось прочитать сообщение: " + cause.getMessage(), cause);
+            }
+            throw cause;
+        }
+    }
+
+    /**
+     * Проверка, что растр содержит выбранные каналы и вмещает сообщение вместе с заголовком кадра.
+     *
+     * @param raster        растр для встраивания.
+     * @param config        параметры встраивания.
+     * @param messageLength длина сообщения в байтах.
+     * @throws IOException если растр не содержит выбранных каналов или сообщение не помещается.
+     */
+    private static void requireFrame(SampleRaster raster, EmbeddingConfig config, long messageLength)
+            throws IOException {
+        if (!raster.supports(config.channelMode())) {
+            IOException e = new IOException("Изображение не содержит выбранных каналов: " + config);
+            LogUtil.logError(e.getMessage(), e);
+            throw e;
+        }
+        long capacity = capacity((long) raster.width * raster.height, raster.height, config);
+        if (messageLength > capacity) {
+            IOException e = new IOException("Длина сообщения превышает допустимый размер: "
+                    + messageLength + " байт при ёмкости " + capacity + " байт.");
+            LogUtil.logError(e.getMessage(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * Запись заголовка кадра. Заголовок всегда записывается по строкам,
+     * чтобы его можно было прочитать до выбора порядка обхода.
+     *
+     * @param raster растр для встраивания.
+     * @param frame  заголовок кадра.
+     */
+    private static void writeHeader(SampleRaster raster, FrameHeader frame) {
+        BitReader header = new BitReader(frame.toBuffer());
+        EmbeddingLayout.ROW_MAJOR.forEachRun(raster.width, raster.height, 0, FrameHeader.HEADER_PIXELS,
+                (x, y, dx, dy, n) -> raster.writeBits(x, y, dx, dy, n, ChannelMode.BLUE_LSB, header));
+    }
+
+    /**
+     * Проверка, что для исходного формата выбран младший бит синего канала.
+     *
+     * @param config параметры встраивания.
+     * @throws IOException если выбран другой режим.
+     */
+    private static void requireLegacyMode(EmbeddingConfig config) throws IOException {
+        if (config.channelMode() != ChannelMode.BLUE_LSB || config.getMatrixBits() != 0) {
+            IOException e = new IOException("Исходный формат поддерживает только младший бит синего канала "
+                    + "без матричного кодирования.");
+            LogUtil.logError(e.getMessage(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * Проверка, что сообщение помещается в изображение.
+     *
+     * @param payload  упакованные биты сообщения.
+     * @param capacity ёмкость изображения в байтах.
+     * @throws IOException если сообщение превышает ёмкость.
+     */
+    private static void requireCapacity(BitPayload payload, long capacity) throws IOException {
+        if (payload.getBitLength() > capacity * 8) {
+            IOException e = new IOException("Длина сообщения превышает допустимый размер: "
+                    + payload.getByteLength() + " байт при ёмкости " + capacity + " байт.");
+            LogUtil.logError(e.getMessage(), e);
+            throw e;
+        }
+    }
+}
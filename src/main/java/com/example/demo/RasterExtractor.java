@@ -0,0 +1,414 @@
+package com.example.demo;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Класс RasterExtractor извлекает скрытое сообщение непосредственно из отсчётов растра изображения.
+ * Поддерживаются изображения с заголовком кадра и изображения в исходном формате,
+ * где длина сообщения хранится в первых 8 пикселях столбца 0.
+ * Для сообщений с заголовком кадра проверяется контрольная сумма CRC-32.
+ */
+public class RasterExtractor {
+
+    /**
+     * Чтение заголовка сообщения.
+     * Если сигнатура заголовка кадра не найдена, длина читается из первых 8 пикселей столбца 0,
+     * а порядок обхода считается равным {@link EmbeddingLayout#COLUMN_MAJOR}.
+     *
+     * @param image изображение со скрытым сообщением.
+     * @return заголовок сообщения.
+     * @throws IOException если заголовок повреждён или сообщение не помещается в изображение.
+     */
+    public static FrameHeader readHeader(BufferedImage image) throws IOException {
+        return readHeader(SampleRaster.wrap(image), () -> SampleRaster.wrapLegacy(image));
+    }
+
+    /**
+     * Чтение заголовка сообщения из растра.
+     *
+     * @param raster растр с прямым доступом к отсчётам.
+     * @param legacy растр для исходного формата, создаётся только если заголовок кадра не найден.
+     * @return заголовок сообщения.
+     * @throws IOException если заголовок повреждён или сообщение не помещается в растр.
+     */
+    static FrameHeader readHeader(SampleRaster raster, Supplier<SampleRaster> legacy) throws IOException {
+        int width = raster.width;
+        int height = raster.height;
+        long pixels = (long) width * height;
+
+        if (pixels >= FrameHeader.HEADER_PIXELS) {
+            ByteBuffer bytes = ByteBuffer.allocate(FrameHeader.HEADER_BYTES);
+            BitWriter writer = new BitWriter(bytes);
+            EmbeddingLayout.ROW_MAJOR.forEachRun(width, height, 0, FrameHeader.HEADER_PIXELS,
+                    (x, y, dx, dy, n) -> raster.readBits(x, y, dx, dy, n, ChannelMode.BLUE_LSB, writer));
+            writer.finish();
+            FrameHeader header = FrameHeader.parse(bytes.flip());
+            if (header != null) {
+                if (!raster.supports(ChannelMode.of(header.getBitsPerChannel(), header.getChannelMask()))) {
+                    IOException e = new IOException("Изображение не содержит каналов, указанных в заголовке.");
+                    LogUtil.logError(e.getMessage(), e);
+                    throw e;
+                }
+                int channels = Integer.bitCount(header.getChannelMask());
+                long capacity = header.getMatrixBits() != 0
+                        ? MatrixCode.of(header.getMatrixBits()).capacityBits(pixels - FrameHeader.HEADER_PIXELS,
+                        channels) / 8
+                        : (pixels - FrameHeader.HEADER_PIXELS) * header.getBitsPerChannel() * channels / 8;
+                if (header.getLength() > capacity) {
+                    IOException e = new IOException("Длина сообщения в заголовке превышает размер изображения.");
+                    LogUtil.logError(e.getMessage(), e);
+                    throw e;
+                }
+                return header;
+            }
+        }
+
+        if (height < RasterEmbedder.LEGACY_HEADER_PIXELS) {
+            IOException e = new IOException("Изображение слишком мало для хранения сообщения.");
+            LogUtil.logError(e.getMessage(), e);
+            throw e;
+        }
+        ByteBuffer lengthByte = ByteBuffer.allocate(1);
+        BitWriter writer = new BitWriter(lengthByte);
+        legacy.get().readBits(0, 0, 0, 1, RasterEmbedder.LEGACY_HEADER_PIXELS, ChannelMode.BLUE_LSB, writer);
+        writer.finish();
+        int length = lengthByte.get(0) & 0xFF;
+        // В исходном формате сообщение обрезается по размеру изображения
+        return FrameHeader.legacy(Math.min(length, (pixels - RasterEmbedder.LEGACY_HEADER_PIXELS) / 8));
+    }
+
+    /**
+     * Извлечение сообщения в массив байтов.
+     *
+     * @param image изображение со скрытым сообщением.
+     * @return байты сообщения.
+     * @throws IOException если заголовок повреждён, контрольная сумма не совпадает
+     *                     или сообщение не помещается в массив.
+     */
+    public static byte[] extract(BufferedImage image) throws IOException {
+        return extract(image, 1);
+    }
+
+    /**
+     * Извлечение сообщения в массив байтов в нескольких потоках.
+     * Растр делится на полосы, которые читаются параллельно; результат совпадает с чтением в одном потоке.
+     *
+     * @param image       изображение со скрытым сообщением.
+     * @param parallelism количество потоков, не меньше 1.
+     * @return байты сообщения.
+     * @throws IOException если заголовок повреждён, контрольная сумма не совпадает
+     *                     или сообщение не помещается в массив.
+     */
+    public static byte[] extract(BufferedImage image, int parallelism) throws IOException {
+        return extract(image, (PixelScatter) null, parallelism);
+    }
+
+    /**
+     * Извлечение сообщения, встроенного в разбросанном порядке, в массив байтов в нескольких потоках.
+     * Для сообщений с последовательным порядком обхода перестановка не используется.
+     *
+     * @param image       изображение со скрытым сообщением.
+     * @param scatter     перестановка пикселей, заданная ключом при встраивании.
+     * @param parallelism количество потоков, не меньше 1.
+     * @return байты сообщения.
+     * @throws IOException если заголовок повреждён, ключ не указан, контрольная сумма не совпадает
+     *                     (в том числе при неверном ключе) или сообщение не помещается в массив.
+     */
+    public static byte[] extract(BufferedImage image, PixelScatter scatter, int parallelism) throws IOException {
+        return extract(SampleRaster.wrap(image), () -> SampleRaster.wrapLegacy(image), scatter, parallelism);
+    }
+
+    /**
+     * Извлечение сообщения из растра в массив байтов.
+     *
+     * @param raster      растр с прямым доступом к отсчётам.
+     * @param legacy      растр для исходного формата.
+     * @param scatter     перестановка пикселей разбросанного порядка или {@code null}.
+     * @param parallelism количество потоков, не меньше 1.
+     * @return байты сообщения.
+     * @throws IOException если заголовок повреждён, не указан ключ разброса, контрольная сумма не совпадает
+     *                     или сообщение не помещается в массив.
+     */
+    static byte[] extract(SampleRaster raster, Supplier<SampleRaster> legacy, PixelScatter scatter, int parallelism)
+            throws IOException {
+        FrameHeader header = readHeader(raster, legacy);
+        requireScatter(header, scatter);
+        requirePlain(header);
+        if (header.getLength() > Integer.MAX_VALUE - 8) {
+            IOException e = new IOException("Сообщение длиной " + header.getLength()
+                    + " байт не помещается в массив, используйте извлечение в поток.");
+            LogUtil.logError(e.getMessage(), e);
+            throw e;
+        }
+        ByteBuffer target = ByteBuffer.allocate((int) header.getLength());
+        extractPayload(raster, legacy, header, scatter, target, parallelism);
+        verifyChecksum(header, target.flip());
+        return target.array();
+    }
+
+    /**
+     * Извлечение сообщения в буфер, предоставленный вызывающей стороной.
+     * Байты записываются начиная с текущей позиции буфера.
+     *
+     * @param image  изображение со скрытым сообщением.
+     * @param target буфер для байтов сообщения.
+     * @return количество записанных байтов.
+     * @throws IOException если заголовок повреждён, сообщение не помещается в буфер
+     *                     или контрольная сумма не совпадает.
+     */
+    public static int extract(BufferedImage image, ByteBuffer target) throws IOException {
+        return extract(image, target, 1);
+    }
+
+    /**
+     * Извлечение сообщения в буфер, предоставленный вызывающей стороной, в нескольких потоках.
+     * Байты записываются начиная с текущей позиции буфера.
+     *
+     * @param image       изображение со скрытым сообщением.
+     * @param target      буфер для байтов сообщения.
+     * @param parallelism количество потоков, не меньше 1.
+     * @return количество записанных байтов.
+     * @throws IOException если заголовок повреждён, сообщение не помещается в буфер
+     *                     или контрольная сумма не совпадает.
+     */
+    public static int extract(BufferedImage image, ByteBuffer target, int parallelism) throws IOException {
+        SampleRaster raster = SampleRaster.wrap(image);
+        Supplier<SampleRaster> legacy = () -> SampleRaster.wrapLegacy(image);
+        FrameHeader header = readHeader(raster, legacy);
+        requireScatter(header, null);
+        requirePlain(header);
+        if (target.remaining() < header.getLength()) {
+            IOException e = new IOException("Буфер слишком мал для сообщения длиной " + header.getLength() + " байт.");
+            LogUtil.logError(e.getMessage(), e);
+            throw e;
+        }
+        ByteBuffer written = target.duplicate();
+        extractPayload(raster, legacy, header, null, target, parallelism);
+        verifyChecksum(header, written.limit(target.position()));
+        return (int) header.getLength();
+    }
+
+    /**
+     * Извлечение сообщения в выходной поток без накопления всего сообщения в памяти.
+     * Контрольная сумма проверяется после записи последнего байта в поток.
+     *
+     * @param image изображение со скрытым сообщением.
+     * @param out   выходной поток.
+     * @return количество записанных байтов.
+     * @throws IOException если заголовок повреждён, запись в поток не удалась или контрольная сумма не совпадает.
+     */
+    public static long extract(BufferedImage image, OutputStream out) throws IOException {
+        return extract(SampleRaster.wrap(image), () -> SampleRaster.wrapLegacy(image), null, null, out);
+    }
+
+    /**
+     * Извлечение сообщения в выходной поток с восстановлением сжатого или зашифрованного сообщения.
+     * Сообщение расшифровывается и распаковывается по мере чтения из изображения, без накопления в памяти.
+     *
+     * @param image     изображение со скрытым сообщением.
+     * @param scatter   перестановка пикселей, заданная ключом при встраивании, или {@code null}.
+     * @param transform преобразование с паролем, если сообщение зашифровано.
+     * @param out       выходной поток для восстановленного сообщения.
+     * @return количество байтов сообщения в изображении до восстановления.
+     * @throws IOException если заголовок повреждён, не указан ключ разброса или пароль, пароль неверен,
+     *                     запись в поток не удалась или контрольная сумма не совпадает.
+     */
+    public static long extract(BufferedImage image, PixelScatter scatter, PayloadTransform transform,
+                               OutputStream out) throws IOException {
+        return extract(SampleRaster.wrap(image), () -> SampleRaster.wrapLegacy(image), scatter, transform, out);
+    }
+
+    /**
+     * Извлечение сообщения из растра в выходной поток.
+     * Если задано преобразование, байты из изображения восстанавливаются по флагам заголовка кадра,
+     * контрольная сумма проверяется по байтам из изображения до восстановления.
+     *
+     * @param raster    растр с прямым доступом к отсчётам.
+     * @param legacy    растр для исходного формата.
+     * @param scatter   перестановка пикселей разбросанного порядка или {@code null}.
+     * @param transform преобразование для восстановления сообщения или {@code null}.
+     * @param out       выходной поток.
+     * @return количество байтов сообщения в изображении.
+     * @throws IOException если заголовок повреждён, не указан ключ разброса, сообщение преобразовано,
+     *                     а преобразование не задано, запись в поток не удалась или контрольная сумма не совпадает.
+     */
+    static long extract(SampleRaster raster, Supplier<SampleRaster> legacy, PixelScatter scatter,
+                        PayloadTransform transform, OutputStream out) throws IOException {
+        FrameHeader header = readHeader(raster, legacy);
+        requireScatter(header, scatter);
+        if (transform == null) {
+            requirePlain(header);
+        }
+        OutputStream decoded = transform != null ? transform.decode(header.getFlags(), out) : out;
+        CheckedOutputStream checked = new CheckedOutputStream(decoded, new CRC32());
+        extractPayload(raster, legacy, header, scatter, new BitWriter(checked));
+        verifyChecksum(header, (int) checked.getChecksum().getValue());
+        if (transform != null) {
+            // Закрытие завершает распаковку и проверяет последний зашифрованный сегмент
+            decoded.close();
+        }
+        return header.getLength();
+    }
+
+    /**
+     * Чтение начала сообщения без извлечения остальных байтов, например служебного заголовка в начале сообщения.
+     * Контрольная сумма не проверяется, так как читается не всё сообщение. Сообщения исходного формата
+     * служебных заголовков не содержат, для них возвращается пустой массив.
+     *
+     * @param raster  растр с прямым доступом к отсчётам.
+     * @param legacy  растр для исходного формата.
+     * @param scatter перестановка пикселей разбросанного порядка или {@code null}.
+     * @param length  наибольшее количество байтов.
+     * @return первые байты сообщения, не больше его длины, или пустой массив для исходного формата.
+     * @throws IOException если заголовок повреждён или не указан ключ разброса.
+     */
+    static byte[] readPrefix(SampleRaster raster, Supplier<SampleRaster> legacy, PixelScatter scatter, int length)
+            throws IOException {
+        FrameHeader header = readHeader(raster, legacy);
+        if (header.isLegacy()) {
+            return new byte[0];
+        }
+        requireScatter(header, scatter);
+        int count = (int) Math.min(length, header.getLength());
+        ByteBuffer target = ByteBuffer.allocate(count);
+        FrameHeader prefix = new FrameHeader(header.getLayout(), header.getBitsPerChannel(), header.getChannelMask(),
+                header.getMatrixBits(), header.getFlags(), count, header.getChecksum());
+        extractPayload(raster, legacy, prefix, scatter, new BitWriter(target));
+        return target.array();
+    }
+
+    /**
+     * Чтение битов сообщения в буфер, при достаточном размере сообщения — параллельно по полосам.
+     * После чтения позиция буфера смещается на длину сообщения.
+     *
+     * @param raster      растр с прямым доступом к отсчётам.
+     * @param legacy      растр для исходного формата.
+     * @param header      заголовок сообщения.
+     * @param scatter     перестановка пикселей разбросанного порядка.
+     * @param target      буфер для байтов сообщения.
+     * @param parallelism количество потоков.
+     * @throws IOException если чтение не удалось.
+     */
+    private static void extractPayload(SampleRaster raster, Supplier<SampleRaster> legacy, FrameHeader header,
+                                       PixelScatter scatter, ByteBuffer target, int parallelism)
+            throws IOException {
+        ChannelMode mode = ChannelMode.of(header.getBitsPerChannel(), header.getChannelMask());
+        long bits = header.getLength() * 8;
+        long pixels = mode.pixelsFor(bits);
+        if (header.isLegacy() || header.getMatrixBits() != 0
+                || !ParallelStripes.worthSplitting(raster, pixels, parallelism)) {
+            extractPayload(raster, legacy, header, scatter, new BitWriter(target));
+            return;
+        }
+        LogUtil.logInfo(() -> "Извлечение сообщения длиной " + header.getLength() + " байт, порядок обхода: "
+                + header.getLayout() + ", потоков: " + parallelism);
+        ParallelStripes.read(raster, header.getLayout(), scatter, FrameHeader.HEADER_PIXELS, pixels, mode,
+                target, bits, parallelism);
+        target.position(target.position() + (int) header.getLength());
+        LogUtil.logInfo("Сообщение успешно извлечено.");
+    }
+
+    /**
+     * Чтение битов сообщения в порядке обхода из заголовка.
+     *
+     * @param raster растр с прямым доступом к отсчётам.
+     * @param legacy растр для исходного формата.
+     * @param header  заголовок сообщения.
+     * @param scatter перестановка пикселей разбросанного порядка.
+     * @param writer  приёмник битов.
+     * @throws IOException если запись в приёмник не удалась.
+     */
+    private static void extractPayload(SampleRaster raster, Supplier<SampleRaster> legacy, FrameHeader header,
+                                       PixelScatter scatter, BitWriter writer) throws IOException {
+        LogUtil.logInfo("Извлечение сообщения длиной {} байт, порядок обхода: {}", header.getLength(), header.getLayout());
+        boolean isLegacy = header.isLegacy();
+        SampleRaster source = isLegacy ? legacy.get() : raster;
+        long first = isLegacy ? RasterEmbedder.LEGACY_HEADER_PIXELS : FrameHeader.HEADER_PIXELS;
+        ChannelMode mode = ChannelMode.of(header.getBitsPerChannel(), header.getChannelMask());
+        long bits = header.getLength() * 8;
+        // Биты дополнения в последнем пикселе отбрасываются
+        writer.limit(bits);
+
+        try {
+            if (header.getMatrixBits() != 0) {
+                MatrixCode.of(header.getMatrixBits()).extract(source, header.getLayout(), scatter, first, bits, mode,
+                        writer);
+            } else {
+                header.getLayout().forEachRun(raster.width, raster.height, first, mode.pixelsFor(bits), scatter,
+                        (x, y, dx, dy, n) -> source.readBits(x, y, dx, dy, n, mode, writer));
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.finish();
+        LogUtil.logInfo("Сообщение успешно извлечено.");
+    }
+
+    /**
+     * Проверка, что сообщение записано без сжатия и шифрования и может быть возвращено как есть.
+     *
+     * @param header заголовок сообщения.
+     * @throws IOException если сообщение сжато или зашифровано.
+     */
+    static void requirePlain(FrameHeader header) throws IOException {
+        if (header.getFlags() != 0) {
+            IOException e = new IOException("Сообщение сжато или зашифровано, используйте извлечение в поток "
+                    + "с преобразованием PayloadTransform.");
+            LogUtil.logError(e.getMessage(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * Проверка, что для сообщения в разбросанном порядке указан ключ.
+     *
+     * @param header  заголовок сообщения.
+     * @param scatter перестановка пикселей или {@code null}.
+     * @throws IOException если сообщение встроено в разбросанном порядке, а перестановка не указана.
+     */
+    static void requireScatter(FrameHeader header, PixelScatter scatter) throws IOException {
+        if (header.getLayout() == EmbeddingLayout.SCATTERED && scatter == null) {
+            IOException e = new IOException("Сообщение встроено с разбросом пикселей по ключу, укажите ключ.");
+            LogUtil.logError(e.getMessage(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * Проверка контрольной суммы извлечённого сообщения.
+     *
+     * @param header заголовок сообщения.
+     * @param bytes  байты сообщения.
+     * @throws IOException если контрольная сумма не совпадает.
+     */
+    private static void verifyChecksum(FrameHeader header, ByteBuffer bytes) throws IOException {
+        if (header.isLegacy()) {
+            return;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        verifyChecksum(header, (int) crc.getValue());
+    }
+
+    /**
+     * Сравнение контрольной суммы извлечённого сообщения с суммой из заголовка.
+     *
+     * @param header   заголовок сообщения.
+     * @param checksum контрольная сумма извлечённых байтов.
+     * @throws IOException если контрольная сумма не совпадает.
+     */
+    private static void verifyChecksum(FrameHeader header, int checksum) throws IOException {
+        if (!header.isLegacy() && header.getChecksum() != checksum) {
+            IOException e = new IOException("Контрольная сумма сообщения не совпадает: сообщение повреждено.");
+            LogUtil.logError(e.getMessage(), e);
+            throw e;
+        }
+    }
+}
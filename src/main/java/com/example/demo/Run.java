@@ -1,7 +1,24 @@
 package com.example.demo;
 
+import java.util.Arrays;
+
 public class Run {
     public static void main(String[] args) {
-        SteganographyApp.main(args);
+        if (args.length == 0) {
+            SteganographyApp.main(args);
+            return;
+        }
+        // Консольные команды запускаются без JavaFX, чтобы работать на серверах без дисплея
+        String[] rest = Arrays.copyOfRange(args, 1, args.length);
+        switch (args[0]) {
+            case "batch" -> BatchCommand.main(rest);
+            case "append" -> AppendCommand.main(rest);
+            case "extract" -> ExtractCommand.main(rest);
+            case "shard" -> ShardCommand.main(rest);
+            case "analyze" -> AnalyzeCommand.main(rest);
+            case "serve" -> ServeCommand.main(rest);
+            case "loadtest" -> LoadTestCommand.main(rest);
+            default -> SteganographyApp.main(args);
+        }
     }
 }
@@ -0,0 +1,810 @@
+package com.example.demo;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.nio.ByteBuffer;
+
+/**
+ * Прямой доступ к отсчётам растра изображения.
+ * Для распространённых типов изображений биты записываются непосредственно в массив {@link DataBuffer}
+ * без преобразования цветовой модели и проверки границ на каждый пиксель.
+ * Для остальных типов используется попиксельный доступ через {@code getRGB}/{@code setRGB} в исходном формате
+ * или через отсчёты {@link WritableRaster} в формате с заголовком кадра.
+ * Биты одного пикселя читаются из источника за одно обращение и распределяются по каналам режима.
+ * Растр также может располагаться в буфере байтов, например в отображённом в память файле BMP.
+ * Отрезки с одним битом на отсчёт в массиве обрабатываются ядрами {@link LsbKernels}.
+ */
+abstract class SampleRaster {
+
+    /**
+     * Ядра для отрезков с одним битом на отсчёт.
+     */
+    private static final LsbKernels KERNELS = LsbKernels.get();
+
+    /**
+     * Ширина растра.
+     */
+    final int width;
+
+    /**
+     * Высота растра.
+     */
+    final int height;
+
+    /**
+     * Положение каждого канала {@link Channel} в пикселе (смещение байта, сдвиг или номер полосы),
+     * -1 для отсутствующих каналов.
+     */
+    private final int[] channelPositions;
+
+    /**
+     * Положения каналов для последнего использованного режима.
+     */
+    private Binding binding;
+
+    SampleRaster(int width, int height, int[] channelPositions) {
+        this.width = width;
+        this.height = height;
+        this.channelPositions = channelPositions;
+    }
+
+    /**
+     * Выбор реализации доступа к растру для изображения в исходном формате.
+     * Результат записи и чтения совпадает с покомпонентным доступом через {@code getRGB}/{@code setRGB},
+     * в том числе с преобразованием цветового пространства для изображений в оттенках серого.
+     *
+     * @param image изображение.
+     * @return объект доступа к отсчётам.
+     */
+    static SampleRaster wrapLegacy(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            WritableRaster raster = image.getRaster();
+            ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+            byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+            int origin = raster.getDataBuffer().getOffset()
+                    - raster.getSampleModelTranslateY() * sampleModel.getScanlineStride()
+                    - raster.getSampleModelTranslateX() * sampleModel.getPixelStride()
+                    + sampleModel.getBandOffsets()[0];
+            return new ConvertedGray(image.getWidth(), image.getHeight(), data, origin,
+                    sampleModel.getScanlineStride(), sampleModel.getPixelStride(), image.getColorModel());
+        }
+        SampleRaster direct = wrap(image);
+        return direct instanceof Bands ? new Rgb(image) : direct;
+    }
+
+    /**
+     * Выбор реализации прямого доступа к растру для изображения.
+     * Для цветных изображений результат записи совпадает с покомпонентной записью через {@code getRGB}/{@code setRGB},
+     * для изображений в оттенках серого биты записываются непосредственно в значение яркости.
+     * Для прочих цветовых моделей биты записываются в отсчёты растра без преобразования цвета.
+     *
+     * @param image изображение.
+     * @return объект доступа к отсчётам.
+     */
+    static SampleRaster wrap(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        DataBuffer dataBuffer = raster.getDataBuffer();
+        int translateX = raster.getSampleModelTranslateX();
+        int translateY = raster.getSampleModelTranslateY();
+
+        switch (image.getType()) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_BGR: {
+                SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) raster.getSampleModel();
+                DirectColorModel colorModel = (DirectColorModel) image.getColorModel();
+                int[] data = ((DataBufferInt) dataBuffer).getData();
+                int origin = dataBuffer.getOffset() - translateY * sampleModel.getScanlineStride() - translateX;
+                int pixelMask = colorModel.getRedMask() | colorModel.getGreenMask() | colorModel.getBlueMask()
+                        | colorModel.getAlphaMask();
+                int[] shifts = {
+                        shiftOf(colorModel.getBlueMask()),
+                        shiftOf(colorModel.getGreenMask()),
+                        shiftOf(colorModel.getRedMask()),
+                        shiftOf(colorModel.getAlphaMask())
+                };
+                return new IntPacked(image.getWidth(), image.getHeight(), data, origin,
+                        sampleModel.getScanlineStride(), pixelMask, shifts);
+            }
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR: {
+                ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+                byte[] data = ((DataBufferByte) dataBuffer).getData();
+                int origin = dataBuffer.getOffset() - translateY * sampleModel.getScanlineStride()
+                        - translateX * sampleModel.getPixelStride();
+                // Полосы растра идут в порядке R, G, B (, A)
+                int[] bandOffsets = sampleModel.getBandOffsets();
+                int[] offsets = {bandOffsets[2], bandOffsets[1], bandOffsets[0],
+                        bandOffsets.length > 3 ? bandOffsets[3] : -1};
+                return new ByteInterleaved(image.getWidth(), image.getHeight(), data, origin,
+                        sampleModel.getScanlineStride(), sampleModel.getPixelStride(), offsets);
+            }
+            case BufferedImage.TYPE_BYTE_GRAY: {
+                ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+                byte[] data = ((DataBufferByte) dataBuffer).getData();
+                int origin = dataBuffer.getOffset() - translateY * sampleModel.getScanlineStride()
+                        - translateX * sampleModel.getPixelStride();
+                // Значение яркости используется как синий канал
+                int[] offsets = {sampleModel.getBandOffsets()[0], -1, -1, -1};
+                return new ByteInterleaved(image.getWidth(), image.getHeight(), data, origin,
+                        sampleModel.getScanlineStride(), sampleModel.getPixelStride(), offsets);
+            }
+            default:
+                return new Bands(image);
+        }
+    }
+
+    /**
+     * Создание доступа к растру с побайтово чередующимися каналами, расположенному в буфере байтов.
+     * Обращения к буферу абсолютные, поэтому его позиция не меняется, а непересекающиеся полосы
+     * можно обрабатывать в разных потоках.
+     *
+     * @param data        буфер с отсчётами.
+     * @param width       ширина растра.
+     * @param height      высота растра.
+     * @param origin      индекс первого байта пикселя (0, 0).
+     * @param scanline    смещение между строками, отрицательное для строк, записанных снизу вверх.
+     * @param pixelStride количество байтов на пиксель.
+     * @param offsets     смещения каналов в пикселе в порядке {@link Channel}, -1 для отсутствующих каналов.
+     * @return объект доступа к отсчётам.
+     */
+    static SampleRaster wrap(ByteBuffer data, int width, int height, int origin, int scanline, int pixelStride,
+                             int[] offsets) {
+        return new BufferInterleaved(width, height, data, origin, scanline, pixelStride, offsets);
+    }
+
+    /**
+     * Сдвиг канала в упакованном пикселе.
+     *
+     * @param mask маска канала в цветовой модели.
+     * @return сдвиг канала или -1, если канал отсутствует.
+     */
+    private static int shiftOf(int mask) {
+        return mask == 0 ? -1 : Integer.numberOfTrailingZeros(mask);
+    }
+
+    /**
+     * Проверка, что каналы режима занимают все байты пикселя по порядку.
+     * Тогда отрезок пикселей с шагом в один пиксель является непрерывной последовательностью байтов,
+     * в которой биты идут в порядке записи.
+     *
+     * @param offsets     смещения каналов режима в пикселе.
+     * @param pixelStride количество байтов на пиксель.
+     * @return {@code true}, если смещения равны 0, 1, ..., {@code pixelStride - 1}.
+     */
+    private static boolean coversPixel(int[] offsets, int pixelStride) {
+        if (offsets.length != pixelStride) {
+            return false;
+        }
+        for (int i = 0; i < offsets.length; i++) {
+            if (offsets[i] != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Проверка, что растр содержит все каналы режима.
+     *
+     * @param mode режим встраивания.
+     * @return {@code true}, если режим поддерживается.
+     */
+    boolean supports(ChannelMode mode) {
+        for (int channel : mode.channels) {
+            if (channelPositions[channel] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Проверка, занимает ли каждый пиксель собственные элементы массива данных. Только такой растр можно
+     * обрабатывать непересекающимися полосами в разных потоках: в упакованных растрах, например TYPE_BYTE_BINARY,
+     * соседние пиксели делят байт, и запись отсчёта одного пикселя перезаписывает весь байт.
+     *
+     * @return {@code true}, если запись пикселя не затрагивает данных других пикселей.
+     */
+    boolean isPixelIndependent() {
+        return true;
+    }
+
+    /**
+     * Получение положений используемых каналов в порядке записи.
+     * Положения пересчитываются только при смене режима, поэтому обработка отрезков не выделяет память.
+     *
+     * @param mode режим встраивания.
+     * @return положения каналов режима.
+     */
+    final int[] positions(ChannelMode mode) {
+        Binding current = binding;
+        if (current == null || current.mode != mode) {
+            int[] positions = new int[mode.channels.length];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = channelPositions[mode.channels[i]];
+            }
+            current = new Binding(mode, positions);
+            binding = current;
+        }
+        return current.positions;
+    }
+
+    /**
+     * Положение канала в пикселе.
+     *
+     * @param channel канал.
+     * @return смещение байта, сдвиг или номер полосы канала.
+     */
+    final int positionOf(Channel channel) {
+        return channelPositions[channel.ordinal()];
+    }
+
+    /**
+     * Запись последовательности битов в младшие биты каналов пикселей,
+     * начиная с пикселя (x, y) и смещаясь на (dx, dy) после каждого пикселя.
+     * В каждый пиксель записывается {@link ChannelMode#bitsPerPixel} битов, старшие — в первый канал режима.
+     *
+     * @param x     координата X первого пикселя.
+     * @param y     координата Y первого пикселя.
+     * @param dx    шаг по оси X.
+     * @param dy    шаг по оси Y.
+     * @param count количество пикселей.
+     * @param mode  режим встраивания.
+     * @param bits  источник битов.
+     */
+    abstract void writeBits(int x, int y, int dx, int dy, int count, ChannelMode mode, BitReader bits);
+
+    /**
+     * Чтение последовательности битов из младших битов каналов пикселей,
+     * начиная с пикселя (x, y) и смещаясь на (dx, dy) после каждого пикселя.
+     *
+     * @param x     координата X первого пикселя.
+     * @param y     координата Y первого пикселя.
+     * @param dx    шаг по оси X.
+     * @param dy    шаг по оси Y.
+     * @param count количество пикселей.
+     * @param mode  режим встраивания.
+     * @param bits  приёмник битов.
+     */
+    abstract void readBits(int x, int y, int dx, int dy, int count, ChannelMode mode, BitWriter bits);
+
+    /**
+     * Проверка, что растр содержит канал.
+     *
+     * @param channel канал.
+     * @return {@code true}, если канал есть в растре.
+     */
+    final boolean hasChannel(Channel channel) {
+        return channelPositions[channel.ordinal()] >= 0;
+    }
+
+    /**
+     * Чтение значений одного канала подряд идущих пикселей строки без преобразования цвета.
+     * Используется стегоанализом {@link Steganalysis}; значения ограничены младшим байтом отсчёта.
+     *
+     * @param x       координата X первого пикселя.
+     * @param y       координата Y строки.
+     * @param count   количество пикселей.
+     * @param channel канал, присутствующий в растре.
+     * @param target  массив для значений, заполняется с начала.
+     */
+    abstract void readSamples(int x, int y, int count, Channel channel, int[] target);
+
+    /**
+     * Положения каналов, подготовленные для режима. Объект неизменяем.
+     */
+    private static final class Binding {
+        private final ChannelMode mode;
+        private final int[] positions;
+
+        Binding(ChannelMode mode, int[] positions) {
+            this.mode = mode;
+            this.positions = positions;
+        }
+    }
+
+    /**
+     * Растр с упакованными в {@code int} пикселями (TYPE_INT_RGB, TYPE_INT_ARGB, TYPE_INT_BGR).
+     * Пиксель читается и записывается в массив один раз независимо от количества каналов.
+     */
+    private static final class IntPacked extends SampleRaster {
+        private final int[] data;
+        private final int origin;
+        private final int scanline;
+        private final int pixelMask;
+
+        IntPacked(int width, int height, int[] data, int origin, int scanline, int pixelMask, int[] shifts) {
+            super(width, height, shifts);
+            this.data = data;
+            this.origin = origin;
+            this.scanline = scanline;
+            this.pixelMask = pixelMask;
+        }
+
+        @Override
+        void writeBits(int x, int y, int dx, int dy, int count, ChannelMode mode, BitReader bits) {
+            int[] shifts = positions(mode);
+            int low = mode.lowMask;
+            int bitsPerPixel = mode.bitsPerPixel;
+            // setRGB сохраняет только разряды цветовой модели, поэтому лишние разряды также сбрасываются
+            int keepMask = pixelMask;
+            for (int shift : shifts) {
+                keepMask &= ~(low << shift);
+            }
+            int index = origin + y * scanline + x;
+            int step = dy * scanline + dx;
+            if (shifts.length == 1) {
+                int shift = shifts[0];
+                if (bitsPerPixel == 1 && step == 1) {
+                    KERNELS.writeInts(data, index, count, shift, keepMask, bits);
+                    return;
+                }
+                for (int i = 0; i < count; i++) {
+                    data[index] = (data[index] & keepMask) | (bits.read(bitsPerPixel) << shift);
+                    index += step;
+                }
+                return;
+            }
+            int bitsPerChannel = mode.bitsPerChannel;
+            for (int i = 0; i < count; i++) {
+                int value = bits.read(bitsPerPixel);
+                int pixel = data[index] & keepMask;
+                for (int c = shifts.length - 1; c >= 0; c--) {
+                    pixel |= (value & low) << shifts[c];
+                    value >>>= bitsPerChannel;
+                }
+                data[index] = pixel;
+                index += step;
+            }
+        }
+
+        @Override
+        void readBits(int x, int y, int dx, int dy, int count, ChannelMode mode, BitWriter bits) {
+            int[] shifts = positions(mode);
+            int low = mode.lowMask;
+            int bitsPerPixel = mode.bitsPerPixel;
+            int index = origin + y * scanline + x;
+            int step = dy * scanline + dx;
+            if (shifts.length == 1) {
+                int shift = shifts[0];
+                if (bitsPerPixel == 1 && step == 1) {
+                    KERNELS.readInts(data, index, count, shift, bits);
+                    return;
+                }
+                for (int i = 0; i < count; i++) {
+                    bits.write((data[index] >>> shift) & low, bitsPerPixel);
+                    index += step;
+                }
+                return;
+            }
+            int bitsPerChannel = mode.bitsPerChannel;
+            for (int i = 0; i < count; i++) {
+                int pixel = data[index];
+                int value = 0;
+                for (int shift : shifts) {
+                    value = (value << bitsPerChannel) | ((pixel >>> shift) & low);
+                }
+                bits.write(value, bitsPerPixel);
+                index += step;
+            }
+        }
+
+        @Override
+        void readSamples(int x, int y, int count, Channel channel, int[] target) {
+            int shift = positionOf(channel);
+            int index = origin + y * scanline + x;
+            for (int i = 0; i < count; i++) {
+                target[i] = (data[index + i] >>> shift) & 0xFF;
+            }
+        }
+    }
+
+    /**
+     * Растр с побайтово чередующимися каналами (TYPE_3BYTE_BGR, TYPE_4BYTE_ABGR, TYPE_BYTE_GRAY).
+     */
+    private static final class ByteInterleaved extends SampleRaster {
+        private final byte[] data;
+        private final int origin;
+        private final int scanline;
+        private final int pixelStride;
+
+        ByteInterleaved(int width, int height, byte[] data, int origin, int scanline, int pixelStride,
+                        int[] offsets) {
+            super(width, height, offsets);
+            this.data = data;
+            this.origin = origin;
+            this.scanline = scanline;
+            this.pixelStride = pixelStride;
+        }
+
+        @Override
+        void writeBits(int x, int y, int dx, int dy, int count, ChannelMode mode, BitReader bits) {
+            int[] offsets = positions(mode);
+            int low = mode.lowMask;
+            int keep = ~low;
+            int bitsPerPixel = mode.bitsPerPixel;
+            int index = origin + y * scanline + x * pixelStride;
+            int step = dy * scanline + dx * pixelStride;
+            if (mode.bitsPerChannel == 1 && step == pixelStride && coversPixel(offsets, pixelStride)) {
+                KERNELS.writeBytes(data, index, count * pixelStride, 1, bits);
+                return;
+            }
+            if (offsets.length == 1) {
+                index += offsets[0];
+                if (bitsPerPixel == 1) {
+                    KERNELS.writeBytes(data, index, count, step, bits);
+                    return;
+                }
+                for (int i = 0; i < count; i++) {
+                    data[index] = (byte) ((data[index] & keep) | bits.read(bitsPerPixel));
+                    index += step;
+                }
+                return;
+            }
+            int bitsPerChannel = mode.bitsPerChannel;
+            for (int i = 0; i < count; i++) {
+                int value = bits.read(bitsPerPixel);
+                for (int c = offsets.length - 1; c >= 0; c--) {
+                    int sample = index + offsets[c];
+                    data[sample] = (byte) ((data[sample] & keep) | (value & low));
+                    value >>>= bitsPerChannel;
+                }
+                index += step;
+            }
+        }
+
+        @Override
+        void readBits(int x, int y, int dx, int dy, int count, ChannelMode mode, BitWriter bits) {
+            int[] offsets = positions(mode);
+            int low = mode.lowMask;
+            int bitsPerPixel = mode.bitsPerPixel;
+            int index = origin + y * scanline + x * pixelStride;
+            int step = dy * scanline + dx * pixelStride;
+            if (mode.bitsPerChannel == 1 && step == pixelStride && coversPixel(offsets, pixelStride)) {
+                KERNELS.readBytes(data, index, count * pixelStride, 1, bits);
+                return;
+            }
+            if (offsets.length == 1) {
+                index += offsets[0];
+                if (bitsPerPixel == 1) {
+                    KERNELS.readBytes(data, index, count, step, bits);
+                    return;
+                }
+                for (int i = 0; i < count; i++) {
+                    bits.write(data[index] & low, bitsPerPixel);
+                    index += step;
+                }
+                return;
+            }
+            int bitsPerChannel = mode.bitsPerChannel;
+            for (int i = 0; i < count; i++) {
+                int value = 0;
+                for (int offset : offsets) {
+                    value = (value << bitsPerChannel) | (data[index + offset] & low);
+                }
+                bits.write(value, bitsPerPixel);
+                index += step;
+            }
+        }
+
+        @Override
+        void readSamples(int x, int y, int count, Channel channel, int[] target) {
+            int index = origin + y * scanline + x * pixelStride + positionOf(channel);
+            for (int i = 0; i < count; i++, index += pixelStride) {
+                target[i] = data[index] & 0xFF;
+            }
+        }
+    }
+
+    /**
+     * Растр с побайтово чередующимися каналами в буфере байтов, например в отображённом в память файле.
+     * Повторяет {@link ByteInterleaved}, но обращается к буферу абсолютными методами {@code get}/{@code put}.
+     */
+    private static final class BufferInterleaved extends SampleRaster {
+        private final ByteBuffer data;
+        private final int origin;
+        private final int scanline;
+        private final int pixelStride;
+
+        BufferInterleaved(int width, int height, ByteBuffer data, int origin, int scanline, int pixelStride,
+                          int[] offsets) {
+            super(width, height, offsets);
+            this.data = data;
+            this.origin = origin;
+            this.scanline = scanline;
+            this.pixelStride = pixelStride;
+        }
+
+        @Override
+        void writeBits(int x, int y, int dx, int dy, int count, ChannelMode mode, BitReader bits) {
+            int[] offsets = positions(mode);
+            int low = mode.lowMask;
+            int keep = ~low;
+            int bitsPerPixel = mode.bitsPerPixel;
+            int index = origin + y * scanline + x * pixelStride;
+            int step = dy * scanline + dx * pixelStride;
+            if (offsets.length == 1) {
+                index += offsets[0];
+                for (int i = 0; i < count; i++) {
+                    data.put(index, (byte) ((data.get(index) & keep) | bits.read(bitsPerPixel)));
+                    index += step;
+                }
+                return;
+            }
+            int bitsPerChannel = mode.bitsPerChannel;
+            for (int i = 0; i < count; i++) {
+                int value = bits.read(bitsPerPixel);
+                for (int c = offsets.length - 1; c >= 0; c--) {
+                    int sample = index + offsets[c];
+                    data.put(sample, (byte) ((data.get(sample) & keep) | (value & low)));
+                    value >>>= bitsPerChannel;
+                }
+                index += step;
+            }
+        }
+
+        @Override
+        void readBits(int x, int y, int dx, int dy, int count, ChannelMode mode, BitWriter bits) {
+            int[] offsets = positions(mode);
+            int low = mode.lowMask;
+            int bitsPerPixel = mode.bitsPerPixel;
+            int index = origin + y * scanline + x * pixelStride;
+            int step = dy * scanline + dx * pixelStride;
+            if (offsets.length == 1) {
+                index += offsets[0];
+                for (int i = 0; i < count; i++) {
+                    bits.write(data.get(index) & low, bitsPerPixel);
+                    index += step;
+                }
+                return;
+            }
+            int bitsPerChannel = mode.bitsPerChannel;
+            for (int i = 0; i < count; i++) {
+                int value = 0;
+                for (int offset : offsets) {
+                    value = (value << bitsPerChannel) | (data.get(index + offset) & low);
+                }
+                bits.write(value, bitsPerPixel);
+                index += step;
+            }
+        }
+
+        @Override
+        void readSamples(int x, int y, int count, Channel channel, int[] target) {
+            int index = origin + y * scanline + x * pixelStride + positionOf(channel);
+            for (int i = 0; i < count; i++, index += pixelStride) {
+                target[i] = data.get(index) & 0xFF;
+            }
+        }
+    }
+
+    /**
+     * Растр в оттенках серого (TYPE_BYTE_GRAY) в исходном формате.
+     * Доступ через {@code getRGB}/{@code setRGB} проходит через преобразование цветового пространства,
+     * поэтому результат для каждого значения яркости и бита заранее сводится в таблицы.
+     * Поддерживается только режим {@link ChannelMode#BLUE_LSB}.
+     */
+    private static final class ConvertedGray extends SampleRaster {
+        private final byte[] data;
+        private final int origin;
+        private final int scanline;
+        private final int pixelStride;
+        private final byte[] table = new byte[512];
+        private final byte[] blueBits = new byte[256];
+
+        ConvertedGray(int width, int height, byte[] data, int origin, int scanline, int pixelStride,
+                      ColorModel colorModel) {
+            super(width, height, new int[]{0, -1, -1, -1});
+            this.data = data;
+            this.origin = origin;
+            this.scanline = scanline;
+            this.pixelStride = pixelStride;
+            byte[] sample = new byte[1];
+            for (int value = 0; value < 256; value++) {
+                sample[0] = (byte) value;
+                int rgb = colorModel.getRGB(sample);
+                blueBits[value] = (byte) (rgb & 1);
+                for (int bit = 0; bit < 2; bit++) {
+                    byte[] converted = (byte[]) colorModel.getDataElements((rgb & ~1) | bit, null);
+                    table[(value << 1) | bit] = converted[0];
+                }
+            }
+        }
+
+        @Override
+        boolean supports(ChannelMode mode) {
+            return mode.bitsPerPixel == 1 && mode.channelMask == Channel.BLUE.getMask();
+        }
+
+        @Override
+        void writeBits(int x, int y, int dx, int dy, int count, ChannelMode mode, BitReader bits) {
+            int index = origin + y * scanline + x * pixelStride;
+            int step = dy * scanline + dx * pixelStride;
+            for (int i = 0; i < count; i++) {
+                data[index] = table[((data[index] & 0xFF) << 1) | bits.read(1)];
+                index += step;
+            }
+        }
+
+        @Override
+        void readBits(int x, int y, int dx, int dy, int count, ChannelMode mode, BitWriter bits) {
+            int index = origin + y * scanline + x * pixelStride;
+            int step = dy * scanline + dx * pixelStride;
+            for (int i = 0; i < count; i++) {
+                bits.write(blueBits[data[index] & 0xFF], 1);
+                index += step;
+            }
+        }
+
+        @Override
+        void readSamples(int x, int y, int count, Channel channel, int[] target) {
+            int index = origin + y * scanline + x * pixelStride;
+            for (int i = 0; i < count; i++, index += pixelStride) {
+                target[i] = data[index] & 0xFF;
+            }
+        }
+    }
+
+    /**
+     * Запасной вариант исходного формата для прочих цветовых моделей: запись через {@code getRGB}/{@code setRGB}.
+     */
+    private static final class Rgb extends SampleRaster {
+        private final BufferedImage image;
+
+        Rgb(BufferedImage image) {
+            super(image.getWidth(), image.getHeight(),
+                    new int[]{0, 8, 16, image.getColorModel().hasAlpha() ? 24 : -1});
+            this.image = image;
+        }
+
+        /**
+         * Цветовая модель изображения неизвестна и может упаковывать несколько пикселей в байт.
+         */
+        @Override
+        boolean isPixelIndependent() {
+            return false;
+        }
+
+        @Override
+        void writeBits(int x, int y, int dx, int dy, int count, ChannelMode mode, BitReader bits) {
+            int[] shifts = positions(mode);
+            int low = mode.lowMask;
+            for (int i = 0; i < count; i++) {
+                int value = bits.read(mode.bitsPerPixel);
+                int pixel = image.getRGB(x, y);
+                for (int c = shifts.length - 1; c >= 0; c--) {
+                    pixel = (pixel & ~(low << shifts[c])) | ((value & low) << shifts[c]);
+                    value >>>= mode.bitsPerChannel;
+                }
+                image.setRGB(x, y, pixel);
+                x += dx;
+                y += dy;
+            }
+        }
+
+        @Override
+        void readBits(int x, int y, int dx, int dy, int count, ChannelMode mode, BitWriter bits) {
+            int[] shifts = positions(mode);
+            for (int i = 0; i < count; i++) {
+                int pixel = image.getRGB(x, y);
+                int value = 0;
+                for (int shift : shifts) {
+                    value = (value << mode.bitsPerChannel) | ((pixel >>> shift) & mode.lowMask);
+                }
+                bits.write(value, mode.bitsPerPixel);
+                x += dx;
+                y += dy;
+            }
+        }
+
+        @Override
+        void readSamples(int x, int y, int count, Channel channel, int[] target) {
+            image.getRGB(x, y, count, 1, target, 0, count);
+            int shift = positionOf(channel);
+            for (int i = 0; i < count; i++) {
+                target[i] = (target[i] >>> shift) & 0xFF;
+            }
+        }
+    }
+
+    /**
+     * Запасной вариант прямого доступа для прочих цветовых моделей: запись в отсчёты растра
+     * через {@link WritableRaster#getSample}/{@link WritableRaster#setSample} без преобразования цвета.
+     */
+    private static final class Bands extends SampleRaster {
+        private final WritableRaster raster;
+
+        Bands(BufferedImage image) {
+            super(image.getWidth(), image.getHeight(), bandsOf(image.getRaster()));
+            this.raster = image.getRaster();
+        }
+
+        /**
+         * Номера полос для каналов: цветные растры хранят полосы в порядке R, G, B (, A),
+         * в остальных растрах синему каналу соответствует первая полоса.
+         *
+         * @param raster растр изображения.
+         * @return номера полос в порядке {@link Channel}.
+         */
+        private static int[] bandsOf(WritableRaster raster) {
+            int bands = raster.getNumBands();
+            if (bands >= 3) {
+                return new int[]{2, 1, 0, bands > 3 ? 3 : -1};
+            }
+            return new int[]{0, -1, -1, -1};
+        }
+
+        /**
+         * Модель отсчётов растра неизвестна и может упаковывать несколько пикселей в байт
+         * ({@link java.awt.image.MultiPixelPackedSampleModel}).
+         */
+        @Override
+        boolean isPixelIndependent() {
+            return false;
+        }
+
+        /**
+         * Проверка каналов режима и разрядности их отсчётов: в отсчёт из одного или двух битов,
+         * например в изображении TYPE_BYTE_BINARY, нельзя записать больше битов, чем он содержит.
+         */
+        @Override
+        boolean supports(ChannelMode mode) {
+            if (!super.supports(mode)) {
+                return false;
+            }
+            for (int band : positions(mode)) {
+                if (raster.getSampleModel().getSampleSize(band) < mode.bitsPerChannel) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        void writeBits(int x, int y, int dx, int dy, int count, ChannelMode mode, BitReader bits) {
+            int[] bands = positions(mode);
+            int low = mode.lowMask;
+            for (int i = 0; i < count; i++) {
+                int value = bits.read(mode.bitsPerPixel);
+                for (int c = bands.length - 1; c >= 0; c--) {
+                    int band = bands[c];
+                    raster.setSample(x, y, band, (raster.getSample(x, y, band) & ~low) | (value & low));
+                    value >>>= mode.bitsPerChannel;
+                }
+                x += dx;
+                y += dy;
+            }
+        }
+
+        @Override
+        void readBits(int x, int y, int dx, int dy, int count, ChannelMode mode, BitWriter bits) {
+            int[] bands = positions(mode);
+            for (int i = 0; i < count; i++) {
+                int value = 0;
+                for (int band : bands) {
+                    value = (value << mode.bitsPerChannel) | (raster.getSample(x, y, band) & mode.lowMask);
+                }
+                bits.write(value, mode.bitsPerPixel);
+                x += dx;
+                y += dy;
+            }
+        }
+
+        @Override
+        void readSamples(int x, int y, int count, Channel channel, int[] target) {
+            raster.getSamples(x, y, count, 1, positionOf(channel), target);
+            // У отсчётов шире восьми битов учитывается младший байт, в который встраивается сообщение
+            for (int i = 0; i < count; i++) {
+                target[i] &= 0xFF;
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Запуск локальной службы встраивания {@link EmbedService} без графического интерфейса.
+ *
+ * <pre>
+ * serve [параметры]
+ * </pre>
+ *
+ * Служба работает до завершения процесса (например, по Ctrl+C) и останавливается обработчиком завершения JVM.
+ * По умолчанию служба принимает соединения только с петлевого адреса.
+ */
+public class ServeCommand {
+
+    /**
+     * Время ожидания разрешения на обработку по умолчанию в миллисекундах.
+     */
+    static final int DEFAULT_QUEUE_TIMEOUT_MILLIS = 1000;
+
+    /**
+     * Количество прогревочных встраиваний по умолчанию.
+     */
+    static final int DEFAULT_WARM_UP = 50;
+
+    /**
+     * Описание параметров командной строки.
+     */
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Использование:",
+            "  serve [параметры]",
+            "Параметры:",
+            "  --port <n>             порт (по умолчанию " + EmbedService.DEFAULT_PORT + ")",
+            "  --bind <адрес>         адрес для приёма соединений (по умолчанию 127.0.0.1)",
+            "  --max-concurrent <n>   одновременно обрабатываемых запросов (по умолчанию число процессоров)",
+            "  --threads <n>          потоков обработки соединений (по умолчанию 2 * max-concurrent)",
+            "  --queue-timeout <мс>   ожидание разрешения на обработку, после него ответ 503 (по умолчанию "
+                    + DEFAULT_QUEUE_TIMEOUT_MILLIS + ")",
+            "  --max-request-mb <n>   наибольший размер запроса в МБ (по умолчанию "
+                    + EmbedService.DEFAULT_MAX_REQUEST_BYTES / (1024 * 1024) + ")",
+            "  --max-pixels <n>       наибольшее количество пикселей изображения (по умолчанию "
+                    + EmbedService.DEFAULT_MAX_PIXELS + ")",
+            "  --pool-mb <n>          объём пула буферов и растров в МБ (по умолчанию восьмая часть кучи)",
+            "  --warmup <n>           прогревочных встраиваний перед открытием порта (по умолчанию "
+                    + DEFAULT_WARM_UP + ", 0 — без прогрева)");
+
+    /**
+     * Точка входа команды.
+     *
+     * @param args аргументы командной строки без имени команды.
+     */
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Выполнение команды: запуск службы и ожидание завершения процесса.
+     *
+     * @param args аргументы командной строки без имени команды.
+     * @param out  поток для сообщений о запуске.
+     * @param err  поток для сообщений об ошибках.
+     * @return код завершения: 0 после остановки службы, 1 если службу не удалось запустить,
+     * 2 при неверных аргументах.
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        System.setProperty("java.awt.headless", "true");
+
+        int port = EmbedService.DEFAULT_PORT;
+        String bind = "127.0.0.1";
+        int maxConcurrent = Runtime.getRuntime().availableProcessors();
+        int threads = -1;
+        int queueTimeout = DEFAULT_QUEUE_TIMEOUT_MILLIS;
+        int maxRequestBytes = EmbedService.DEFAULT_MAX_REQUEST_BYTES;
+        long maxPixels = EmbedService.DEFAULT_MAX_PIXELS;
+        long poolBytes = Runtime.getRuntime().maxMemory() / 8;
+        int warmUp = DEFAULT_WARM_UP;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                switch (option) {
+                    case "--port" -> port = BatchCommand.positive(BatchCommand.value(args, ++i, option), option);
+                    case "--bind" -> bind = BatchCommand.value(args, ++i, option);
+                    case "--max-concurrent" -> maxConcurrent = BatchCommand.positive(
+                            BatchCommand.value(args, ++i, option), option);
+                    case "--threads" -> threads = BatchCommand.positive(BatchCommand.value(args, ++i, option), option);
+                    case "--queue-timeout" -> queueTimeout = BatchCommand.positive(
+                            BatchCommand.value(args, ++i, option), option);
+                    case "--max-request-mb" -> maxRequestBytes = (int) Math.min(Integer.MAX_VALUE - 8,
+                            BatchCommand.positive(BatchCommand.value(args, ++i, option), option) * 1048576L);
+                    case "--max-pixels" -> maxPixels = BatchCommand.positive(
+                            BatchCommand.value(args, ++i, option), option);
+                    case "--pool-mb" -> poolBytes = BatchCommand.positive(
+                            BatchCommand.value(args, ++i, option), option) * 1048576L;
+                    case "--warmup" -> warmUp = nonNegative(BatchCommand.value(args, ++i, option), option);
+                    default -> throw new IllegalArgumentException("Неизвестный параметр: " + option);
+                }
+            }
+            if (port > 65535) {
+                throw new IllegalArgumentException("Номер порта должен быть не больше 65535: " + port);
+            }
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+
+        EmbedService service;
+        try {
+            service = EmbedService.start(new InetSocketAddress(bind, port), threads > 0 ? threads : 2 * maxConcurrent,
+                    maxConcurrent, queueTimeout, maxRequestBytes, maxPixels, poolBytes, warmUp);
+        } catch (IOException e) {
+            err.println("Не удалось запустить службу: " + e.getMessage());
+            return 1;
+        }
+        InetSocketAddress address = service.getAddress();
+        out.printf("Служба встраивания запущена: http://%s:%d (одновременно %d запросов)%n",
+                address.getHostString(), address.getPort(), maxConcurrent);
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            service.close();
+            stopped.countDown();
+        }, "embed-service-shutdown"));
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            service.close();
+        }
+        return 0;
+    }
+
+    private static int nonNegative(String value, String option) {
+        return value.equals("0") ? 0 : BatchCommand.positive(value, option);
+    }
+}
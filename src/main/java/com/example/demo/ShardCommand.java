@@ -0,0 +1,157 @@
+package com.example.demo;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Разбиение большого файла на части, скрытые в наборе изображений, и сборка файла из частей
+ * без графического интерфейса.
+ *
+ * <pre>
+ * shard embed --input файл --carriers каталог --output каталог [параметры]
+ * shard extract --input каталог --output файл [параметры]
+ * </pre>
+ *
+ * Контейнерами служат все файлы BMP и PNG каталога; файл делится между ними пропорционально ёмкости
+ * (см. {@link ShardedArchive}). При сборке порядок частей берётся из их заголовков, поэтому изображения можно
+ * переименовывать. Если вместо выходного файла указан '-', собранные данные выводятся в стандартный вывод.
+ */
+public class ShardCommand {
+
+    /**
+     * Описание параметров командной строки.
+     */
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Использование:",
+            "  shard embed --input <файл> --carriers <каталог> --output <каталог> [параметры]",
+            "  shard extract --input <каталог> --output <файл | -> [параметры]",
+            "Параметры:",
+            "  --threads <n>        потоков встраивания или извлечения (по умолчанию число процессоров)",
+            "  --bits <n>           младших битов на канал, от 1 до " + EmbeddingConfig.MAX_BITS_PER_CHANNEL,
+            "  --channels <RGBA>    используемые каналы, например B или RGB",
+            "  --key <фраза>        разбросать пиксели частей по изображениям в порядке, заданном ключом",
+            "  --matrix <k>         матричное кодирование: k битов на 2^k - 1 отсчётов, k от "
+                    + MatrixCode.MIN_BITS + " до " + MatrixCode.MAX_BITS + ", только с --bits 1");
+
+    /**
+     * Точка входа команды.
+     *
+     * @param args аргументы командной строки без имени команды.
+     */
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Выполнение команды.
+     *
+     * @param args аргументы командной строки без имени команды.
+     * @param out  поток для отчёта.
+     * @param err  поток для сообщений об ошибках.
+     * @return код завершения: 0 при успехе, 1 при ошибке встраивания или сборки, 2 при неверных аргументах.
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        System.setProperty("java.awt.headless", "true");
+
+        String input = null;
+        String carriers = null;
+        String output = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        EmbeddingConfig config = EmbeddingConfig.defaults();
+        boolean embed;
+
+        try {
+            if (args.length == 0 || !(args[0].equals("embed") || args[0].equals("extract"))) {
+                throw new IllegalArgumentException("Укажите действие embed или extract.");
+            }
+            embed = args[0].equals("embed");
+            for (int i = 1; i < args.length; i++) {
+                String option = args[i];
+                switch (option) {
+                    case "--input" -> input = BatchCommand.value(args, ++i, option);
+                    case "--carriers" -> carriers = BatchCommand.value(args, ++i, option);
+                    case "--output" -> output = BatchCommand.value(args, ++i, option);
+                    case "--threads" -> threads = BatchCommand.positive(BatchCommand.value(args, ++i, option), option);
+                    case "--bits" -> config = config.withBitsPerChannel(
+                            BatchCommand.positive(BatchCommand.value(args, ++i, option), option));
+                    case "--channels" -> config = config.withChannels(
+                            BatchCommand.channels(BatchCommand.value(args, ++i, option)));
+                    case "--key" -> config = config.withScatter(
+                            PixelScatter.fromPassphrase(BatchCommand.value(args, ++i, option)));
+                    case "--matrix" -> config = config.withMatrixEmbedding(
+                            BatchCommand.positive(BatchCommand.value(args, ++i, option), option));
+                    default -> throw new IllegalArgumentException("Неизвестный параметр: " + option);
+                }
+            }
+            if (input == null || output == null || (embed && carriers == null)) {
+                throw new IllegalArgumentException(embed ? "Укажите --input, --carriers и --output."
+                        : "Укажите --input и --output.");
+            }
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (embed) {
+                List<Path> images = ShardedArchive.listImages(Paths.get(carriers));
+                int count = ShardedArchive.embed(Paths.get(input), images, Paths.get(output), config, threads);
+                out.printf(Locale.ROOT, "Файл %s разбит на %d частей за %.2f с%n", input, count,
+                        (System.nanoTime() - start) / 1e9);
+            } else {
+                List<Path> images = ShardedArchive.listImages(Paths.get(input));
+                if (output.equals("-")) {
+                    ShardedArchive.extract(images, out, config.getScatter(), threads);
+                    out.flush();
+                } else {
+                    long length = extractToFile(images, Paths.get(output), config.getScatter(), threads);
+                    out.printf(Locale.ROOT, "Собрано %d байт из %s за %.2f с%n", length, input,
+                            (System.nanoTime() - start) / 1e9);
+                }
+            }
+            return 0;
+        } catch (IOException e) {
+            String action = embed ? "разбить файл на части" : "собрать файл из частей";
+            LogUtil.logError("Не удалось " + action + ": " + e.getMessage(), e);
+            err.println("Не удалось " + action + ": " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Сборка файла во временный файл рядом с результатом и перенос на место результата после успешной сборки,
+     * чтобы при ошибке не оставалось обрезанного файла.
+     *
+     * @param images  изображения с частями.
+     * @param target  путь к результату.
+     * @param scatter перестановка пикселей или {@code null}.
+     * @param threads количество потоков.
+     * @return длина собранного файла.
+     * @throws IOException если сборка или запись не удалась.
+     */
+    private static long extractToFile(List<Path> images, Path target, PixelScatter scatter, int threads)
+            throws IOException {
+        Path absolute = target.toAbsolutePath();
+        Path temp = absolute.resolveSibling("." + absolute.getFileName() + ".part");
+        try {
+            long length;
+            try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                length = ShardedArchive.extract(images, stream, scatter, threads);
+            }
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+            return length;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
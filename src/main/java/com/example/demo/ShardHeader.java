@@ -0,0 +1,109 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Заголовок части набора, записываемый в начало сообщения каждого изображения-контейнера {@link ShardedArchive}.
+ * Содержит сигнатуру, версию формата, идентификатор набора, номер части, количество частей,
+ * смещение части в исходных данных и общую длину данных. Длина самой части равна длине сообщения
+ * за вычетом заголовка, целостность части проверяется контрольной суммой заголовка кадра.
+ */
+final class ShardHeader {
+
+    /**
+     * Сигнатура заголовка части ("LSBS").
+     */
+    static final int MAGIC = 0x4C534253;
+
+    /**
+     * Текущая версия формата заголовка части.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Размер заголовка части в байтах.
+     */
+    static final int BYTES = 37;
+
+    /**
+     * Идентификатор набора: части разных наборов не смешиваются при сборке.
+     */
+    final long setId;
+
+    /**
+     * Номер части, начиная с 0.
+     */
+    final int index;
+
+    /**
+     * Количество частей набора.
+     */
+    final int count;
+
+    /**
+     * Смещение части в исходных данных.
+     */
+    final long offset;
+
+    /**
+     * Общая длина исходных данных.
+     */
+    final long totalLength;
+
+    ShardHeader(long setId, int index, int count, long offset, long totalLength) {
+        this.setId = setId;
+        this.index = index;
+        this.count = count;
+        this.offset = offset;
+        this.totalLength = totalLength;
+    }
+
+    /**
+     * Сериализация заголовка.
+     *
+     * @return байты заголовка.
+     */
+    byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(BYTES);
+        buffer.putInt(MAGIC);
+        buffer.put((byte) VERSION);
+        buffer.putLong(setId);
+        buffer.putInt(index);
+        buffer.putInt(count);
+        buffer.putLong(offset);
+        buffer.putLong(totalLength);
+        return buffer.array();
+    }
+
+    /**
+     * Разбор заголовка части.
+     *
+     * @param bytes байты начала сообщения.
+     * @return заголовок или {@code null}, если сообщение не является частью набора.
+     * @throws IOException если версия формата не поддерживается или поля заголовка некорректны.
+     */
+    static ShardHeader parse(byte[] bytes) throws IOException {
+        if (bytes.length < BYTES) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.getInt() != MAGIC) {
+            return null;
+        }
+        int version = buffer.get() & 0xFF;
+        if (version != VERSION) {
+            throw new IOException("Неподдерживаемая версия заголовка части: " + version);
+        }
+        long setId = buffer.getLong();
+        int index = buffer.getInt();
+        int count = buffer.getInt();
+        long offset = buffer.getLong();
+        long totalLength = buffer.getLong();
+        if (count <= 0 || index < 0 || index >= count || offset < 0 || totalLength < offset) {
+            throw new IOException("Некорректный заголовок части: часть " + index + " из " + count
+                    + ", смещение " + offset + ", длина " + totalLength);
+        }
+        return new ShardHeader(setId, index, count, offset, totalLength);
+    }
+}
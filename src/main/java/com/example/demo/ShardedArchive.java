@@ -0,0 +1,566 @@
+package com.example.demo;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Разбиение одного большого файла на части, скрытые в наборе изображений-контейнеров.
+ * Файл делится пропорционально ёмкости контейнеров, поэтому доля изменённых пикселей во всех изображениях
+ * одинакова. Каждая часть начинается с заголовка {@link ShardHeader} с идентификатором набора, номером части
+ * и смещением в файле и проверяется контрольной суммой своего кадра. Части встраиваются и извлекаются параллельно
+ * в пуле потоков; при извлечении порядок частей определяется по заголовкам, а не по именам файлов, и части
+ * записываются в выходной поток по порядку, как только извлечены все предыдущие. Одновременно в памяти находится
+ * не больше частей, чем потоков. Несжатые BMP обрабатываются через отображение в память {@link MappedBmp},
+ * остальные изображения декодируются.
+ */
+public final class ShardedArchive {
+
+    /**
+     * Номер следующего пула для имён потоков.
+     */
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+    private ShardedArchive() {
+    }
+
+    /**
+     * Список изображений BMP и PNG каталога в порядке имён файлов.
+     *
+     * @param directory каталог.
+     * @return пути к изображениям.
+     * @throws IOException если каталог не удалось прочитать.
+     */
+    public static List<Path> listImages(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(path -> {
+                        String format = BatchPipeline.formatOf(path.getFileName().toString());
+                        return format.equals("bmp") || format.equals("png");
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Разбиение файла на части и встраивание частей в контейнеры.
+     * Результаты сохраняются в выходной каталог под именами контейнеров. Контейнеры, на которые при разбиении
+     * не пришлось ни одного байта, не копируются. Выходной каталог не может совпадать с каталогом контейнеров:
+     * контейнеры не изменяются. При ошибке уже сохранённые результаты удаляются.
+     *
+     * @param input    файл с данными.
+     * @param carriers изображения-контейнеры.
+     * @param output   каталог для результатов, создаётся при необходимости.
+     * @param config   параметры встраивания, общие для всех частей.
+     * @param threads  количество потоков, не меньше 1.
+     * @return количество частей.
+     * @throws IOException если файл пуст, данные не помещаются в контейнеры или встраивание части не удалось.
+     */
+    public static int embed(Path input, List<Path> carriers, Path output, EmbeddingConfig config, int threads)
+            throws IOException {
+        if (config.isLegacy()) {
+            IOException e = new IOException("Исходный формат не поддерживает разбиение на части.");
+            LogUtil.logError(e.getMessage(), e);
+            throw e;
+        }
+        long total = Files.size(input);
+        if (total == 0) {
+            IOException e = new IOException("Файл для разбиения пуст: " + input);
+            LogUtil.logError(e.getMessage(), e);
+            throw e;
+        }
+        long[] usable = new long[carriers.size()];
+        long available = 0;
+        for (int i = 0; i < usable.length; i++) {
+            usable[i] = Math.max(0, capacity(carriers.get(i), config) - ShardHeader.BYTES);
+            available += usable[i];
+        }
+        if (total > available) {
+            IOException e = new IOException("Файл длиной " + total + " байт не помещается в контейнеры ёмкостью "
+                    + available + " байт.");
+            LogUtil.logError(e.getMessage(), e);
+            throw e;
+        }
+
+        long[] sizes = split(total, usable, available);
+        List<Path> used = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        List<Long> lengths = new ArrayList<>();
+        long offset = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            if (sizes[i] > 0) {
+                used.add(carriers.get(i));
+                offsets.add(offset);
+                lengths.add(sizes[i]);
+                offset += sizes[i];
+            }
+        }
+        int count = used.size();
+        long setId = new SecureRandom().nextLong();
+        LogUtil.logInfo(() -> "Разбиение файла " + input + " длиной " + total + " байт на " + count
+                + " частей, параметры: " + config);
+
+        // Проверка до записи: результат на месте контейнера заменил бы его, а при ошибке удалил
+        Set<Path> targets = new HashSet<>();
+        for (Path carrier : used) {
+            Path target = output.resolve(carrier.getFileName());
+            if (Files.exists(target) && Files.isSameFile(carrier, target)) {
+                throw fail("Результат " + target + " совпадает с контейнером, укажите другой выходной каталог.");
+            }
+            if (!targets.add(target.toAbsolutePath().normalize())) {
+                throw fail("Несколько контейнеров сохраняются в один файл: " + target);
+            }
+        }
+
+        Files.createDirectories(output);
+        // Только файлы, которые эта операция начала записывать: прочие файлы выходного каталога не удаляются
+        Queue<Path> written = new ConcurrentLinkedQueue<>();
+        List<CompletableFuture<Void>> shards = new ArrayList<>();
+        AtomicBoolean failed = new AtomicBoolean();
+        ExecutorService executor = newExecutor("shard-embed-", threads);
+        try {
+            for (int i = 0; i < count; i++) {
+                Path carrier = used.get(i);
+                Path target = output.resolve(carrier.getFileName());
+                ShardHeader header = new ShardHeader(setId, i, count, offsets.get(i), total);
+                long length = lengths.get(i);
+                shards.add(CompletableFuture.runAsync(() -> {
+                    // После ошибки одной части остальные части не встраиваются
+                    if (failed.get()) {
+                        return;
+                    }
+                    try {
+                        written.add(target);
+                        embedShard(input, header, length, carrier, target, config);
+                    } catch (IOException e) {
+                        failed.set(true);
+                        throw new UncheckedIOException(e);
+                    } catch (RuntimeException e) {
+                        failed.set(true);
+                        throw e;
+                    }
+                }, executor));
+            }
+            for (CompletableFuture<Void> shard : shards) {
+                await(shard);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Неполный набор частей бесполезен, поэтому сохранённые части удаляются после остановки встраивания
+            failed.set(true);
+            CompletableFuture.allOf(shards.toArray(CompletableFuture[]::new)).exceptionally(error -> null).join();
+            for (Path path : written) {
+                Files.deleteIfExists(path);
+            }
+            throw e;
+        } finally {
+            executor.shutdown();
+        }
+        LogUtil.logInfo("Файл {} разбит на {} частей.", input, count);
+        return count;
+    }
+
+    /**
+     * Сборка файла из частей, скрытых в изображениях, с записью в выходной поток.
+     * Сначала параллельно читаются только заголовки частей; изображения без сообщения или без заголовка части
+     * пропускаются. Затем части извлекаются параллельно и записываются в поток в порядке номеров.
+     *
+     * @param images  изображения с частями, в любом порядке.
+     * @param out     выходной поток.
+     * @param scatter перестановка пикселей, заданная ключом при встраивании, или {@code null}.
+     * @param threads количество потоков, не меньше 1.
+     * @return количество записанных байтов.
+     * @throws IOException если части принадлежат разным наборам, набор неполон, контрольная сумма части
+     *                     не совпадает или запись в поток не удалась.
+     */
+    public static long extract(List<Path> images, OutputStream out, PixelScatter scatter, int threads)
+            throws IOException {
+        ExecutorService executor = newExecutor("shard-extract-", threads);
+        try {
+            List<CompletableFuture<ShardHeader>> headers = new ArrayList<>();
+            for (Path image : images) {
+                headers.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return readShardHeader(image, scatter);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, executor));
+            }
+            Path[] order = null;
+            ShardHeader first = null;
+            for (int i = 0; i < images.size(); i++) {
+                ShardHeader header = await(headers.get(i));
+                if (header == null) {
+                    LogUtil.logWarning("Изображение {} не содержит части набора и пропущено.", images.get(i));
+                    continue;
+                }
+                if (first == null) {
+                    // Количество частей прочитано из изображения, поэтому проверяется до выделения массива
+                    if (header.count > images.size()) {
+                        throw fail("Набор из " + header.count + " частей не может содержаться в " + images.size()
+                                + " изображениях.");
+                    }
+                    first = header;
+                    order = new Path[header.count];
+                }
+                if (header.setId != first.setId || header.count != first.count
+                        || header.totalLength != first.totalLength) {
+                    throw fail("Изображения " + images.get(i) + " и " + order[first.index]
+                            + " содержат части разных наборов.");
+                }
+                if (order[header.index] != null) {
+                    throw fail("Часть " + header.index + " содержится в двух изображениях: " + order[header.index]
+                            + " и " + images.get(i));
+                }
+                order[header.index] = images.get(i);
+            }
+            if (first == null) {
+                throw fail("Изображения не содержат частей набора.");
+            }
+            for (int i = 0; i < order.length; i++) {
+                if (order[i] == null) {
+                    throw fail("Не найдена часть " + i + " из " + order.length + ".");
+                }
+            }
+            LogUtil.logInfo("Сборка файла длиной {} байт из {} частей.", first.totalLength, order.length);
+            return assemble(order, first, out, scatter, executor, threads);
+        } finally {
+            executor.shutdownNow();
+            // После ошибки в кэше остаются изображения, части из которых не были извлечены
+            for (Path image : images) {
+                CarrierCache.shared().invalidate(image.toString());
+            }
+        }
+    }
+
+    /**
+     * Извлечение частей с упреждением и запись их в поток по порядку.
+     * Пока записывается текущая часть, следующие части уже извлекаются.
+     *
+     * @param order    изображения в порядке номеров частей.
+     * @param first    заголовок любой части набора.
+     * @param out      выходной поток.
+     * @param scatter  перестановка пикселей или {@code null}.
+     * @param executor пул потоков извлечения.
+     * @param depth    количество частей, извлекаемых заранее.
+     * @return количество записанных байтов.
+     * @throws IOException если часть повреждена, не совпадает с заголовком или запись не удалась.
+     */
+    private static long assemble(Path[] order, ShardHeader first, OutputStream out, PixelScatter scatter,
+                                 ExecutorService executor, int depth) throws IOException {
+        Deque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+        int nextToExtract = 0;
+        long written = 0;
+        for (int index = 0; index < order.length; index++) {
+            while (nextToExtract < order.length && pending.size() < depth) {
+                Path image = order[nextToExtract++];
+                pending.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return extractShard(image, scatter);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, executor));
+            }
+            byte[] message = await(pending.poll());
+            ShardHeader header = ShardHeader.parse(message);
+            if (header == null || header.setId != first.setId || header.index != index || header.offset != written) {
+                throw fail("Часть " + index + " в изображении " + order[index] + " не совпадает с заголовком набора.");
+            }
+            out.write(message, ShardHeader.BYTES, message.length - ShardHeader.BYTES);
+            written += message.length - ShardHeader.BYTES;
+        }
+        if (written != first.totalLength) {
+            throw fail("Длина собранного файла " + written + " байт не совпадает с заявленной "
+                    + first.totalLength + " байт.");
+        }
+        return written;
+    }
+
+    /**
+     * Распределение байтов по контейнерам пропорционально их ёмкости.
+     * Остаток от округления добавляется первым контейнерам, в которых есть место.
+     *
+     * @param total     длина файла.
+     * @param usable    ёмкость контейнеров за вычетом заголовков частей.
+     * @param available суммарная ёмкость, не меньше длины файла.
+     * @return количество байтов для каждого контейнера.
+     */
+    static long[] split(long total, long[] usable, long available) {
+        long[] sizes = new long[usable.length];
+        long assigned = 0;
+        double share = (double) total / available;
+        for (int i = 0; i < usable.length; i++) {
+            sizes[i] = Math.min(usable[i], (long) (usable[i] * share));
+            assigned += sizes[i];
+        }
+        for (int i = 0; i < usable.length && assigned < total; i++) {
+            long extra = Math.min(usable[i] - sizes[i], total - assigned);
+            sizes[i] += extra;
+            assigned += extra;
+        }
+        return sizes;
+    }
+
+    /**
+     * Вычисление ёмкости контейнера. Для BMP размер читается из отображённого файла, для остальных форматов —
+     * из заголовка изображения без декодирования пикселей. Контейнер без каналов режима имеет нулевую ёмкость.
+     *
+     * @param carrier путь к контейнеру.
+     * @param config  параметры встраивания.
+     * @return ёмкость в байтах.
+     * @throws IOException если изображение не удалось прочитать.
+     */
+    private static long capacity(Path carrier, EmbeddingConfig config) throws IOException {
+        String path = carrier.toString();
+        if (MappedBmp.isSupported(path)) {
+            try (MappedBmp bmp = MappedBmp.open(path, false)) {
+                return bmp.capacity(config);
+            }
+        }
+        try (ImageInputStream stream = ImageIO.createImageInputStream(carrier.toFile())) {
+            Iterator<ImageReader> readers = stream == null ? null : ImageIO.getImageReaders(stream);
+            if (readers == null || !readers.hasNext()) {
+                throw fail("Неподдерживаемый формат изображения: " + carrier);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                // Изображение декодируется в первый из предложенных типов, поэтому наличие каналов проверяется
+                // так же, как в RasterEmbedder.capacity, на растре 1x1 этого типа
+                Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+                if (!config.isLegacy() && (!types.hasNext()
+                        || !SampleRaster.wrap(types.next().createBufferedImage(1, 1)).supports(config.channelMode()))) {
+                    return 0;
+                }
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                return RasterEmbedder.capacity((long) width * height, height, config);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Встраивание одной части: заголовок части и отрезок файла передаются как потоковое сообщение.
+     *
+     * @param input   файл с данными.
+     * @param header  заголовок части.
+     * @param length  длина отрезка файла.
+     * @param carrier путь к контейнеру.
+     * @param target  путь к результату.
+     * @param config  параметры встраивания.
+     * @throws IOException если чтение, встраивание или сохранение не удалось.
+     */
+    private static void embedShard(Path input, ShardHeader header, long length, Path carrier, Path target,
+                                   EmbeddingConfig config) throws IOException {
+        try (FileChannel file = FileChannel.open(input, StandardOpenOption.READ);
+             PayloadSource source = PayloadSource.of(new ShardChannel(header.toBytes(), file, header.offset, length),
+                     ShardHeader.BYTES + length)) {
+            String path = carrier.toString();
+            if (MappedBmp.isSupported(path)) {
+                try (MappedBmp bmp = MappedBmp.copyOf(path, target.toString())) {
+                    bmp.hideTheMessage(source, config);
+                }
+            } else {
+                BufferedImage image = ImageHandler.loadImage(path);
+                Steganography.hideTheMessage(source, image, config);
+                ImageHandler.saveImage(image, target.toString(), BatchPipeline.formatOf(path));
+            }
+        }
+        LogUtil.logInfo(() -> "Часть " + (header.index + 1) + " из " + header.count + " (" + length
+                + " байт) скрыта в " + target);
+    }
+
+    /**
+     * Чтение заголовка части из начала сообщения без извлечения всей части.
+     *
+     * @param image   путь к изображению.
+     * @param scatter перестановка пикселей или {@code null}.
+     * @return заголовок части или {@code null}, если изображение не содержит части набора.
+     * @throws IOException если изображение не удалось прочитать или заголовок части некорректен.
+     */
+    private static ShardHeader readShardHeader(Path image, PixelScatter scatter) throws IOException {
+        String path = image.toString();
+        if (MappedBmp.isSupported(path)) {
+            try (MappedBmp bmp = MappedBmp.open(path, false)) {
+                return ShardHeader.parse(bmp.readPrefix(scatter, ShardHeader.BYTES));
+            }
+        }
+        // Декодированное изображение с частью остаётся в кэше для её извлечения, остальные удаляются из кэша
+        BufferedImage decoded = CarrierCache.shared().load(path);
+        ShardHeader header = null;
+        try {
+            byte[] prefix = RasterExtractor.readPrefix(SampleRaster.wrap(decoded), () -> SampleRaster.wrapLegacy(decoded),
+                    scatter, ShardHeader.BYTES);
+            header = ShardHeader.parse(prefix);
+            return header;
+        } finally {
+            if (header == null) {
+                CarrierCache.shared().invalidate(path);
+            }
+        }
+    }
+
+    /**
+     * Извлечение сообщения с частью целиком, с проверкой контрольной суммы кадра.
+     *
+     * @param image   путь к изображению.
+     * @param scatter перестановка пикселей или {@code null}.
+     * @return сообщение: заголовок части и байты части.
+     * @throws IOException если изображение не удалось прочитать или сообщение повреждено.
+     */
+    private static byte[] extractShard(Path image, PixelScatter scatter) throws IOException {
+        String path = image.toString();
+        if (MappedBmp.isSupported(path)) {
+            try (MappedBmp bmp = MappedBmp.open(path, false)) {
+                return bmp.extractMessage(scatter, 1);
+            }
+        }
+        BufferedImage decoded = CarrierCache.shared().load(path);
+        try {
+            return Steganography.extractMessage(decoded, scatter, 1);
+        } finally {
+            CarrierCache.shared().invalidate(path);
+        }
+    }
+
+    private static ExecutorService newExecutor(String name, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Количество потоков должно быть положительным: " + threads);
+        }
+        String prefix = name + POOL_NUMBER.incrementAndGet() + "-";
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, prefix + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Ожидание результата задачи с заменой {@link UncheckedIOException} исходной {@link IOException}.
+     *
+     * @param future ожидаемый результат.
+     * @param <T>    тип результата.
+     * @return результат.
+     * @throws IOException если задача завершилась ошибкой или ожидание прервано.
+     */
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Ожидание части прервано.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static IOException fail(String message) {
+        IOException e = new IOException(message);
+        LogUtil.logError(message, e);
+        return e;
+    }
+
+    /**
+     * Канал, отдающий заголовок части, а затем отрезок файла позиционным чтением.
+     */
+    private static final class ShardChannel implements ReadableByteChannel {
+
+        private final ByteBuffer header;
+
+        private final FileChannel file;
+
+        private long position;
+
+        private final long end;
+
+        ShardChannel(byte[] header, FileChannel file, long offset, long length) {
+            this.header = ByteBuffer.wrap(header);
+            this.file = file;
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        @Override
+        public int read(ByteBuffer target) throws IOException {
+            if (header.hasRemaining()) {
+                int count = Math.min(header.remaining(), target.remaining());
+                target.put(header.slice().limit(count));
+                header.position(header.position() + count);
+                return count;
+            }
+            if (position >= end) {
+                return -1;
+            }
+            int limit = target.limit();
+            if (target.remaining() > end - position) {
+                target.limit(target.position() + (int) (end - position));
+            }
+            try {
+                int read = file.read(target, position);
+                if (read > 0) {
+                    position += read;
+                }
+                return read;
+            } finally {
+                target.limit(limit);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return file.isOpen();
+        }
+
+        @Override
+        public void close() {
+            // Файл закрывается вызывающей стороной
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.demo;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Стегоанализ младших битов: оценка того, насколько заметно встраивание в изображение.
+ * Растр делится на квадратные области; каждая область читается за один проход по строкам напрямую из массива
+ * растра: отсчёты всех цветовых каналов строки читаются подряд, и для каждого канала собираются статистики
+ * {@link LsbStatistics} (хи-квадрат, RS-анализ и анализ пар отсчётов). Области обрабатываются параллельно в пуле
+ * {@link ParallelStripes}, оценки всего изображения получаются объединением статистик областей
+ * без повторного чтения. Альфа-канал не анализируется.
+ * Оценки RS-анализа и анализа пар близки к нулю для изображений без сообщения и растут с долей
+ * отсчётов, занятых сообщением, поэтому порог 0.1–0.2 отделяет заметное встраивание от шума оценки.
+ */
+public final class Steganalysis {
+
+    /**
+     * Размер стороны области по умолчанию.
+     */
+    public static final int DEFAULT_TILE = 256;
+
+    /**
+     * Наименьший размер стороны области, при котором оценки ещё имеют смысл.
+     */
+    static final int MIN_TILE = 16;
+
+    /**
+     * Анализируемые каналы в порядке отчёта.
+     */
+    private static final Channel[] COLOR_CHANNELS = {Channel.RED, Channel.GREEN, Channel.BLUE};
+
+    private Steganalysis() {
+    }
+
+    /**
+     * Анализ изображения.
+     *
+     * @param image       изображение.
+     * @param tileSize    размер стороны области в пикселях.
+     * @param parallelism количество потоков.
+     * @return отчёт.
+     * @throws IOException если изображение равно null или параметры некорректны.
+     */
+    public static DetectabilityReport analyze(BufferedImage image, int tileSize, int parallelism) throws IOException {
+        if (image == null) {
+            IOException e = new IOException("Входное изображение не может быть пустым.");
+            LogUtil.logError("Входное изображение не может быть пустым.", e);
+            throw e;
+        }
+        return analyze(SampleRaster.wrap(image), tileSize, parallelism);
+    }
+
+    /**
+     * Анализ файла изображения. Несжатый BMP отображается в память и не декодируется.
+     *
+     * @param path        путь к изображению.
+     * @param tileSize    размер стороны области в пикселях.
+     * @param parallelism количество потоков.
+     * @return отчёт.
+     * @throws IOException если изображение не удалось прочитать или параметры некорректны.
+     */
+    public static DetectabilityReport analyze(String path, int tileSize, int parallelism) throws IOException {
+        if (MappedBmp.isSupported(path)) {
+            try (MappedBmp bmp = MappedBmp.open(path, false)) {
+                return bmp.analyze(tileSize, parallelism);
+            }
+        }
+        return analyze(ImageHandler.loadImage(path), tileSize, parallelism);
+    }
+
+    /**
+     * Анализ растра.
+     *
+     * @param raster      растр.
+     * @param tileSize    размер стороны области в пикселях.
+     * @param parallelism количество потоков.
+     * @return отчёт.
+     * @throws IOException если параметры некорректны.
+     */
+    static DetectabilityReport analyze(SampleRaster raster, int tileSize, int parallelism) throws IOException {
+        if (tileSize < MIN_TILE || parallelism < 1) {
+            IOException e = new IOException("Некорректные параметры анализа: область " + tileSize + ", потоков "
+                    + parallelism);
+            LogUtil.logError(e.getMessage(), e);
+            throw e;
+        }
+        List<Channel> present = new ArrayList<>();
+        for (Channel channel : COLOR_CHANNELS) {
+            if (raster.hasChannel(channel)) {
+                present.add(channel);
+            }
+        }
+        Channel[] channels = present.toArray(new Channel[0]);
+        int columns = Math.max(1, (raster.width + tileSize - 1) / tileSize);
+        int rows = Math.max(1, (raster.height + tileSize - 1) / tileSize);
+        long bytes = (long) raster.width * raster.height * channels.length;
+        return Metrics.time(Metrics.Stage.STEGANALYSIS, () -> {
+            LsbStatistics[] statistics = new LsbStatistics[columns * rows * channels.length];
+            Tiles tiles = new Tiles(raster, tileSize, columns, channels, statistics, 0, columns * rows);
+            if (parallelism > 1 && columns * rows > 1) {
+                ParallelStripes.pool(parallelism).invoke(tiles);
+            } else {
+                tiles.process();
+            }
+            return report(raster, tileSize, columns, rows, channels, statistics);
+        }, report -> bytes);
+    }
+
+    /**
+     * Вычисление оценок областей и объединение их статистик в оценки изображения.
+     *
+     * @param raster     растр.
+     * @param tileSize   размер стороны области.
+     * @param columns    количество областей по горизонтали.
+     * @param rows       количество областей по вертикали.
+     * @param channels   каналы.
+     * @param statistics статистики областей.
+     * @return отчёт.
+     */
+    private static DetectabilityReport report(SampleRaster raster, int tileSize, int columns, int rows,
+                                              Channel[] channels, LsbStatistics[] statistics) {
+        DetectabilityReport.Score[] regions = new DetectabilityReport.Score[statistics.length];
+        LsbStatistics[] totals = new LsbStatistics[channels.length];
+        for (int c = 0; c < channels.length; c++) {
+            totals[c] = new LsbStatistics();
+        }
+        for (int i = 0; i < statistics.length; i++) {
+            regions[i] = score(statistics[i]);
+            totals[i % channels.length].merge(statistics[i]);
+        }
+        DetectabilityReport.Score[] image = new DetectabilityReport.Score[channels.length];
+        for (int c = 0; c < channels.length; c++) {
+            image[c] = score(totals[c]);
+        }
+        return new DetectabilityReport(raster.width, raster.height, tileSize, columns, rows, channels, image,
+                regions);
+    }
+
+    private static DetectabilityReport.Score score(LsbStatistics statistics) {
+        return new DetectabilityReport.Score(statistics.chiSquareProbability(), statistics.rsRate(),
+                statistics.spaRate());
+    }
+
+    /**
+     * Диапазон областей [from, to) в порядке строк. Диапазон из нескольких областей делится пополам,
+     * одна область обрабатывается в текущем потоке.
+     */
+    private static final class Tiles extends RecursiveAction {
+        private final SampleRaster raster;
+        private final int tileSize;
+        private final int columns;
+        private final Channel[] channels;
+        private final LsbStatistics[] statistics;
+        private final int from;
+        private final int to;
+
+        Tiles(SampleRaster raster, int tileSize, int columns, Channel[] channels, LsbStatistics[] statistics,
+              int from, int to) {
+            this.raster = raster;
+            this.tileSize = tileSize;
+            this.columns = columns;
+            this.channels = channels;
+            this.statistics = statistics;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Tiles(raster, tileSize, columns, channels, statistics, from, middle),
+                        new Tiles(raster, tileSize, columns, channels, statistics, middle, to));
+                return;
+            }
+            process();
+        }
+
+        /**
+         * Сбор статистик областей диапазона в текущем потоке.
+         */
+        void process() {
+            // Отсчёты всех каналов строки читаются подряд, пока строка области находится в кэше
+            int[][] samples = new int[channels.length][Math.min(tileSize, raster.width)];
+            for (int tile = from; tile < to; tile++) {
+                int x = tile % columns * tileSize;
+                int y = tile / columns * tileSize;
+                int width = Math.min(tileSize, raster.width - x);
+                int bottom = Math.min(y + tileSize, raster.height);
+                LsbStatistics[] tileStatistics = new LsbStatistics[channels.length];
+                for (int c = 0; c < channels.length; c++) {
+                    tileStatistics[c] = new LsbStatistics();
+                }
+                for (int row = y; row < bottom; row++) {
+                    for (int c = 0; c < channels.length; c++) {
+                        raster.readSamples(x, row, width, channels[c], samples[c]);
+                        tileStatistics[c].addRow(samples[c], width);
+                    }
+                }
+                System.arraycopy(tileStatistics, 0, statistics, tile * channels.length, channels.length);
+            }
+        }
+    }
+}
@@ -2,114 +2,337 @@ package com.example.demo;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * Класс Steganography предоставляет методы для сокрытия сообщений в изображениях
- * с использованием стеганографии.
+ * с использованием стеганографии и для их последующего извлечения.
+ * Длительность встраивания и извлечения учитывается в {@link Metrics}.
  */
 public class Steganography {
 
     /**
-     * Кодирование длины сообщения в первых 8 пикселях изображения.
+     * Скрытие сообщения в изображении.
      *
-     * @param length длина сообщения в битах
-     * @param image  изображение, в которое будет закодирована длина сообщения
-     * @throws IOException если длина сообщения превышает размер изображения
+     * @param bits     массив битов сообщения
+     * @param theImage изображение, в которое будет скрыто сообщение
+     * @throws IOException если сообщение или изображение недействительны
      */
-    private static void encodeMessageLength(int length, BufferedImage image) throws IOException {
-        LogUtil.logInfo("Длина кодирования сообщения: " + length);
-        if (length > image.getWidth() * image.getHeight()) {
-            LogUtil.logError("Длина сообщения превышает допустимый размер.", new IOException("Длина сообщения превышает допустимый размер."));
-            throw new IOException("Длина сообщения превышает допустимый размер.");
-        }
-        String binaryLength = Integer.toBinaryString(length);
-        while (binaryLength.length() < 8) {
-            binaryLength = '0' + binaryLength;
-        }
-
-        for (int i = 0; i < 8; i++) {
-            int bit = Character.getNumericValue(binaryLength.charAt(i));
-            encodeBitInPixel(image, 0, i, bit);
-        }
-        LogUtil.logInfo("Длина сообщения успешно закодирована.");
+    public static void hideTheMessage(int[] bits, BufferedImage theImage) throws IOException {
+        hideTheMessage(toPayload(bits), theImage);
     }
 
     /**
-     * Кодирование одного бита в указанном пикселе изображения.
+     * Скрытие сообщения в изображении с заданными параметрами встраивания.
      *
-     * @param image изображение для кодирования
-     * @param x     координата X пикселя
-     * @param y     координата Y пикселя
-     * @param bit   значение бита для кодирования (0 или 1)
+     * @param bits     массив битов сообщения
+     * @param theImage изображение, в которое будет скрыто сообщение
+     * @param config   параметры встраивания
+     * @throws IOException если сообщение или изображение недействительны или сообщение не помещается в изображение
      */
-    private static void encodeBitInPixel(BufferedImage image, int x, int y, int bit) {
-        int pixel = image.getRGB(x, y);
+    public static void hideTheMessage(int[] bits, BufferedImage theImage, EmbeddingConfig config) throws IOException {
+        hideTheMessage(toPayload(bits), theImage, config);
+    }
 
-        // Извлечение значений цветовых каналов
-        int alpha = (pixel >> 24) & 255;
-        int red = (pixel >> 16) & 255;
-        int green = (pixel >> 8) & 255;
-        int blue = pixel & 255;
+    /**
+     * Скрытие упакованного сообщения в изображении.
+     *
+     * @param payload  упакованные биты сообщения
+     * @param theImage изображение, в которое будет скрыто сообщение
+     * @throws IOException если сообщение или изображение недействительны
+     */
+    public static void hideTheMessage(BitPayload payload, BufferedImage theImage) throws IOException {
+        LogUtil.logInfo("Скрытие сообщения на изображении.");
+        validate(payload, theImage);
 
-        // Модификация синего канала
-        blue = (blue & 0b11111110) | bit;
+        // Кодирование длины и битов сообщения непосредственно в растре
+        Metrics.time(Metrics.Stage.EMBED, payload.getByteLength(), () -> RasterEmbedder.embedLegacy(payload, theImage));
 
-        // Сборка нового пикселя
-        int newPixel = (alpha << 24) | (red << 16) | (green << 8) | blue;
-        image.setRGB(x, y, newPixel);
+        LogUtil.logInfo("Сообщение успешно скрыто.");
     }
 
     /**
-     * Кодирование сообщения в массиве битов в пикселях изображения.
+     * Скрытие упакованного сообщения в изображении с заданными параметрами встраивания.
+     * Ёмкость изображения проверяется до изменения первого пикселя.
      *
-     * @param bits  массив битов сообщения
-     * @param image изображение для кодирования
-     * @throws IOException если возникает ошибка при кодировании
+     * @param payload  упакованные биты сообщения
+     * @param theImage изображение, в которое будет скрыто сообщение
+     * @param config   параметры встраивания
+     * @throws IOException если сообщение или изображение недействительны или сообщение не помещается в изображение
      */
-    private static void encodeMessageBits(int[] bits, BufferedImage image) throws IOException {
-        LogUtil.logInfo("Кодирование битов сообщения в изображение.");
-        int width = image.getWidth();
-        int height = image.getHeight();
+    public static void hideTheMessage(BitPayload payload, BufferedImage theImage, EmbeddingConfig config) throws IOException {
+        LogUtil.logInfo("Скрытие сообщения на изображении.");
+        validate(payload, theImage);
 
-        int bitIndex = 0;
-        int bitCount = bits.length;
+        Metrics.time(Metrics.Stage.EMBED, payload.getByteLength(), () -> RasterEmbedder.embed(payload, theImage, config));
 
-        for (int x = 0; x < width && bitIndex < bitCount; x++) {
-            for (int y = 0; y < height && bitIndex < bitCount; y++) {
-                if (x == 0 && y < 8) continue; // Пропустить первые 8 пикселей
-                encodeBitInPixel(image, x, y, bits[bitIndex]);
-                bitIndex++;
-            }
-        }
-        LogUtil.logInfo("Биты сообщения успешно закодированы.");
+        LogUtil.logInfo("Сообщение успешно скрыто.");
     }
 
     /**
-     * Скрытие сообщения в изображении.
+     * Потоковое скрытие сообщения из источника в изображении.
+     * Байты сообщения встраиваются по мере чтения, поэтому сообщение не загружается в память целиком.
      *
-     * @param bits     массив битов сообщения
+     * @param source   источник сообщения
      * @param theImage изображение, в которое будет скрыто сообщение
-     * @throws IOException если сообщение или изображение недействительны
+     * @param config   параметры встраивания
+     * @throws IOException если источник или изображение недействительны, сообщение не помещается в изображение
+     *                     или чтение источника не удалось
      */
-    public static void hideTheMessage(int[] bits, BufferedImage theImage) throws IOException {
+    public static void hideTheMessage(PayloadSource source, BufferedImage theImage, EmbeddingConfig config) throws IOException {
         LogUtil.logInfo("Скрытие сообщения на изображении.");
+        if (source == null) {
+            IOException e = new IOException("Источник сообщения не может быть нулем.");
+            LogUtil.logError("Источник сообщения не может быть нулем.", e);
+            throw e;
+        }
+        requireImage(theImage);
+
+        SampleRaster raster = config.isLegacy() ? SampleRaster.wrapLegacy(theImage) : SampleRaster.wrap(theImage);
+        // Потоковое чтение источника входит в длительность встраивания
+        Metrics.time(Metrics.Stage.EMBED, source.getLength(), () -> RasterEmbedder.embed(source, raster, config));
+
+        LogUtil.logInfo("Сообщение успешно скрыто.");
+    }
+
+    /**
+     * Потоковое скрытие сообщения с преобразованием: сжатием и (или) шифрованием по мере чтения.
+     * Длина преобразованного сообщения заранее неизвестна, преобразования записываются во флаги заголовка кадра.
+     *
+     * @param message   поток байтов сообщения, не закрывается
+     * @param theImage  изображение, в которое будет скрыто сообщение
+     * @param config    параметры встраивания
+     * @param transform преобразование сообщения
+     * @return записанный заголовок кадра
+     * @throws IOException если поток или изображение недействительны, преобразованное сообщение
+     *                     не помещается в изображение или чтение сообщения не удалось
+     */
+    public static FrameHeader hideTheMessage(InputStream message, BufferedImage theImage, EmbeddingConfig config,
+                                             PayloadTransform transform) throws IOException {
+        LogUtil.logInfo("Скрытие сообщения на изображении, преобразование: {}", transform);
+        if (message == null) {
+            IOException e = new IOException("Источник сообщения не может быть нулем.");
+            LogUtil.logError("Источник сообщения не может быть нулем.", e);
+            throw e;
+        }
+        requireImage(theImage);
+
+        SampleRaster raster = SampleRaster.wrap(theImage);
+        FrameHeader header = Metrics.time(Metrics.Stage.EMBED,
+                () -> RasterEmbedder.embed(transform.encode(message), transform.flags(), raster, config),
+                FrameHeader::getLength);
+
+        LogUtil.logInfo("Сообщение успешно скрыто.");
+        return header;
+    }
+
+    /**
+     * Дозапись байтов в конец сообщения, скрытого в изображении в формате с заголовком кадра.
+     * Изменяются только пиксели после конца сообщения и заголовок кадра, параметры встраивания берутся из заголовка.
+     *
+     * @param bytes    дописываемые байты
+     * @param theImage изображение со скрытым сообщением
+     * @return заголовок кадра после дозаписи
+     * @throws IOException если байты или изображение недействительны, сообщение записано в исходном формате
+     *                     или не помещается в изображение после дозаписи
+     */
+    public static FrameHeader appendMessage(byte[] bytes, BufferedImage theImage) throws IOException {
+        return appendMessage(bytes, theImage, null);
+    }
+
+    /**
+     * Дозапись байтов в конец сообщения, скрытого в изображении, в том числе в разбросанном порядке.
+     *
+     * @param bytes    дописываемые байты
+     * @param theImage изображение со скрытым сообщением
+     * @param scatter  перестановка пикселей, заданная ключом при встраивании, или {@code null}
+     * @return заголовок кадра после дозаписи
+     * @throws IOException если байты или изображение недействительны, сообщение записано в исходном формате,
+     *                     не указан ключ разброса или сообщение не помещается в изображение после дозаписи
+     */
+    public static FrameHeader appendMessage(byte[] bytes, BufferedImage theImage, PixelScatter scatter)
+            throws IOException {
+        LogUtil.logInfo("Дозапись сообщения на изображении.");
+        if (bytes == null) {
+            IOException e = new IOException("Дописываемые байты не могут быть нулем.");
+            LogUtil.logError("Дописываемые байты не могут быть нулем.", e);
+            throw e;
+        }
+        requireImage(theImage);
+
+        FrameHeader header = Metrics.time(Metrics.Stage.EMBED, () -> RasterEmbedder.append(ByteBuffer.wrap(bytes),
+                SampleRaster.wrap(theImage), () -> SampleRaster.wrapLegacy(theImage), scatter), updated -> bytes.length);
+
+        LogUtil.logInfo("Сообщение успешно дописано.");
+        return header;
+    }
+
+    /**
+     * Вычисление ёмкости изображения для заданных параметров встраивания.
+     *
+     * @param theImage изображение-контейнер
+     * @param config   параметры встраивания
+     * @return наибольшая длина сообщения в байтах
+     * @throws IOException если изображение равно null
+     */
+    public static long capacity(BufferedImage theImage, EmbeddingConfig config) throws IOException {
+        requireImage(theImage);
+        return RasterEmbedder.capacity(theImage, config);
+    }
+
+    /**
+     * Упаковка массива битов сообщения.
+     *
+     * @param bits массив битов сообщения
+     * @return упакованное сообщение
+     * @throws IOException если массив битов равен null или пуст
+     */
+    private static BitPayload toPayload(int[] bits) throws IOException {
         if (bits == null || bits.length == 0) {
-            LogUtil.logError("Биты сообщения нул или пустые.", new IOException("Биты сообщения не могут быть нулем или пустыми."));
-            throw new IOException("Биты сообщения не могут быть нулем или пустыми.");
+            IOException e = new IOException("Биты сообщения не могут быть нулем или пустыми.");
+            LogUtil.logError("Биты сообщения нул или пустые.", e);
+            throw e;
         }
-        if (theImage == null) {
-            LogUtil.logError("Изображение не может быть нулем.", new IOException("Изображение не может быть нулем."));
-            throw new IOException("Изображение не может быть нулем.");
+        return BitPayload.fromBits(bits);
+    }
+
+    /**
+     * Проверка сообщения и изображения перед встраиванием.
+     *
+     * @param payload  упакованные биты сообщения
+     * @param theImage изображение
+     * @throws IOException если сообщение пусто или изображение равно null
+     */
+    private static void validate(BitPayload payload, BufferedImage theImage) throws IOException {
+        if (payload == null || payload.getBitLength() == 0) {
+            IOException e = new IOException("Биты сообщения не могут быть нулем или пустыми.");
+            LogUtil.logError("Биты сообщения нул или пустые.", e);
+            throw e;
         }
+        requireImage(theImage);
+    }
+
+    /**
+     * Извлечение сообщения, скрытого методом {@link #hideTheMessage}.
+     *
+     * @param theImage изображение со скрытым сообщением
+     * @return байты сообщения
+     * @throws IOException если изображение недействительно или заголовок сообщения повреждён
+     */
+    public static byte[] extractMessage(BufferedImage theImage) throws IOException {
+        LogUtil.logInfo("Извлечение сообщения из изображения.");
+        requireImage(theImage);
+        return Metrics.time(Metrics.Stage.EXTRACT, () -> RasterExtractor.extract(theImage), bytes -> bytes.length);
+    }
+
+    /**
+     * Извлечение сообщения в выходной поток.
+     *
+     * @param theImage изображение со скрытым сообщением
+     * @param out      выходной поток для байтов сообщения
+     * @return количество записанных байтов
+     * @throws IOException если изображение недействительно, заголовок повреждён или запись не удалась
+     */
+    public static long extractMessage(BufferedImage theImage, OutputStream out) throws IOException {
+        LogUtil.logInfo("Извлечение сообщения из изображения в поток.");
+        requireImage(theImage);
+        return Metrics.time(Metrics.Stage.EXTRACT, () -> RasterExtractor.extract(theImage, out), count -> count);
+    }
+
+    /**
+     * Извлечение сообщения в выходной поток с восстановлением сжатого или зашифрованного сообщения.
+     *
+     * @param theImage  изображение со скрытым сообщением
+     * @param out       выходной поток для восстановленного сообщения
+     * @param scatter   перестановка пикселей, заданная ключом при встраивании, или {@code null}
+     * @param transform преобразование с паролем, если сообщение зашифровано
+     * @return количество байтов сообщения в изображении до восстановления
+     * @throws IOException если изображение недействительно, заголовок повреждён, пароль не указан или неверен
+     *                     или запись не удалась
+     */
+    public static long extractMessage(BufferedImage theImage, OutputStream out, PixelScatter scatter,
+                                      PayloadTransform transform) throws IOException {
+        LogUtil.logInfo("Извлечение сообщения из изображения в поток.");
+        requireImage(theImage);
+        return Metrics.time(Metrics.Stage.EXTRACT, () -> RasterExtractor.extract(theImage, scatter, transform, out),
+                count -> count);
+    }
 
-        int messageLength = bits.length / 8;
+    /**
+     * Извлечение сообщения в буфер, начиная с его текущей позиции.
+     *
+     * @param theImage изображение со скрытым сообщением
+     * @param target   буфер для байтов сообщения
+     * @return количество записанных байтов
+     * @throws IOException если изображение недействительно, заголовок повреждён или буфер слишком мал
+     */
+    public static int extractMessage(BufferedImage theImage, ByteBuffer target) throws IOException {
+        LogUtil.logInfo("Извлечение сообщения из изображения в буфер.");
+        requireImage(theImage);
+        return Metrics.time(Metrics.Stage.EXTRACT, () -> RasterExtractor.extract(theImage, target), count -> count);
+    }
 
-        // Кодирования длины сообщения
-        encodeMessageLength(messageLength, theImage);
+    /**
+     * Извлечение сообщения в массив байтов в нескольких потоках.
+     *
+     * @param theImage    изображение со скрытым сообщением
+     * @param parallelism количество потоков чтения
+     * @return байты сообщения
+     * @throws IOException если изображение недействительно или заголовок сообщения повреждён
+     */
+    public static byte[] extractMessage(BufferedImage theImage, int parallelism) throws IOException {
+        LogUtil.logInfo("Извлечение сообщения из изображения.");
+        requireImage(theImage);
+        return Metrics.time(Metrics.Stage.EXTRACT, () -> RasterExtractor.extract(theImage, parallelism),
+                bytes -> bytes.length);
+    }
 
-        // Кодирование сообщения
-        encodeMessageBits(bits, theImage);
+    /**
+     * Извлечение сообщения, встроенного с разбросом пикселей по ключу, в массив байтов в нескольких потоках.
+     *
+     * @param theImage    изображение со скрытым сообщением
+     * @param scatter     перестановка пикселей, заданная ключом при встраивании
+     * @param parallelism количество потоков чтения
+     * @return байты сообщения
+     * @throws IOException если изображение недействительно, заголовок повреждён или ключ неверен
+     */
+    public static byte[] extractMessage(BufferedImage theImage, PixelScatter scatter, int parallelism)
+            throws IOException {
+        LogUtil.logInfo("Извлечение сообщения из изображения.");
+        requireImage(theImage);
+        return Metrics.time(Metrics.Stage.EXTRACT, () -> RasterExtractor.extract(theImage, scatter, parallelism),
+                bytes -> bytes.length);
+    }
 
-        LogUtil.logInfo("Сообщение успешно скрыто.");
+    /**
+     * Извлечение сообщения в буфер в нескольких потоках, начиная с текущей позиции буфера.
+     *
+     * @param theImage    изображение со скрытым сообщением
+     * @param target      буфер для байтов сообщения
+     * @param parallelism количество потоков чтения
+     * @return количество записанных байтов
+     * @throws IOException если изображение недействительно, заголовок повреждён или буфер слишком мал
+     */
+    public static int extractMessage(BufferedImage theImage, ByteBuffer target, int parallelism) throws IOException {
+        LogUtil.logInfo("Извлечение сообщения из изображения в буфер.");
+        requireImage(theImage);
+        return Metrics.time(Metrics.Stage.EXTRACT, () -> RasterExtractor.extract(theImage, target, parallelism),
+                count -> count);
+    }
+
+    /**
+     * Проверка изображения перед извлечением сообщения.
+     *
+     * @param theImage изображение
+     * @throws IOException если изображение равно null
+     */
+    private static void requireImage(BufferedImage theImage) throws IOException {
+        if (theImage == null) {
+            IOException e = new IOException("Изображение не может быть нулем.");
+            LogUtil.logError("Изображение не может быть нулем.", e);
+            throw e;
+        }
     }
 }
@@ -1,11 +1,14 @@
 package com.example.demo;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import javafx.scene.layout.GridPane;
+import javafx.scene.layout.HBox;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.stage.DirectoryChooser;
@@ -13,6 +16,10 @@ import javafx.stage.DirectoryChooser;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Класс SteganographyApp реализует JavaFX приложение для работы со стеганографией.
@@ -30,6 +37,56 @@ public class SteganographyApp extends Application {
      */
     private final ImageView modifiedImageView = new ImageView();
 
+    /**
+     * Сохранять ли изображение младших битов в полном размере вместе с результатом.
+     */
+    private final CheckBox exportLsbCheckBox = new CheckBox("Сохранять изображение младших битов");
+
+    /**
+     * Канал, битовая плоскость которого показывается для изображения с сообщением.
+     */
+    private final ChoiceBox<Channel> previewChannelBox = new ChoiceBox<>();
+
+    /**
+     * Номер бита показываемой плоскости.
+     */
+    private final ChoiceBox<Integer> previewBitBox = new ChoiceBox<>();
+
+    /**
+     * Ход выполнения встраивания.
+     */
+    private final ProgressBar progressBar = new ProgressBar(0);
+
+    /**
+     * Кнопка отмены встраивания, доступна во время его выполнения.
+     */
+    private final Button cancelButton = new Button("Отменить");
+
+    /**
+     * Рабочие потоки для встраивания, сохранения и построения битовой плоскости.
+     * Два потока позволяют строить плоскость одновременно с сохранением результата.
+     */
+    private final ExecutorService workers = Executors.newFixedThreadPool(2, new ThreadFactory() {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "embed-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Выполняемое встраивание или {@code null}.
+     */
+    private EmbedTask currentTask;
+
+    /**
+     * Изображение с встроенным сообщением, для которого строится битовая плоскость.
+     */
+    private BufferedImage embeddedImage;
+
     /**
      * Метка для отображения статуса операций.
      */
@@ -103,6 +160,18 @@ public class SteganographyApp extends Application {
         originalImageView.setPreserveRatio(true);
         modifiedImageView.setFitWidth(300);
         modifiedImageView.setPreserveRatio(true);
+        // Пиксели битовой плоскости не сглаживаются при масштабировании
+        modifiedImageView.setSmooth(false);
+
+        previewChannelBox.getItems().addAll(Channel.values());
+        previewChannelBox.setValue(Channel.BLUE);
+        for (int bit = 0; bit < 8; bit++) {
+            previewBitBox.getItems().add(bit);
+        }
+        previewBitBox.setValue(0);
+        // Плоскость перестраивается из изображения в памяти, без обращения к диску
+        previewChannelBox.setOnAction(e -> showPreview());
+        previewBitBox.setOnAction(e -> showPreview());
 
         grid.add(selectImageButton, 0, 0);
         grid.add(selectMessageButton, 1, 0);
@@ -111,7 +180,11 @@ public class SteganographyApp extends Application {
         grid.add(originalImageView, 0, 2);
         grid.add(new Label("Изображение с сообщением:"), 1, 1);
         grid.add(modifiedImageView, 1, 2);
-        grid.add(statusLabel, 0, 3, 3, 1);
+        grid.add(new HBox(10, new Label("Канал:"), previewChannelBox, new Label("Бит:"), previewBitBox), 1, 3);
+        grid.add(exportLsbCheckBox, 0, 3);
+        cancelButton.setDisable(true);
+        grid.add(new HBox(10, progressBar, cancelButton), 0, 4, 3, 1);
+        grid.add(statusLabel, 0, 5, 3, 1);
 
         return grid;
     }
@@ -127,7 +200,8 @@ public class SteganographyApp extends Application {
     private void configureButtons(Stage primaryStage, Button selectImageButton, Button selectMessageButton, Button embedMessageButton) {
         selectImageButton.setOnAction(e -> handleSelectImage(primaryStage));
         selectMessageButton.setOnAction(e -> handleSelectMessage(primaryStage));
-        embedMessageButton.setOnAction(e -> handleEmbedMessage(primaryStage));
+        embedMessageButton.setOnAction(e -> handleEmbedMessage(primaryStage, embedMessageButton));
+        cancelButton.setOnAction(e -> handleCancel());
     }
 
     /**
@@ -142,9 +216,26 @@ public class SteganographyApp extends Application {
             originalImageFile = fileChooser.showOpenDialog(primaryStage);
 
             if (originalImageFile != null) {
-                originalImageView.setImage(new Image(originalImageFile.toURI().toString()));
-                statusLabel.setText("Изображение выбрано: " + originalImageFile.getName());
-                LogUtil.logInfo("Изображение выбрано: " + originalImageFile.getName());
+                File selected = originalImageFile;
+                int width = displayWidth(originalImageView);
+                statusLabel.setText("Изображение выбрано: " + selected.getName());
+                LogUtil.logInfo("Изображение выбрано: {}", selected.getName());
+                // Изображение декодируется один раз: миниатюра строится из него, а встраивание
+                // получает копию из кэша
+                workers.execute(() -> {
+                    try {
+                        WritableImage thumbnail = thumbnail(CarrierCache.shared().load(selected.getAbsolutePath()),
+                                width);
+                        Platform.runLater(() -> {
+                            if (selected == originalImageFile) {
+                                originalImageView.setImage(thumbnail);
+                            }
+                        });
+                    } catch (IOException ex) {
+                        Platform.runLater(() -> statusLabel.setText("Ошибка при выборе изображения: "
+                                + ex.getMessage()));
+                    }
+                });
             } else {
                 statusLabel.setText("Выбор изображения отменен.");
                 LogUtil.logWarning("Выбор изображения отменен.");
@@ -170,7 +261,7 @@ public class SteganographyApp extends Application {
 
             if (messageFile != null) {
                 statusLabel.setText("Текстовый файл выбран: " + messageFile.getName());
-                LogUtil.logInfo("Текстовый файл выбран: " + messageFile.getName());
+                LogUtil.logInfo("Текстовый файл выбран: {}", messageFile.getName());
             } else {
                 statusLabel.setText("Выбор текстового файла отменен.");
                 LogUtil.logWarning("Выбор текстового файла отменен.");
@@ -186,7 +277,10 @@ public class SteganographyApp extends Application {
      *
      * @param primaryStage главный этап приложения.
      */
-    private void handleEmbedMessage(Stage primaryStage) {
+    private void handleEmbedMessage(Stage primaryStage, Button embedMessageButton) {
+        if (currentTask != null) {
+            return;
+        }
         if (originalImageFile == null || messageFile == null) {
             statusLabel.setText("Ошибка: выберите изображение и текстовый файл.");
             LogUtil.logWarning("Ошибка: выберите изображение и текстовый файл.");
@@ -206,37 +300,145 @@ public class SteganographyApp extends Application {
                 return;
             }
 
-            // Загружаем изображение
-            BufferedImage originalImage = ImageHandler.loadImage(originalImageFile.getAbsolutePath());
-
-            // Читаем сообщение из текстового файла
-            String message = MessageReader.readMessageFromFile(messageFile.getAbsolutePath());
-
-            // Конвертируем сообщение в массив битов
-            int[] messageBits = BitConverter.convertMessageToBits(message);
+            // Встраивание и сохранение выполняются пулом рабочих потоков, окно остаётся отзывчивым
+            EmbedTask task = new EmbedTask(originalImageFile, messageFile, selectedDirectory,
+                    exportLsbCheckBox.isSelected(), EmbeddingConfig.defaults(), previewChannelBox.getValue(),
+                    previewBitBox.getValue(), previewWidth(), workers);
+            task.messageProperty().addListener((observable, previous, message) -> statusLabel.setText(message));
+            task.setOnSucceeded(event -> {
+                EmbedTask.Result result = task.getValue();
+                embeddedImage = result.getImage();
+                showPreview(result.getPreview());
+                LogUtil.logInfo("Сообщение успешно встроено и сохранено в: {}", result.getOutputFile().getAbsolutePath());
+                finishEmbedding(embedMessageButton);
+            });
+            task.setOnFailed(event -> {
+                Throwable error = task.getException();
+                statusLabel.setText("Ошибка: " + error.getMessage());
+                LogUtil.logError("Ошибка: " + error.getMessage(), error);
+                finishEmbedding(embedMessageButton);
+            });
+            task.setOnCancelled(event -> {
+                statusLabel.setText("Встраивание отменено.");
+                LogUtil.logWarning("Встраивание отменено пользователем.");
+                finishEmbedding(embedMessageButton);
+            });
+
+            currentTask = task;
+            progressBar.progressProperty().bind(task.progressProperty());
+            embedMessageButton.setDisable(true);
+            cancelButton.setDisable(false);
+            workers.execute(task);
+        } catch (RuntimeException ex) {
+            statusLabel.setText("Ошибка: " + ex.getMessage());
+            LogUtil.logError("Ошибка: " + ex.getMessage(), ex);
+        }
+    }
 
-            // Скрываем сообщение в изображении
-            Steganography.hideTheMessage(messageBits, originalImage);
+    /**
+     * Возврат элементов управления в исходное состояние после завершения, ошибки или отмены встраивания.
+     *
+     * @param embedMessageButton кнопка для встраивания сообщения.
+     */
+    private void finishEmbedding(Button embedMessageButton) {
+        currentTask = null;
+        progressBar.progressProperty().unbind();
+        progressBar.setProgress(0);
+        embedMessageButton.setDisable(false);
+        cancelButton.setDisable(true);
+    }
 
-            // Создаем изображение с младшими битами
-            BufferedImage lsbImage = ImageHandler.createLSBImage(originalImage);
+    /**
+     * Отмена выполняемого встраивания. Поток задачи прерывается, временные файлы удаляются.
+     */
+    private void handleCancel() {
+        if (currentTask != null) {
+            LogUtil.logInfo("Пользователь отменил встраивание.");
+            currentTask.cancel();
+        }
+    }
 
-            // Сохраняем изображение с младшими битами
-            File outputFile_lsb = new File(selectedDirectory, "output_lsb.bmp");
-            ImageHandler.saveImage(lsbImage, outputFile_lsb.getAbsolutePath(), "bmp");
+    /**
+     * Вычисление ширины битовой плоскости: с учётом масштаба экрана плоскость строится с тем же количеством
+     * пикселей, что и на экране.
+     *
+     * @return ширина в пикселях.
+     */
+    private int previewWidth() {
+        return displayWidth(modifiedImageView);
+    }
 
-            // Сохраняем модифицированное изображение
-            File outputFile = new File(selectedDirectory, "output.bmp");
-            ImageHandler.saveImage(originalImage, outputFile.getAbsolutePath(), "bmp");
+    /**
+     * Вычисление ширины изображения для отображения в компоненте с учётом масштаба экрана.
+     *
+     * @param view компонент отображения.
+     * @return ширина в пикселях.
+     */
+    private static int displayWidth(ImageView view) {
+        double scale = view.getScene() != null && view.getScene().getWindow() != null
+                ? view.getScene().getWindow().getOutputScaleX() : 1.0;
+        return (int) Math.ceil(view.getFitWidth() * scale);
+    }
 
-            // Обновляем интерфейс
-            modifiedImageView.setImage(new Image(outputFile_lsb.toURI().toString()));
+    /**
+     * Построение уменьшенной копии изображения для отображения выборкой ближайшего пикселя.
+     * Из изображения читаются только строки, попадающие в миниатюру.
+     *
+     * @param image    изображение.
+     * @param maxWidth наибольшая ширина миниатюры.
+     * @return миниатюра.
+     */
+    private static WritableImage thumbnail(BufferedImage image, int maxWidth) {
+        int sourceWidth = image.getWidth();
+        int sourceHeight = image.getHeight();
+        int width = Math.max(1, Math.min(sourceWidth, maxWidth));
+        int height = Math.max(1, (int) Math.round((double) sourceHeight * width / sourceWidth));
+        int[] row = new int[sourceWidth];
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, (int) ((long) y * sourceHeight / height), sourceWidth, 1, row, 0, sourceWidth);
+            for (int x = 0; x < width; x++) {
+                pixels[y * width + x] = row[(int) ((long) x * sourceWidth / width)];
+            }
+        }
+        WritableImage thumbnail = new WritableImage(width, height);
+        thumbnail.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+        return thumbnail;
+    }
 
-            statusLabel.setText("Сообщение успешно встроено. Файл сохранен в: " + outputFile.getAbsolutePath());
-            LogUtil.logInfo("Сообщение успешно встроено и сохранено в: " + outputFile.getAbsolutePath());
+    /**
+     * Перестроение битовой плоскости изображения с сообщением после выбора другого канала или бита.
+     */
+    private void showPreview() {
+        if (embeddedImage == null) {
+            return;
+        }
+        try {
+            showPreview(LsbPreview.render(embeddedImage, previewChannelBox.getValue(), previewBitBox.getValue(),
+                    previewWidth(), Integer.MAX_VALUE));
         } catch (IOException ex) {
             statusLabel.setText("Ошибка: " + ex.getMessage());
             LogUtil.logError("Ошибка: " + ex.getMessage(), ex);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Отображение построенной битовой плоскости.
+     *
+     * @param preview битовая плоскость.
+     */
+    private void showPreview(LsbPreview preview) {
+        WritableImage image = new WritableImage(preview.getWidth(), preview.getHeight());
+        image.getPixelWriter().setPixels(0, 0, preview.getWidth(), preview.getHeight(),
+                PixelFormat.getIntArgbInstance(), preview.getPixels(), 0, preview.getWidth());
+        modifiedImageView.setImage(image);
+    }
+
+    /**
+     * Остановка приложения: выполняемое встраивание прерывается, рабочие потоки завершаются.
+     */
+    @Override
+    public void stop() {
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,366 @@
+package com.example.demo;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Векторная реализация {@link LsbKernels} на Vector API ({@code jdk.incubator.vector}).
+ * Байты, в том числе отсчёты одного канала с шагом 3 или 4 байта (TYPE_3BYTE_BGR, TYPE_4BYTE_ABGR),
+ * обрабатываются блоками по 64 отсчёта, упакованные пиксели — блоками по 32, что соответствует
+ * одному обращению к {@link BitReader} или {@link BitWriter} на блок. Остаток короче блока
+ * обрабатывается скалярной реализацией.
+ * Класс загружается только через {@link LsbKernels#get()} при наличии модуля Vector API.
+ */
+final class VectorLsbKernels extends LsbKernels {
+
+    /**
+     * Вектор байтов наибольшей эффективной для процессора длины.
+     */
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+
+    /**
+     * Вектор {@code long} той же длины, что и {@link #BYTES}.
+     */
+    private static final VectorSpecies<Long> LONGS = VectorSpecies.of(long.class, BYTES.vectorShape());
+
+    /**
+     * Вектор {@code int} той же длины, что и {@link #BYTES}.
+     */
+    private static final VectorSpecies<Integer> INTS = VectorSpecies.of(int.class, BYTES.vectorShape());
+
+    /**
+     * Перестановка, помещающая в элемент j байт j / 8 слова, считая от старшего.
+     */
+    private static final VectorShuffle<Byte> SPREAD = VectorShuffle.fromOp(BYTES, j -> 7 - j / 8);
+
+    /**
+     * Разряд бита элемента j в байте слова: 0x80 для первого элемента каждой восьмёрки.
+     */
+    private static final ByteVector BYTE_BITS = ByteVector.fromArray(BYTES, byteBits(), 0);
+
+    /**
+     * Сдвиг, переносящий бит элемента j на место j от старшего разряда 32-битного слова.
+     */
+    private static final IntVector INT_SHIFTS = IntVector.zero(INTS).addIndex(-1).add(31);
+
+    /**
+     * Сдвиг, переносящий байт элемента m вектора {@code long} на место m от старшего байта слова.
+     */
+    private static final LongVector LONG_SHIFTS = LongVector.zero(LONGS).addIndex(-8).add(56);
+
+    /**
+     * Перестановки для шагов 2, 3 и 4 байта (TYPE_3BYTE_BGR, TYPE_4BYTE_ABGR), по индексу шага.
+     */
+    private static final Stride[] STRIDES = {null, null, new Stride(2), new Stride(3), new Stride(4)};
+
+    /**
+     * Разряды битов в байтах слова для элементов вектора байтов.
+     *
+     * @return массив длины вектора, элемент j равен {@code 0x80 >>> (j % 8)}.
+     */
+    private static byte[] byteBits() {
+        byte[] bits = new byte[BYTES.length()];
+        for (int j = 0; j < bits.length; j++) {
+            bits[j] = (byte) (0x80 >>> (j & 7));
+        }
+        return bits;
+    }
+
+    /**
+     * Создание ядер. Для векторов короче 256 бит часть операций не компилируется в команды процессора
+     * и выполняется медленнее скалярного цикла, поэтому такие векторы не используются.
+     *
+     * @throws IllegalStateException если длина вектора меньше 256 бит.
+     */
+    VectorLsbKernels() {
+        if (BYTES.vectorBitSize() < 256 || 64 % BYTES.length() != 0) {
+            throw new IllegalStateException("Неподходящая длина вектора: " + BYTES.vectorBitSize() + " бит");
+        }
+    }
+
+    @Override
+    String describe() {
+        return "векторные, " + BYTES.vectorBitSize() + " бит";
+    }
+
+    @Override
+    void writeBytes(byte[] data, int index, int count, int stride, BitReader bits) {
+        if (stride == 1) {
+            writeContiguous(data, index, count, bits);
+        } else if (stride < STRIDES.length) {
+            writeStrided(data, index, count, STRIDES[stride], bits);
+        } else {
+            super.writeBytes(data, index, count, stride, bits);
+        }
+    }
+
+    @Override
+    void readBytes(byte[] data, int index, int count, int stride, BitWriter bits) {
+        if (stride == 1) {
+            readContiguous(data, index, count, bits);
+        } else if (stride < STRIDES.length) {
+            readStrided(data, index, count, STRIDES[stride], bits);
+        } else {
+            super.readBytes(data, index, count, stride, bits);
+        }
+    }
+
+    /**
+     * Запись в подряд идущие байты.
+     *
+     * @param data  массив отсчётов.
+     * @param index индекс первого байта.
+     * @param count количество байтов.
+     * @param bits  источник битов.
+     */
+    private void writeContiguous(byte[] data, int index, int count, BitReader bits) {
+        int lanes = BYTES.length();
+        int end = index + (count & ~63);
+        for (; index < end; index += 64) {
+            long word = ((long) bits.read(32) << 32) | (bits.read(32) & 0xFFFFFFFFL);
+            for (int k = 0; k < 64; k += lanes) {
+                VectorMask<Byte> ones = spread(word << k).compare(VectorOperators.NE, 0);
+                ByteVector cleared = ByteVector.fromArray(BYTES, data, index + k).and((byte) ~1);
+                cleared.lanewise(VectorOperators.OR, (byte) 1, ones).intoArray(data, index + k);
+            }
+        }
+        super.writeBytes(data, index, count & 63, 1, bits);
+    }
+
+    /**
+     * Чтение подряд идущих байтов.
+     *
+     * @param data  массив отсчётов.
+     * @param index индекс первого байта.
+     * @param count количество байтов.
+     * @param bits  приёмник битов.
+     */
+    private void readContiguous(byte[] data, int index, int count, BitWriter bits) {
+        int lanes = BYTES.length();
+        int end = index + (count & ~63);
+        for (; index < end; index += 64) {
+            long word = 0;
+            for (int k = 0; k < 64; k += lanes) {
+                word |= collect(ByteVector.fromArray(BYTES, data, index + k)) >>> k;
+            }
+            bits.write((int) (word >>> 32), 32);
+            bits.write((int) word, 32);
+        }
+        super.readBytes(data, index, count & 63, 1, bits);
+    }
+
+    /**
+     * Запись в байты с шагом: на каждые {@code stride} векторов байтов приходится один вектор битов,
+     * биты которого разносятся по отсчётам перестановками из {@link Stride}. Остальные байты пикселей
+     * записываются без изменений, поэтому блок обрабатывается, только если он целиком лежит в массиве.
+     *
+     * @param data   массив отсчётов.
+     * @param index  индекс первого отсчёта.
+     * @param count  количество отсчётов.
+     * @param layout перестановки для шага.
+     * @param bits   источник битов.
+     */
+    private void writeStrided(byte[] data, int index, int count, Stride layout, BitReader bits) {
+        int lanes = BYTES.length();
+        int stride = layout.stride;
+        int block = 64 * stride;
+        for (; count >= 64 && index + block <= data.length; index += block, count -= 64) {
+            long word = ((long) bits.read(32) << 32) | (bits.read(32) & 0xFFFFFFFFL);
+            for (int k = 0; k < 64; k += lanes) {
+                ByteVector flat = spread(word << k);
+                for (int t = 0; t < stride; t++) {
+                    int at = index + k * stride + t * lanes;
+                    VectorMask<Byte> samples = layout.samples[t];
+                    VectorMask<Byte> ones = flat.rearrange(layout.place[t]).compare(VectorOperators.NE, 0)
+                            .and(samples);
+                    ByteVector.fromArray(BYTES, data, at).lanewise(VectorOperators.AND, (byte) ~1, samples)
+                            .lanewise(VectorOperators.OR, (byte) 1, ones).intoArray(data, at);
+                }
+            }
+        }
+        super.writeBytes(data, index, count, stride, bits);
+    }
+
+    /**
+     * Чтение байтов с шагом: отсчёты {@code stride} векторов собираются перестановками в один вектор
+     * и сводятся в биты так же, как подряд идущие байты.
+     *
+     * @param data   массив отсчётов.
+     * @param index  индекс первого отсчёта.
+     * @param count  количество отсчётов.
+     * @param layout перестановки для шага.
+     * @param bits   приёмник битов.
+     */
+    private void readStrided(byte[] data, int index, int count, Stride layout, BitWriter bits) {
+        int lanes = BYTES.length();
+        int stride = layout.stride;
+        int block = 64 * stride;
+        for (; count >= 64 && index + block <= data.length; index += block, count -= 64) {
+            long word = 0;
+            for (int k = 0; k < 64; k += lanes) {
+                ByteVector packed = ByteVector.zero(BYTES);
+                for (int t = 0; t < stride; t++) {
+                    ByteVector source = ByteVector.fromArray(BYTES, data, index + k * stride + t * lanes);
+                    packed = packed.blend(source.rearrange(layout.gather[t]), layout.sources[t]);
+                }
+                word |= collect(packed) >>> k;
+            }
+            bits.write((int) (word >>> 32), 32);
+            bits.write((int) word, 32);
+        }
+        super.readBytes(data, index, count, stride, bits);
+    }
+
+    /**
+     * Распределение старших битов слова по элементам вектора байтов: в элементе j остаётся только бит j.
+     *
+     * @param word слово, первый бит которого находится в старшем разряде.
+     * @return вектор с ненулевыми элементами на месте единичных битов.
+     */
+    private static ByteVector spread(long word) {
+        return LongVector.broadcast(LONGS, word).reinterpretAsBytes().rearrange(SPREAD).and(BYTE_BITS);
+    }
+
+    /**
+     * Сбор младших битов элементов вектора байтов в слово.
+     * Младший бит элемента j переносится на место бита j в байте слова, затем восемь байтов
+     * каждого элемента {@code long} сводятся в один байт.
+     *
+     * @param samples отсчёты.
+     * @return биты отсчётов, бит первого отсчёта — в старшем разряде.
+     */
+    private static long collect(ByteVector samples) {
+        LongVector spread = samples.and((byte) 1).neg().and(BYTE_BITS).reinterpretAsLongs();
+        spread = spread.or(spread.lanewise(VectorOperators.LSHR, 32));
+        spread = spread.or(spread.lanewise(VectorOperators.LSHR, 16));
+        spread = spread.or(spread.lanewise(VectorOperators.LSHR, 8));
+        return spread.and(0xFF).lanewise(VectorOperators.LSHL, LONG_SHIFTS).reduceLanes(VectorOperators.OR);
+    }
+
+    @Override
+    void writeInts(int[] data, int index, int count, int shift, int keepMask, BitReader bits) {
+        int lanes = INTS.length();
+        int end = index + (count & ~31);
+        for (; index < end; index += 32) {
+            int word = bits.read(32);
+            for (int k = 0; k < 32; k += lanes) {
+                IntVector bit = IntVector.broadcast(INTS, word << k).lanewise(VectorOperators.LSHR, INT_SHIFTS)
+                        .and(1).lanewise(VectorOperators.LSHL, shift);
+                IntVector.fromArray(INTS, data, index + k).and(keepMask).or(bit).intoArray(data, index + k);
+            }
+        }
+        super.writeInts(data, index, count & 31, shift, keepMask, bits);
+    }
+
+    @Override
+    void readInts(int[] data, int index, int count, int shift, BitWriter bits) {
+        int lanes = INTS.length();
+        int end = index + (count & ~31);
+        for (; index < end; index += 32) {
+            int word = 0;
+            for (int k = 0; k < 32; k += lanes) {
+                word |= IntVector.fromArray(INTS, data, index + k).lanewise(VectorOperators.LSHR, shift).and(1)
+                        .lanewise(VectorOperators.LSHL, INT_SHIFTS).reduceLanes(VectorOperators.OR) >>> k;
+            }
+            bits.write(word, 32);
+        }
+        super.readInts(data, index, count & 31, shift, bits);
+    }
+
+    @Override
+    void renderInts(int[] data, int row, int[] columns, int width, int opaque, int shift, int[] target, int out,
+                    int one, int zero) {
+        int lanes = INTS.length();
+        int bit = 1 << shift;
+        IntVector ones = IntVector.broadcast(INTS, one);
+        IntVector zeros = IntVector.broadcast(INTS, zero);
+        int x = 0;
+        for (int end = width - width % lanes; x < end; x += lanes) {
+            IntVector pixels = columns != null ? IntVector.fromArray(INTS, data, row, columns, x)
+                    : IntVector.fromArray(INTS, data, row + x);
+            VectorMask<Integer> set = pixels.or(opaque).and(bit).compare(VectorOperators.NE, 0);
+            zeros.blend(ones, set).intoArray(target, out + x);
+        }
+        for (; x < width; x++) {
+            int pixel = data[row + (columns != null ? columns[x] : x)];
+            target[out + x] = (((pixel | opaque) >>> shift) & 1) != 0 ? one : zero;
+        }
+    }
+
+    /**
+     * Перестановки для отсчётов, расположенных с шагом {@code stride} байтов.
+     * Блок из {@code stride} векторов байтов содержит отсчёты одного вектора пикселей:
+     * отсчёт пикселя i находится в байте {@code stride * i} блока.
+     */
+    private static final class Stride {
+        private final int stride;
+
+        /**
+         * Для каждого вектора блока: перестановка, помещающая в байт отсчёта элемент его пикселя.
+         */
+        private final VectorShuffle<Byte>[] place;
+
+        /**
+         * Для каждого вектора блока: элементы, являющиеся отсчётами.
+         */
+        private final VectorMask<Byte>[] samples;
+
+        /**
+         * Для каждого вектора блока: перестановка, помещающая в элемент пикселя его отсчёт.
+         */
+        private final VectorShuffle<Byte>[] gather;
+
+        /**
+         * Для каждого вектора блока: пиксели, отсчёты которых находятся в этом векторе.
+         */
+        private final VectorMask<Byte>[] sources;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Stride(int stride) {
+            int lanes = BYTES.length();
+            this.stride = stride;
+            this.place = new VectorShuffle[stride];
+            this.samples = new VectorMask[stride];
+            this.gather = new VectorShuffle[stride];
+            this.sources = new VectorMask[stride];
+            for (int t = 0; t < stride; t++) {
+                int first = t * lanes;
+                place[t] = VectorShuffle.fromOp(BYTES, j -> (first + j) % stride == 0 ? (first + j) / stride : 0);
+                samples[t] = VectorMask.fromValues(BYTES, lanesWhere(j -> (first + j) % stride == 0));
+                gather[t] = VectorShuffle.fromOp(BYTES, i -> inVector(stride * i - first) ? stride * i - first : 0);
+                sources[t] = VectorMask.fromValues(BYTES, lanesWhere(i -> inVector(stride * i - first)));
+            }
+        }
+
+        /**
+         * Проверка, что номер байта блока попадает в текущий вектор.
+         *
+         * @param lane номер байта относительно начала вектора.
+         * @return {@code true}, если байт лежит в векторе.
+         */
+        private static boolean inVector(int lane) {
+            return lane >= 0 && lane < BYTES.length();
+        }
+
+        /**
+         * Элементы вектора, удовлетворяющие условию.
+         *
+         * @param predicate условие для номера элемента.
+         * @return признаки элементов.
+         */
+        private static boolean[] lanesWhere(IntPredicate predicate) {
+            boolean[] lanes = new boolean[BYTES.length()];
+            for (int j = 0; j < lanes.length; j++) {
+                lanes[j] = predicate.test(j);
+            }
+            return lanes;
+        }
+    }
+}
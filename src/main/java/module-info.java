@@ -4,6 +4,10 @@ module com.example.demo {
     requires org.apache.logging.log4j;
     requires javafx.graphics;
     requires java.desktop;
+    requires java.management;
+    requires java.net.http;
+    requires jdk.httpserver;
+    requires static jdk.incubator.vector;
 
 
     opens com.example.demo to javafx.fxml;
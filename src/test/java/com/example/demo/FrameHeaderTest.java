@@ -0,0 +1,109 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Формат заголовка кадра версии 2: изображения, записанные прежними версиями программы,
+ * должны читаться и после изменений кода.
+ */
+class FrameHeaderTest {
+
+    @Test
+    void serializesFieldsInDocumentedOrder() throws IOException {
+        FrameHeader header = new FrameHeader(EmbeddingLayout.ROW_MAJOR, 2, 0b0111, 0,
+                0x0103, 123_456_789_012L, 0xCAFEBABE);
+        ByteBuffer buffer = header.toBuffer();
+        assertEquals(FrameHeader.HEADER_BYTES, buffer.remaining());
+        assertEquals(22, buffer.remaining());
+
+        ByteBuffer raw = buffer.duplicate();
+        assertEquals(FrameHeader.MAGIC, raw.getInt());
+        assertEquals(FrameHeader.VERSION, raw.get());
+        assertEquals(EmbeddingLayout.ROW_MAJOR.getId(), raw.get());
+        assertEquals(2, raw.get());
+        assertEquals(0b0111, raw.get());
+        assertEquals(0x0103, raw.getShort());
+        assertEquals(123_456_789_012L, raw.getLong());
+        assertEquals(0xCAFEBABE, raw.getInt());
+
+        // Допустимые сочетания флагов определяет PayloadTransform, поэтому разбор проверяется без флагов
+        buffer.putShort(8, (short) 0);
+        FrameHeader parsed = FrameHeader.parse(buffer);
+        assertEquals(EmbeddingLayout.ROW_MAJOR, parsed.getLayout());
+        assertEquals(2, parsed.getBitsPerChannel());
+        assertEquals(0b0111, parsed.getChannelMask());
+        assertEquals(0, parsed.getMatrixBits());
+        assertEquals(0, parsed.getFlags());
+        assertEquals(123_456_789_012L, parsed.getLength());
+        assertEquals(0xCAFEBABE, parsed.getChecksum());
+    }
+
+    @Test
+    void rejectsUnknownVersionAndIgnoresMissingSignature() throws IOException {
+        ByteBuffer buffer = new FrameHeader(EmbeddingLayout.ROW_MAJOR, 1, 1, 0, 10, 0).toBuffer();
+        buffer.put(4, (byte) (FrameHeader.VERSION + 1));
+        assertThrows(IOException.class, () -> FrameHeader.parse(buffer));
+        assertNull(FrameHeader.parse(ByteBuffer.allocate(FrameHeader.HEADER_BYTES)));
+    }
+
+    @Test
+    void embeddedHeaderDescribesMessage() throws IOException {
+        byte[] message = message(5000);
+        BufferedImage image = image(BufferedImage.TYPE_INT_RGB);
+        EmbeddingConfig config = EmbeddingConfig.defaults().withBitsPerChannel(2)
+                .withChannels(Channel.RED, Channel.BLUE);
+        Steganography.hideTheMessage(BitPayload.wrap(message), image, config);
+
+        FrameHeader header = RasterExtractor.readHeader(image);
+        CRC32 crc = new CRC32();
+        crc.update(message);
+        assertEquals(EmbeddingLayout.ROW_MAJOR, header.getLayout());
+        assertEquals(2, header.getBitsPerChannel());
+        assertEquals(Channel.RED.getMask() | Channel.BLUE.getMask(), header.getChannelMask());
+        assertEquals(0, header.getFlags());
+        assertEquals(message.length, header.getLength());
+        assertEquals((int) crc.getValue(), header.getChecksum());
+        assertArrayEquals(message, Steganography.extractMessage(image));
+    }
+
+    @Test
+    void rejectsMessageWithWrongChecksum() throws IOException {
+        byte[] message = message(1000);
+        BufferedImage image = image(BufferedImage.TYPE_3BYTE_BGR);
+        Steganography.hideTheMessage(BitPayload.wrap(message), image, EmbeddingConfig.defaults());
+
+        // Первый пиксель сообщения следует за заголовком в порядке строк; меняется младший бит синего канала
+        int x = FrameHeader.HEADER_PIXELS % image.getWidth();
+        int y = FrameHeader.HEADER_PIXELS / image.getWidth();
+        image.setRGB(x, y, image.getRGB(x, y) ^ 1);
+        assertThrows(IOException.class, () -> Steganography.extractMessage(image));
+    }
+
+    private static byte[] message(int length) {
+        byte[] message = new byte[length];
+        new Random(length).nextBytes(message);
+        return message;
+    }
+
+    private static BufferedImage image(int type) {
+        BufferedImage image = new BufferedImage(256, 256, type);
+        Random random = new Random(1);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt() & 0xFFFFFF);
+            }
+        }
+        return image;
+    }
+}
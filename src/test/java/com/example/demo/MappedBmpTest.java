@@ -0,0 +1,57 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Встраивание в отображённый в память BMP.
+ */
+class MappedBmpTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void mappedEmbedMatchesDecodedImage() throws IOException {
+        // Ширина не кратна 4: строки BMP дополняются до границы 4 байтов
+        Path source = dir.resolve("source.bmp");
+        ImageHandler.saveImage(carrier(101, 67), source.toString(), "bmp");
+        byte[] message = new byte[300];
+        new Random(2).nextBytes(message);
+        EmbeddingConfig config = EmbeddingConfig.defaults().withBitsPerChannel(2);
+
+        Path mapped = dir.resolve("mapped.bmp");
+        try (MappedBmp bmp = MappedBmp.copyOf(source.toString(), mapped.toString())) {
+            bmp.hideTheMessage(BitPayload.wrap(message), config);
+        }
+
+        Path decoded = dir.resolve("decoded.bmp");
+        BufferedImage image = ImageHandler.loadImage(source.toString());
+        Steganography.hideTheMessage(BitPayload.wrap(message), image, config);
+        ImageHandler.saveImage(image, decoded.toString(), "bmp");
+
+        assertArrayEquals(Files.readAllBytes(decoded), Files.readAllBytes(mapped));
+        try (MappedBmp bmp = MappedBmp.open(mapped.toString(), false)) {
+            assertArrayEquals(message, bmp.extractMessage(1));
+        }
+    }
+
+    private static BufferedImage carrier(int width, int height) {
+        Random random = new Random(1);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+}
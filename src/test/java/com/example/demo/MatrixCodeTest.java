@@ -0,0 +1,71 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Матричное кодирование: сообщение извлекается без изменений, а отсчётов меняется меньше, чем при замене битов.
+ */
+class MatrixCodeTest {
+
+    @Test
+    void storesMatrixBitsInHighNibble() throws IOException {
+        ByteBuffer buffer = new FrameHeader(EmbeddingLayout.ROW_MAJOR, 1, 1, 4, 0, 10, 0).toBuffer();
+        assertEquals(0x41, buffer.get(6));
+        assertEquals(4, FrameHeader.parse(buffer).getMatrixBits());
+    }
+
+    @Test
+    void matrixEmbeddingRoundTrips() throws IOException {
+        byte[] message = new byte[2000];
+        new Random(1).nextBytes(message);
+        EmbeddingConfig rgb = EmbeddingConfig.defaults().withChannels(Channel.RED, Channel.GREEN, Channel.BLUE);
+        EmbeddingConfig[] configs = {rgb, rgb.withScatter(PixelScatter.fromKey(3))};
+        for (int type : new int[]{BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR}) {
+            for (EmbeddingConfig base : configs) {
+                for (int bits = 2; bits <= 6; bits++) {
+                    BufferedImage original = carrier(type);
+                    BufferedImage image = carrier(type);
+                    Steganography.hideTheMessage(BitPayload.wrap(message), image, base.withMatrixEmbedding(bits));
+
+                    assertEquals(bits, RasterExtractor.readHeader(image).getMatrixBits());
+                    assertArrayEquals(message, Steganography.extractMessage(image, base.getScatter(), 1),
+                            "тип " + type + ", битов в группе " + bits);
+                    // Без матричного кодирования меняется около половины из 8 битов на байт
+                    assertTrue(changedSamples(original, image) < message.length * 4, "битов в группе " + bits);
+                }
+            }
+        }
+    }
+
+    private static int changedSamples(BufferedImage original, BufferedImage image) {
+        int[] before = original.getRaster().getPixels(0, 0, original.getWidth(), original.getHeight(), (int[]) null);
+        int[] after = image.getRaster().getPixels(0, 0, image.getWidth(), image.getHeight(), (int[]) null);
+        int changed = 0;
+        for (int i = 0; i < before.length; i++) {
+            if (before[i] != after[i]) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    private static BufferedImage carrier(int type) {
+        Random random = new Random(type);
+        BufferedImage image = new BufferedImage(256, 256, type);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+}
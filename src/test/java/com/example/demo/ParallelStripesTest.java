@@ -0,0 +1,83 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Параллельная обработка полосами даёт тот же результат, что и последовательная.
+ */
+class ParallelStripesTest {
+
+    private static final int MESSAGE_BYTES = 40_000;
+
+    @Test
+    void parallelRowMajorEmbedMatchesSequential() throws IOException {
+        assertParallelMatchesSequential(BufferedImage.TYPE_INT_RGB, 1024, 1024, 1);
+        assertParallelMatchesSequential(BufferedImage.TYPE_3BYTE_BGR, 1024, 1024, 2);
+    }
+
+    @Test
+    void packedRasterWithUnalignedWidthMatchesSequential() throws IOException {
+        // 333 пикселя в строке: границы полос по 64 пикселя не совпадают с границами байтов
+        for (int run = 0; run < 10; run++) {
+            assertParallelMatchesSequential(BufferedImage.TYPE_BYTE_BINARY, 333, 4000, run);
+        }
+    }
+
+    @Test
+    void interruptedCallerStopsParallelEmbed() {
+        BufferedImage image = carrier(BufferedImage.TYPE_INT_RGB, 1024, 1024, 3);
+        EmbeddingConfig config = EmbeddingConfig.defaults().withParallelism(8);
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(IOException.class,
+                    () -> Steganography.hideTheMessage(BitPayload.wrap(message(3)), image, config));
+        } finally {
+            Thread.interrupted();
+        }
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    private static void assertParallelMatchesSequential(int type, int width, int height, long seed)
+            throws IOException {
+        byte[] message = message(seed);
+        BufferedImage sequential = carrier(type, width, height, seed);
+        BufferedImage parallel = carrier(type, width, height, seed);
+
+        Steganography.hideTheMessage(BitPayload.wrap(message), sequential,
+                EmbeddingConfig.defaults().withParallelism(1));
+        Steganography.hideTheMessage(BitPayload.wrap(message), parallel,
+                EmbeddingConfig.defaults().withParallelism(8));
+
+        assertArrayEquals(samples(sequential), samples(parallel));
+        assertArrayEquals(message, Steganography.extractMessage(parallel));
+    }
+
+    private static BufferedImage carrier(int type, int width, int height, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    private static byte[] message(long seed) {
+        byte[] message = new byte[MESSAGE_BYTES];
+        new Random(seed).nextBytes(message);
+        return message;
+    }
+
+    private static int[] samples(BufferedImage image) {
+        return image.getRaster().getPixels(0, 0, image.getWidth(), image.getHeight(), (int[]) null);
+    }
+}
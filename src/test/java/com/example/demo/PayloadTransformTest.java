@@ -0,0 +1,127 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Формат зашифрованного сообщения: соль пароля, соль сообщения и сегменты с кодами аутентификации.
+ * Вывод ключа медленный, поэтому преобразования создаются один раз на все проверки.
+ */
+class PayloadTransformTest {
+
+    private static final String PASSWORD = "пароль";
+
+    /**
+     * Сообщение из трёх сегментов, последний неполный.
+     */
+    private static final byte[] MESSAGE = new byte[2 * PayloadTransform.SEGMENT_BYTES + 1234];
+
+    private static PayloadTransform aes;
+    private static PayloadTransform chacha;
+
+    @BeforeAll
+    static void setUp() {
+        new Random(7).nextBytes(MESSAGE);
+        aes = PayloadTransform.none().withEncryption(PayloadCipher.AES_GCM, PASSWORD);
+        chacha = PayloadTransform.none().withEncryption(PayloadCipher.CHACHA20_POLY1305, PASSWORD);
+    }
+
+    @Test
+    void encryptedMessageStartsWithSaltsAndHasTagPerSegment() throws IOException {
+        for (PayloadTransform transform : new PayloadTransform[]{aes, chacha}) {
+            byte[] sealed = encode(transform, MESSAGE);
+            int segments = (MESSAGE.length + PayloadTransform.SEGMENT_BYTES - 1) / PayloadTransform.SEGMENT_BYTES;
+            assertEquals(PayloadTransform.SALT_BYTES + PayloadTransform.MESSAGE_SALT_BYTES + MESSAGE.length
+                    + segments * PayloadTransform.TAG_BYTES, sealed.length);
+            assertArrayEquals(MESSAGE, decode(PayloadTransform.forExtraction(PASSWORD), transform.flags(), sealed));
+        }
+    }
+
+    @Test
+    void eachMessageUsesNewKey() throws IOException {
+        byte[] first = encode(aes, MESSAGE);
+        byte[] second = encode(aes, MESSAGE);
+        int saltsEnd = PayloadTransform.SALT_BYTES + PayloadTransform.MESSAGE_SALT_BYTES;
+        assertArrayEquals(Arrays.copyOf(first, PayloadTransform.SALT_BYTES),
+                Arrays.copyOf(second, PayloadTransform.SALT_BYTES));
+        assertFalse(Arrays.equals(first, PayloadTransform.SALT_BYTES, saltsEnd,
+                second, PayloadTransform.SALT_BYTES, saltsEnd));
+
+        // Nonce не случайны, поэтому одинаковый открытый текст с разными ключами даёт разный шифротекст
+        assertFalse(Arrays.equals(first, saltsEnd, saltsEnd + PayloadTransform.SEGMENT_BYTES,
+                second, saltsEnd, saltsEnd + PayloadTransform.SEGMENT_BYTES));
+
+        // Соль сообщения входит в вывод ключа: подмена соли не проходит проверку кода аутентификации
+        byte[] swapped = second.clone();
+        System.arraycopy(first, PayloadTransform.SALT_BYTES, swapped, PayloadTransform.SALT_BYTES,
+                PayloadTransform.MESSAGE_SALT_BYTES);
+        assertThrows(IOException.class, () -> decode(PayloadTransform.forExtraction(PASSWORD), aes.flags(), swapped));
+        assertArrayEquals(MESSAGE, decode(PayloadTransform.forExtraction(PASSWORD), aes.flags(), second));
+    }
+
+    @Test
+    void rejectsWrongPasswordTamperingAndTruncation() throws IOException {
+        byte[] sealed = encode(aes, MESSAGE);
+        int flags = aes.flags();
+        PayloadTransform extraction = PayloadTransform.forExtraction(PASSWORD);
+
+        assertThrows(IOException.class, () -> decode(PayloadTransform.forExtraction("другой"), flags, sealed));
+        assertThrows(IOException.class, () -> decode(PayloadTransform.none(), flags, sealed));
+
+        byte[] tampered = sealed.clone();
+        tampered[sealed.length / 2] ^= 1;
+        assertThrows(IOException.class, () -> decode(extraction, flags, tampered));
+
+        // Отсечение целого последнего сегмента обнаруживается по признаку последнего сегмента в nonce
+        int lastSegment = 1234 + PayloadTransform.TAG_BYTES;
+        assertThrows(IOException.class,
+                () -> decode(extraction, flags, Arrays.copyOf(sealed, sealed.length - lastSegment)));
+    }
+
+    @Test
+    void compressedAndEncryptedMessageRoundTripsThroughImage() throws IOException {
+        PayloadTransform transform = aes.withCompression(true);
+        byte[] text = "Сообщение, которое хорошо сжимается. ".repeat(500).getBytes(StandardCharsets.UTF_8);
+        BufferedImage image = new BufferedImage(512, 512, BufferedImage.TYPE_INT_RGB);
+
+        FrameHeader header = Steganography.hideTheMessage(new ByteArrayInputStream(text), image,
+                EmbeddingConfig.defaults(), transform);
+        assertEquals(PayloadTransform.FLAG_DEFLATE | PayloadTransform.FLAG_AES_GCM, header.getFlags());
+        assertEquals(header.getFlags(), RasterExtractor.readHeader(image).getFlags());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Steganography.extractMessage(image, out, null, PayloadTransform.forExtraction(PASSWORD));
+        assertArrayEquals(text, out.toByteArray());
+        assertThrows(IOException.class, () -> Steganography.extractMessage(image, new ByteArrayOutputStream(), null,
+                PayloadTransform.forExtraction("другой")));
+    }
+
+    private static byte[] encode(PayloadTransform transform, byte[] message) throws IOException {
+        try (InputStream in = transform.encode(new ByteArrayInputStream(message))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] decode(PayloadTransform transform, int flags, byte[] sealed) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream decoder = transform.decode(flags, out)) {
+            decoder.write(sealed);
+        }
+        return out.toByteArray();
+    }
+}
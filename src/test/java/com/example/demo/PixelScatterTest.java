@@ -0,0 +1,62 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Разбросанный порядок обхода при параллельной обработке.
+ */
+class PixelScatterTest {
+
+    private static final int MESSAGE_BYTES = 40_000;
+
+    @Test
+    void parallelScatteredEmbedMatchesSequential() throws IOException {
+        assertParallelMatchesSequential(BufferedImage.TYPE_3BYTE_BGR, 1024, 1024, 1);
+    }
+
+    @Test
+    void parallelScatteredEmbedOnPackedRasterMatchesSequential() throws IOException {
+        // Разбросанные пиксели соседних полос упакованы в общие байты
+        for (int run = 0; run < 10; run++) {
+            assertParallelMatchesSequential(BufferedImage.TYPE_BYTE_BINARY, 333, 4000, run);
+        }
+    }
+
+    private static void assertParallelMatchesSequential(int type, int width, int height, long seed)
+            throws IOException {
+        Random random = new Random(seed);
+        byte[] message = new byte[MESSAGE_BYTES];
+        random.nextBytes(message);
+        PixelScatter scatter = PixelScatter.fromKey(random.nextLong());
+        BufferedImage sequential = carrier(type, width, height, seed);
+        BufferedImage parallel = carrier(type, width, height, seed);
+
+        EmbeddingConfig config = EmbeddingConfig.defaults().withScatter(scatter);
+        Steganography.hideTheMessage(BitPayload.wrap(message), sequential, config.withParallelism(1));
+        Steganography.hideTheMessage(BitPayload.wrap(message), parallel, config.withParallelism(8));
+
+        assertArrayEquals(samples(sequential), samples(parallel));
+        assertArrayEquals(message, Steganography.extractMessage(parallel, scatter, 8));
+    }
+
+    private static BufferedImage carrier(int type, int width, int height, long seed) {
+        Random random = new Random(~seed);
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    private static int[] samples(BufferedImage image) {
+        return image.getRaster().getPixels(0, 0, image.getWidth(), image.getHeight(), (int[]) null);
+    }
+}
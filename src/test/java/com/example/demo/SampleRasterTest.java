@@ -0,0 +1,34 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Доступ к отсчётам растров, для которых нет прямого доступа к массиву.
+ */
+class SampleRasterTest {
+
+    @Test
+    void rejectsMoreBitsThanBinarySampleHolds() throws IOException {
+        BufferedImage image = new BufferedImage(200, 200, BufferedImage.TYPE_BYTE_BINARY);
+        EmbeddingConfig twoBits = EmbeddingConfig.defaults().withBitsPerChannel(2);
+        byte[] message = new byte[100];
+        new Random(1).nextBytes(message);
+
+        assertEquals(0, Steganography.capacity(image, twoBits));
+        assertThrows(IOException.class, () -> Steganography.hideTheMessage(BitPayload.wrap(message), image, twoBits));
+
+        EmbeddingConfig oneBit = EmbeddingConfig.defaults();
+        assertTrue(Steganography.capacity(image, oneBit) >= message.length);
+        Steganography.hideTheMessage(BitPayload.wrap(message), image, oneBit);
+        assertArrayEquals(message, Steganography.extractMessage(image));
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Разбиение файла на части по нескольким контейнерам и сборка обратно.
+ */
+class ShardedArchiveTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void extractRestoresSplitFile() throws IOException {
+        byte[] data = new byte[12_000];
+        new Random(1).nextBytes(data);
+        Path input = dir.resolve("data.bin");
+        Files.write(input, data);
+        Path output = embedShards(input);
+
+        // Порядок изображений не важен, изображение без части пропускается
+        List<Path> images = new ArrayList<>(ShardedArchive.listImages(output));
+        Collections.shuffle(images, new Random(2));
+        Path unrelated = dir.resolve("unrelated.png");
+        ImageHandler.saveImage(carrier(64, 64, 9), unrelated.toString(), "png");
+        images.add(unrelated);
+        CarrierCache.shared().clear();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(data.length, ShardedArchive.extract(images, out, null, 2));
+        assertArrayEquals(data, out.toByteArray());
+        assertEquals(0, CarrierCache.shared().getSizeBytes());
+    }
+
+    @Test
+    void extractRejectsMorePartsThanImages() throws IOException {
+        Path input = dir.resolve("data.bin");
+        Files.write(input, new byte[12_000]);
+        Path output = embedShards(input);
+        List<Path> one = ShardedArchive.listImages(output).subList(0, 1);
+
+        assertThrows(IOException.class, () -> ShardedArchive.extract(one, new ByteArrayOutputStream(), null, 1));
+        assertEquals(0, CarrierCache.shared().getSizeBytes());
+    }
+
+    private Path embedShards(Path input) throws IOException {
+        Path carriers = Files.createDirectories(dir.resolve("carriers"));
+        ImageHandler.saveImage(carrier(200, 200, 3), carriers.resolve("a.png").toString(), "png");
+        ImageHandler.saveImage(carrier(160, 220, 4), carriers.resolve("b.png").toString(), "png");
+        ImageHandler.saveImage(carrier(250, 180, 5), carriers.resolve("c.bmp").toString(), "bmp");
+        Path output = dir.resolve("out");
+        int count = ShardedArchive.embed(input, ShardedArchive.listImages(carriers), output,
+                EmbeddingConfig.defaults(), 2);
+        assertEquals(3, count);
+        return output;
+    }
+
+    private static BufferedImage carrier(int width, int height, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+}
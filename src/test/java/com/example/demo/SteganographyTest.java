@@ -0,0 +1,128 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Встраивание в изображения через {@link Steganography}.
+ */
+class SteganographyTest {
+
+    private static final int[] TYPES = {
+            BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_BGR,
+            BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR
+    };
+
+    @Test
+    void legacyEmbedMatchesPixelByPixelImplementation() throws IOException {
+        for (int type : TYPES) {
+            for (int bitCount : new int[]{8, 200 * 8, 255 * 8, 100 * 8 + 3}) {
+                int[] bits = randomBits(bitCount, type);
+                BufferedImage expected = carrier(type, 64, 48, type);
+                BufferedImage actual = carrier(type, 64, 48, type);
+
+                referenceHide(bits, expected);
+                Steganography.hideTheMessage(bits, actual);
+
+                assertArrayEquals(expected.getRGB(0, 0, 64, 48, null, 0, 64),
+                        actual.getRGB(0, 0, 64, 48, null, 0, 64), "тип " + type + ", битов " + bitCount);
+            }
+        }
+    }
+
+    @Test
+    void appendMatchesEmbeddingConcatenatedMessage() throws IOException {
+        EmbeddingConfig[] configs = {
+                EmbeddingConfig.defaults(),
+                EmbeddingConfig.defaults().withBitsPerChannel(3).withChannels(Channel.RED, Channel.BLUE),
+                EmbeddingConfig.defaults().withScatter(PixelScatter.fromKey(7))
+        };
+        for (int type : TYPES) {
+            for (EmbeddingConfig config : configs) {
+                // Длина первой части не кратна ёмкости пикселя: дозапись начинается с частично занятого пикселя
+                byte[] first = randomBytes(101, type);
+                byte[] second = randomBytes(57, ~type);
+                byte[] whole = new byte[first.length + second.length];
+                System.arraycopy(first, 0, whole, 0, first.length);
+                System.arraycopy(second, 0, whole, first.length, second.length);
+                PixelScatter scatter = config.getScatter();
+                BufferedImage appended = carrier(type, 64, 48, type);
+                BufferedImage embedded = carrier(type, 64, 48, type);
+
+                Steganography.hideTheMessage(BitPayload.wrap(first), appended, config);
+                FrameHeader header = Steganography.appendMessage(second, appended, scatter);
+                Steganography.hideTheMessage(BitPayload.wrap(whole), embedded, config);
+
+                assertEquals(whole.length, header.getLength());
+                assertArrayEquals(embedded.getRGB(0, 0, 64, 48, null, 0, 64),
+                        appended.getRGB(0, 0, 64, 48, null, 0, 64), "тип " + type);
+                assertArrayEquals(whole, Steganography.extractMessage(appended, scatter, 1));
+            }
+        }
+    }
+
+    @Test
+    void appendRejectsLegacyMessage() throws IOException {
+        BufferedImage image = carrier(BufferedImage.TYPE_INT_RGB, 64, 48, 1);
+        Steganography.hideTheMessage(randomBits(80, 1), image);
+        assertThrows(IOException.class, () -> Steganography.appendMessage(new byte[4], image));
+    }
+
+    /**
+     * Прежняя реализация: длина в первых 8 пикселях столбца 0, затем биты по столбцам через getRGB/setRGB.
+     */
+    private static void referenceHide(int[] bits, BufferedImage image) {
+        String binaryLength = Integer.toBinaryString(bits.length / 8);
+        while (binaryLength.length() < 8) {
+            binaryLength = '0' + binaryLength;
+        }
+        for (int i = 0; i < 8; i++) {
+            referenceBit(image, 0, i, Character.getNumericValue(binaryLength.charAt(i)));
+        }
+        int bitIndex = 0;
+        for (int x = 0; x < image.getWidth() && bitIndex < bits.length; x++) {
+            for (int y = 0; y < image.getHeight() && bitIndex < bits.length; y++) {
+                if (x == 0 && y < 8) continue;
+                referenceBit(image, x, y, bits[bitIndex++]);
+            }
+        }
+    }
+
+    private static void referenceBit(BufferedImage image, int x, int y, int bit) {
+        int pixel = image.getRGB(x, y);
+        image.setRGB(x, y, (pixel & ~1) | bit);
+    }
+
+    private static byte[] randomBytes(int count, long seed) {
+        byte[] bytes = new byte[count];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static int[] randomBits(int count, long seed) {
+        Random random = new Random(seed);
+        int[] bits = new int[count];
+        for (int i = 0; i < count; i++) {
+            bits[i] = random.nextInt(2);
+        }
+        return bits;
+    }
+
+    private static BufferedImage carrier(int type, int width, int height, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+}